@@ -0,0 +1,181 @@
+package com.ionic.sdk.addon.jdbc.benchmark;
+
+import com.ionic.sdk.addon.jdbc.IonicBatchWriter;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.core.codec.Transcoder;
+import com.ionic.sdk.key.KeyServices;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Synthetic in-memory (H2) database, shaped like the "personnel" table of the sample application.
+ */
+final class BenchmarkDatabase {
+
+    /**
+     * Static utility class.
+     */
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * @return a connection to a new, empty in-memory database containing the "personnel" table
+     * @throws SQLException on database failure
+     */
+    static Connection create() throws SQLException {
+        final String url = String.format(URL_PATTERN, DATABASE_COUNTER.incrementAndGet());
+        final Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(SQL_CREATE);
+        }
+        return connection;
+    }
+
+    /**
+     * Remove all rows from the "personnel" table.
+     *
+     * @param connection a connection to the database
+     * @throws SQLException on database failure
+     */
+    static void truncate(final Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(SQL_TRUNCATE);
+        }
+    }
+
+    /**
+     * Fill the "personnel" table with synthetic rows.
+     *
+     * @param connection       a connection to the database
+     * @param keyServices      the key source used to protect data
+     * @param rows             the number of rows to insert
+     * @param protectedColumns the number of columns (of "first", "last", "zip") to protect
+     * @param valueSize        the length of each generated column value
+     * @param restrictedRatio  the fraction of rows marked with the attribute denied by {@link #POLICY_RESTRICTED}
+     * @throws SQLException   on database failure
+     * @throws IonicException on failure to protect data
+     */
+    static void populate(final Connection connection, final KeyServices keyServices, final int rows,
+                         final int protectedColumns, final int valueSize, final double restrictedRatio)
+            throws SQLException, IonicException {
+        final Random random = new Random(0L);
+        try (IonicBatchWriter writer = new IonicBatchWriter(keyServices, connection, SQL_INSERT, COLUMNS,
+                getIonicAttributes(protectedColumns), BATCH_SIZE, 0)) {
+            for (int i = 0; i < rows; ++i) {
+                final String department = DEPARTMENTS.get(random.nextInt(DEPARTMENTS.size()));
+                final KeyAttributesMap attributesRow = new KeyAttributesMap();
+                attributesRow.put(DEPARTMENT, Collections.singletonList(department));
+                if (random.nextDouble() < restrictedRatio) {
+                    attributesRow.put(ACCESS, Collections.singletonList(ACCESS_RESTRICTED));
+                }
+                writer.addRow(toRow(random, valueSize, department), attributesRow);
+            }
+        }
+    }
+
+    /**
+     * @return a key service stand-in, with a policy denying access to rows marked as restricted
+     * @throws IonicException on failure to add the policy
+     */
+    static LocalKeyServices createKeyServices() throws IonicException {
+        final LocalKeyServices keyServices = new LocalKeyServices();
+        keyServices.addPolicy(Transcoder.utf8().decode(POLICY_RESTRICTED));
+        return keyServices;
+    }
+
+    /**
+     * @param protectedColumns the number of columns (of "first", "last", "zip") to protect
+     * @return the labels of the protected columns
+     */
+    static List<String> getIonicColumns(final int protectedColumns) {
+        return COLUMNS.subList(0, protectedColumns);
+    }
+
+    /**
+     * @param protectedColumns the number of columns (of "first", "last", "zip") to protect
+     * @return the Ionic attributes of each protected column, indexed by column label
+     */
+    static Map<String, KeyAttributesMap> getIonicAttributes(final int protectedColumns) {
+        final Map<String, KeyAttributesMap> ionicAttributes = new HashMap<String, KeyAttributesMap>();
+        for (String column : getIonicColumns(protectedColumns)) {
+            final KeyAttributesMap keyAttributes = new KeyAttributesMap();
+            keyAttributes.put(CLASSIFICATION, Arrays.asList("pii", column));
+            ionicAttributes.put(column, keyAttributes);
+        }
+        return ionicAttributes;
+    }
+
+    /**
+     * @param random     source of generated values
+     * @param valueSize  the length of each generated column value
+     * @param department the department of the row
+     * @return the plaintext column values of a synthetic row, in {@link #SQL_INSERT} parameter order
+     */
+    static Object[] toRow(final Random random, final int valueSize, final String department) {
+        return new Object[]{toValue(random, valueSize), toValue(random, valueSize), toValue(random, valueSize),
+                department};
+    }
+
+    /**
+     * @param random    source of generated values
+     * @param valueSize the length of the generated value
+     * @return a random alphabetic string of the requested length
+     */
+    static String toValue(final Random random, final int valueSize) {
+        final char[] value = new char[valueSize];
+        for (int i = 0; i < valueSize; ++i) {
+            value[i] = (char) ('a' + random.nextInt(ALPHABET_SIZE));
+        }
+        return new String(value);
+    }
+
+    /**
+     * Distinguish databases created in the same JVM.
+     */
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger();
+
+    /**
+     * In-memory database, kept alive until the JVM exits.
+     */
+    private static final String URL_PATTERN = "jdbc:h2:mem:personnel%d;DB_CLOSE_DELAY=-1";
+
+    private static final String SQL_CREATE = "CREATE TABLE personnel(id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "first VARCHAR, last VARCHAR, zip VARCHAR, department VARCHAR(64))";
+    private static final String SQL_TRUNCATE = "TRUNCATE TABLE personnel";
+    static final String SQL_INSERT = "INSERT INTO personnel (first, last, zip, department) VALUES (?, ?, ?, ?)";
+    static final String SQL_SELECT = "SELECT * FROM personnel";
+
+    static final List<String> COLUMNS = Collections.unmodifiableList(
+            Arrays.asList("first", "last", "zip", "department"));
+    static final List<String> DEPARTMENTS = Collections.unmodifiableList(
+            Arrays.asList("Engineering", "HR", "Marketing"));
+    static final String CLASSIFICATION = "classification";
+    static final String DEPARTMENT = "department";
+    static final String ACCESS = "access";
+    static final String ACCESS_RESTRICTED = "restricted";
+
+    /**
+     * Ionic policy denying access to data marked with attribute "access" value "restricted".
+     */
+    static final String POLICY_RESTRICTED = "{\"enabled\":true,\"policyId\":\"benchmark-restricted\","
+            + "\"ruleCombiningAlgId\":\"deny-overrides\",\"target\":{\"condition\":{"
+            + "\"functionId\":\"string-at-least-one-member-of\",\"args\":["
+            + "{\"dataType\":\"string\",\"value\":[\"restricted\"]},"
+            + "{\"category\":\"resource\",\"id\":\"access\"}]}},"
+            + "\"rules\":[{\"effect\":\"Deny\"}]}";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int ALPHABET_SIZE = 26;
+}
@@ -0,0 +1,126 @@
+package com.ionic.sdk.addon.jdbc.benchmark;
+
+import com.ionic.sdk.addon.jdbc.ChunkDetector;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCrypto;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoChunkInfo;
+import com.ionic.sdk.error.IonicException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the cost of deciding whether a column value is Ionic-protected, over a column of mixed plaintext,
+ * ciphertext, and NULL values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ChunkDetectionBenchmark {
+
+    /**
+     * The fraction of column values that are Ionic-protected.
+     */
+    @Param({"0.0", "0.5", "1.0"})
+    public double ciphertextRatio;
+
+    /**
+     * The length of each plaintext column value.
+     */
+    @Param({"16", "256"})
+    public int valueSize;
+
+    private String[] values;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IonicException {
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(new LocalKeyServices());
+        final Random random = new Random(0L);
+        values = new String[VALUES];
+        for (int i = 0; i < VALUES; ++i) {
+            final String value = BenchmarkDatabase.toValue(random, valueSize);
+            if (i % NULL_INTERVAL == 0) {
+                values[i] = null;
+            } else if (random.nextDouble() < ciphertextRatio) {
+                values[i] = chunkCipher.encrypt(value);
+            } else {
+                values[i] = value;
+            }
+        }
+    }
+
+    /**
+     * Detection as performed by the sample application: a full parse of the chunk header.
+     *
+     * @param blackhole sink for the detection results
+     */
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void getChunkInfo(final Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(ChunkCrypto.getChunkInfo(value).isEncrypted());
+        }
+    }
+
+    /**
+     * Detection using {@link ChunkDetector}: a prefix check, falling back to the full parse only for candidates.
+     *
+     * @param blackhole sink for the detection results
+     */
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void chunkDetector(final Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(ChunkDetector.isEncrypted(value));
+        }
+    }
+
+    /**
+     * Key tag extraction as performed by the sample application when collecting the keys of a batch: a full parse of
+     * the chunk header.
+     *
+     * @param blackhole sink for the key tags
+     */
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void getChunkInfoKeyId(final Blackhole blackhole) {
+        for (String value : values) {
+            final ChunkCryptoChunkInfo chunkInfo = ChunkCrypto.getChunkInfo(value);
+            blackhole.consume(chunkInfo.isEncrypted() ? chunkInfo.getKeyId() : null);
+        }
+    }
+
+    /**
+     * Key tag extraction using {@link ChunkDetector}, which allocates only the key tag.
+     *
+     * @param blackhole sink for the key tags
+     */
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void chunkDetectorKeyId(final Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(ChunkDetector.getKeyId(value));
+        }
+    }
+
+    private static final int VALUES = 1024;
+    private static final int NULL_INTERVAL = 10;
+}
@@ -0,0 +1,138 @@
+package com.ionic.sdk.addon.jdbc.benchmark;
+
+import com.ionic.sdk.addon.jdbc.IonicBatchWriter;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoEncryptAttributes;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import org.apache.commons.dbutils.QueryRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the insert path: the per-row, per-cell approach of the sample application test case, and
+ * {@link IonicBatchWriter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class InsertBenchmark {
+
+    /**
+     * The number of rows inserted per benchmark invocation.
+     */
+    @Param({"100", "1000"})
+    public int rows;
+
+    /**
+     * The number of Ionic-protected columns in the table.
+     */
+    @Param({"1", "3"})
+    public int protectedColumns;
+
+    /**
+     * The number of rows written per JDBC batch (batch writer only).
+     */
+    @Param({"100"})
+    public int batchSize;
+
+    private LocalKeyServices keyServices;
+    private Connection connection;
+    private Map<String, KeyAttributesMap> ionicAttributes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        keyServices = new LocalKeyServices();
+        connection = BenchmarkDatabase.create();
+        ionicAttributes = BenchmarkDatabase.getIonicAttributes(protectedColumns);
+    }
+
+    @Setup(Level.Invocation)
+    public void truncate() throws SQLException {
+        BenchmarkDatabase.truncate(connection);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * Insert rows one at a time, creating one key per protected cell, as in the sample application test case.
+     *
+     * @return the number of rows inserted
+     * @throws SQLException   on database failure
+     * @throws IonicException on failure to protect data
+     */
+    @Benchmark
+    public int perRow() throws SQLException, IonicException {
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServices);
+        final Random random = new Random(0L);
+        int inserts = 0;
+        for (int i = 0; i < rows; ++i) {
+            final String department = BenchmarkDatabase.DEPARTMENTS.get(i % BenchmarkDatabase.DEPARTMENTS.size());
+            final Object[] row = BenchmarkDatabase.toRow(random, VALUE_SIZE, department);
+            for (int c = 0; c < row.length; ++c) {
+                final KeyAttributesMap columnAttributes = ionicAttributes.get(BenchmarkDatabase.COLUMNS.get(c));
+                if (columnAttributes != null) {
+                    final KeyAttributesMap keyAttributes = new KeyAttributesMap(columnAttributes);
+                    keyAttributes.put(BenchmarkDatabase.DEPARTMENT, Collections.singletonList(department));
+                    row[c] = chunkCipher.encrypt((String) row[c], new ChunkCryptoEncryptAttributes(keyAttributes));
+                }
+            }
+            final QueryRunner queryRunner = new QueryRunner();
+            inserts += queryRunner.update(connection, BenchmarkDatabase.SQL_INSERT, row);
+        }
+        return inserts;
+    }
+
+    /**
+     * Insert rows using {@link IonicBatchWriter}.
+     *
+     * @return the number of rows inserted
+     * @throws SQLException   on database failure
+     * @throws IonicException on failure to protect data
+     */
+    @Benchmark
+    public int batchWriter() throws SQLException, IonicException {
+        final Random random = new Random(0L);
+        try (IonicBatchWriter writer = new IonicBatchWriter(keyServices, connection, BenchmarkDatabase.SQL_INSERT,
+                BenchmarkDatabase.COLUMNS, ionicAttributes, batchSize, 0)) {
+            for (int i = 0; i < rows; ++i) {
+                final String department = BenchmarkDatabase.DEPARTMENTS.get(
+                        i % BenchmarkDatabase.DEPARTMENTS.size());
+                final KeyAttributesMap attributesRow = new KeyAttributesMap();
+                attributesRow.put(BenchmarkDatabase.DEPARTMENT, Collections.singletonList(department));
+                writer.addRow(BenchmarkDatabase.toRow(random, VALUE_SIZE, department), attributesRow);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * The length of each plaintext column value.
+     */
+    private static final int VALUE_SIZE = 16;
+}
@@ -0,0 +1,108 @@
+package com.ionic.sdk.addon.jdbc.benchmark;
+
+import com.ionic.sdk.addon.policy.PolicyService;
+import com.ionic.sdk.core.codec.Transcoder;
+import com.ionic.sdk.error.IonicException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the round trip of adding and then deleting a set of policies through {@link PolicyService}, against a
+ * local stand-in for the Ionic policy web API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PolicyServiceBenchmark {
+
+    /**
+     * The number of policies added and deleted per benchmark invocation.
+     */
+    @Param({"100"})
+    public int policies;
+
+    /**
+     * The latency in milliseconds injected into each request by the server.
+     */
+    @Param({"0", "5"})
+    public long latencyMillis;
+
+    /**
+     * The maximum number of concurrent requests (bulk operations only).
+     */
+    @Param({"1", "8"})
+    public int maxConcurrent;
+
+    private PolicyStubServer server;
+    private PolicyService policyService;
+    private List<byte[]> policiesJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new PolicyStubServer(latencyMillis);
+        policyService = new PolicyService(server.getUrl(), TENANT_ID, USER, PASSWORD);
+        policiesJson = new ArrayList<byte[]>(policies);
+        for (int i = 0; i < policies; ++i) {
+            policiesJson.add(Transcoder.utf8().decode(BenchmarkDatabase.POLICY_RESTRICTED));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Add and delete policies one request at a time.
+     *
+     * @return the number of policies added
+     * @throws IonicException on server request failure
+     */
+    @Benchmark
+    public int sequential() throws IonicException {
+        final List<String> policyIds = new ArrayList<String>(policies);
+        for (byte[] policyJson : policiesJson) {
+            policyIds.add(policyService.addPolicy(policyJson));
+        }
+        for (String policyId : policyIds) {
+            policyService.deletePolicy(policyId);
+        }
+        return policyIds.size();
+    }
+
+    /**
+     * Add and delete policies using the bulk operations.
+     *
+     * @return the number of policies added
+     * @throws IonicException on server request failure
+     */
+    @Benchmark
+    public int bulk() throws IonicException {
+        final List<String> policyIds = policyService.addPolicies(policiesJson, maxConcurrent);
+        policyService.deletePolicies(policyIds, maxConcurrent);
+        return policyIds.size();
+    }
+
+    private static final String TENANT_ID = "benchmark";
+    private static final String USER = "user";
+    private static final String PASSWORD = "password";
+}
@@ -0,0 +1,144 @@
+package com.ionic.sdk.addon.jdbc.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Ionic policy web API, serving the requests made by
+ * {@link com.ionic.sdk.addon.policy.PolicyService} on the loopback interface.
+ */
+final class PolicyStubServer implements AutoCloseable {
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The threads servicing requests.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The latency in milliseconds injected into each request.
+     */
+    private final long latencyMillis;
+
+    /**
+     * Source of policy identifiers.
+     */
+    private final AtomicLong policyCounter;
+
+    /**
+     * Constructor.  The server is started on an ephemeral port.
+     *
+     * @param latencyMillis the latency in milliseconds injected into each request, to simulate a remote server
+     * @throws IOException on failure to start the server
+     */
+    PolicyStubServer(final long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.policyCounter = new AtomicLong();
+        this.executor = Executors.newFixedThreadPool(THREADS);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(CONTEXT, new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                respond(exchange);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return the base URL of the server
+     * @throws IOException on failure to form the URL
+     */
+    URL getUrl() throws IOException {
+        final InetSocketAddress address = server.getAddress();
+        return new URL(String.format(URL_PATTERN, address.getHostString(), address.getPort()));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Serve a single request.
+     *
+     * @param exchange the HTTP request and response
+     * @throws IOException on failure to read the request or write the response
+     */
+    private void respond(final HttpExchange exchange) throws IOException {
+        try (InputStream is = exchange.getRequestBody()) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int count = is.read(buffer);
+            while (count >= 0) {
+                count = is.read(buffer);
+            }
+        }
+        if (latencyMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        final String method = exchange.getRequestMethod();
+        if (METHOD_POST.equals(method)) {
+            final String policyId = String.format(POLICY_ID_PATTERN, policyCounter.incrementAndGet());
+            send(exchange, HttpURLConnection.HTTP_CREATED, String.format(ENTITY_CREATED, policyId));
+        } else if (METHOD_DELETE.equals(method)) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NO_CONTENT, -1);
+            exchange.close();
+        } else {
+            send(exchange, HttpURLConnection.HTTP_OK, ENTITY_LIST);
+        }
+    }
+
+    /**
+     * Send a JSON response.
+     *
+     * @param exchange   the HTTP request and response
+     * @param statusCode the HTTP status code of the response
+     * @param entity     the JSON response entity
+     * @throws IOException on failure to write the response
+     */
+    private static void send(final HttpExchange exchange, final int statusCode,
+                             final String entity) throws IOException {
+        final byte[] bytes = entity.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON);
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static final int THREADS = 16;
+    private static final int BUFFER_SIZE = 4096;
+    private static final String CONTEXT = "/v2/";
+    private static final String URL_PATTERN = "http://%s:%d";
+    private static final String METHOD_POST = "POST";
+    private static final String METHOD_DELETE = "DELETE";
+    private static final String HEADER_CONTENT_TYPE = "Content-Type";
+    private static final String CONTENT_TYPE_JSON = "application/json";
+    private static final String POLICY_ID_PATTERN = "stub-policy-%d";
+    private static final String ENTITY_CREATED = "{\"id\":\"%s\"}";
+    private static final String ENTITY_LIST = "{\"Resources\":[]}";
+}
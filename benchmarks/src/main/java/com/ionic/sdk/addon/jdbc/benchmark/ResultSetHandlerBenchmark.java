@@ -0,0 +1,106 @@
+package com.ionic.sdk.addon.jdbc.benchmark;
+
+import com.ionic.sdk.addon.jdbc.ColumnarRowSet;
+import com.ionic.sdk.addon.jdbc.IonicResultSetHandler;
+import com.ionic.sdk.addon.jdbc.RowSet;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.error.IonicException;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure {@link IonicResultSetHandler#handle(java.sql.ResultSet)} over a synthetic table, and the equivalent
+ * {@link IonicResultSetHandler#handleColumnar(java.sql.ResultSet)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResultSetHandlerBenchmark {
+
+    /**
+     * The number of rows in the table.
+     */
+    @Param({"100", "10000"})
+    public int rows;
+
+    /**
+     * The number of Ionic-protected columns in the table.
+     */
+    @Param({"1", "3"})
+    public int protectedColumns;
+
+    /**
+     * The length of each plaintext column value.
+     */
+    @Param({"16", "256"})
+    public int valueSize;
+
+    /**
+     * The fraction of rows marked with the attribute denied by the key service policy.
+     */
+    @Param({"0.0", "0.5"})
+    public double restrictedRatio;
+
+    /**
+     * The number of rows for which keys are fetched in a single request.
+     */
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private LocalKeyServices keyServices;
+    private Connection connection;
+    private Collection<String> ionicColumns;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IonicException {
+        keyServices = BenchmarkDatabase.createKeyServices();
+        connection = BenchmarkDatabase.create();
+        BenchmarkDatabase.populate(connection, keyServices, rows, protectedColumns, valueSize, restrictedRatio);
+        ionicColumns = BenchmarkDatabase.getIonicColumns(protectedColumns);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public RowSet handle() throws SQLException {
+        final IonicResultSetHandler handler = new IonicResultSetHandler(keyServices, ionicColumns, batchSize);
+        return new QueryRunner().query(connection, BenchmarkDatabase.SQL_SELECT, handler);
+    }
+
+    @Benchmark
+    public ColumnarRowSet handleColumnar() throws SQLException {
+        final IonicResultSetHandler handler = new IonicResultSetHandler(keyServices, ionicColumns, batchSize);
+        final ResultSetHandler<ColumnarRowSet> columnarHandler = new ResultSetHandler<ColumnarRowSet>() {
+            @Override
+            public ColumnarRowSet handle(final ResultSet resultSet) throws SQLException {
+                return handler.handleColumnar(resultSet);
+            }
+        };
+        return new QueryRunner().query(connection, BenchmarkDatabase.SQL_SELECT, columnarHandler);
+    }
+}
@@ -0,0 +1,262 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.addon.key.PrefetchedKeyServices;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies the "waypoint-3" access filter of {@link IonicResultSetHandler} in the database, using the
+ * {@link AccessFingerprint} side column of the queried table.
+ * <p>
+ * Before the query is run, an aggregate query selects one ciphertext of each protected column for each distinct
+ * fingerprint in the query result.  The keys of these ciphertexts are fetched in a single request; a fingerprint is
+ * accessible if at least one of its keys is released.  The query is then run with an added predicate restricting it
+ * to the accessible fingerprints, so that inaccessible rows are neither transferred nor decrypted.  Rows without a
+ * fingerprint (for example, rows written before the fingerprint column was added, or rows whose fingerprint could
+ * not be computed) are not restricted.  The handler still applies its own filter to the rows returned.
+ * <p>
+ * The query must select the fingerprint column and the protected columns by name (as <code>SELECT *</code> does).
+ * If the access check fails, the query is run without the added predicate.
+ * <p>
+ * The query is nested as a subquery of the filtering query.  A trailing <code>ORDER BY</code> clause is moved to
+ * the filtering query, so that the order of the result is preserved; its expressions must therefore refer to the
+ * columns of the query result by label or by position, rather than through table names or aliases of the query.
+ * The clause is left in place (and the order of the result is then not guaranteed) if it is followed by a row
+ * limiting clause (<code>LIMIT</code>, <code>OFFSET</code> or <code>FETCH</code>), or if it holds replacement
+ * parameters.  A row limiting clause is applied before the filter, so the filtered result may hold fewer rows than
+ * the limit.  SQL comments are not recognized.
+ * <p>
+ * Instances are thread safe.
+ */
+public class AccessFilter {
+
+    /**
+     * Ionic key source, used to check access to the fingerprints of the query result.
+     */
+    private final KeyServices agent;
+
+    /**
+     * Text labels of the database columns that are Ionic-protected at rest in the database.
+     */
+    private final List<String> ionicColumns;
+
+    /**
+     * Constructor.
+     *
+     * @param agent        Ionic key source, used to check access to the fingerprints of the query result
+     * @param ionicColumns text labels of the database columns that are Ionic-protected at rest in the database
+     */
+    public AccessFilter(final KeyServices agent, final Collection<String> ionicColumns) {
+        this.agent = agent;
+        this.ionicColumns = new ArrayList<String>(ionicColumns);
+    }
+
+    /**
+     * Run a query, restricted to the rows accessible to the caller.
+     *
+     * @param connection the database connection on which to execute the query
+     * @param sql        the SQL query to execute
+     * @param handler    the handler that processes the rows of the query result
+     * @param params     the replacement parameters of the query
+     * @param <T>        the type of the result of the handler
+     * @return the result of the handler
+     * @throws SQLException on failure to execute the query, or on handler failure
+     */
+    public <T> T query(final Connection connection, final String sql, final ResultSetHandler<T> handler,
+                       final Object... params) throws SQLException {
+        final QueryRunner queryRunner = new QueryRunner();
+        final Set<String> fingerprints = getAccessibleFingerprints(connection, sql, params);
+        if (fingerprints == null) {
+            return queryRunner.query(connection, sql, handler, params);
+        }
+        final String subquery = toSubquery(sql);
+        final int orderBy = findOrderBy(subquery);
+        final StringBuilder sqlFiltered = new StringBuilder("SELECT * FROM (")
+                .append((orderBy < 0) ? subquery : subquery.substring(0, orderBy).trim())
+                .append(") ionic_q WHERE ");
+        if (!fingerprints.isEmpty()) {
+            sqlFiltered.append("ionic_q.").append(AccessFingerprint.COLUMN).append(" IN (");
+            for (int i = 0; i < fingerprints.size(); ++i) {
+                sqlFiltered.append((i == 0) ? "?" : ", ?");
+            }
+            sqlFiltered.append(") OR ");
+        }
+        sqlFiltered.append("ionic_q.").append(AccessFingerprint.COLUMN).append(" IS NULL");
+        if (orderBy >= 0) {
+            sqlFiltered.append(' ').append(subquery.substring(orderBy));
+        }
+        final List<Object> paramsFiltered = new ArrayList<Object>(Arrays.asList(params));
+        paramsFiltered.addAll(fingerprints);
+        return queryRunner.query(connection, sqlFiltered.toString(), handler, paramsFiltered.toArray());
+    }
+
+    /**
+     * Determine which fingerprints of a query result are accessible to the caller.
+     *
+     * @param connection the database connection on which to execute the query
+     * @param sql        the SQL query
+     * @param params     the replacement parameters of the query
+     * @return the accessible fingerprints; null if access could not be checked
+     * @throws SQLException on failure to execute the aggregate query
+     */
+    public Set<String> getAccessibleFingerprints(final Connection connection, final String sql,
+                                                 final Object... params) throws SQLException {
+        final StringBuilder sqlProbe = new StringBuilder("SELECT ionic_q.").append(AccessFingerprint.COLUMN);
+        for (String ionicColumn : ionicColumns) {
+            sqlProbe.append(", MIN(ionic_q.").append(ionicColumn).append(')');
+        }
+        sqlProbe.append(" FROM (").append(toSubquery(sql)).append(") ionic_q WHERE ionic_q.")
+                .append(AccessFingerprint.COLUMN).append(" IS NOT NULL GROUP BY ionic_q.")
+                .append(AccessFingerprint.COLUMN);
+        final Map<String, Set<String>> keyIds = new QueryRunner().query(connection, sqlProbe.toString(),
+                new ResultSetHandler<Map<String, Set<String>>>() {
+                    @Override
+                    public Map<String, Set<String>> handle(final ResultSet resultSet) throws SQLException {
+                        final Map<String, Set<String>> keyIdsProbe = new LinkedHashMap<String, Set<String>>();
+                        while (resultSet.next()) {
+                            final Set<String> keyIdsFingerprint = new LinkedHashSet<String>();
+                            for (int i = 0; i < ionicColumns.size(); ++i) {
+                                final String value = resultSet.getString(i + 2);
+                                final String keyId = ChunkDetector.getKeyId(value);
+                                if (keyId != null) {
+                                    keyIdsFingerprint.add(keyId);
+                                }
+                            }
+                            keyIdsProbe.put(resultSet.getString(1), keyIdsFingerprint);
+                        }
+                        return keyIdsProbe;
+                    }
+                }, params);
+        final Set<String> keyIdsAll = new HashSet<String>();
+        for (Set<String> keyIdsFingerprint : keyIds.values()) {
+            keyIdsAll.addAll(keyIdsFingerprint);
+        }
+        final PrefetchedKeyServices keyServices = new PrefetchedKeyServices(agent);
+        try {
+            keyServices.prefetch(keyIdsAll);
+        } catch (IonicException e) {
+            return null;
+        }
+        final Set<String> fingerprints = new LinkedHashSet<String>();
+        for (Map.Entry<String, Set<String>> entry : keyIds.entrySet()) {
+            for (String keyId : entry.getValue()) {
+                if (!keyServices.isDenied(keyId)) {
+                    fingerprints.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * @param sql a SQL query
+     * @return the query, in a form that may be nested as a subquery
+     */
+    private static String toSubquery(final String sql) {
+        String subquery = sql.trim();
+        while (subquery.endsWith(";")) {
+            subquery = subquery.substring(0, subquery.length() - 1).trim();
+        }
+        return subquery;
+    }
+
+    /**
+     * @param sql a SQL query, as returned by {@link #toSubquery(String)}
+     * @return the position of the trailing <code>ORDER BY</code> clause of the query, if it may be moved to an
+     * enclosing query; otherwise -1
+     */
+    private static int findOrderBy(final String sql) {
+        final int order = lastIndexOfKeyword(sql, "ORDER");
+        if ((order < 0) || (skipWhitespace(sql, order + "ORDER".length()) != indexOfKeyword(sql, "BY", order))) {
+            return -1;
+        }
+        final String clause = sql.substring(order);
+        final boolean movable = (clause.indexOf('?') < 0) && (lastIndexOfKeyword(clause, "LIMIT") < 0)
+                && (lastIndexOfKeyword(clause, "OFFSET") < 0) && (lastIndexOfKeyword(clause, "FETCH") < 0);
+        return movable ? order : -1;
+    }
+
+    /**
+     * @param sql  a SQL query
+     * @param from the position at which to start
+     * @return the position of the first character at or after the given position that is not whitespace; the length
+     * of the query if none
+     */
+    private static int skipWhitespace(final String sql, final int from) {
+        int i = from;
+        while ((i < sql.length()) && Character.isWhitespace(sql.charAt(i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    /**
+     * @param sql     a SQL query
+     * @param keyword a keyword, in upper case
+     * @param from    the position at which to start
+     * @return the position of the first occurrence of the keyword at or after the given position, outside of
+     * parentheses and quotes; -1 if none
+     */
+    private static int indexOfKeyword(final String sql, final String keyword, final int from) {
+        int depth = 0;
+        for (int i = from; i < sql.length(); ++i) {
+            final char c = sql.charAt(i);
+            if ((c == '\'') || (c == '"')) {
+                final int end = sql.indexOf(c, i + 1);
+                if (end < 0) {
+                    return -1;
+                }
+                i = end;
+            } else if (c == '(') {
+                ++depth;
+            } else if (c == ')') {
+                --depth;
+            } else if ((depth == 0) && isKeyword(sql, i, keyword)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param sql     a SQL query
+     * @param keyword a keyword, in upper case
+     * @return the position of the last occurrence of the keyword, outside of parentheses and quotes; -1 if none
+     */
+    private static int lastIndexOfKeyword(final String sql, final String keyword) {
+        int last = -1;
+        for (int i = indexOfKeyword(sql, keyword, 0); i >= 0; i = indexOfKeyword(sql, keyword, i + 1)) {
+            last = i;
+        }
+        return last;
+    }
+
+    /**
+     * @param sql     a SQL query
+     * @param i       a position in the query
+     * @param keyword a keyword, in upper case
+     * @return true if the keyword (as a whole word, ignoring case) occurs at the position
+     */
+    private static boolean isKeyword(final String sql, final int i, final String keyword) {
+        final int end = i + keyword.length();
+        return sql.regionMatches(true, i, keyword, 0, keyword.length())
+                && ((i == 0) || !Character.isJavaIdentifierPart(sql.charAt(i - 1)))
+                && ((end == sql.length()) || !Character.isJavaIdentifierPart(sql.charAt(end)));
+    }
+}
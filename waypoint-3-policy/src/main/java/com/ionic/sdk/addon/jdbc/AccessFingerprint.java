@@ -0,0 +1,102 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Digest of the Ionic attributes with which the protected cells of a row are encrypted, stored in a side column of
+ * the row so that the "waypoint-3" access filter can be evaluated by the database.
+ * <p>
+ * Ionic key release decisions depend on the attributes of the requested key.  Rows whose protected cells carry the
+ * same attributes share a fingerprint, and are therefore either all accessible or all inaccessible to a given
+ * caller; a table typically holds few distinct fingerprints.  {@link AccessFilter} checks access for one key of each
+ * fingerprint, and restricts a query to the rows with an accessible fingerprint.  (Policies that release or deny
+ * individual keys, rather than attribute sets, are not reflected in the fingerprint.)
+ * <p>
+ * The fingerprint of a row with no protected cells is null, as such a row is never accessible.  The side column is
+ * written by {@link IonicBatchWriter}, and may be indexed:
+ * <pre>
+ * ALTER TABLE personnel ADD COLUMN ionic_fp VARCHAR (32);
+ * CREATE INDEX personnel_ionic_fp ON personnel (ionic_fp);
+ * </pre>
+ */
+public final class AccessFingerprint {
+
+    /**
+     * Constructor.  Static methods only.
+     */
+    private AccessFingerprint() {
+    }
+
+    /**
+     * Compute the fingerprint of a row.
+     *
+     * @param columns    the names of the columns of the row
+     * @param attributes for each column, the Ionic attributes with which the cell is encrypted; null for cells that
+     *                   are not encrypted
+     * @return the fingerprint of the row, as hexadecimal text; null if no cell is encrypted
+     */
+    public static String compute(final List<String> columns, final List<KeyAttributesMap> attributes) {
+        final StringBuilder canonical = new StringBuilder();
+        for (int i = 0; i < columns.size(); ++i) {
+            final KeyAttributesMap attributesCell = attributes.get(i);
+            if (attributesCell != null) {
+                canonical.append(columns.get(i)).append('\u0000');
+                for (Map.Entry<String, List<String>> entry : new TreeMap<String, List<String>>(attributesCell)
+                        .entrySet()) {
+                    canonical.append(entry.getKey()).append('\u0001');
+                    for (String value : entry.getValue()) {
+                        canonical.append(value).append('\u0002');
+                    }
+                }
+                canonical.append('\u0003');
+            }
+        }
+        if (canonical.length() == 0) {
+            return null;
+        }
+        final byte[] hash;
+        try {
+            hash = MessageDigest.getInstance(ALGORITHM).digest(canonical.toString().getBytes(UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final char[] text = new char[FINGERPRINT_LENGTH * 2];
+        for (int i = 0; i < FINGERPRINT_LENGTH; ++i) {
+            text[i * 2] = HEX[(hash[i] >> 4) & 0x0f];
+            text[i * 2 + 1] = HEX[hash[i] & 0x0f];
+        }
+        return new String(text);
+    }
+
+    /**
+     * The name of the side column holding the fingerprint of each row.
+     */
+    public static final String COLUMN = "ionic_fp";
+
+    /**
+     * The digest algorithm.
+     */
+    private static final String ALGORITHM = "SHA-256";
+
+    /**
+     * The number of bytes of the digest retained in the fingerprint.
+     */
+    private static final int FINGERPRINT_LENGTH = 16;
+
+    /**
+     * The text encoding of digested values.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The hexadecimal digits.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+}
@@ -0,0 +1,159 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Keyed hash (HMAC-SHA256) of the plaintext of Ionic-protected cells, stored in a shadow column alongside each
+ * protected column, so that equality predicates can be evaluated by the database.
+ * <p>
+ * Ionic ciphertext is randomized, so <code>WHERE last = 'Smith'</code> cannot match a protected column.  The blind
+ * index of a value is deterministic, so <code>WHERE last_bidx = &lt;index of 'Smith'&gt;</code> can, and may be served
+ * by an ordinary database index:
+ * <pre>
+ * ALTER TABLE personnel ADD COLUMN last_bidx VARCHAR (32);
+ * CREATE INDEX personnel_last_bidx ON personnel (last_bidx);
+ * </pre>
+ * The index is written by {@link IonicBatchWriter}, and equality predicates are rewritten against the index by
+ * {@link BlindIndexQuery}.
+ * <p>
+ * The column name is included in the hash, so equal values in different columns have unrelated indexes.  The hash is
+ * truncated to 128 bits.  A blind index reveals which rows share a value; it should only be added to columns for
+ * which that is acceptable.  The secret should itself be protected, for example by deriving it from an Ionic key
+ * using {@link #fromKey(KeyServices, String)}.
+ * <p>
+ * Instances are thread safe.
+ */
+public final class BlindIndex {
+
+    /**
+     * The HMAC secret.
+     */
+    private final SecretKeySpec secret;
+
+    /**
+     * The HMAC implementation used by each thread.
+     */
+    private final ThreadLocal<Mac> mac;
+
+    /**
+     * Constructor.
+     *
+     * @param secret the HMAC secret
+     * @throws IonicException on an empty secret, or if HMAC-SHA256 is not available
+     */
+    public BlindIndex(final byte[] secret) throws IonicException {
+        if ((secret == null) || (secret.length == 0)) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE);
+        }
+        this.secret = new SecretKeySpec(Arrays.copyOf(secret, secret.length), ALGORITHM);
+        try {
+            newMac(this.secret);
+        } catch (GeneralSecurityException e) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, e);
+        }
+        this.mac = new ThreadLocal<Mac>() {
+            @Override
+            protected Mac initialValue() {
+                try {
+                    return newMac(BlindIndex.this.secret);
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Create a blind index whose secret is the key material of an Ionic key.  Access to the index secret is then
+     * subject to Ionic policy.
+     *
+     * @param keyServices the Ionic key source
+     * @param keyId       the key tag of the Ionic key
+     * @return the blind index
+     * @throws IonicException on failure to fetch the key
+     */
+    public static BlindIndex fromKey(final KeyServices keyServices, final String keyId) throws IonicException {
+        final GetKeysResponse response = keyServices.getKey(keyId);
+        if ((response.getKeys() == null) || response.getKeys().isEmpty()) {
+            throw new IonicException(SdkError.ISAGENT_KEY_DENIED);
+        }
+        return new BlindIndex(response.getKeys().get(0).getKey());
+    }
+
+    /**
+     * @param column the name of a protected column
+     * @return the name of the shadow column holding the blind index of the protected column
+     */
+    public static String getIndexColumn(final String column) {
+        return column + INDEX_COLUMN_SUFFIX;
+    }
+
+    /**
+     * Compute the blind index of a value.
+     *
+     * @param column the name of the protected column holding the value
+     * @param value  the plaintext value
+     * @return the blind index of the value, as hexadecimal text; null if the value is null
+     */
+    public String compute(final String column, final Object value) {
+        if (value == null) {
+            return null;
+        }
+        final Mac hmac = mac.get();
+        hmac.update(column.toLowerCase(Locale.ROOT).getBytes(UTF_8));
+        hmac.update((byte) 0);
+        final byte[] hash = hmac.doFinal(value.toString().getBytes(UTF_8));
+        final char[] text = new char[INDEX_LENGTH * 2];
+        for (int i = 0; i < INDEX_LENGTH; ++i) {
+            text[i * 2] = HEX[(hash[i] >> 4) & 0x0f];
+            text[i * 2 + 1] = HEX[hash[i] & 0x0f];
+        }
+        return new String(text);
+    }
+
+    /**
+     * @param secret the HMAC secret
+     * @return a new HMAC implementation, initialized with the secret
+     * @throws GeneralSecurityException if HMAC-SHA256 is not available, or the secret is not usable
+     */
+    private static Mac newMac(final SecretKeySpec secret) throws GeneralSecurityException {
+        final Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(secret);
+        return mac;
+    }
+
+    /**
+     * The suffix of the name of a blind index column.
+     */
+    public static final String INDEX_COLUMN_SUFFIX = "_bidx";
+
+    /**
+     * The HMAC algorithm.
+     */
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * The number of bytes of the hash retained in the index.
+     */
+    private static final int INDEX_LENGTH = 16;
+
+    /**
+     * The text encoding of hashed values.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The hexadecimal digits.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+}
@@ -0,0 +1,132 @@
+package com.ionic.sdk.addon.jdbc;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A SQL query whose equality predicates on Ionic-protected columns have been rewritten against the corresponding
+ * {@link BlindIndex} columns.
+ * <p>
+ * A predicate of the form <code>last = ?</code> becomes <code>last_bidx = ?</code>, and the corresponding parameter is
+ * replaced by its blind index; a predicate of the form <code>last = 'Smith'</code> becomes
+ * <code>last_bidx = '&lt;index of 'Smith'&gt;'</code>.  Only equality with a parameter or a string literal is
+ * rewritten; other predicates on protected columns are left unchanged.  The rewritten query selects only the matching
+ * rows, which may then be decrypted using {@link IonicResultSetHandler}:
+ * <pre>
+ * final BlindIndexQuery query = BlindIndexQuery.rewrite(blindIndex, indexedColumns,
+ *         "SELECT * FROM personnel WHERE last = ?", "Smith");
+ * final RowSet rowSet = queryRunner.query(connection, query.getSql(), handler, query.getParams());
+ * </pre>
+ * <p>
+ * Instances are immutable.
+ */
+public final class BlindIndexQuery {
+
+    /**
+     * The rewritten SQL query.
+     */
+    private final String sql;
+
+    /**
+     * The rewritten query parameters.
+     */
+    private final Object[] params;
+
+    /**
+     * Constructor.
+     *
+     * @param sql    the rewritten SQL query
+     * @param params the rewritten query parameters
+     */
+    private BlindIndexQuery(final String sql, final Object[] params) {
+        this.sql = sql;
+        this.params = params;
+    }
+
+    /**
+     * @return the rewritten SQL query
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return the rewritten query parameters
+     */
+    public Object[] getParams() {
+        return Arrays.copyOf(params, params.length);
+    }
+
+    /**
+     * Rewrite the equality predicates of a query on protected columns that have a blind index.
+     *
+     * @param blindIndex     the blind index used to write the index columns
+     * @param indexedColumns the names of the protected columns that have a blind index column
+     * @param sql            the SQL query
+     * @param params         the query parameters
+     * @return the rewritten query
+     */
+    public static BlindIndexQuery rewrite(final BlindIndex blindIndex, final Collection<String> indexedColumns,
+                                          final String sql, final Object... params) {
+        final Set<String> columns = new HashSet<String>();
+        for (String indexedColumn : indexedColumns) {
+            columns.add(indexedColumn.toLowerCase(Locale.ROOT));
+        }
+        final Object[] paramsRewritten = Arrays.copyOf(params, params.length);
+        final StringBuilder buffer = new StringBuilder(sql.length() + LENGTH_INCREASE);
+        final Matcher matcher = EQUALITY.matcher(sql);
+        int position = 0;
+        int parameter = 0;
+        char quote = 0;
+        while (matcher.find()) {
+            // advance to the predicate, tracking quotes and parameter markers
+            for (int i = position; i < matcher.start(); ++i) {
+                final char c = sql.charAt(i);
+                if (quote != 0) {
+                    quote = (c == quote) ? 0 : quote;
+                } else if ((c == '\'') || (c == '"')) {
+                    quote = c;
+                } else if (c == '?') {
+                    ++parameter;
+                }
+            }
+            buffer.append(sql, position, matcher.start());
+            position = matcher.start();
+            final String column = matcher.group(2);
+            if ((quote != 0) || !columns.contains(column.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            final String operand = matcher.group(3);
+            buffer.append(matcher.group(1)).append(BlindIndex.getIndexColumn(column)).append(" = ");
+            if ("?".equals(operand)) {
+                if (parameter < paramsRewritten.length) {
+                    paramsRewritten[parameter] = blindIndex.compute(column, paramsRewritten[parameter]);
+                }
+                ++parameter;
+                buffer.append('?');
+            } else {
+                final String literal = operand.substring(1, operand.length() - 1).replace("''", "'");
+                buffer.append('\'').append(blindIndex.compute(column, literal)).append('\'');
+            }
+            position = matcher.end();
+        }
+        buffer.append(sql, position, sql.length());
+        return new BlindIndexQuery(buffer.toString(), paramsRewritten);
+    }
+
+    /**
+     * An equality predicate comparing a (possibly qualified) column with a parameter or a string literal.
+     */
+    private static final Pattern EQUALITY = Pattern.compile(
+            "(?<![\\w.\"])((?:\\w+\\.)?)(\\w+)\\s*=\\s*(\\?|'(?:[^']|'')*')");
+
+    /**
+     * The expected growth of a query on rewriting.
+     */
+    private static final int LENGTH_INCREASE = 64;
+}
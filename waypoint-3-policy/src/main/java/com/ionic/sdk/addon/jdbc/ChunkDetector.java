@@ -0,0 +1,120 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCrypto;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoChunkInfo;
+
+/**
+ * Detection of Ionic-protected column values, without the cost of a full chunk parse for the common cases.
+ * <p>
+ * {@link ChunkCrypto#getChunkInfo(String)} parses the chunk header, and allocates a {@link ChunkCryptoChunkInfo}, for
+ * every value, including NULL and plaintext values.  This detector first checks the Ionic chunk prefix
+ * (<code>~!</code>), which rejects NULL and plaintext values without allocation.  Values in the format of
+ * {@link com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2} (<code>~!2!{key tag}!{payload}!</code>, with a key tag of
+ * letters, digits, '-' and '_') are recognized by a scan of the key tag and the delimiters, whose cost does not depend
+ * on the length of the value; {@link #isEncrypted(String)} allocates nothing, and {@link #getKeyId(String)} allocates
+ * only the key tag.  Other candidate values fall back to the full parse.
+ * <p>
+ * The payload is not examined.  A plaintext value in the shape of a version 2 chunk (for example,
+ * <code>~!2!tag!text!</code>) is therefore reported as Ionic-protected by {@link #isEncrypted(String)}, where the full
+ * parse might reject it.  On the read path this is harmless: such a value fails to decrypt, and reads as restricted.
+ * Where a false positive would leave plaintext unprotected (for example, when selecting the plaintext cells of a
+ * table to be encrypted), use {@link #isEncryptedExact(String)}, which confirms each candidate with the full
+ * parse.
+ */
+public final class ChunkDetector {
+
+    /**
+     * Constructor.  Static methods only.
+     */
+    private ChunkDetector() {
+    }
+
+    /**
+     * @param value a column value; may be null
+     * @return true if the value is Ionic-protected
+     */
+    public static boolean isEncrypted(final String value) {
+        if (!isCandidate(value)) {
+            return false;
+        }
+        return (getKeyIdEnd(value) > 0) || ChunkCrypto.getChunkInfo(value).isEncrypted();
+    }
+
+    /**
+     * Detection matching {@link ChunkCrypto#getChunkInfo(String)} exactly.  Values without the Ionic chunk prefix are
+     * rejected without allocation; each candidate value is confirmed by the full parse.
+     *
+     * @param value a column value; may be null
+     * @return true if the value is Ionic-protected, as reported by the full parse
+     */
+    public static boolean isEncryptedExact(final String value) {
+        return isCandidate(value) && ChunkCrypto.getChunkInfo(value).isEncrypted();
+    }
+
+    /**
+     * @param value a column value; may be null
+     * @return the key tag of the Ionic key protecting the value; null if the value is not Ionic-protected
+     */
+    public static String getKeyId(final String value) {
+        if (!isCandidate(value)) {
+            return null;
+        }
+        final int end = getKeyIdEnd(value);
+        if (end > 0) {
+            return value.substring(PREFIX_V2.length(), end);
+        }
+        final ChunkCryptoChunkInfo chunkInfo = ChunkCrypto.getChunkInfo(value);
+        return chunkInfo.isEncrypted() ? chunkInfo.getKeyId() : null;
+    }
+
+    /**
+     * @param value a column value; may be null
+     * @return false if the value is certainly not Ionic-protected
+     */
+    private static boolean isCandidate(final String value) {
+        return (value != null) && value.startsWith(PREFIX);
+    }
+
+    /**
+     * Locate the key tag of a value in the format of {@link com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2}.
+     *
+     * @param value a column value, starting with the Ionic chunk prefix
+     * @return the (exclusive) end index of the key tag; or -1 if the value is not recognized as a version 2 chunk
+     */
+    private static int getKeyIdEnd(final String value) {
+        final int length = value.length();
+        if (!value.startsWith(PREFIX_V2) || (value.charAt(length - 1) != DELIMITER)) {
+            return -1;
+        }
+        int end = PREFIX_V2.length();
+        while ((end < length) && isKeyIdChar(value.charAt(end))) {
+            ++end;
+        }
+        final boolean isKeyId = (end > PREFIX_V2.length()) && (value.charAt(end) == DELIMITER);
+        return (isKeyId && (end < length - 2)) ? end : -1;
+    }
+
+    /**
+     * @param c a character of a value
+     * @return true if the character may appear in an Ionic key tag
+     */
+    private static boolean isKeyIdChar(final char c) {
+        return ((c >= 'A') && (c <= 'Z')) || ((c >= 'a') && (c <= 'z')) || ((c >= '0') && (c <= '9'))
+                || (c == '-') || (c == '_');
+    }
+
+    /**
+     * The prefix common to all Ionic chunk formats.
+     */
+    private static final String PREFIX = "~!";
+
+    /**
+     * The prefix of the {@link com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2} chunk format.
+     */
+    private static final String PREFIX_V2 = "~!2!";
+
+    /**
+     * The delimiter of the fields of an Ionic chunk.
+     */
+    private static final char DELIMITER = '!';
+}
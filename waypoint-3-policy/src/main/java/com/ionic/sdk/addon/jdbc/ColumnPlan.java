@@ -0,0 +1,219 @@
+package com.ionic.sdk.addon.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Precomputed description of the columns of a {@link ResultSet}, built once per query from its
+ * {@link ResultSetMetaData}.
+ * <p>
+ * The plan records which columns are Ionic-protected, and how the value of each column should be read, so that
+ * per-row processing requires no metadata calls or column name lookups.
+ * <p>
+ * A column is considered Ionic-protected if either its label or its name matches one of the configured column names,
+ * ignoring case.  (Database drivers differ in how they report the case of unquoted identifiers, and in whether the
+ * label reflects an "AS" alias.)
+ * <p>
+ * Instances are immutable, and may be shared across threads.
+ */
+public final class ColumnPlan {
+
+    /**
+     * The number of columns in the {@link ResultSet}.
+     */
+    private final int columnCount;
+
+    /**
+     * For each column (zero-based), true if the column is Ionic-protected.
+     */
+    private final boolean[] ionic;
+
+    /**
+     * The (zero-based) indices of the Ionic-protected columns, in ascending order.
+     */
+    private final int[] ionicIndices;
+
+    /**
+     * For each column (zero-based), true if the column value may be read using {@link ResultSet#getString(int)}.
+     */
+    private final boolean[] textual;
+
+    /**
+     * For each column (zero-based), true if the column holds unprotected integer values, whose text representation
+     * is that of a <code>long</code>.
+     */
+    private final boolean[] integral;
+
+    /**
+     * Constructor.
+     *
+     * @param ionic    for each column, true if the column is Ionic-protected
+     * @param textual  for each column, true if the column value may be read as a string
+     * @param integral for each column, true if the column holds unprotected integer values
+     */
+    private ColumnPlan(final boolean[] ionic, final boolean[] textual, final boolean[] integral) {
+        this.columnCount = ionic.length;
+        this.ionic = ionic;
+        this.textual = textual;
+        this.integral = integral;
+        int count = 0;
+        for (boolean isIonic : ionic) {
+            count += (isIonic ? 1 : 0);
+        }
+        this.ionicIndices = new int[count];
+        int index = 0;
+        for (int i = 0; i < columnCount; ++i) {
+            if (ionic[i]) {
+                ionicIndices[index++] = i;
+            }
+        }
+    }
+
+    /**
+     * Build the plan for a {@link ResultSet}.
+     *
+     * @param metaData     the description of the {@link ResultSet} columns
+     * @param ionicColumns text labels of the database columns that are Ionic-protected at rest in the database
+     * @return the plan for the {@link ResultSet}
+     * @throws SQLException on errors reading the {@link ResultSet} metadata
+     */
+    public static ColumnPlan create(final ResultSetMetaData metaData,
+                                    final Collection<String> ionicColumns) throws SQLException {
+        final Set<String> ionicColumnsNormal = new HashSet<String>();
+        for (String ionicColumn : ionicColumns) {
+            ionicColumnsNormal.add(normalize(ionicColumn));
+        }
+        final int columnCount = metaData.getColumnCount();
+        final boolean[] ionic = new boolean[columnCount];
+        final boolean[] textual = new boolean[columnCount];
+        final boolean[] integral = new boolean[columnCount];
+        for (int i = 0; i < columnCount; ++i) {
+            ionic[i] = ionicColumnsNormal.contains(normalize(metaData.getColumnLabel(i + 1)))
+                    || ionicColumnsNormal.contains(normalize(metaData.getColumnName(i + 1)));
+            textual[i] = isTextual(metaData.getColumnType(i + 1));
+            integral[i] = !ionic[i] && isIntegralType(metaData.getColumnType(i + 1));
+        }
+        return new ColumnPlan(ionic, textual, integral);
+    }
+
+    /**
+     * @return the number of columns in the {@link ResultSet}
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * @param index the zero-based column index
+     * @return true if the column is Ionic-protected
+     */
+    public boolean isIonic(final int index) {
+        return ionic[index];
+    }
+
+    /**
+     * @param index the zero-based column index
+     * @return true if the column holds unprotected integer values, whose text representation is that of a
+     * <code>long</code>
+     */
+    public boolean isIntegral(final int index) {
+        return integral[index];
+    }
+
+    /**
+     * @return the number of Ionic-protected columns
+     */
+    public int getIonicCount() {
+        return ionicIndices.length;
+    }
+
+    /**
+     * @param n the ordinal of the Ionic-protected column, in the range [0, {@link #getIonicCount()})
+     * @return the zero-based column index of the n-th Ionic-protected column
+     */
+    public int getIonicIndex(final int n) {
+        return ionicIndices[n];
+    }
+
+    /**
+     * Read the text representation of a column value from the current row of the ResultSet.
+     *
+     * @param resultSet the JDBC {@link ResultSet} from the database
+     * @param index     the zero-based column index
+     * @return the text representation of the column value, or null
+     * @throws SQLException on errors reading from the {@link ResultSet}
+     */
+    public String getText(final ResultSet resultSet, final int index) throws SQLException {
+        if (textual[index]) {
+            return resultSet.getString(index + 1);
+        } else {
+            final Object value = resultSet.getObject(index + 1);
+            return (value == null) ? null : value.toString();
+        }
+    }
+
+    /**
+     * Read the current row of the ResultSet.
+     *
+     * @param resultSet the JDBC {@link ResultSet} from the database
+     * @return the text representation of each cell in the current row
+     * @throws SQLException on errors reading from the {@link ResultSet}
+     */
+    public Object[] readRow(final ResultSet resultSet) throws SQLException {
+        final Object[] row = new Object[columnCount];
+        for (int i = 0; i < columnCount; ++i) {
+            row[i] = getText(resultSet, i);
+        }
+        return row;
+    }
+
+    /**
+     * @param columnName a column name or label
+     * @return the form of the name used for case-insensitive comparison
+     */
+    private static String normalize(final String columnName) {
+        return (columnName == null) ? null : columnName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param columnType the SQL type of a column, from {@link Types}
+     * @return true if the column value is character data, such that {@link ResultSet#getString(int)} returns the same
+     * text as the value's {@link Object#toString()}
+     */
+    private static boolean isTextual(final int columnType) {
+        switch (columnType) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param columnType the SQL type of a column, from {@link Types}
+     * @return true if the column value is an integer, such that its {@link Object#toString()} is the text of a
+     * <code>long</code>
+     */
+    private static boolean isIntegralType(final int columnType) {
+        switch (columnType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
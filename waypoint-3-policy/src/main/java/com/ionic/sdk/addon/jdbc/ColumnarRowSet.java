@@ -0,0 +1,374 @@
+package com.ionic.sdk.addon.jdbc;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Container for data loaded from a {@link java.sql.ResultSet}, stored by column rather than by row.
+ * <p>
+ * {@link RowSet} holds each cell as a separate {@link String}, so that a value repeated across many rows (a
+ * department name, or the "[RESTRICTED]" marker) is stored once per row.  This container stores the cells of each
+ * column together:
+ * <ul>
+ * <li>unprotected integer columns are held in a <code>long[]</code>,</li>
+ * <li>other columns are dictionary-encoded, with each distinct value stored once, and each cell holding an index
+ * into the dictionary,</li>
+ * <li>columns whose number of distinct values exceeds the configured dictionary size revert to holding a reference
+ * per cell.</li>
+ * </ul>
+ * <p>
+ * The rows remain available as <code>Object[]</code> through the {@link java.util.List} interface, so code that
+ * iterates a {@link RowSet} can iterate this container unchanged.  Each row is assembled on access; modifications to
+ * the returned array are not written back.  Cells of integer columns are returned as the same text read into a
+ * {@link RowSet}.
+ * <p>
+ * Instances are filled through {@link RowConsumer#accept(Object[])}, typically by
+ * {@link IonicResultSetHandler#handleColumnar(java.sql.ResultSet)}.  Instances are not thread safe.
+ */
+public class ColumnarRowSet extends AbstractList<Object[]> implements RowConsumer, RandomAccess {
+
+    /**
+     * The storage of each column.
+     */
+    private final Column[] columns;
+
+    /**
+     * The number of rows.
+     */
+    private int rows;
+
+    /**
+     * Constructor.
+     *
+     * @param plan the precomputed description of the {@link java.sql.ResultSet} columns
+     */
+    public ColumnarRowSet(final ColumnPlan plan) {
+        this(plan, DEFAULT_MAX_DICTIONARY_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param plan              the precomputed description of the {@link java.sql.ResultSet} columns
+     * @param maxDictionarySize the number of distinct values above which a column is no longer dictionary-encoded
+     */
+    public ColumnarRowSet(final ColumnPlan plan, final int maxDictionarySize) {
+        super();
+        this.columns = new Column[plan.getColumnCount()];
+        for (int i = 0; i < columns.length; ++i) {
+            columns[i] = plan.isIntegral(i)
+                    ? new IntegralColumn(maxDictionarySize) : new DictionaryColumn(maxDictionarySize);
+        }
+        this.rows = 0;
+    }
+
+    /**
+     * Append a row.  The cells of the row are copied into column storage; the array is not retained.
+     *
+     * @param row the text representation of each cell in the row
+     */
+    @Override
+    public void accept(final Object[] row) {
+        for (int i = 0; i < columns.length; ++i) {
+            columns[i] = columns[i].add(row[i], rows);
+        }
+        ++rows;
+        ++modCount;
+    }
+
+    @Override
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * @return the number of columns in each row
+     */
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Read a row.
+     *
+     * @param row the zero-based row index
+     * @return a new array holding the values of the row
+     */
+    @Override
+    public Object[] get(final int row) {
+        checkRow(row);
+        final Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; ++i) {
+            values[i] = columns[i].get(row);
+        }
+        return values;
+    }
+
+    /**
+     * Read a cell, without assembling its row.
+     *
+     * @param row    the zero-based row index
+     * @param column the zero-based column index
+     * @return the value of the cell
+     */
+    public Object getValue(final int row, final int column) {
+        checkRow(row);
+        return columns[column].get(row);
+    }
+
+    /**
+     * @param column the zero-based column index
+     * @return true if the column is currently dictionary-encoded
+     */
+    public boolean isDictionaryEncoded(final int column) {
+        return columns[column] instanceof DictionaryColumn;
+    }
+
+    /**
+     * Release the unused capacity of the column storage, once all rows have been added.
+     */
+    public void trimToSize() {
+        for (Column column : columns) {
+            column.trimToSize(rows);
+        }
+    }
+
+    /**
+     * @param row the zero-based row index
+     */
+    private void checkRow(final int row) {
+        if ((row < 0) || (row >= rows)) {
+            throw new IndexOutOfBoundsException(Integer.toString(row));
+        }
+    }
+
+    /**
+     * @param capacity the current capacity of a full column
+     * @return the capacity to which the column should grow
+     */
+    private static int grow(final int capacity) {
+        return Math.max(INITIAL_CAPACITY, capacity * 2);
+    }
+
+    /**
+     * The storage of a single column.
+     */
+    private abstract static class Column {
+
+        /**
+         * Append a cell to the column.
+         *
+         * @param value the text representation of the cell, or null
+         * @param row   the zero-based index of the row being added (the number of cells already in the column)
+         * @return the column holding the cell: this column, or a replacement holding all cells of this column, when
+         * the value cannot be represented by this column
+         */
+        abstract Column add(Object value, int row);
+
+        /**
+         * @param row the zero-based row index
+         * @return the value of the cell
+         */
+        abstract Object get(int row);
+
+        /**
+         * @param rows the number of cells in the column
+         */
+        abstract void trimToSize(int rows);
+
+        /**
+         * Copy the cells of this column into a replacement column.
+         *
+         * @param column the replacement column
+         * @param rows   the number of cells in this column
+         * @return the replacement column
+         */
+        Column copyTo(final Column column, final int rows) {
+            Column target = column;
+            for (int row = 0; row < rows; ++row) {
+                target = target.add(get(row), row);
+            }
+            return target;
+        }
+    }
+
+    /**
+     * Storage for a column of integer values, in a primitive array.  A value that is not the canonical text of a
+     * <code>long</code> (as formatted by {@link Long#toString(long)}) replaces the column by a dictionary column, so
+     * that each cell is returned as the text that was added.
+     */
+    private static final class IntegralColumn extends Column {
+
+        /**
+         * The dictionary size of the replacement column, if a value is not the canonical text of an integer.
+         */
+        private final int maxDictionarySize;
+
+        /**
+         * The cells which are null.
+         */
+        private final BitSet nulls = new BitSet();
+
+        /**
+         * The value of each cell; zero for null cells.
+         */
+        private long[] values = new long[0];
+
+        /**
+         * Constructor.
+         *
+         * @param maxDictionarySize the dictionary size of the replacement column, if a value is not an integer
+         */
+        private IntegralColumn(final int maxDictionarySize) {
+            this.maxDictionarySize = maxDictionarySize;
+        }
+
+        @Override
+        Column add(final Object value, final int row) {
+            long number = 0L;
+            if (value != null) {
+                final String text = value.toString();
+                try {
+                    number = Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    return copyTo(new DictionaryColumn(maxDictionarySize), row).add(value, row);
+                }
+                if (!Long.toString(number).equals(text)) {
+                    // text in a form other than the canonical one (for example, "007" or "+7") is kept verbatim
+                    return copyTo(new DictionaryColumn(maxDictionarySize), row).add(value, row);
+                }
+            } else {
+                nulls.set(row);
+            }
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            values[row] = number;
+            return this;
+        }
+
+        @Override
+        Object get(final int row) {
+            return nulls.get(row) ? null : Long.toString(values[row]);
+        }
+
+        @Override
+        void trimToSize(final int rows) {
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+
+    /**
+     * Storage for a column of repeated values, as indices into a dictionary of distinct values.
+     */
+    private static final class DictionaryColumn extends Column {
+
+        /**
+         * The number of distinct values above which the column is replaced by a {@link ReferenceColumn}.
+         */
+        private final int maxDictionarySize;
+
+        /**
+         * The distinct values of the column, in order of first appearance.
+         */
+        private final List<Object> dictionary = new ArrayList<Object>();
+
+        /**
+         * The index of each distinct value in the dictionary.
+         */
+        private final Map<Object, Integer> index = new HashMap<Object, Integer>();
+
+        /**
+         * The dictionary index of each cell; <code>-1</code> for null cells.
+         */
+        private int[] codes = new int[0];
+
+        /**
+         * Constructor.
+         *
+         * @param maxDictionarySize the number of distinct values above which the column is replaced
+         */
+        private DictionaryColumn(final int maxDictionarySize) {
+            this.maxDictionarySize = maxDictionarySize;
+        }
+
+        @Override
+        Column add(final Object value, final int row) {
+            int code = -1;
+            if (value != null) {
+                final Integer existing = index.get(value);
+                if (existing != null) {
+                    code = existing;
+                } else if (dictionary.size() >= maxDictionarySize) {
+                    return copyTo(new ReferenceColumn(), row).add(value, row);
+                } else {
+                    code = dictionary.size();
+                    dictionary.add(value);
+                    index.put(value, code);
+                }
+            }
+            if (row >= codes.length) {
+                codes = Arrays.copyOf(codes, grow(codes.length));
+            }
+            codes[row] = code;
+            return this;
+        }
+
+        @Override
+        Object get(final int row) {
+            final int code = codes[row];
+            return (code < 0) ? null : dictionary.get(code);
+        }
+
+        @Override
+        void trimToSize(final int rows) {
+            codes = Arrays.copyOf(codes, rows);
+        }
+    }
+
+    /**
+     * Storage for a column of (mostly) distinct values, as a reference per cell.
+     */
+    private static final class ReferenceColumn extends Column {
+
+        /**
+         * The value of each cell.
+         */
+        private Object[] values = new Object[0];
+
+        @Override
+        Column add(final Object value, final int row) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            values[row] = value;
+            return this;
+        }
+
+        @Override
+        Object get(final int row) {
+            return values[row];
+        }
+
+        @Override
+        void trimToSize(final int rows) {
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+
+    /**
+     * The default number of distinct values above which a column is no longer dictionary-encoded.
+     */
+    public static final int DEFAULT_MAX_DICTIONARY_SIZE = 4096;
+
+    /**
+     * The initial capacity of column storage.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+}
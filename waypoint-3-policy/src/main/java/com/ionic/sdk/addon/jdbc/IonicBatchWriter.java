@@ -0,0 +1,472 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.addon.key.AttributeTemplate;
+import com.ionic.sdk.addon.key.PrecreatedKeyServices;
+import com.ionic.sdk.addon.metrics.IonicMetrics;
+import com.ionic.sdk.addon.metrics.NoOpIonicMetrics;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoEncryptAttributes;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Business logic for writing data to a database table.  This sample application applies the Ionic SDK encrypt
+ * transformation to the data as it is written.
+ * <p>
+ * Rows are buffered until the configured batch size is reached.  The keys needed to protect the buffered rows are
+ * then created using a single server request, the protected cells are encrypted, and the rows are written to the
+ * database using {@link PreparedStatement#addBatch()} and {@link PreparedStatement#executeBatch()}.
+ * <p>
+ * When a {@link BlindIndex} is configured, a statement parameter whose column is named
+ * {@link BlindIndex#getIndexColumn(String)} of a protected column is set to the blind index of that column's
+ * plaintext; the value supplied for it in each row is ignored.
+ * <p>
+ * Likewise, a statement parameter whose column is named {@link AccessFingerprint#COLUMN} is set to the
+ * {@link AccessFingerprint} of the row, allowing {@link AccessFilter} to filter queries on the table.
+ * <p>
+ * If a batch fails (to be protected, written, or committed), the buffered rows and the pending statement batch are
+ * discarded, and the writer fails: further calls to {@link #addRow(Object[], KeyAttributesMap)} and {@link #flush()}
+ * throw, and {@link #close()} releases the statement without writing.  If the writer controls transactions (a nonzero
+ * commit interval), the open transaction is rolled back at the point of failure, so that restoring auto-commit on
+ * close does not commit the rows of the failed transaction.  Otherwise, rolling back is left to the caller.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class IonicBatchWriter implements AutoCloseable {
+
+    /**
+     * Ionic key source, used to protect data on insert into database.  When an
+     * {@link com.ionic.sdk.addon.key.AgentPool} is used, writers on different threads create keys using different
+     * agents.
+     */
+    private final KeyServices agent;
+
+    /**
+     * The database connection to which rows are written.
+     */
+    private final Connection connection;
+
+    /**
+     * The prepared insert statement, with one parameter per column.
+     */
+    private final PreparedStatement statement;
+
+    /**
+     * For each statement parameter, the Ionic attributes with which the column is protected, compiled once so that
+     * rows sharing their row-specific attributes share a single attribute set; null if the column is not
+     * Ionic-protected.
+     */
+    private final AttributeTemplate[] ionicAttributes;
+
+    /**
+     * The blind index written to index columns, or null.
+     */
+    private final BlindIndex blindIndex;
+
+    /**
+     * For each statement parameter, the name of the protected column whose blind index it holds; null if the column
+     * is not a blind index column.
+     */
+    private final String[] indexedColumns;
+
+    /**
+     * For each statement parameter, the (zero-based) parameter index of the protected column whose blind index it
+     * holds; -1 if the column is not a blind index column.
+     */
+    private final int[] indexSources;
+
+    /**
+     * The text labels of the columns corresponding to the statement parameters, in order.
+     */
+    private final List<String> columns;
+
+    /**
+     * The (zero-based) index of the statement parameter holding the {@link AccessFingerprint} of the row; -1 if the
+     * fingerprint is not written.
+     */
+    private final int fingerprintIndex;
+
+    /**
+     * The number of rows to buffer before writing them to the database.
+     */
+    private final int batchSize;
+
+    /**
+     * The number of rows to write between transaction commits; zero to leave transaction control to the caller.
+     */
+    private final int commitInterval;
+
+    /**
+     * The auto-commit mode of the connection at construction, restored on {@link #close()}.
+     */
+    private final boolean autoCommit;
+
+    /**
+     * The recipient of instrumentation events.
+     */
+    private final IonicMetrics metrics;
+
+    /**
+     * The rows that have been added, but not yet written to the database.
+     */
+    private final List<Object[]> rows;
+
+    /**
+     * The row-specific Ionic attributes of each buffered row.
+     */
+    private final List<KeyAttributesMap> rowAttributes;
+
+    /**
+     * The number of rows written since the last transaction commit.
+     */
+    private int rowsUncommitted;
+
+    /**
+     * The number of rows reported by the database as affected by the statement, over all batches written.
+     */
+    private long rowsAffected;
+
+    /**
+     * True once a batch has failed; the writer then accepts no further rows.
+     */
+    private boolean failed;
+
+    /**
+     * Constructor.
+     * <p>
+     * When a nonzero commit interval is specified, auto-commit is disabled on the connection until this writer is
+     * closed.
+     *
+     * @param agent           Ionic key source, used to protect data on insert into database
+     * @param connection      the database connection to which rows are written
+     * @param sql             the SQL insert statement, with one parameter per column
+     * @param columns         the text labels of the columns corresponding to the statement parameters, in order
+     * @param ionicAttributes the Ionic attributes of each Ionic-protected column, indexed by column label
+     * @param batchSize       the number of rows to buffer before writing them to the database
+     * @param commitInterval  the number of rows to write between transaction commits; zero to leave transaction
+     *                        control to the caller
+     * @throws SQLException on failure to prepare the statement
+     */
+    public IonicBatchWriter(final KeyServices agent, final Connection connection, final String sql,
+                            final List<String> columns, final Map<String, KeyAttributesMap> ionicAttributes,
+                            final int batchSize, final int commitInterval) throws SQLException {
+        this(agent, connection, sql, columns, ionicAttributes, batchSize, commitInterval, NoOpIonicMetrics.INSTANCE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param agent           Ionic key source, used to protect data on insert into database
+     * @param connection      the database connection to which rows are written
+     * @param sql             the SQL insert statement, with one parameter per column
+     * @param columns         the text labels of the columns corresponding to the statement parameters, in order
+     * @param ionicAttributes the Ionic attributes of each Ionic-protected column, indexed by column label
+     * @param batchSize       the number of rows to buffer before writing them to the database
+     * @param commitInterval  the number of rows to write between transaction commits; zero to leave transaction
+     *                        control to the caller
+     * @param metrics         the recipient of instrumentation events
+     * @throws SQLException on failure to prepare the statement
+     */
+    public IonicBatchWriter(final KeyServices agent, final Connection connection, final String sql,
+                            final List<String> columns, final Map<String, KeyAttributesMap> ionicAttributes,
+                            final int batchSize, final int commitInterval, final IonicMetrics metrics)
+            throws SQLException {
+        this(agent, connection, sql, columns, ionicAttributes, batchSize, commitInterval, metrics, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param agent           Ionic key source, used to protect data on insert into database
+     * @param connection      the database connection to which rows are written
+     * @param sql             the SQL insert statement, with one parameter per column
+     * @param columns         the text labels of the columns corresponding to the statement parameters, in order,
+     *                        including any blind index and fingerprint columns
+     * @param ionicAttributes the Ionic attributes of each Ionic-protected column, indexed by column label
+     * @param batchSize       the number of rows to buffer before writing them to the database
+     * @param commitInterval  the number of rows to write between transaction commits; zero to leave transaction
+     *                        control to the caller
+     * @param metrics         the recipient of instrumentation events
+     * @param blindIndex      the blind index written to the blind index columns, or null
+     * @throws SQLException on failure to prepare the statement
+     */
+    public IonicBatchWriter(final KeyServices agent, final Connection connection, final String sql,
+                            final List<String> columns, final Map<String, KeyAttributesMap> ionicAttributes,
+                            final int batchSize, final int commitInterval, final IonicMetrics metrics,
+                            final BlindIndex blindIndex) throws SQLException {
+        this.agent = agent;
+        this.metrics = (metrics == null) ? NoOpIonicMetrics.INSTANCE : metrics;
+        this.connection = connection;
+        this.ionicAttributes = new AttributeTemplate[columns.size()];
+        for (int i = 0; i < columns.size(); ++i) {
+            final KeyAttributesMap attributes = ionicAttributes.get(columns.get(i));
+            this.ionicAttributes[i] = (attributes == null) ? null : new AttributeTemplate(attributes);
+        }
+        this.blindIndex = blindIndex;
+        this.columns = new ArrayList<String>(columns);
+        this.fingerprintIndex = columns.indexOf(AccessFingerprint.COLUMN);
+        this.indexedColumns = new String[columns.size()];
+        this.indexSources = new int[columns.size()];
+        for (int i = 0; i < columns.size(); ++i) {
+            indexSources[i] = -1;
+            for (int j = 0; (blindIndex != null) && (j < columns.size()); ++j) {
+                if ((this.ionicAttributes[j] != null)
+                        && columns.get(i).equals(BlindIndex.getIndexColumn(columns.get(j)))) {
+                    indexedColumns[i] = columns.get(j);
+                    indexSources[i] = j;
+                }
+            }
+        }
+        this.batchSize = Math.max(1, batchSize);
+        this.commitInterval = Math.max(0, commitInterval);
+        this.autoCommit = connection.getAutoCommit();
+        this.rows = new ArrayList<Object[]>(this.batchSize);
+        this.rowAttributes = new ArrayList<KeyAttributesMap>(this.batchSize);
+        this.rowsUncommitted = 0;
+        this.rowsAffected = 0L;
+        this.failed = false;
+        this.statement = connection.prepareStatement(sql);
+        if ((this.commitInterval > 0) && autoCommit) {
+            try {
+                connection.setAutoCommit(false);
+            } catch (SQLException e) {
+                try {
+                    statement.close();
+                } catch (SQLException eClose) {
+                    // the failure to take transaction control is reported to the caller
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Add a row to be written to the database.
+     *
+     * @param values     the plaintext column values of the row, in statement parameter order
+     * @param attributes additional Ionic attributes to be applied to each protected cell of the row (for example, a
+     *                   department identifier); may be null
+     * @throws SQLException   on failure to write to the database
+     * @throws IonicException on failure to protect data
+     */
+    public void addRow(final Object[] values, final KeyAttributesMap attributes) throws SQLException, IonicException {
+        checkNotFailed();
+        rows.add(values);
+        rowAttributes.add(attributes);
+        if (rows.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * The number of rows affected by the statement, as reported by the database for each batch written.  For an
+     * <code>UPDATE</code> statement with a conditional <code>WHERE</code> clause, this is less than the number of rows
+     * written by the number of rows that did not match.  A row reported as successful without a count is counted as
+     * affected.  Rows of batches since rolled back are included.
+     *
+     * @return the number of rows affected by the statement, over all batches written
+     */
+    public long getRowsAffected() {
+        return rowsAffected;
+    }
+
+    /**
+     * Write all buffered rows to the database, and commit (if this writer controls transactions and the commit
+     * interval is reached).
+     *
+     * @throws SQLException   on failure to write to the database, or if the writer has failed
+     * @throws IonicException on failure to protect data
+     */
+    public void flush() throws SQLException, IonicException {
+        checkNotFailed();
+        boolean flushed = false;
+        try {
+            write();
+            if ((commitInterval > 0) && (rowsUncommitted >= commitInterval)) {
+                connection.commit();
+                rowsUncommitted = 0;
+            }
+            flushed = true;
+        } finally {
+            if (!flushed) {
+                abort();
+            }
+        }
+    }
+
+    /**
+     * @return true if a batch has failed, after which the writer accepts no further rows
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @throws SQLException if a batch has failed
+     */
+    private void checkNotFailed() throws SQLException {
+        if (failed) {
+            throw new SQLException("batch writer has failed; buffered rows were discarded");
+        }
+    }
+
+    /**
+     * Discard the buffered rows and the pending statement batch, and roll back the open transaction if this writer
+     * controls transactions.  The writer then fails, as if a batch had failed; this is called on failure of a batch,
+     * and may be called by a caller abandoning its own transaction before {@link #close()}.  Failures of the cleanup
+     * itself are ignored, so that the original failure is reported to the caller.
+     */
+    public void abort() {
+        failed = true;
+        rows.clear();
+        rowAttributes.clear();
+        try {
+            statement.clearBatch();
+        } catch (SQLException e) {
+            // the statement is unusable; it is released on close
+        }
+        if (commitInterval > 0) {
+            rowsUncommitted = 0;
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                // the transaction is abandoned, along with the connection
+            }
+        }
+    }
+
+    /**
+     * Protect the buffered rows, and write them to the database as a single statement batch.
+     *
+     * @throws SQLException   on failure to write to the database
+     * @throws IonicException on failure to protect data
+     */
+    private void write() throws SQLException, IonicException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        final List<List<ChunkCryptoEncryptAttributes>> cellAttributes =
+                new ArrayList<List<ChunkCryptoEncryptAttributes>>(rows.size());
+        final Map<KeyAttributesMap, Integer> quantities = new LinkedHashMap<KeyAttributesMap, Integer>();
+        final List<String> fingerprints = new ArrayList<String>(rows.size());
+        for (int r = 0; r < rows.size(); ++r) {
+            final Object[] row = rows.get(r);
+            final List<ChunkCryptoEncryptAttributes> attributesRow = new ArrayList<ChunkCryptoEncryptAttributes>();
+            final List<KeyAttributesMap> keyAttributesRow = new ArrayList<KeyAttributesMap>(row.length);
+            for (int i = 0; i < row.length; ++i) {
+                if ((ionicAttributes[i] == null) || (row[i] == null) || (indexSources[i] >= 0)
+                        || (i == fingerprintIndex)) {
+                    attributesRow.add(null);
+                    keyAttributesRow.add(null);
+                } else {
+                    final KeyAttributesMap keyAttributes = ionicAttributes[i].bind(rowAttributes.get(r));
+                    final Integer quantity = quantities.get(keyAttributes);
+                    quantities.put(keyAttributes, (quantity == null) ? 1 : (quantity + 1));
+                    attributesRow.add(new ChunkCryptoEncryptAttributes(keyAttributes));
+                    keyAttributesRow.add(keyAttributes);
+                }
+            }
+            cellAttributes.add(attributesRow);
+            fingerprints.add((fingerprintIndex < 0) ? null : AccessFingerprint.compute(columns, keyAttributesRow));
+        }
+        final PrecreatedKeyServices keyServices = new PrecreatedKeyServices(agent);
+        if (!quantities.isEmpty()) {
+            final CreateKeysRequest request = new CreateKeysRequest();
+            int refId = 0;
+            int keys = 0;
+            for (Map.Entry<KeyAttributesMap, Integer> entry : quantities.entrySet()) {
+                request.add(new CreateKeysRequest.Key(Integer.toString(refId++), entry.getValue(), entry.getKey()));
+                keys += entry.getValue();
+            }
+            final long start = now();
+            keyServices.precreate(request);
+            if (metrics.isEnabled()) {
+                metrics.recordKeyCreate(System.nanoTime() - start, keys);
+            }
+        }
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServices);
+        for (int r = 0; r < rows.size(); ++r) {
+            final Object[] row = rows.get(r);
+            final List<ChunkCryptoEncryptAttributes> attributesRow = cellAttributes.get(r);
+            for (int i = 0; i < row.length; ++i) {
+                final ChunkCryptoEncryptAttributes attributes = attributesRow.get(i);
+                if (i == fingerprintIndex) {
+                    statement.setObject(i + 1, fingerprints.get(r));
+                } else if (indexSources[i] >= 0) {
+                    statement.setObject(i + 1, blindIndex.compute(indexedColumns[i], row[indexSources[i]]));
+                } else if (attributes == null) {
+                    statement.setObject(i + 1, row[i]);
+                } else {
+                    final long start = now();
+                    final String ciphertext = chunkCipher.encrypt(row[i].toString(), attributes);
+                    if (metrics.isEnabled()) {
+                        metrics.recordEncrypt(System.nanoTime() - start);
+                    }
+                    statement.setObject(i + 1, ciphertext);
+                }
+            }
+            statement.addBatch();
+        }
+        final long start = now();
+        for (int count : statement.executeBatch()) {
+            rowsAffected += (count == Statement.SUCCESS_NO_INFO) ? 1 : Math.max(0, count);
+        }
+        if (metrics.isEnabled()) {
+            metrics.recordBatchWrite(System.nanoTime() - start, rows.size());
+        }
+        rowsUncommitted += rows.size();
+        rows.clear();
+        rowAttributes.clear();
+    }
+
+    /**
+     * @return the current time, for elapsed time measurements; zero if instrumentation is disabled
+     */
+    private long now() {
+        return metrics.isEnabled() ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Write all buffered rows to the database, commit (if this writer controls transactions), and release the
+     * statement.  The connection is not closed.  If the writer has failed, the statement is released without writing.
+     *
+     * @throws SQLException   on failure to write to the database
+     * @throws IonicException on failure to protect data
+     */
+    @Override
+    public void close() throws SQLException, IonicException {
+        try {
+            if (!failed) {
+                boolean closed = false;
+                try {
+                    write();
+                    if ((commitInterval > 0) && (rowsUncommitted > 0)) {
+                        connection.commit();
+                        rowsUncommitted = 0;
+                    }
+                    closed = true;
+                } finally {
+                    if (!closed) {
+                        abort();
+                    }
+                }
+            }
+        } finally {
+            statement.close();
+            if ((commitInterval > 0) && autoCommit) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.key.KeyServices;
+import org.apache.commons.dbutils.ResultSetHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * Implementation of commons-dbutils interface {@link ResultSetHandler}.
+ * <p>
+ * Business logic for loading data from a {@link java.sql.ResultSet} without decrypting it.  Rows are loaded into a
+ * {@link LazyRowSet}, which decrypts each Ionic-protected cell when it is first read.  This suits consumers that
+ * display only some of the columns, or only the first rows, of a result.
+ */
+public class IonicLazyResultSetHandler implements ResultSetHandler<LazyRowSet> {
+
+    /**
+     * Ionic key source, used to unprotect data on access.
+     */
+    private final KeyServices agent;
+
+    /**
+     * Text labels of the database columns that are Ionic-protected at rest in the database.
+     */
+    private final Collection<String> ionicColumns;
+
+    /**
+     * The number of rows for which keys are fetched in a single server request, when cells are decrypted in bulk.
+     */
+    private final int batchSize;
+
+    /**
+     * Constructor.
+     *
+     * @param agent        Ionic key source, used to unprotect data on access
+     * @param ionicColumns text labels of the database columns that are Ionic-protected at rest in the database
+     * @param batchSize    the number of rows for which keys are fetched in a single server request, when cells are
+     *                     decrypted in bulk
+     */
+    public IonicLazyResultSetHandler(final KeyServices agent, final Collection<String> ionicColumns,
+                                     final int batchSize) {
+        super();
+        this.agent = agent;
+        this.ionicColumns = ionicColumns;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Load the ResultSet, leaving Ionic-protected cells encrypted until they are read.
+     *
+     * @param resultSet the JDBC {@link ResultSet} from the database
+     * @return the unfiltered representation of the input {@link ResultSet}
+     * @throws SQLException on errors reading from the {@link ResultSet}
+     */
+    @Override
+    public LazyRowSet handle(final ResultSet resultSet) throws SQLException {
+        final ColumnPlan plan = ColumnPlan.create(resultSet.getMetaData(), ionicColumns);
+        final LazyRowSet rowSet = new LazyRowSet(agent, plan, batchSize);
+        while (resultSet.next()) {
+            rowSet.accept(plan.readRow(resultSet));
+        }
+        return rowSet;
+    }
+}
@@ -1,15 +1,31 @@
 package com.ionic.sdk.addon.jdbc;
 
-import com.ionic.sdk.agent.Agent;
+import com.ionic.sdk.addon.key.AgentPool;
+import com.ionic.sdk.addon.key.PrefetchedKeyServices;
+import com.ionic.sdk.addon.metrics.IonicMetrics;
+import com.ionic.sdk.addon.metrics.NoOpIonicMetrics;
 import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
-import com.ionic.sdk.agent.cipher.chunk.data.ChunkCrypto;
 import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
 import org.apache.commons.dbutils.ResultSetHandler;
 
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implementation of commons-dbutils interface {@link ResultSetHandler}.
@@ -20,25 +36,140 @@ import java.util.Collection;
 public class IonicResultSetHandler implements ResultSetHandler<RowSet> {
 
     /**
-     * Test Ionic agent, used to protect data on insert into database, and unprotect data on fetch from database.
+     * Ionic key source, used to unprotect data on fetch from database.  This is typically an Ionic
+     * {@link com.ionic.sdk.agent.Agent}, an {@link AgentPool} (for use under concurrent query load), or a
+     * {@link com.ionic.sdk.addon.key.CachingKeyServices} wrapping one.
      */
-    private final Agent agent;
+    private final KeyServices agent;
 
     /**
      * Text labels of the database columns that are Ionic-protected at rest in the database.
      */
     private final Collection<String> ionicColumns;
 
+    /**
+     * The number of {@link ResultSet} rows to examine before requesting the keys needed to decrypt them.  A value
+     * of one causes each protected cell to be decrypted using an individual key request.
+     */
+    private final int batchSize;
+
+    /**
+     * The worker threads used to decrypt batches of rows in parallel, or null to decrypt on the calling thread.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The maximum number of batches that may be queued for, or undergoing, decryption by the worker threads.
+     */
+    private final int maxPending;
+
+    /**
+     * The threads used to fetch the keys for a batch of rows while the next batch is read, or null to fetch keys on
+     * the calling thread.
+     */
+    private final Executor prefetchExecutor;
+
+    /**
+     * The recipient of instrumentation events.
+     */
+    private final IonicMetrics metrics;
+
+    /**
+     * Constructor.
+     *
+     * @param agent        Ionic key source, used to unprotect data on fetch from database
+     * @param ionicColumns text labels of the database columns that are Ionic-protected at rest in the database
+     */
+    public IonicResultSetHandler(final KeyServices agent, final Collection<String> ionicColumns) {
+        this(agent, ionicColumns, 1);
+    }
+
     /**
      * Constructor.
      *
-     * @param agent        Ionic agent, used to protect data on insert into database, and unprotect data on fetch
+     * @param agent        Ionic key source, used to unprotect data on fetch from database
      * @param ionicColumns text labels of the database columns that are Ionic-protected at rest in the database
+     * @param batchSize    the number of rows for which keys should be fetched in a single server request
+     */
+    public IonicResultSetHandler(final KeyServices agent, final Collection<String> ionicColumns, final int batchSize) {
+        this(agent, ionicColumns, batchSize, null, 0);
+    }
+
+    /**
+     * Constructor.
+     * <p>
+     * The supplied {@link ExecutorService} is used to decrypt batches of rows, while the calling thread continues to
+     * read from the {@link ResultSet}.  Any executor implementation may be used (for example, a fixed thread pool or
+     * a {@link java.util.concurrent.ForkJoinPool}).  The executor is not shut down by this handler.
+     *
+     * @param agent        Ionic key source, used to unprotect data on fetch from database; must be thread safe
+     * @param ionicColumns text labels of the database columns that are Ionic-protected at rest in the database
+     * @param batchSize    the number of rows for which keys should be fetched in a single server request
+     * @param executor     the worker threads used to decrypt batches of rows, or null to decrypt on the calling thread
+     * @param maxPending   the maximum number of batches that may be awaiting decryption at any one time
+     */
+    public IonicResultSetHandler(final KeyServices agent, final Collection<String> ionicColumns, final int batchSize,
+                                 final ExecutorService executor, final int maxPending) {
+        this(agent, ionicColumns, batchSize, executor, maxPending, NoOpIonicMetrics.INSTANCE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param agent        Ionic key source, used to unprotect data on fetch from database; must be thread safe
+     * @param ionicColumns text labels of the database columns that are Ionic-protected at rest in the database
+     * @param batchSize    the number of rows for which keys should be fetched in a single server request
+     * @param executor     the worker threads used to decrypt batches of rows, or null to decrypt on the calling thread
+     * @param maxPending   the maximum number of batches that may be awaiting decryption at any one time
+     * @param metrics      the recipient of instrumentation events
+     */
+    public IonicResultSetHandler(final KeyServices agent, final Collection<String> ionicColumns, final int batchSize,
+                                 final ExecutorService executor, final int maxPending, final IonicMetrics metrics) {
+        this(agent, ionicColumns, batchSize, executor, maxPending, null, metrics);
+    }
+
+    /**
+     * Constructor.
+     * <p>
+     * The supplied {@link Executor} is used to fetch the keys for each batch of rows in the background, while the
+     * calling thread reads the next batch from the {@link ResultSet}.  Decryption remains on the calling thread, once
+     * both the next batch has been read and the keys for the current batch have been fetched.  This hides key service
+     * latency behind database latency, without requiring additional threads for cryptographic work.  The executor is
+     * not shut down by this handler.
+     *
+     * @param agent            Ionic key source, used to unprotect data on fetch from database; must be thread safe
+     * @param ionicColumns     text labels of the database columns that are Ionic-protected at rest in the database
+     * @param batchSize        the number of rows for which keys should be fetched in a single server request
+     * @param prefetchExecutor the threads used to fetch keys in the background
+     * @param metrics          the recipient of instrumentation events
+     */
+    public IonicResultSetHandler(final KeyServices agent, final Collection<String> ionicColumns, final int batchSize,
+                                 final Executor prefetchExecutor, final IonicMetrics metrics) {
+        this(agent, ionicColumns, batchSize, null, 0, prefetchExecutor, metrics);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param agent            Ionic key source, used to unprotect data on fetch from database
+     * @param ionicColumns     text labels of the database columns that are Ionic-protected at rest in the database
+     * @param batchSize        the number of rows for which keys should be fetched in a single server request
+     * @param executor         the worker threads used to decrypt batches of rows, or null
+     * @param maxPending       the maximum number of batches that may be awaiting decryption at any one time
+     * @param prefetchExecutor the threads used to fetch keys in the background, or null
+     * @param metrics          the recipient of instrumentation events
      */
-    public IonicResultSetHandler(final Agent agent, final Collection<String> ionicColumns) {
+    private IonicResultSetHandler(final KeyServices agent, final Collection<String> ionicColumns, final int batchSize,
+                                  final ExecutorService executor, final int maxPending,
+                                  final Executor prefetchExecutor, final IonicMetrics metrics) {
         super();
         this.agent = agent;
         this.ionicColumns = ionicColumns;
+        this.batchSize = Math.max(1, batchSize);
+        this.executor = executor;
+        this.maxPending = Math.max(1, maxPending);
+        this.prefetchExecutor = prefetchExecutor;
+        this.metrics = (metrics == null) ? NoOpIonicMetrics.INSTANCE : metrics;
     }
 
     /**
@@ -47,6 +178,10 @@ public class IonicResultSetHandler implements ResultSetHandler<RowSet> {
      * For "waypoint-3", Ionic-protected columns are being tracked as they are encountered in the {@link ResultSet}.
      * If all Ionic decrypt operations for a given record fail, the row is filtered out of the data returned by the
      * function.
+     * <p>
+     * When a batch size greater than one is configured, rows are read from the {@link ResultSet} in windows of that
+     * size.  The key tags of the protected cells in a window are fetched in a single server request, and the cells
+     * are then decrypted using the fetched keys.
      *
      * @param resultSet the JDBC {@link ResultSet} from the database
      * @return the Ionic-filtered representation of the input {@link ResultSet}
@@ -54,35 +189,522 @@ public class IonicResultSetHandler implements ResultSetHandler<RowSet> {
      */
     @Override
     public RowSet handle(final ResultSet resultSet) throws SQLException {
-        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(agent);
         final RowSet rowSet = new RowSet();
-        final ResultSetMetaData metaData = resultSet.getMetaData();
-        final int columnCount = metaData.getColumnCount();
+        handle(resultSet, new RowConsumer() {
+            @Override
+            public void accept(final Object[] row) {
+                rowSet.add(row);
+            }
+        });
+        return rowSet;
+    }
+
+    /**
+     * Decrypt the ResultSet, passing each accessible row to the specified consumer as it becomes available.
+     * <p>
+     * No more than one batch of rows (two, when a prefetch {@link Executor} is configured; or, when an
+     * {@link ExecutorService} is configured, the configured maximum number of pending batches) is held in memory at a
+     * time, so the memory footprint of this call is independent
+     * of the size of the {@link ResultSet}.  Rows are filtered as described in {@link #handle(ResultSet)}, and are
+     * passed to the consumer on the calling thread, in {@link ResultSet} order.
+     *
+     * @param resultSet the JDBC {@link ResultSet} from the database
+     * @param consumer  the recipient of the Ionic-filtered rows of the input {@link ResultSet}
+     * @return the number of rows passed to the consumer
+     * @throws SQLException on errors reading from the {@link ResultSet}, or on consumer failure
+     */
+    public int handle(final ResultSet resultSet, final RowConsumer consumer) throws SQLException {
+        return handle(resultSet, ColumnPlan.create(resultSet.getMetaData(), ionicColumns), consumer);
+    }
+
+    /**
+     * Decrypt the ResultSet into a column-oriented container.  Rows are filtered as described in
+     * {@link #handle(ResultSet)}.  The container stores repeated values once per column, rather than once per row,
+     * so large results occupy less memory than the equivalent {@link RowSet}.
+     *
+     * @param resultSet the JDBC {@link ResultSet} from the database
+     * @return the Ionic-filtered representation of the input {@link ResultSet}
+     * @throws SQLException on errors reading from the {@link ResultSet}
+     */
+    public ColumnarRowSet handleColumnar(final ResultSet resultSet) throws SQLException {
+        final ColumnPlan plan = ColumnPlan.create(resultSet.getMetaData(), ionicColumns);
+        final ColumnarRowSet rowSet = new ColumnarRowSet(plan);
+        handle(resultSet, plan, rowSet);
+        rowSet.trimToSize();
+        return rowSet;
+    }
+
+    /**
+     * Decrypt the ResultSet, passing each accessible row to the specified consumer as it becomes available.
+     *
+     * @param resultSet the JDBC {@link ResultSet} from the database
+     * @param plan      the precomputed description of the {@link ResultSet} columns
+     * @param consumer  the recipient of the Ionic-filtered rows of the input {@link ResultSet}
+     * @return the number of rows passed to the consumer
+     * @throws SQLException on errors reading from the {@link ResultSet}, or on consumer failure
+     */
+    private int handle(final ResultSet resultSet, final ColumnPlan plan, final RowConsumer consumer)
+            throws SQLException {
+        final long start = now();
+        final QueryCounters counters = new QueryCounters();
+        final int rows;
+        if (executor != null) {
+            rows = handleParallel(resultSet, plan, counters, consumer);
+        } else if ((prefetchExecutor != null) && (batchSize > 1)) {
+            rows = handlePrefetch(resultSet, plan, counters, consumer);
+        } else {
+            rows = handleSerial(resultSet, plan, counters, consumer);
+        }
+        if (metrics.isEnabled()) {
+            final int rowsRead = counters.rows.get();
+            metrics.recordQuery(System.nanoTime() - start, rowsRead, rowsRead - rows,
+                    counters.cellsProtected.get(), counters.cellsRestricted.get());
+        }
+        return rows;
+    }
+
+    /**
+     * Read, decrypt, and dispatch rows on the calling thread.
+     *
+     * @param resultSet the JDBC {@link ResultSet} from the database
+     * @param plan      the precomputed description of the {@link ResultSet} columns
+     * @param counters  the accumulated statistics of the query
+     * @param consumer  the recipient of the Ionic-filtered rows of the input {@link ResultSet}
+     * @return the number of rows passed to the consumer
+     * @throws SQLException on errors reading from the {@link ResultSet}, or on consumer failure
+     */
+    private int handleSerial(final ResultSet resultSet, final ColumnPlan plan, final QueryCounters counters,
+                             final RowConsumer consumer) throws SQLException {
+        final BatchDecryptor decryptor = new BatchDecryptor(plan, counters);
+        final List<Object[]> batch = new ArrayList<Object[]>(batchSize);
+        int rows = 0;
+        long readStart = now();
         while (resultSet.next()) {
-            int ionicProtected = 0;
-            int ionicAllowed = 0;
-            final Object[] row = new Object[columnCount];
-            for (int i = 0; i < columnCount; ++i) {
-                final String columnName = metaData.getColumnName(i + 1);
-                final Object value = resultSet.getObject(i + 1);
-                final String valueText = (value == null) ? null : value.toString();
-                row[i] = valueText;
-                if (ionicColumns.contains(columnName)) {
-                    if (ChunkCrypto.getChunkInfo(valueText).isEncrypted()) {
-                        ++ionicProtected;
+            batch.add(plan.readRow(resultSet));
+            if (batch.size() >= batchSize) {
+                recordResultSetRead(readStart, batch.size());
+                rows += dispatch(decryptor.decrypt(batch), consumer);
+                batch.clear();
+                readStart = now();
+            }
+        }
+        if (!batch.isEmpty()) {
+            recordResultSetRead(readStart, batch.size());
+            rows += dispatch(decryptor.decrypt(batch), consumer);
+        }
+        return rows;
+    }
+
+    /**
+     * Read, decrypt, and dispatch rows on the calling thread, while fetching the keys for each batch of rows on the
+     * configured prefetch threads.  The keys for batch N are fetched while batch N+1 is read from the
+     * {@link ResultSet}; batch N is then decrypted and dispatched.
+     *
+     * @param resultSet the JDBC {@link ResultSet} from the database
+     * @param plan      the precomputed description of the {@link ResultSet} columns
+     * @param counters  the accumulated statistics of the query
+     * @param consumer  the recipient of the Ionic-filtered rows of the input {@link ResultSet}
+     * @return the number of rows passed to the consumer
+     * @throws SQLException on errors reading from the {@link ResultSet}, or on consumer failure
+     */
+    private int handlePrefetch(final ResultSet resultSet, final ColumnPlan plan, final QueryCounters counters,
+                               final RowConsumer consumer) throws SQLException {
+        final BatchDecryptor decryptor = new BatchDecryptor(plan, counters);
+        Prefetch pending = null;
+        int rows = 0;
+        try {
+            List<Object[]> batch = new ArrayList<Object[]>(batchSize);
+            long readStart = now();
+            while (resultSet.next()) {
+                batch.add(plan.readRow(resultSet));
+                if (batch.size() >= batchSize) {
+                    recordResultSetRead(readStart, batch.size());
+                    final Prefetch prefetch = decryptor.prefetchAsync(batch);
+                    if (pending != null) {
+                        rows += dispatch(decryptor.decrypt(pending), consumer);
+                    }
+                    pending = prefetch;
+                    batch = new ArrayList<Object[]>(batchSize);
+                    readStart = now();
+                }
+            }
+            if (!batch.isEmpty()) {
+                recordResultSetRead(readStart, batch.size());
+                final Prefetch prefetch = decryptor.prefetchAsync(batch);
+                if (pending != null) {
+                    rows += dispatch(decryptor.decrypt(pending), consumer);
+                }
+                pending = prefetch;
+            }
+            if (pending != null) {
+                final Prefetch prefetch = pending;
+                pending = null;
+                rows += dispatch(decryptor.decrypt(prefetch), consumer);
+            }
+        } finally {
+            if (pending != null) {
+                pending.task.cancel(true);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Read rows on the calling thread, decrypt batches of rows on the configured worker threads, and dispatch the
+     * decrypted rows on the calling thread in their original order.
+     *
+     * @param resultSet the JDBC {@link ResultSet} from the database
+     * @param plan      the precomputed description of the {@link ResultSet} columns
+     * @param counters  the accumulated statistics of the query
+     * @param consumer  the recipient of the Ionic-filtered rows of the input {@link ResultSet}
+     * @return the number of rows passed to the consumer
+     * @throws SQLException on errors reading from the {@link ResultSet}, or on consumer failure
+     */
+    private int handleParallel(final ResultSet resultSet, final ColumnPlan plan, final QueryCounters counters,
+                               final RowConsumer consumer) throws SQLException {
+        final Deque<Future<List<Object[]>>> pending = new ArrayDeque<Future<List<Object[]>>>();
+        int rows = 0;
+        try {
+            List<Object[]> batch = new ArrayList<Object[]>(batchSize);
+            long readStart = now();
+            while (resultSet.next()) {
+                batch.add(plan.readRow(resultSet));
+                if (batch.size() >= batchSize) {
+                    recordResultSetRead(readStart, batch.size());
+                    pending.add(submit(batch, plan, counters));
+                    batch = new ArrayList<Object[]>(batchSize);
+                    if (pending.size() >= maxPending) {
+                        rows += dispatch(await(pending.remove()), consumer);
+                    }
+                    readStart = now();
+                }
+            }
+            if (!batch.isEmpty()) {
+                recordResultSetRead(readStart, batch.size());
+                pending.add(submit(batch, plan, counters));
+            }
+            while (!pending.isEmpty()) {
+                rows += dispatch(await(pending.remove()), consumer);
+            }
+        } finally {
+            for (Future<List<Object[]>> future : pending) {
+                future.cancel(true);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Queue a batch of rows for decryption by the configured worker threads.
+     *
+     * @param batch    the rows read from the {@link ResultSet}
+     * @param plan     the precomputed description of the {@link ResultSet} columns
+     * @param counters the accumulated statistics of the query
+     * @return a handle to the Ionic-filtered rows of the batch
+     */
+    private Future<List<Object[]>> submit(final List<Object[]> batch, final ColumnPlan plan,
+                                          final QueryCounters counters) {
+        return executor.submit(new Callable<List<Object[]>>() {
+            @Override
+            public List<Object[]> call() {
+                return new BatchDecryptor(plan, counters).decrypt(batch);
+            }
+        });
+    }
+
+    /**
+     * Wait for a background task (the decryption of a batch of rows, or the fetch of its keys) to complete.
+     *
+     * @param future the handle to the result of the task
+     * @param <T>    the type of the result of the task
+     * @return the result of the task
+     * @throws SQLException on worker thread failure, or on interruption of the calling thread
+     */
+    private static <T> T await(final Future<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new SQLException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Pass rows to the consumer.
+     *
+     * @param rows     the Ionic-filtered rows of a batch
+     * @param consumer the recipient of the rows
+     * @return the number of rows passed to the consumer
+     * @throws SQLException on consumer failure
+     */
+    private static int dispatch(final List<Object[]> rows, final RowConsumer consumer) throws SQLException {
+        for (Object[] row : rows) {
+            consumer.accept(row);
+        }
+        return rows.size();
+    }
+
+    /**
+     * @return the current time, for elapsed time measurements; zero if instrumentation is disabled
+     */
+    private long now() {
+        return metrics.isEnabled() ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Record the reading of a batch of rows, if instrumentation is enabled.
+     *
+     * @param start the time at which reading of the batch started, as returned by {@link #now()}
+     * @param rows  the number of rows read
+     */
+    private void recordResultSetRead(final long start, final int rows) {
+        if (metrics.isEnabled()) {
+            metrics.recordResultSetRead(System.nanoTime() - start, rows);
+        }
+    }
+
+    /**
+     * Statistics of a single query, accumulated across batches (possibly on multiple threads).
+     */
+    private static final class QueryCounters {
+
+        /**
+         * The number of rows read from the {@link ResultSet}.
+         */
+        private final AtomicInteger rows = new AtomicInteger();
+
+        /**
+         * The number of Ionic-protected cells read.
+         */
+        private final AtomicInteger cellsProtected = new AtomicInteger();
+
+        /**
+         * The number of Ionic-protected cells that could not be decrypted.
+         */
+        private final AtomicInteger cellsRestricted = new AtomicInteger();
+    }
+
+    /**
+     * A batch of rows, with the background fetch of the keys needed to decrypt them.
+     */
+    private static final class Prefetch {
+
+        /**
+         * The rows read from the {@link ResultSet}.
+         */
+        private final List<Object[]> batch;
+
+        /**
+         * The key source holding the keys fetched for the batch.
+         */
+        private final PrefetchedKeyServices keyServices;
+
+        /**
+         * The background fetch; its result is true if the keys were fetched.
+         */
+        private final FutureTask<Boolean> task;
+
+        /**
+         * Constructor.
+         *
+         * @param batch       the rows read from the {@link ResultSet}
+         * @param keyServices the key source holding the keys fetched for the batch
+         * @param task        the background fetch
+         */
+        private Prefetch(final List<Object[]> batch, final PrefetchedKeyServices keyServices,
+                         final FutureTask<Boolean> task) {
+            this.batch = batch;
+            this.keyServices = keyServices;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Apply the Ionic decrypt transformation to batches of rows.  Instances are not thread safe.
+     */
+    private final class BatchDecryptor {
+
+        /**
+         * The precomputed description of the {@link ResultSet} columns.
+         */
+        private final ColumnPlan plan;
+
+        /**
+         * The Ionic cipher used to decrypt protected cells using individual key requests.
+         */
+        private final ChunkCipherV2 chunkCipher;
+
+        /**
+         * The key source used to fetch the keys for a batch of rows using a single key request.
+         */
+        private final PrefetchedKeyServices prefetchedKeyServices;
+
+        /**
+         * The Ionic cipher used to decrypt protected cells using the keys fetched for the batch.
+         */
+        private final ChunkCipherV2 chunkCipherPrefetched;
+
+        /**
+         * The accumulated statistics of the query.
+         */
+        private final QueryCounters counters;
+
+        /**
+         * Constructor.
+         *
+         * @param plan     the precomputed description of the {@link ResultSet} columns
+         * @param counters the accumulated statistics of the query
+         */
+        private BatchDecryptor(final ColumnPlan plan, final QueryCounters counters) {
+            this.plan = plan;
+            this.counters = counters;
+            this.chunkCipher = AgentPool.getChunkCipher(agent);
+            this.prefetchedKeyServices = new PrefetchedKeyServices(agent);
+            this.chunkCipherPrefetched = new ChunkCipherV2(prefetchedKeyServices);
+        }
+
+        /**
+         * Decrypt the protected cells in a batch of rows, in place.
+         *
+         * @param batch the rows read from the {@link ResultSet}
+         * @return the rows of the batch that are accessible to the caller
+         */
+        private List<Object[]> decrypt(final List<Object[]> batch) {
+            if (batchSize == 1) {
+                return decrypt(batch, chunkCipher, null);
+            } else if (prefetch(batch, prefetchedKeyServices)) {
+                return decrypt(batch, chunkCipherPrefetched, prefetchedKeyServices);
+            } else {
+                return decrypt(batch, chunkCipher, null);
+            }
+        }
+
+        /**
+         * Start the background fetch of the keys needed to decrypt the protected cells in a batch of rows.  If the
+         * prefetch executor rejects the task, the keys are fetched on the calling thread.
+         *
+         * @param batch the rows read from the {@link ResultSet}
+         * @return the batch, with the handle to the background fetch
+         */
+        private Prefetch prefetchAsync(final List<Object[]> batch) {
+            final PrefetchedKeyServices keyServices = new PrefetchedKeyServices(agent);
+            final FutureTask<Boolean> task = new FutureTask<Boolean>(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return prefetch(batch, keyServices);
+                }
+            });
+            try {
+                prefetchExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+            return new Prefetch(batch, keyServices, task);
+        }
+
+        /**
+         * Decrypt the protected cells in a batch of rows, in place, once the background fetch of its keys completes.
+         *
+         * @param prefetch the rows read from the {@link ResultSet}, with the handle to the background fetch
+         * @return the rows of the batch that are accessible to the caller
+         * @throws SQLException on prefetch thread failure, or on interruption of the calling thread
+         */
+        private List<Object[]> decrypt(final Prefetch prefetch) throws SQLException {
+            return await(prefetch.task)
+                    ? decrypt(prefetch.batch, new ChunkCipherV2(prefetch.keyServices), prefetch.keyServices)
+                    : decrypt(prefetch.batch, chunkCipher, null);
+        }
+
+        /**
+         * Fetch the keys needed to decrypt the protected cells in a batch of rows, using a single server request.
+         * This method does not use the state of the decryptor, and may be called on any thread.
+         *
+         * @param batch       the rows read from the {@link ResultSet}
+         * @param keyServices the key source to receive the fetched keys
+         * @return true if the keys were fetched; false if the server request failed
+         */
+        private boolean prefetch(final List<Object[]> batch, final PrefetchedKeyServices keyServices) {
+            final Set<String> keyIds = new LinkedHashSet<String>();
+            final int ionicCount = plan.getIonicCount();
+            for (Object[] row : batch) {
+                for (int n = 0; n < ionicCount; ++n) {
+                    final String keyId = ChunkDetector.getKeyId((String) row[plan.getIonicIndex(n)]);
+                    if (keyId != null) {
+                        keyIds.add(keyId);
+                    }
+                }
+            }
+            final long start = now();
+            try {
+                keyServices.prefetch(keyIds);
+                return true;
+            } catch (IonicException e) {
+                return false;
+            } finally {
+                if (metrics.isEnabled()) {
+                    metrics.recordKeyFetch(System.nanoTime() - start, keyIds.size());
+                }
+            }
+        }
+
+        /**
+         * Apply the Ionic decrypt transformation to the protected cells in a batch of rows.
+         * <p>
+         * Cells protected by keys known to be denied are marked as restricted without a decrypt attempt, avoiding
+         * the construction of an exception for each restricted cell.
+         *
+         * @param batch    the rows read from the {@link ResultSet}
+         * @param cipher   the Ionic cipher used to decrypt protected cells
+         * @param prefetch the key source holding the keys fetched for the batch, or null if keys were not prefetched
+         * @return the rows of the batch that are accessible to the caller
+         */
+        private List<Object[]> decrypt(final List<Object[]> batch, final ChunkCipherV2 cipher,
+                                       final PrefetchedKeyServices prefetch) {
+            final List<Object[]> rows = new ArrayList<Object[]>(batch.size());
+            final int ionicCount = plan.getIonicCount();
+            int cellsProtected = 0;
+            int cellsRestricted = 0;
+            for (Object[] row : batch) {
+                int ionicProtected = 0;
+                int ionicAllowed = 0;
+                for (int n = 0; n < ionicCount; ++n) {
+                    final int i = plan.getIonicIndex(n);
+                    final String valueText = (String) row[i];
+                    if (!ChunkDetector.isEncrypted(valueText)) {
+                        continue;
+                    }
+                    ++ionicProtected;
+                    if ((prefetch != null) && prefetch.isDenied(ChunkDetector.getKeyId(valueText))) {
+                        row[i] = "[RESTRICTED]";
+                    } else {
+                        final long start = now();
+                        boolean allowed = false;
                         try {
-                            row[i] = chunkCipher.decrypt(valueText);
+                            row[i] = cipher.decrypt(valueText);
+                            allowed = true;
                             ++ionicAllowed;
                         } catch (IonicException e) {
                             row[i] = "[RESTRICTED]";
                         }
+                        if (metrics.isEnabled()) {
+                            metrics.recordDecrypt(System.nanoTime() - start, allowed);
+                        }
                     }
                 }
+                cellsProtected += ionicProtected;
+                cellsRestricted += (ionicProtected - ionicAllowed);
+                if (ionicAllowed > 0) {
+                    rows.add(row);
+                }
             }
-            if (ionicAllowed > 0) {
-                rowSet.add(row);
+            if (metrics.isEnabled()) {
+                counters.rows.addAndGet(batch.size());
+                counters.cellsProtected.addAndGet(cellsProtected);
+                counters.cellsRestricted.addAndGet(cellsRestricted);
             }
+            return rows;
         }
-        return rowSet;
     }
 }
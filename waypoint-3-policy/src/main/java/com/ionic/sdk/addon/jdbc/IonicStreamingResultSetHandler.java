@@ -0,0 +1,97 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.key.KeyServices;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.StatementConfiguration;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * Implementation of commons-dbutils interface {@link ResultSetHandler}.
+ * <p>
+ * Business logic for streaming data from a {@link java.sql.ResultSet}.  Rows are decrypted as they are fetched by the
+ * JDBC driver, and are passed to a {@link RowConsumer} instead of being accumulated into a {@link RowSet}.  The
+ * row filtering semantics of {@link IonicResultSetHandler} are preserved.
+ * <p>
+ * To keep memory use flat for large tables, the JDBC driver must also avoid materializing the result.  Use
+ * {@link #query(Connection, String, int, IonicStreamingResultSetHandler, Object...)} to apply a fetch size to the
+ * statement; for PostgreSQL, this causes the driver to read the result through a server-side cursor.
+ */
+public class IonicStreamingResultSetHandler implements ResultSetHandler<Integer> {
+
+    /**
+     * The handler implementing the Ionic decrypt transformation.
+     */
+    private final IonicResultSetHandler handler;
+
+    /**
+     * The recipient of the Ionic-filtered rows.
+     */
+    private final RowConsumer consumer;
+
+    /**
+     * Constructor.
+     *
+     * @param agent        Ionic key source, used to unprotect data on fetch from database
+     * @param ionicColumns text labels of the database columns that are Ionic-protected at rest in the database
+     * @param batchSize    the number of rows for which keys should be fetched in a single server request
+     * @param consumer     the recipient of the Ionic-filtered rows
+     */
+    public IonicStreamingResultSetHandler(final KeyServices agent, final Collection<String> ionicColumns,
+                                          final int batchSize, final RowConsumer consumer) {
+        super();
+        this.handler = new IonicResultSetHandler(agent, ionicColumns, batchSize);
+        this.consumer = consumer;
+    }
+
+    /**
+     * Stream the ResultSet to the configured consumer.
+     *
+     * @param resultSet the JDBC {@link ResultSet} from the database
+     * @return the number of rows passed to the consumer
+     * @throws SQLException on errors reading from the {@link ResultSet}, or on consumer failure
+     */
+    @Override
+    public Integer handle(final ResultSet resultSet) throws SQLException {
+        return handler.handle(resultSet, consumer);
+    }
+
+    /**
+     * Execute a query, streaming its results through the specified handler.
+     * <p>
+     * The JDBC fetch size hint is applied to the statement.  As the PostgreSQL driver only uses a cursor outside of
+     * auto-commit mode, auto-commit is disabled for the duration of the query, and restored afterwards.
+     *
+     * @param connection the database connection on which to execute the query
+     * @param sql        the SQL query to execute
+     * @param fetchSize  the number of rows the driver should fetch from the database in each round trip
+     * @param handler    the handler that decrypts and dispatches the rows of the query result
+     * @param params     the replacement parameters of the query
+     * @return the number of rows passed to the consumer of the handler
+     * @throws SQLException on failure to execute the query, or on handler failure
+     */
+    public static int query(final Connection connection, final String sql, final int fetchSize,
+                            final IonicStreamingResultSetHandler handler, final Object... params) throws SQLException {
+        final StatementConfiguration configuration = new StatementConfiguration.Builder().fetchSize(fetchSize).build();
+        final QueryRunner queryRunner = new QueryRunner(configuration);
+        final boolean autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+            connection.setAutoCommit(false);
+        }
+        try {
+            final int rows = queryRunner.query(connection, sql, handler, params);
+            if (autoCommit) {
+                connection.commit();
+            }
+            return rows;
+        } finally {
+            if (autoCommit) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.addon.key.PrefetchedKeyServices;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Container for data loaded from a {@link java.sql.ResultSet}, in which Ionic-protected cells are decrypted on first
+ * access rather than on load.
+ * <p>
+ * Rows hold the ciphertext of their protected cells until a cell is read through {@link #getValue(int, int)} or
+ * {@link #get(int)}, at which point the cell is decrypted and the plaintext is retained for subsequent reads.  A
+ * cell that cannot be decrypted reads as "[RESTRICTED]", as with {@link IonicResultSetHandler}.  Consumers that
+ * display only part of a result may use {@link #warm(int, int, int, int)} to decrypt a range of cells using a single
+ * key request.
+ * <p>
+ * The rows are available as <code>Object[]</code> through the {@link java.util.List} interface, as with
+ * {@link ColumnarRowSet}, so code that iterates a {@link RowSet} can iterate this container unchanged; each row is
+ * decrypted as it is read.  The returned array is the row held by this container.
+ * <p>
+ * The "waypoint-3" row filtering of {@link IonicResultSetHandler} is not applied on load.  Call
+ * {@link #filterAccessible()} to remove rows in which no Ionic-protected cell is accessible, as
+ * {@link IonicResultSetHandler} would.
+ * <p>
+ * Instances are filled through {@link RowConsumer#accept(Object[])}, typically by
+ * {@link IonicLazyResultSetHandler#handle(java.sql.ResultSet)}.  Keys fetched by an instance are retained for its
+ * lifetime.  Instances are not thread safe.
+ */
+public class LazyRowSet extends AbstractList<Object[]> implements RowConsumer, RandomAccess {
+
+    /**
+     * The precomputed description of the {@link java.sql.ResultSet} columns.
+     */
+    private final ColumnPlan plan;
+
+    /**
+     * The rows, holding ciphertext for protected cells not yet decrypted.
+     */
+    private final List<Object[]> rows;
+
+    /**
+     * For each row, the (zero-based) indices of the protected cells already decrypted.
+     */
+    private final List<BitSet> decrypted;
+
+    /**
+     * For each row, the (zero-based) indices of the Ionic-protected cells successfully decrypted.
+     */
+    private final List<BitSet> accessible;
+
+    /**
+     * The number of rows for which keys are fetched in a single server request.
+     */
+    private final int batchSize;
+
+    /**
+     * The keys fetched by this instance.
+     */
+    private final PrefetchedKeyServices keyServices;
+
+    /**
+     * The Ionic cipher used to decrypt protected cells.
+     */
+    private final ChunkCipherV2 chunkCipher;
+
+    /**
+     * Constructor.
+     *
+     * @param agent     Ionic key source, used to unprotect data on access
+     * @param plan      the precomputed description of the {@link java.sql.ResultSet} columns
+     * @param batchSize the number of rows for which keys are fetched in a single server request
+     */
+    public LazyRowSet(final KeyServices agent, final ColumnPlan plan, final int batchSize) {
+        super();
+        this.plan = plan;
+        this.rows = new ArrayList<Object[]>();
+        this.decrypted = new ArrayList<BitSet>();
+        this.accessible = new ArrayList<BitSet>();
+        this.batchSize = Math.max(1, batchSize);
+        this.keyServices = new PrefetchedKeyServices(agent);
+        this.chunkCipher = new ChunkCipherV2(keyServices);
+    }
+
+    /**
+     * Append a row, as read from the {@link java.sql.ResultSet}.  The array is retained.
+     *
+     * @param row the text representation of each cell in the row
+     */
+    @Override
+    public void accept(final Object[] row) {
+        rows.add(row);
+        decrypted.add(new BitSet(plan.getColumnCount()));
+        accessible.add(new BitSet(plan.getColumnCount()));
+        ++modCount;
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * @return the number of columns in each row
+     */
+    public int getColumnCount() {
+        return plan.getColumnCount();
+    }
+
+    /**
+     * Read a cell, decrypting it if necessary.
+     *
+     * @param row    the zero-based row index
+     * @param column the zero-based column index
+     * @return the plaintext value of the cell
+     */
+    public Object getValue(final int row, final int column) {
+        final Object[] values = rows.get(row);
+        if (plan.isIonic(column)) {
+            final BitSet decryptedRow = decrypted.get(row);
+            if (!decryptedRow.get(column)) {
+                final String value = (String) values[column];
+                if (ChunkDetector.isEncrypted(value)) {
+                    final String plaintext = decrypt(value);
+                    if (plaintext == null) {
+                        values[column] = RESTRICTED;
+                    } else {
+                        values[column] = plaintext;
+                        accessible.get(row).set(column);
+                    }
+                }
+                decryptedRow.set(column);
+            }
+        }
+        return values[column];
+    }
+
+    /**
+     * Read a row, decrypting its protected cells if necessary.
+     *
+     * @param row the zero-based row index
+     * @return the plaintext values of the row
+     */
+    @Override
+    public Object[] get(final int row) {
+        final int ionicCount = plan.getIonicCount();
+        for (int n = 0; n < ionicCount; ++n) {
+            getValue(row, plan.getIonicIndex(n));
+        }
+        return rows.get(row);
+    }
+
+    /**
+     * Decrypt the protected cells in a rectangular range, fetching the keys for the range in batches of rows.
+     *
+     * @param fromRow    the first row of the range (inclusive)
+     * @param toRow      the last row of the range (exclusive)
+     * @param fromColumn the first column of the range (inclusive)
+     * @param toColumn   the last column of the range (exclusive)
+     */
+    public void warm(final int fromRow, final int toRow, final int fromColumn, final int toColumn) {
+        final int rowEnd = Math.min(toRow, rows.size());
+        final int columnEnd = Math.min(toColumn, plan.getColumnCount());
+        for (int batchStart = Math.max(0, fromRow); batchStart < rowEnd; batchStart += batchSize) {
+            final int batchEnd = Math.min(rowEnd, batchStart + batchSize);
+            final Set<String> keyIds = new LinkedHashSet<String>();
+            for (int r = batchStart; r < batchEnd; ++r) {
+                for (int c = Math.max(0, fromColumn); c < columnEnd; ++c) {
+                    if (plan.isIonic(c) && !decrypted.get(r).get(c)) {
+                        addKeyId((String) rows.get(r)[c], keyIds);
+                    }
+                }
+            }
+            prefetch(keyIds);
+            for (int r = batchStart; r < batchEnd; ++r) {
+                for (int c = Math.max(0, fromColumn); c < columnEnd; ++c) {
+                    getValue(r, c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the rows in which no Ionic-protected cell is accessible to the caller (the "waypoint-3" filter of
+     * {@link IonicResultSetHandler}).  As with {@link IonicResultSetHandler}, a row is retained only if at least one
+     * of its protected columns holds a cell that is Ionic-protected and can be decrypted; null and plaintext cells do
+     * not make a row accessible.
+     * <p>
+     * The keys of the protected cells are fetched in batches of rows.  Cells whose keys are denied are marked as
+     * restricted without a decrypt attempt; in each retained row, cells are decrypted only up to the first accessible
+     * cell, whose plaintext is retained.  If a key request fails, keys are fetched cell by cell instead.
+     *
+     * @return the number of rows removed
+     */
+    public int filterAccessible() {
+        final List<Object[]> rowsAccessible = new ArrayList<Object[]>(rows.size());
+        final List<BitSet> decryptedAccessible = new ArrayList<BitSet>(rows.size());
+        final List<BitSet> accessibleAccessible = new ArrayList<BitSet>(rows.size());
+        final int ionicCount = plan.getIonicCount();
+        for (int batchStart = 0; batchStart < rows.size(); batchStart += batchSize) {
+            final int batchEnd = Math.min(rows.size(), batchStart + batchSize);
+            final Set<String> keyIds = new LinkedHashSet<String>();
+            for (int r = batchStart; r < batchEnd; ++r) {
+                for (int n = 0; n < ionicCount; ++n) {
+                    final int c = plan.getIonicIndex(n);
+                    if (!decrypted.get(r).get(c)) {
+                        addKeyId((String) rows.get(r)[c], keyIds);
+                    }
+                }
+            }
+            prefetch(keyIds);
+            for (int r = batchStart; r < batchEnd; ++r) {
+                if (isAccessible(r)) {
+                    rowsAccessible.add(rows.get(r));
+                    decryptedAccessible.add(decrypted.get(r));
+                    accessibleAccessible.add(accessible.get(r));
+                }
+            }
+        }
+        final int removed = rows.size() - rowsAccessible.size();
+        rows.clear();
+        rows.addAll(rowsAccessible);
+        decrypted.clear();
+        decrypted.addAll(decryptedAccessible);
+        accessible.clear();
+        accessible.addAll(accessibleAccessible);
+        ++modCount;
+        return removed;
+    }
+
+    /**
+     * @param row the zero-based row index
+     * @return true if at least one Ionic-protected cell of the row can be decrypted by the caller
+     */
+    private boolean isAccessible(final int row) {
+        final BitSet accessibleRow = accessible.get(row);
+        final int ionicCount = plan.getIonicCount();
+        for (int n = 0; n < ionicCount; ++n) {
+            final int c = plan.getIonicIndex(n);
+            getValue(row, c);
+            if (accessibleRow.get(c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param value  the text of a protected cell
+     * @param keyIds receives the key tag of the cell, if the cell is Ionic-protected
+     */
+    private static void addKeyId(final String value, final Set<String> keyIds) {
+        final String keyId = ChunkDetector.getKeyId(value);
+        if (keyId != null) {
+            keyIds.add(keyId);
+        }
+    }
+
+    /**
+     * Fetch keys not already known to this instance in a single server request.
+     *
+     * @param keyIds the key tags to be fetched
+     * @return true if the keys were fetched; false if the server request failed
+     */
+    private boolean prefetch(final Set<String> keyIds) {
+        try {
+            keyServices.prefetchMore(keyIds);
+            return true;
+        } catch (IonicException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param value the text of an Ionic-protected cell
+     * @return the plaintext of the cell; or null if the cell cannot be decrypted
+     */
+    private String decrypt(final String value) {
+        final String keyId = ChunkDetector.getKeyId(value);
+        prefetch(Collections.singleton(keyId));
+        if (keyServices.isDenied(keyId)) {
+            return null;
+        }
+        try {
+            return chunkCipher.decrypt(value);
+        } catch (IonicException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The value of a protected cell that cannot be decrypted.
+     */
+    private static final String RESTRICTED = "[RESTRICTED]";
+}
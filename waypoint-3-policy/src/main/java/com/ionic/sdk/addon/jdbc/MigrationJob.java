@@ -0,0 +1,374 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Business logic for encrypting the plaintext cells of a table's protected columns in place, while the table remains
+ * in use.
+ * <p>
+ * A cell is left alone if {@link ChunkDetector#isEncryptedExact(String)} reports it as an Ionic-protected chunk;
+ * other non-null cells are plaintext.  (The exact check is used, rather than the fast check of
+ * {@link IonicResultSetHandler}, so that plaintext resembling a chunk is still migrated.)  A table holding a mix of
+ * plaintext and Ionic-protected cells (for example, a legacy table whose new rows are already protected) may
+ * therefore be migrated incrementally, and a completed migration may be run again to pick up stragglers.
+ * <p>
+ * The table is split into ranges of an integer key column (typically the primary key), as with
+ * {@link PartitionedTableReader}; ranges are processed concurrently, each on its own connection.  Within a range,
+ * rows are read in key order, in batches.  The plaintext cells of a batch are encrypted and written back using
+ * {@link IonicBatchWriter}, which creates the keys for the batch using a single server request, and commits the
+ * batch in a single transaction.  Values of the configured attribute columns (for example, a record department) are
+ * applied to each protected cell of the row, as row-specific attributes.
+ * <p>
+ * Each row is written with an optimistic compare-and-set <code>UPDATE</code>: the row is updated only if each
+ * migrated cell still holds the plaintext read by the job, and each attribute cell still holds the value from which
+ * the key attributes were bound.  A row modified by a concurrent writer after it was read
+ * is left unchanged, and counted as conflicted; run the job again to migrate such rows.  Concurrent writers are
+ * never overwritten.
+ * <p>
+ * If the table has an {@link AccessFingerprint#COLUMN} column, it is updated along with each migrated row.  A row
+ * whose protected cells were all plaintext is given the fingerprint of the cells encrypted by the job.  The
+ * fingerprint of a row already holding protected cells cannot be computed without their attributes, so it is set to
+ * null, leaving {@link AccessFilter} to check the row's cells individually.
+ * <p>
+ * Progress (rows read, rows and cells migrated, conflicts, and throughput) is available from {@link #getProgress()};
+ * rows and cells are counted as each batch is committed, from the rows actually updated.  Progress is reported to
+ * an optional {@link MigrationListener} after each batch.  The job may be throttled to a target rate of rows per
+ * second, shared across all ranges, to limit its load on a live database.
+ * <p>
+ * Instances are thread safe, if the key source is.
+ */
+public class MigrationJob {
+
+    /**
+     * The table, columns and batching of the job.
+     */
+    private final TableScan scan;
+
+    /**
+     * Ionic key source, used to protect data.
+     */
+    private final KeyServices agent;
+
+    /**
+     * The worker threads on which ranges are processed.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The recipient of progress reports; may be null.
+     */
+    private final MigrationListener listener;
+
+    /**
+     * The number of rows read.
+     */
+    private final AtomicLong rowsScanned;
+
+    /**
+     * The number of rows in which plaintext cells were encrypted.
+     */
+    private final AtomicLong rowsMigrated;
+
+    /**
+     * The number of plaintext cells encrypted.
+     */
+    private final AtomicLong cellsEncrypted;
+
+    /**
+     * The number of rows left unchanged, as they were modified concurrently after being read.
+     */
+    private final AtomicLong rowsConflicted;
+
+    /**
+     * The time (per {@link System#nanoTime()}) at which the most recent run started.
+     */
+    private volatile long start;
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource       the source of the database connections on which ranges are processed
+     * @param agent            Ionic key source, used to protect data; must be thread safe
+     * @param table            the name of the table
+     * @param keyColumn        the name of the integer column by which rows are identified (typically the primary key)
+     * @param ionicAttributes  the Ionic attributes with which each protected column is encrypted, indexed by column
+     *                         name
+     * @param attributeColumns the names of the columns whose values are applied to each protected cell of a row as
+     *                         row-specific attributes (for example, "department"); may be empty
+     * @param partitions       the number of ranges into which the table is divided
+     * @param executor         the worker threads on which ranges are processed; not shut down by this job
+     * @param batchSize        the number of rows read in each batch (and updated in each transaction)
+     * @param rowsPerSecond    the target rate at which rows are read, across all ranges; zero for no limit
+     * @param listener         the recipient of progress reports; may be null
+     */
+    public MigrationJob(final DataSource dataSource, final KeyServices agent, final String table,
+                        final String keyColumn, final Map<String, KeyAttributesMap> ionicAttributes,
+                        final List<String> attributeColumns, final int partitions, final ExecutorService executor,
+                        final int batchSize, final int rowsPerSecond, final MigrationListener listener) {
+        this.scan = new TableScan(dataSource, table, keyColumn, ionicAttributes, attributeColumns, partitions,
+                batchSize, rowsPerSecond);
+        this.agent = agent;
+        this.executor = executor;
+        this.listener = listener;
+        this.rowsScanned = new AtomicLong();
+        this.rowsMigrated = new AtomicLong();
+        this.cellsEncrypted = new AtomicLong();
+        this.rowsConflicted = new AtomicLong();
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * @return the progress of the most recent run, up to the most recently committed batch
+     */
+    public MigrationProgress getProgress() {
+        return new MigrationProgress(rowsScanned.get(), rowsMigrated.get(), cellsEncrypted.get(),
+                rowsConflicted.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Run the job to completion.
+     *
+     * @return the progress of the run
+     * @throws SQLException on failure to access the database, or on failure to protect data; batches committed
+     *                      before the failure are retained
+     */
+    public MigrationProgress run() throws SQLException {
+        rowsScanned.set(0L);
+        rowsMigrated.set(0L);
+        cellsEncrypted.set(0L);
+        rowsConflicted.set(0L);
+        start = System.nanoTime();
+        final List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        try {
+            for (final long[] range : scan.getRanges()) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws SQLException {
+                        return migrateRange(range);
+                    }
+                }));
+            }
+            for (Future<Long> future : futures) {
+                PartitionedTableReader.await(future);
+            }
+        } finally {
+            for (Future<Long> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return getProgress();
+    }
+
+    /**
+     * Migrate the rows of a range, on a connection of its own, committing each batch.
+     *
+     * @param range the inclusive lower and upper bound of the range
+     * @return the number of rows migrated
+     * @throws SQLException on failure to access the database, or on failure to protect data
+     */
+    private long migrateRange(final long[] range) throws SQLException {
+        long rows = 0L;
+        try (Connection connection = scan.getDataSource().getConnection()) {
+            final boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            final boolean fingerprint = scan.hasColumn(connection, AccessFingerprint.COLUMN);
+            final Map<BitSet, IonicBatchWriter> writers = new HashMap<BitSet, IonicBatchWriter>();
+            boolean done = false;
+            try (PreparedStatement statementSelect = scan.prepareSelect(connection)) {
+                long position = range[0] - 1;
+                while (position < range[1]) {
+                    final List<Object[]> batch = scan.readBatch(statementSelect, position, range[1]);
+                    final BatchCounts counts = migrateBatch(batch, connection, writers, fingerprint);
+                    connection.commit();
+                    rowsScanned.addAndGet(batch.size());
+                    rowsMigrated.addAndGet(counts.rows);
+                    cellsEncrypted.addAndGet(counts.cells);
+                    rowsConflicted.addAndGet(counts.rowsConflicted);
+                    rows += counts.rows;
+                    position = scan.getPosition(batch, range[1]);
+                    if (listener != null) {
+                        final MigrationProgress progress = getProgress();
+                        synchronized (listener) {
+                            listener.onProgress(progress);
+                        }
+                    }
+                }
+                done = true;
+            } catch (IonicException e) {
+                connection.rollback();
+                throw new SQLException(e);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                try {
+                    TableScan.closeWriters(writers.values(), !done);
+                } finally {
+                    if (autoCommit) {
+                        connection.setAutoCommit(true);
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Encrypt the plaintext cells of a batch of rows, and write them back using compare-and-set updates.  Rows are
+     * grouped by the set of columns holding plaintext, by the set of attribute columns holding null (and, if the
+     * table is fingerprinted, by whether the row holds protected cells), each group being written by its own
+     * statement.
+     *
+     * @param batch       the key, the protected cells and the attribute cells of each row
+     * @param connection  the database connection of the range
+     * @param writers     the writer of each group of rows, indexed by the shape of its updates; writers are created
+     *                    as needed
+     * @param fingerprint true if the table has an {@link AccessFingerprint#COLUMN} column
+     * @return the counts of the rows written, to be added to the progress of the job once the batch is committed
+     * @throws SQLException   on failure to write to the database
+     * @throws IonicException on failure to protect data
+     */
+    private BatchCounts migrateBatch(final List<Object[]> batch, final Connection connection,
+                                     final Map<BitSet, IonicBatchWriter> writers, final boolean fingerprint)
+            throws SQLException, IonicException {
+        final List<String> ionicColumns = scan.getIonicColumns();
+        final Map<IonicBatchWriter, Long> rowsAffected = new HashMap<IonicBatchWriter, Long>();
+        final Map<IonicBatchWriter, Integer> cellsPerRow = new HashMap<IonicBatchWriter, Integer>();
+        long rowsWritten = 0L;
+        for (Object[] row : batch) {
+            final BitSet plaintextColumns = new BitSet();
+            final List<Object> plaintexts = new ArrayList<Object>(ionicColumns.size());
+            boolean protectedCells = false;
+            for (int i = 0; i < ionicColumns.size(); ++i) {
+                final String value = scan.getIonicCell(row, i);
+                if (value == null) {
+                    continue;
+                } else if (ChunkDetector.isEncryptedExact(value)) {
+                    protectedCells = true;
+                } else {
+                    plaintextColumns.set(i);
+                    plaintexts.add(value);
+                }
+            }
+            if (plaintextColumns.isEmpty()) {
+                continue;
+            }
+            // the extra bit marks rows whose fingerprint is computed by the writer
+            plaintextColumns.set(ionicColumns.size(), fingerprint && !protectedCells);
+            scan.setAttributeNulls(row, plaintextColumns, ionicColumns.size() + 1);
+            final IonicBatchWriter writer = getWriter(plaintextColumns, connection, writers, fingerprint);
+            if (!rowsAffected.containsKey(writer)) {
+                rowsAffected.put(writer, writer.getRowsAffected());
+                cellsPerRow.put(writer, plaintexts.size());
+            }
+            // parameters: the new value of each cell (and of the fingerprint), the row key, the expected (plaintext)
+            // value of each cell and of each non-null attribute cell
+            final List<Object> values = new ArrayList<Object>(plaintexts);
+            if (plaintextColumns.get(ionicColumns.size())) {
+                values.add(null);
+            }
+            values.add(row[0]);
+            values.addAll(plaintexts);
+            scan.addAttributeValues(row, values);
+            writer.addRow(values.toArray(), scan.getRowAttributes(row));
+            ++rowsWritten;
+        }
+        final BatchCounts counts = new BatchCounts();
+        for (Map.Entry<IonicBatchWriter, Long> entry : rowsAffected.entrySet()) {
+            entry.getKey().flush();
+            final long rowsUpdated = entry.getKey().getRowsAffected() - entry.getValue();
+            counts.rows += rowsUpdated;
+            counts.cells += rowsUpdated * cellsPerRow.get(entry.getKey());
+        }
+        counts.rowsConflicted = rowsWritten - counts.rows;
+        return counts;
+    }
+
+    /**
+     * @param plaintextColumns the (zero-based) indices of the plaintext columns of a group of rows, then (at the
+     *                         index following the last protected column) whether the writer computes the fingerprint
+     *                         of the rows, then whether each attribute cell of the rows is null
+     * @param connection       the database connection of the range
+     * @param writers          the writer of each group of rows, indexed by the shape of its updates
+     * @param fingerprint      true if the table has an {@link AccessFingerprint#COLUMN} column
+     * @return the writer of the group, created if necessary
+     * @throws SQLException on failure to prepare the update statement
+     */
+    private IonicBatchWriter getWriter(final BitSet plaintextColumns, final Connection connection,
+                                       final Map<BitSet, IonicBatchWriter> writers, final boolean fingerprint)
+            throws SQLException {
+        IonicBatchWriter writer = writers.get(plaintextColumns);
+        if (writer == null) {
+            final List<String> ionicColumns = scan.getIonicColumns();
+            final List<String> columns = new ArrayList<String>();
+            final StringBuilder set = new StringBuilder();
+            final StringBuilder where = new StringBuilder();
+            for (int i = 0; i < ionicColumns.size(); ++i) {
+                if (plaintextColumns.get(i)) {
+                    final String column = ionicColumns.get(i);
+                    columns.add(column);
+                    set.append((set.length() == 0) ? "" : ", ").append(column).append(" = ?");
+                    where.append(" AND ").append(column).append(" = ?");
+                }
+            }
+            final int cells = columns.size();
+            if (plaintextColumns.get(ionicColumns.size())) {
+                columns.add(AccessFingerprint.COLUMN);
+                set.append(", ").append(AccessFingerprint.COLUMN).append(" = ?");
+            } else if (fingerprint) {
+                set.append(", ").append(AccessFingerprint.COLUMN).append(" = NULL");
+            }
+            columns.add(scan.getKeyColumn());
+            // the expected values are compared as written, so are given labels matching no protected column
+            for (int i = 0; i < cells; ++i) {
+                columns.add("");
+            }
+            scan.appendAttributeConditions(plaintextColumns, ionicColumns.size() + 1, where, columns);
+            final String sql = String.format("UPDATE %s SET %s WHERE %s = ?%s",
+                    scan.getTable(), set, scan.getKeyColumn(), where);
+            writer = new IonicBatchWriter(agent, connection, sql, columns, scan.getIonicAttributes(),
+                    scan.getBatchSize(), 0);
+            writers.put(plaintextColumns, writer);
+        }
+        return writer;
+    }
+
+    /**
+     * The counts of a batch, added to the progress of the job once the batch is committed.
+     */
+    private static final class BatchCounts {
+
+        /**
+         * The number of rows updated.
+         */
+        private long rows;
+
+        /**
+         * The number of plaintext cells encrypted, in the rows updated.
+         */
+        private long cells;
+
+        /**
+         * The number of rows left unchanged, as they were modified concurrently after being read.
+         */
+        private long rowsConflicted;
+    }
+}
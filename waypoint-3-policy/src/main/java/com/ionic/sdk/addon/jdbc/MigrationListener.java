@@ -0,0 +1,17 @@
+package com.ionic.sdk.addon.jdbc;
+
+/**
+ * Recipient of the progress of a {@link MigrationJob}.
+ * <p>
+ * The listener is notified on the worker threads of the job, one call at a time, after each batch of rows is
+ * committed.  Implementations should return promptly, as the notifying worker waits for the call to complete.
+ */
+public interface MigrationListener {
+
+    /**
+     * Receive the progress of the job.
+     *
+     * @param progress the progress of the job, up to the most recently committed batch
+     */
+    void onProgress(MigrationProgress progress);
+}
@@ -0,0 +1,104 @@
+package com.ionic.sdk.addon.jdbc;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the progress of a {@link MigrationJob}.
+ * <p>
+ * Instances are immutable.
+ */
+public final class MigrationProgress {
+
+    /**
+     * The number of rows read.
+     */
+    private final long rowsScanned;
+
+    /**
+     * The number of rows in which plaintext cells were encrypted.
+     */
+    private final long rowsMigrated;
+
+    /**
+     * The number of plaintext cells encrypted.
+     */
+    private final long cellsEncrypted;
+
+    /**
+     * The number of rows left unchanged, as they were modified concurrently after being read.
+     */
+    private final long rowsConflicted;
+
+    /**
+     * The time elapsed since the start of the job, in nanoseconds.
+     */
+    private final long elapsedNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param rowsScanned    the number of rows read
+     * @param rowsMigrated   the number of rows in which plaintext cells were encrypted
+     * @param cellsEncrypted the number of plaintext cells encrypted
+     * @param rowsConflicted the number of rows left unchanged, as they were modified concurrently after being read
+     * @param elapsedNanos   the time elapsed since the start of the job, in nanoseconds
+     */
+    public MigrationProgress(final long rowsScanned, final long rowsMigrated, final long cellsEncrypted,
+                             final long rowsConflicted, final long elapsedNanos) {
+        this.rowsScanned = rowsScanned;
+        this.rowsMigrated = rowsMigrated;
+        this.cellsEncrypted = cellsEncrypted;
+        this.rowsConflicted = rowsConflicted;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the number of rows read
+     */
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    /**
+     * @return the number of rows in which plaintext cells were encrypted
+     */
+    public long getRowsMigrated() {
+        return rowsMigrated;
+    }
+
+    /**
+     * @return the number of plaintext cells encrypted
+     */
+    public long getCellsEncrypted() {
+        return cellsEncrypted;
+    }
+
+    /**
+     * @return the number of rows left unchanged, as they were modified concurrently after being read
+     */
+    public long getRowsConflicted() {
+        return rowsConflicted;
+    }
+
+    /**
+     * @return the time elapsed since the start of the job, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the mean number of rows read per second since the start of the job
+     */
+    public double getRowsPerSecond() {
+        return (elapsedNanos == 0L) ? 0.0 : (rowsScanned * (double) TimeUnit.SECONDS.toNanos(1L) / elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "scanned=%d, migrated=%d, cells=%d, conflicted=%d, elapsed=%dms, rows/s=%.1f",
+                rowsScanned, rowsMigrated, cellsEncrypted, rowsConflicted,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getRowsPerSecond());
+    }
+}
@@ -0,0 +1,276 @@
+package com.ionic.sdk.addon.jdbc;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.StatementConfiguration;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Business logic for reading a whole table in parallel.  The table is split into ranges of an integer partition
+ * column (typically the primary key); each range is read on its own connection, and decrypted on its own worker
+ * thread, using an {@link IonicResultSetHandler}.
+ * <p>
+ * The bounds of the partition column are read first, and divided into ranges of equal width.  The rows of each
+ * range are then read, decrypted and filtered concurrently, using connections from the supplied
+ * {@link DataSource} (typically a connection pool) and threads from the supplied {@link ExecutorService}; the number
+ * of ranges read at once is limited by the size of the thread pool.
+ * <p>
+ * Rows are delivered either in partition column order, or in the order in which they are decrypted.  Ordered
+ * delivery holds each range in memory until the ranges before it have been delivered; unordered delivery holds no
+ * rows.  The partition column must not be null.
+ * <p>
+ * Instances are thread safe, if the key source of the handler is.
+ */
+public class PartitionedTableReader {
+
+    /**
+     * The source of the database connections on which ranges are read.
+     */
+    private final DataSource dataSource;
+
+    /**
+     * The handler implementing the Ionic decrypt transformation.
+     */
+    private final IonicResultSetHandler handler;
+
+    /**
+     * The name of the table.
+     */
+    private final String table;
+
+    /**
+     * The name of the integer column by which the table is partitioned.
+     */
+    private final String partitionColumn;
+
+    /**
+     * The number of ranges into which the table is divided.
+     */
+    private final int partitions;
+
+    /**
+     * The worker threads on which ranges are read and decrypted.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The number of rows the driver should fetch from the database in each round trip.
+     */
+    private final int fetchSize;
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource      the source of the database connections on which ranges are read
+     * @param handler         the handler implementing the Ionic decrypt transformation; its key source must be thread
+     *                        safe
+     * @param table           the name of the table
+     * @param partitionColumn the name of the integer column by which the table is partitioned
+     * @param partitions      the number of ranges into which the table is divided
+     * @param executor        the worker threads on which ranges are read and decrypted; not shut down by this reader
+     * @param fetchSize       the number of rows the driver should fetch from the database in each round trip
+     */
+    public PartitionedTableReader(final DataSource dataSource, final IonicResultSetHandler handler,
+                                  final String table, final String partitionColumn, final int partitions,
+                                  final ExecutorService executor, final int fetchSize) {
+        this.dataSource = dataSource;
+        this.handler = handler;
+        this.table = table;
+        this.partitionColumn = partitionColumn;
+        this.partitions = Math.max(1, partitions);
+        this.executor = executor;
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    /**
+     * Read the table, in partition column order.
+     *
+     * @return the Ionic-filtered rows of the table
+     * @throws SQLException on failure to read from the database
+     */
+    public RowSet read() throws SQLException {
+        final RowSet rowSet = new RowSet();
+        read(new RowConsumer() {
+            @Override
+            public void accept(final Object[] row) {
+                rowSet.add(row);
+            }
+        }, true);
+        return rowSet;
+    }
+
+    /**
+     * Read the table, passing each accessible row to the specified consumer.
+     * <p>
+     * For ordered delivery, the consumer is called on the calling thread.  For unordered delivery, the consumer is
+     * called on the worker threads, one call at a time.
+     *
+     * @param consumer the recipient of the Ionic-filtered rows of the table
+     * @param ordered  true to deliver rows in partition column order
+     * @return the number of rows passed to the consumer
+     * @throws SQLException on failure to read from the database, or on consumer failure
+     */
+    public int read(final RowConsumer consumer, final boolean ordered) throws SQLException {
+        final List<long[]> ranges = getRanges(dataSource, table, partitionColumn, partitions);
+        final List<RowSet> rowSets = new ArrayList<RowSet>(ranges.size());
+        final List<Future<Integer>> futures = new ArrayList<Future<Integer>>(ranges.size());
+        final RowConsumer consumerShared = new RowConsumer() {
+            @Override
+            public void accept(final Object[] row) throws SQLException {
+                synchronized (this) {
+                    consumer.accept(row);
+                }
+            }
+        };
+        int rows = 0;
+        try {
+            for (final long[] range : ranges) {
+                final RowSet rowSet = ordered ? new RowSet() : null;
+                final RowConsumer consumerRange = ordered ? new RowConsumer() {
+                    @Override
+                    public void accept(final Object[] row) {
+                        rowSet.add(row);
+                    }
+                } : consumerShared;
+                rowSets.add(rowSet);
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws SQLException {
+                        return readRange(range, ordered, consumerRange);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); ++i) {
+                rows += await(futures.get(i));
+                if (ordered) {
+                    for (Object[] row : rowSets.get(i)) {
+                        consumer.accept(row);
+                    }
+                    rowSets.set(i, null);
+                }
+            }
+        } finally {
+            for (Future<Integer> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Divide the bounds of a partition column into ranges of equal width.
+     *
+     * @param dataSource      the source of the database connection on which the bounds are read
+     * @param table           the name of the table
+     * @param partitionColumn the name of the integer column by which the table is partitioned
+     * @param partitions      the number of ranges into which the table is divided
+     * @return the inclusive lower and upper bound of each range; empty if the table is empty
+     * @throws SQLException on failure to read from the database
+     */
+    static List<long[]> getRanges(final DataSource dataSource, final String table, final String partitionColumn,
+                                  final int partitions) throws SQLException {
+        final String sql = String.format("SELECT MIN(%s), MAX(%s) FROM %s", partitionColumn, partitionColumn, table);
+        final long[] bounds;
+        try (Connection connection = dataSource.getConnection()) {
+            bounds = new QueryRunner().query(connection, sql, new ResultSetHandler<long[]>() {
+                @Override
+                public long[] handle(final ResultSet resultSet) throws SQLException {
+                    if (!resultSet.next()) {
+                        return null;
+                    }
+                    final long min = resultSet.getLong(1);
+                    return resultSet.wasNull() ? null : new long[]{min, resultSet.getLong(2)};
+                }
+            });
+        }
+        final List<long[]> ranges = new ArrayList<long[]>(partitions);
+        if (bounds != null) {
+            final long width = (bounds[1] - bounds[0]) / partitions + 1;
+            for (long lower = bounds[0]; lower <= bounds[1]; lower += width) {
+                ranges.add(new long[]{lower, Math.min(bounds[1], lower + width - 1)});
+                if (lower > bounds[1] - width) {
+                    break;
+                }
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Read and decrypt the rows of a range, on a connection of its own.
+     *
+     * @param range    the inclusive lower and upper bound of the range
+     * @param ordered  true to read the rows in partition column order
+     * @param consumer the recipient of the Ionic-filtered rows of the range
+     * @return the number of rows passed to the consumer
+     * @throws SQLException on failure to read from the database, or on consumer failure
+     */
+    private int readRange(final long[] range, final boolean ordered, final RowConsumer consumer)
+            throws SQLException {
+        final String sql = String.format("SELECT * FROM %s WHERE %s >= ? AND %s <= ?%s", table, partitionColumn,
+                partitionColumn, ordered ? (" ORDER BY " + partitionColumn) : "");
+        final ResultSetHandler<Integer> rangeHandler = new ResultSetHandler<Integer>() {
+            @Override
+            public Integer handle(final ResultSet resultSet) throws SQLException {
+                return handler.handle(resultSet, consumer);
+            }
+        };
+        final StatementConfiguration configuration = new StatementConfiguration.Builder().fetchSize(fetchSize).build();
+        final QueryRunner queryRunner = new QueryRunner(configuration);
+        try (Connection connection = dataSource.getConnection()) {
+            final boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                final int rows = queryRunner.query(connection, sql, rangeHandler, range[0], range[1]);
+                if (autoCommit) {
+                    connection.commit();
+                }
+                return rows;
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for the work on a range to complete.
+     *
+     * @param future the pending work on the range
+     * @param <T>    the type of the result of the work
+     * @return the result of the work (for example, the number of rows read)
+     * @throws SQLException on failure of the work, or on interruption while waiting
+     */
+    static <T> T await(final Future<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new SQLException(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,523 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.addon.key.PrefetchedKeyServices;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Business logic for re-encrypting the Ionic-protected columns of a table in place, for example after a change to
+ * the Ionic attributes of a column, or to rotate the keys protecting existing data.
+ * <p>
+ * The table is split into ranges of an integer key column (typically the primary key), as with
+ * {@link PartitionedTableReader}; ranges are processed concurrently, each on its own connection.  Within a range,
+ * rows are read in key order, in batches.  The keys protecting a batch are fetched using a single server request,
+ * the protected cells are decrypted, and the batch is written back using {@link IonicBatchWriter}, which creates
+ * the new keys using a single server request and updates the rows using a batched <code>UPDATE</code>.  Values of
+ * the configured attribute columns (for example, a record department) are applied to each protected cell of the
+ * row, as row-specific attributes.
+ * <p>
+ * Cells that are not Ionic-protected, and cells that cannot be decrypted, are left unchanged.
+ * <p>
+ * Each row is written with an optimistic compare-and-set <code>UPDATE</code>: the row is updated only if each
+ * protected cell still holds the ciphertext read by the job, and each attribute cell still holds the value from
+ * which the new key attributes were bound.  A row modified by a concurrent writer after it was read is left as the
+ * concurrent writer left it, and counted as conflicted; the progress of the job moves past it, so a concurrent
+ * writer is expected to protect the data it writes with current attributes.  Concurrent writers are never
+ * overwritten.
+ * <p>
+ * Progress is recorded in the {@link #CHECKPOINT_TABLE} table (created on first use), in the same transaction as
+ * each batch of updates.  Running a job again with the same job identifier resumes each range after the last
+ * committed batch, using the ranges recorded on the first run; a completed job does nothing when run again.  The
+ * job may be throttled to a target rate of rows per second, shared across all ranges.
+ * <p>
+ * If the table has an {@link AccessFingerprint#COLUMN} column, it is updated along with each re-encrypted row, so
+ * that {@link AccessFilter} reflects the new attributes.  A row whose protected cells were all re-encrypted is
+ * given the fingerprint of the new cells.  The fingerprint of a row holding a protected cell that could not be
+ * decrypted cannot be computed without that cell's attributes, so it is set to null, leaving {@link AccessFilter}
+ * to check the row's cells individually.
+ * <p>
+ * Instances are thread safe, if the key source is.
+ */
+public class RekeyJob {
+
+    /**
+     * The table, columns and batching of the job.
+     */
+    private final TableScan scan;
+
+    /**
+     * Ionic key source, used to unprotect existing data and to protect the re-encrypted data.
+     */
+    private final KeyServices agent;
+
+    /**
+     * The identifier of the job, under which progress is recorded.
+     */
+    private final String jobId;
+
+    /**
+     * The worker threads on which ranges are processed.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The number of rows updated, counted as each batch is committed.
+     */
+    private final AtomicLong rowsUpdated;
+
+    /**
+     * The number of cells re-encrypted, counted as each batch is committed.
+     */
+    private final AtomicLong cellsUpdated;
+
+    /**
+     * The number of protected cells left unchanged, as they could not be decrypted, counted as each batch is
+     * committed.
+     */
+    private final AtomicLong cellsSkipped;
+
+    /**
+     * The number of rows left unchanged, as they were modified concurrently after being read, counted as each batch
+     * is committed.
+     */
+    private final AtomicLong rowsConflicted;
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource       the source of the database connections on which ranges are processed
+     * @param agent            Ionic key source, used to unprotect existing data and protect re-encrypted data; must
+     *                         be thread safe
+     * @param table            the name of the table
+     * @param keyColumn        the name of the integer column by which rows are identified (typically the primary key)
+     * @param ionicAttributes  the Ionic attributes with which each protected column is re-encrypted, indexed by column
+     *                         name
+     * @param attributeColumns the names of the columns whose values are applied to each protected cell of a row as
+     *                         row-specific attributes (for example, "department"); may be empty
+     * @param jobId            the identifier of the job, under which progress is recorded
+     * @param partitions       the number of ranges into which the table is divided on the first run of the job
+     * @param executor         the worker threads on which ranges are processed; not shut down by this job
+     * @param batchSize        the number of rows re-encrypted in each batch (and each transaction)
+     * @param rowsPerSecond    the target rate at which rows are processed, across all ranges; zero for no limit
+     */
+    public RekeyJob(final DataSource dataSource, final KeyServices agent, final String table,
+                    final String keyColumn, final Map<String, KeyAttributesMap> ionicAttributes,
+                    final List<String> attributeColumns, final String jobId, final int partitions,
+                    final ExecutorService executor, final int batchSize, final int rowsPerSecond) {
+        this.scan = new TableScan(dataSource, table, keyColumn, ionicAttributes, attributeColumns, partitions,
+                batchSize, rowsPerSecond);
+        this.agent = agent;
+        this.jobId = jobId;
+        this.executor = executor;
+        this.rowsUpdated = new AtomicLong();
+        this.cellsUpdated = new AtomicLong();
+        this.cellsSkipped = new AtomicLong();
+        this.rowsConflicted = new AtomicLong();
+    }
+
+    /**
+     * @return the number of rows updated by this instance
+     */
+    public long getRowsUpdated() {
+        return rowsUpdated.get();
+    }
+
+    /**
+     * @return the number of cells re-encrypted by this instance
+     */
+    public long getCellsUpdated() {
+        return cellsUpdated.get();
+    }
+
+    /**
+     * @return the number of protected cells left unchanged by this instance, as they could not be decrypted
+     */
+    public long getCellsSkipped() {
+        return cellsSkipped.get();
+    }
+
+    /**
+     * @return the number of rows left unchanged by this instance, as they were modified concurrently after being read
+     */
+    public long getRowsConflicted() {
+        return rowsConflicted.get();
+    }
+
+    /**
+     * Run the job to completion, resuming from the recorded progress of any earlier run.
+     *
+     * @return the number of rows updated by this run
+     * @throws SQLException on failure to access the database, or on failure to protect or unprotect data; progress
+     *                      up to the last committed batch of each range is retained
+     */
+    public long run() throws SQLException {
+        final List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        long rows = 0L;
+        try {
+            for (final long[] checkpoint : getCheckpoints()) {
+                if (checkpoint[2] < checkpoint[1]) {
+                    futures.add(executor.submit(new Callable<Long>() {
+                        @Override
+                        public Long call() throws SQLException {
+                            return rekeyRange(checkpoint);
+                        }
+                    }));
+                }
+            }
+            for (Future<Long> future : futures) {
+                rows += PartitionedTableReader.await(future);
+            }
+        } finally {
+            for (Future<Long> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Read the recorded progress of the job, first dividing the table into ranges if the job has not run before.
+     *
+     * @return the inclusive lower and upper bound of each range, and the key of the last row processed in the range
+     * @throws SQLException on failure to access the database
+     */
+    private List<long[]> getCheckpoints() throws SQLException {
+        final String sqlSelect = String.format(
+                "SELECT range_start, range_end, last_key FROM %s WHERE job_id = ? ORDER BY range_start",
+                CHECKPOINT_TABLE);
+        final ResultSetHandler<List<long[]>> handler = new ResultSetHandler<List<long[]>>() {
+            @Override
+            public List<long[]> handle(final ResultSet resultSet) throws SQLException {
+                final List<long[]> checkpoints = new ArrayList<long[]>();
+                while (resultSet.next()) {
+                    checkpoints.add(new long[]{resultSet.getLong(1), resultSet.getLong(2), resultSet.getLong(3)});
+                }
+                return checkpoints;
+            }
+        };
+        final QueryRunner queryRunner = new QueryRunner();
+        try (Connection connection = scan.getDataSource().getConnection()) {
+            createCheckpointTable(connection);
+            final List<long[]> checkpoints = queryRunner.query(connection, sqlSelect, handler, jobId);
+            if (checkpoints.isEmpty()) {
+                final String sqlInsert = String.format(
+                        "INSERT INTO %s (job_id, range_start, range_end, last_key) VALUES (?, ?, ?, ?)",
+                        CHECKPOINT_TABLE);
+                for (long[] range : scan.getRanges()) {
+                    final long[] checkpoint = {range[0], range[1], range[0] - 1};
+                    queryRunner.update(connection, sqlInsert, jobId, checkpoint[0], checkpoint[1], checkpoint[2]);
+                    checkpoints.add(checkpoint);
+                }
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+            }
+            return checkpoints;
+        }
+    }
+
+    /**
+     * Create the checkpoint table, if it does not already exist.
+     *
+     * @param connection the database connection
+     * @throws SQLException on failure to access the database
+     */
+    private static void createCheckpointTable(final Connection connection) throws SQLException {
+        final DatabaseMetaData metaData = connection.getMetaData();
+        final Set<String> names = new LinkedHashSet<String>(Arrays.asList(CHECKPOINT_TABLE,
+                CHECKPOINT_TABLE.toUpperCase(Locale.ROOT), CHECKPOINT_TABLE.toLowerCase(Locale.ROOT)));
+        for (String name : names) {
+            try (ResultSet resultSet = metaData.getTables(null, null, name, null)) {
+                if (resultSet.next()) {
+                    return;
+                }
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(String.format("CREATE TABLE %s (job_id VARCHAR(64) NOT NULL, "
+                    + "range_start BIGINT NOT NULL, range_end BIGINT NOT NULL, last_key BIGINT NOT NULL, "
+                    + "PRIMARY KEY (job_id, range_start))", CHECKPOINT_TABLE));
+        }
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Re-encrypt the rows of a range, on a connection of its own, committing each batch with its checkpoint.
+     *
+     * @param checkpoint the inclusive lower and upper bound of the range, and the key of the last row processed
+     * @return the number of rows updated
+     * @throws SQLException on failure to access the database, or on failure to protect or unprotect data
+     */
+    private long rekeyRange(final long[] checkpoint) throws SQLException {
+        final String sqlCheckpoint = String.format(
+                "UPDATE %s SET last_key = ? WHERE job_id = ? AND range_start = ?", CHECKPOINT_TABLE);
+        long rows = 0L;
+        try (Connection connection = scan.getDataSource().getConnection()) {
+            final boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            final boolean fingerprint = scan.hasColumn(connection, AccessFingerprint.COLUMN);
+            final Map<BitSet, IonicBatchWriter> writers = new HashMap<BitSet, IonicBatchWriter>();
+            boolean done = false;
+            try (PreparedStatement statementSelect = scan.prepareSelect(connection);
+                 PreparedStatement statementCheckpoint = connection.prepareStatement(sqlCheckpoint)) {
+                long position = checkpoint[2];
+                while (position < checkpoint[1]) {
+                    final List<Object[]> batch = scan.readBatch(statementSelect, position, checkpoint[1]);
+                    final BatchCounts counts = rekeyBatch(batch, connection, writers, fingerprint);
+                    position = scan.getPosition(batch, checkpoint[1]);
+                    statementCheckpoint.setLong(1, position);
+                    statementCheckpoint.setString(2, jobId);
+                    statementCheckpoint.setLong(3, checkpoint[0]);
+                    statementCheckpoint.executeUpdate();
+                    connection.commit();
+                    rowsUpdated.addAndGet(counts.rows);
+                    cellsUpdated.addAndGet(counts.cells);
+                    cellsSkipped.addAndGet(counts.cellsSkipped);
+                    rowsConflicted.addAndGet(counts.rowsConflicted);
+                    rows += counts.rows;
+                }
+                done = true;
+            } catch (IonicException e) {
+                connection.rollback();
+                throw new SQLException(e);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                try {
+                    TableScan.closeWriters(writers.values(), !done);
+                } finally {
+                    if (autoCommit) {
+                        connection.setAutoCommit(true);
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Decrypt the protected cells of a batch of rows, and write them back re-encrypted, using compare-and-set
+     * updates.  Rows are grouped by the shape of their update (the columns re-encrypted, the protected and attribute
+     * cells that are null, and whether the writer computes the fingerprint), each group being written by its own
+     * statement.
+     *
+     * @param batch       the key, the protected cells and the attribute cells of each row
+     * @param connection  the database connection of the range
+     * @param writers     the writer of each group of rows, indexed by the shape of its updates; writers are created
+     *                    as needed
+     * @param fingerprint true if the table has an {@link AccessFingerprint#COLUMN} column
+     * @return the counts of the batch, to be added to the totals of the job once the batch is committed
+     * @throws SQLException   on failure to write to the database
+     * @throws IonicException on failure to fetch the keys of the batch, or to protect data
+     */
+    private BatchCounts rekeyBatch(final List<Object[]> batch, final Connection connection,
+                                   final Map<BitSet, IonicBatchWriter> writers, final boolean fingerprint)
+            throws SQLException, IonicException {
+        final int ionicCount = scan.getIonicColumns().size();
+        final Set<String> keyIds = new LinkedHashSet<String>();
+        for (Object[] row : batch) {
+            for (int i = 0; i < ionicCount; ++i) {
+                final String keyId = ChunkDetector.getKeyId(scan.getIonicCell(row, i));
+                if (keyId != null) {
+                    keyIds.add(keyId);
+                }
+            }
+        }
+        final PrefetchedKeyServices keyServices = new PrefetchedKeyServices(agent);
+        keyServices.prefetch(keyIds);
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServices);
+        final BatchCounts counts = new BatchCounts();
+        final Map<IonicBatchWriter, Long> rowsAffected = new HashMap<IonicBatchWriter, Long>();
+        final Map<IonicBatchWriter, Integer> cellsPerRow = new HashMap<IonicBatchWriter, Integer>();
+        long rowsWritten = 0L;
+        for (Object[] row : batch) {
+            // bits: the re-encrypted columns, then the null protected cells, then whether the writer computes the
+            // fingerprint, then the null attribute cells
+            final BitSet shape = new BitSet();
+            final List<Object> plaintexts = new ArrayList<Object>(ionicCount);
+            final List<Object> ciphertexts = new ArrayList<Object>(ionicCount);
+            boolean complete = true;
+            for (int i = 0; i < ionicCount; ++i) {
+                final String value = scan.getIonicCell(row, i);
+                if (value == null) {
+                    shape.set(ionicCount + i);
+                    continue;
+                }
+                ciphertexts.add(value);
+                final String plaintext = decrypt(value, keyServices, chunkCipher, counts);
+                if (plaintext != null) {
+                    shape.set(i);
+                    plaintexts.add(plaintext);
+                } else if (ChunkDetector.getKeyId(value) != null) {
+                    complete = false;
+                }
+            }
+            if (plaintexts.isEmpty()) {
+                continue;
+            }
+            shape.set(ionicCount * 2, fingerprint && complete);
+            scan.setAttributeNulls(row, shape, (ionicCount * 2) + 1);
+            final IonicBatchWriter writer = getWriter(shape, connection, writers, fingerprint);
+            if (!rowsAffected.containsKey(writer)) {
+                rowsAffected.put(writer, writer.getRowsAffected());
+                cellsPerRow.put(writer, plaintexts.size());
+            }
+            // parameters: the new value of each re-encrypted cell (and of the fingerprint), the row key, the expected
+            // value of each non-null protected cell and attribute cell
+            final List<Object> values = new ArrayList<Object>(plaintexts);
+            if (shape.get(ionicCount * 2)) {
+                values.add(null);
+            }
+            values.add(row[0]);
+            values.addAll(ciphertexts);
+            scan.addAttributeValues(row, values);
+            writer.addRow(values.toArray(), scan.getRowAttributes(row));
+            ++rowsWritten;
+        }
+        for (Map.Entry<IonicBatchWriter, Long> entry : rowsAffected.entrySet()) {
+            entry.getKey().flush();
+            final long rowsUpdatedWriter = entry.getKey().getRowsAffected() - entry.getValue();
+            counts.rows += rowsUpdatedWriter;
+            counts.cells += rowsUpdatedWriter * cellsPerRow.get(entry.getKey());
+        }
+        counts.rowsConflicted = rowsWritten - counts.rows;
+        return counts;
+    }
+
+    /**
+     * @param shape       the shape of the updates of a group of rows, as built by
+     *                    {@link #rekeyBatch(List, Connection, Map, boolean)}
+     * @param connection  the database connection of the range
+     * @param writers     the writer of each group of rows, indexed by the shape of its updates
+     * @param fingerprint true if the table has an {@link AccessFingerprint#COLUMN} column
+     * @return the writer of the group, created if necessary
+     * @throws SQLException on failure to prepare the update statement
+     */
+    private IonicBatchWriter getWriter(final BitSet shape, final Connection connection,
+                                       final Map<BitSet, IonicBatchWriter> writers, final boolean fingerprint)
+            throws SQLException {
+        IonicBatchWriter writer = writers.get(shape);
+        if (writer == null) {
+            final List<String> ionicColumns = scan.getIonicColumns();
+            final List<String> columns = new ArrayList<String>();
+            final StringBuilder set = new StringBuilder();
+            for (int i = 0; i < ionicColumns.size(); ++i) {
+                if (shape.get(i)) {
+                    columns.add(ionicColumns.get(i));
+                    set.append((set.length() == 0) ? "" : ", ").append(ionicColumns.get(i)).append(" = ?");
+                }
+            }
+            if (shape.get(ionicColumns.size() * 2)) {
+                columns.add(AccessFingerprint.COLUMN);
+                set.append(", ").append(AccessFingerprint.COLUMN).append(" = ?");
+            } else if (fingerprint) {
+                set.append(", ").append(AccessFingerprint.COLUMN).append(" = NULL");
+            }
+            columns.add(scan.getKeyColumn());
+            // the expected values are compared as written, so are given labels matching no protected column
+            final StringBuilder where = new StringBuilder();
+            for (int i = 0; i < ionicColumns.size(); ++i) {
+                where.append(" AND ").append(ionicColumns.get(i));
+                if (shape.get(ionicColumns.size() + i)) {
+                    where.append(" IS NULL");
+                } else {
+                    where.append(" = ?");
+                    columns.add("");
+                }
+            }
+            scan.appendAttributeConditions(shape, (ionicColumns.size() * 2) + 1, where, columns);
+            final String sql = String.format("UPDATE %s SET %s WHERE %s = ?%s",
+                    scan.getTable(), set, scan.getKeyColumn(), where);
+            writer = new IonicBatchWriter(agent, connection, sql, columns, scan.getIonicAttributes(),
+                    scan.getBatchSize(), 0);
+            writers.put(shape, writer);
+        }
+        return writer;
+    }
+
+    /**
+     * @param value       the text of a protected cell
+     * @param keyServices the keys fetched for the batch
+     * @param chunkCipher the Ionic cipher used to decrypt the cell
+     * @param counts      the counts of the batch, to which a skipped cell is added
+     * @return the plaintext of the cell; or null if the cell is not Ionic-protected or cannot be decrypted
+     */
+    private static String decrypt(final String value, final PrefetchedKeyServices keyServices,
+                                  final ChunkCipherV2 chunkCipher, final BatchCounts counts) {
+        final String keyId = ChunkDetector.getKeyId(value);
+        if (keyId == null) {
+            return null;
+        }
+        if (keyServices.isDenied(keyId)) {
+            ++counts.cellsSkipped;
+            return null;
+        }
+        try {
+            return chunkCipher.decrypt(value);
+        } catch (IonicException e) {
+            ++counts.cellsSkipped;
+            return null;
+        }
+    }
+
+    /**
+     * The counts of a batch, added to the totals of the job once the batch is committed.
+     */
+    private static final class BatchCounts {
+
+        /**
+         * The number of rows updated.
+         */
+        private long rows;
+
+        /**
+         * The number of cells re-encrypted, in the rows updated.
+         */
+        private long cells;
+
+        /**
+         * The number of protected cells left unchanged, as they could not be decrypted.
+         */
+        private long cellsSkipped;
+
+        /**
+         * The number of rows left unchanged, as they were modified concurrently after being read.
+         */
+        private long rowsConflicted;
+    }
+
+    /**
+     * The name of the table in which the progress of re-encryption jobs is recorded.
+     */
+    public static final String CHECKPOINT_TABLE = "ionic_rekey_checkpoint";
+}
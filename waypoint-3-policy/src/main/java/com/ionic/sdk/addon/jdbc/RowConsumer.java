@@ -0,0 +1,18 @@
+package com.ionic.sdk.addon.jdbc;
+
+import java.sql.SQLException;
+
+/**
+ * Recipient of the rows of a {@link java.sql.ResultSet}, as they are loaded and transformed by this sample
+ * application.
+ */
+public interface RowConsumer {
+
+    /**
+     * Accept a single row of data.  The consumer takes ownership of the array.
+     *
+     * @param row the (Ionic-decrypted) data of one row
+     * @throws SQLException on failure to process the row
+     */
+    void accept(Object[] row) throws SQLException;
+}
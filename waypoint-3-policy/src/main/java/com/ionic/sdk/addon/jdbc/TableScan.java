@@ -0,0 +1,356 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.addon.key.AttributeTemplate;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The table, columns and batching of a job rewriting the protected columns of a table in place, range by range (see
+ * {@link RekeyJob} and {@link MigrationJob}).
+ * <p>
+ * The table is split into ranges of an integer key column, as with {@link PartitionedTableReader}.  Within a range,
+ * rows are read in key order, in batches, at a rate limited across all ranges.  Each row read is an array holding
+ * the key, then the cell of each protected column, then the cell of each attribute column.
+ * <p>
+ * Instances are thread safe.
+ */
+final class TableScan {
+
+    /**
+     * The source of the database connections on which ranges are processed.
+     */
+    private final DataSource dataSource;
+
+    /**
+     * The name of the table.
+     */
+    private final String table;
+
+    /**
+     * The name of the integer column by which rows are identified and the table is partitioned.
+     */
+    private final String keyColumn;
+
+    /**
+     * The names of the Ionic-protected columns.
+     */
+    private final List<String> ionicColumns;
+
+    /**
+     * The Ionic attributes with which each protected column is encrypted, indexed by column name; a column without
+     * attributes maps to an empty attribute set.
+     */
+    private final Map<String, KeyAttributesMap> ionicAttributes;
+
+    /**
+     * The names of the columns whose values are applied to each protected cell of a row as row-specific attributes.
+     */
+    private final List<String> attributeColumns;
+
+    /**
+     * The template binding the values of the attribute columns of a row.
+     */
+    private final AttributeTemplate rowTemplate;
+
+    /**
+     * The number of ranges into which the table is divided.
+     */
+    private final int partitions;
+
+    /**
+     * The number of rows read in each batch.
+     */
+    private final int batchSize;
+
+    /**
+     * The limiter of the rate at which rows are read, across all ranges.
+     */
+    private final Throttle throttle;
+
+    /**
+     * The statement reading the next batch of rows of a range.
+     */
+    private final String sqlSelect;
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource       the source of the database connections on which ranges are processed
+     * @param table            the name of the table
+     * @param keyColumn        the name of the integer column by which rows are identified (typically the primary key)
+     * @param ionicAttributes  the Ionic attributes with which each protected column is encrypted, indexed by column
+     *                         name
+     * @param attributeColumns the names of the columns whose values are applied to each protected cell of a row as
+     *                         row-specific attributes; may be empty
+     * @param partitions       the number of ranges into which the table is divided
+     * @param batchSize        the number of rows read in each batch
+     * @param rowsPerSecond    the target rate at which rows are read, across all ranges; zero for no limit
+     */
+    TableScan(final DataSource dataSource, final String table, final String keyColumn,
+              final Map<String, KeyAttributesMap> ionicAttributes, final List<String> attributeColumns,
+              final int partitions, final int batchSize, final int rowsPerSecond) {
+        this.dataSource = dataSource;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.ionicColumns = Collections.unmodifiableList(new ArrayList<String>(ionicAttributes.keySet()));
+        final Map<String, KeyAttributesMap> attributes = new LinkedHashMap<String, KeyAttributesMap>();
+        for (Map.Entry<String, KeyAttributesMap> entry : ionicAttributes.entrySet()) {
+            attributes.put(entry.getKey(), (entry.getValue() == null) ? new KeyAttributesMap() : entry.getValue());
+        }
+        this.ionicAttributes = Collections.unmodifiableMap(attributes);
+        this.attributeColumns = Collections.unmodifiableList(new ArrayList<String>(attributeColumns));
+        this.rowTemplate = new AttributeTemplate(null, attributeColumns.toArray(new String[0]));
+        this.partitions = Math.max(1, partitions);
+        this.batchSize = Math.max(1, batchSize);
+        this.throttle = new Throttle(rowsPerSecond);
+        final StringBuilder select = new StringBuilder("SELECT ").append(keyColumn);
+        for (String column : ionicColumns) {
+            select.append(", ").append(column);
+        }
+        for (String column : attributeColumns) {
+            select.append(", ").append(column);
+        }
+        select.append(String.format(" FROM %s WHERE %s > ? AND %s <= ? ORDER BY %s",
+                table, keyColumn, keyColumn, keyColumn));
+        this.sqlSelect = select.toString();
+    }
+
+    /**
+     * @return the source of the database connections on which ranges are processed
+     */
+    DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * @return the name of the table
+     */
+    String getTable() {
+        return table;
+    }
+
+    /**
+     * @return the name of the integer column by which rows are identified
+     */
+    String getKeyColumn() {
+        return keyColumn;
+    }
+
+    /**
+     * @return the names of the Ionic-protected columns
+     */
+    List<String> getIonicColumns() {
+        return ionicColumns;
+    }
+
+    /**
+     * @return the Ionic attributes with which each protected column is encrypted, indexed by column name
+     */
+    Map<String, KeyAttributesMap> getIonicAttributes() {
+        return ionicAttributes;
+    }
+
+    /**
+     * @return the number of rows read in each batch
+     */
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param connection a database connection
+     * @param column     the name of a column
+     * @return true if the table has a column of the given name (ignoring case)
+     * @throws SQLException on failure to read the table metadata
+     */
+    boolean hasColumn(final Connection connection, final String column) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(String.format("SELECT * FROM %s WHERE 1 = 0", table))) {
+            final ResultSetMetaData metaData = resultSet.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); ++i) {
+                if (column.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Divide the table into ranges of the key column.
+     *
+     * @return the inclusive lower and upper bound of each range
+     * @throws SQLException on failure to access the database
+     */
+    List<long[]> getRanges() throws SQLException {
+        return PartitionedTableReader.getRanges(dataSource, table, keyColumn, partitions);
+    }
+
+    /**
+     * @param connection the database connection of a range
+     * @return the statement reading the next batch of rows of a range, to be passed to
+     * {@link #readBatch(PreparedStatement, long, long)}
+     * @throws SQLException on failure to prepare the statement
+     */
+    PreparedStatement prepareSelect(final Connection connection) throws SQLException {
+        final PreparedStatement statement = connection.prepareStatement(sqlSelect);
+        statement.setMaxRows(batchSize);
+        return statement;
+    }
+
+    /**
+     * Read the next batch of rows of a range, once the rate limit permits.
+     *
+     * @param statement the statement returned by {@link #prepareSelect(Connection)}
+     * @param position  the key of the last row processed in the range
+     * @param end       the inclusive upper bound of the range
+     * @return the key, the protected cells and the attribute cells of each row, in key order
+     * @throws SQLException on failure to read from the database
+     */
+    List<Object[]> readBatch(final PreparedStatement statement, final long position, final long end)
+            throws SQLException {
+        final int columnCount = 1 + ionicColumns.size() + attributeColumns.size();
+        final List<Object[]> batch = new ArrayList<Object[]>(batchSize);
+        statement.setLong(1, position);
+        statement.setLong(2, end);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                final Object[] row = new Object[columnCount];
+                row[0] = resultSet.getLong(1);
+                for (int i = 1; i < columnCount; ++i) {
+                    row[i] = resultSet.getString(i + 1);
+                }
+                batch.add(row);
+            }
+        }
+        throttle.acquire(batch.size());
+        return batch;
+    }
+
+    /**
+     * @param batch the batch of rows most recently read from a range
+     * @param end   the inclusive upper bound of the range
+     * @return the key of the last row processed in the range, once the batch is processed
+     */
+    long getPosition(final List<Object[]> batch, final long end) {
+        return (batch.size() < batchSize) ? end : (Long) batch.get(batch.size() - 1)[0];
+    }
+
+    /**
+     * @param row    a row read by {@link #readBatch(PreparedStatement, long, long)}
+     * @param column the (zero-based) index of a protected column
+     * @return the text of the protected cell
+     */
+    String getIonicCell(final Object[] row, final int column) {
+        return (String) row[1 + column];
+    }
+
+    /**
+     * Record which attribute cells of a row are null, as part of the shape of its compare-and-set update (see
+     * {@link #appendAttributeConditions(BitSet, int, StringBuilder, List)}).
+     *
+     * @param row    a row read by {@link #readBatch(PreparedStatement, long, long)}
+     * @param shape  the shape of the update of the row, in which the bit of each null attribute cell is set
+     * @param offset the index of the bit of the first attribute column
+     */
+    void setAttributeNulls(final Object[] row, final BitSet shape, final int offset) {
+        for (int i = 0; i < attributeColumns.size(); ++i) {
+            shape.set(offset + i, row[1 + ionicColumns.size() + i] == null);
+        }
+    }
+
+    /**
+     * Append to the <code>WHERE</code> clause of a compare-and-set update a condition on each attribute column, so
+     * that a row is updated only if its attribute cells still hold the values from which the attributes of its keys
+     * were bound.
+     *
+     * @param shape   the shape of the updates of a group of rows
+     * @param offset  the index of the bit of the first attribute column, set if the attribute cells are null
+     * @param where   the <code>WHERE</code> clause, to which the conditions are appended
+     * @param columns the labels of the statement parameters, to which an unprotected label is appended for each
+     *                expected value
+     */
+    void appendAttributeConditions(final BitSet shape, final int offset, final StringBuilder where,
+                                   final List<String> columns) {
+        for (int i = 0; i < attributeColumns.size(); ++i) {
+            where.append(" AND ").append(attributeColumns.get(i));
+            if (shape.get(offset + i)) {
+                where.append(" IS NULL");
+            } else {
+                where.append(" = ?");
+                columns.add("");
+            }
+        }
+    }
+
+    /**
+     * @param row    a row read by {@link #readBatch(PreparedStatement, long, long)}
+     * @param values the parameters of the compare-and-set update of the row, to which the expected value of each
+     *               non-null attribute cell is appended
+     */
+    void addAttributeValues(final Object[] row, final List<Object> values) {
+        for (int i = 0; i < attributeColumns.size(); ++i) {
+            final Object value = row[1 + ionicColumns.size() + i];
+            if (value != null) {
+                values.add(value);
+            }
+        }
+    }
+
+    /**
+     * Release the writers of a range.
+     *
+     * @param writers the writers of the range
+     * @param discard true if the transaction of the range is abandoned, in which case any rows buffered by the
+     *                writers are discarded, and failures to release the writers are ignored in favor of the original
+     *                failure
+     * @throws SQLException on failure to release a writer
+     */
+    static void closeWriters(final Collection<IonicBatchWriter> writers, final boolean discard)
+            throws SQLException {
+        SQLException failure = null;
+        for (IonicBatchWriter writer : writers) {
+            try {
+                if (discard) {
+                    writer.abort();
+                }
+                writer.close();
+            } catch (IonicException e) {
+                failure = (failure == null) ? new SQLException(e) : failure;
+            } catch (SQLException e) {
+                failure = (failure == null) ? e : failure;
+            }
+        }
+        if ((failure != null) && !discard) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @param row a row read by {@link #readBatch(PreparedStatement, long, long)}
+     * @return the row-specific attributes of the row, bound from the values of its attribute columns
+     * @throws IonicException on failure to bind the attributes
+     */
+    KeyAttributesMap getRowAttributes(final Object[] row) throws IonicException {
+        final String[] attributeValues = new String[attributeColumns.size()];
+        for (int i = 0; i < attributeValues.length; ++i) {
+            attributeValues[i] = (String) row[1 + ionicColumns.size() + i];
+        }
+        return rowTemplate.bind(attributeValues);
+    }
+}
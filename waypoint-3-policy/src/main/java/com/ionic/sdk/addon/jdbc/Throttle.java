@@ -0,0 +1,58 @@
+package com.ionic.sdk.addon.jdbc;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limiter of the rate at which rows are processed, shared by the workers of a job.  Each caller reserves the next
+ * interval of time for its rows, and waits for the interval to begin.
+ * <p>
+ * Instances are thread safe.
+ */
+final class Throttle {
+
+    /**
+     * The interval in nanoseconds allotted to each row; zero for no limit.
+     */
+    private final long nanosPerRow;
+
+    /**
+     * The time (per {@link System#nanoTime()}) at which the next reservation begins.  Guarded by this throttle.
+     */
+    private long next;
+
+    /**
+     * Constructor.
+     *
+     * @param rowsPerSecond the target rate at which rows are processed; zero for no limit
+     */
+    Throttle(final int rowsPerSecond) {
+        this.nanosPerRow = (rowsPerSecond > 0) ? (TimeUnit.SECONDS.toNanos(1L) / rowsPerSecond) : 0L;
+        this.next = System.nanoTime();
+    }
+
+    /**
+     * Wait until the specified number of rows may be processed.
+     *
+     * @param rows the number of rows to be processed
+     * @throws SQLException on interruption while waiting
+     */
+    void acquire(final int rows) throws SQLException {
+        if (nanosPerRow == 0L) {
+            return;
+        }
+        final long wait;
+        synchronized (this) {
+            final long now = System.nanoTime();
+            final long start = (next - now > 0L) ? next : now;
+            next = start + rows * nanosPerRow;
+            wait = start - now;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ionic.sdk.addon.jdbc.driver;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+/**
+ * {@link DataSource} that applies the Ionic transformations to the connections of another data source.
+ * <p>
+ * The wrapped data source is typically a connection pool; connections are borrowed from (and, on
+ * {@link Connection#close()}, returned to) the pool unchanged, and only the statements and result sets obtained through
+ * them are wrapped.  The transformations are those described in {@link IonicDriver}.
+ * <p>
+ * Instances are thread safe if the wrapped data source is.
+ */
+public class IonicDataSource implements DataSource {
+
+    /**
+     * The wrapped data source.
+     */
+    private final DataSource dataSource;
+
+    /**
+     * The Ionic configuration applied to connections.
+     */
+    private final IonicJdbcContext context;
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource the wrapped data source
+     * @param context    the Ionic configuration applied to connections
+     */
+    public IonicDataSource(final DataSource dataSource, final IonicJdbcContext context) {
+        this.dataSource = dataSource;
+        this.context = context;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return IonicJdbcWrappers.wrap(dataSource.getConnection(), context);
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return IonicJdbcWrappers.wrap(dataSource.getConnection(username, password), context);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(final PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(final int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+    }
+}
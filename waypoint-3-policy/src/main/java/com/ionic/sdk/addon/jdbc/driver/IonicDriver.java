@@ -0,0 +1,141 @@
+package com.ionic.sdk.addon.jdbc.driver;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * JDBC {@link Driver} that applies the Ionic transformations to the connections of another driver.
+ * <p>
+ * URLs of the form <code>jdbc:ionic:&lt;subprotocol&gt;:...</code> are accepted; the connection is opened by the
+ * driver registered for <code>jdbc:&lt;subprotocol&gt;:...</code> (for example, <code>jdbc:ionic:postgresql://host/db
+ * </code> is opened by the PostgreSQL driver).  Values read from protected columns through
+ * {@link java.sql.ResultSet#getString(int)} and {@link java.sql.ResultSet#getObject(int)} are decrypted, and values
+ * bound to parameters written to protected columns are encrypted, so that code unaware of Ionic (an ORM, a
+ * connection pool) reads and writes plaintext.
+ * <p>
+ * The Ionic configuration is supplied by the application, using {@link #setContext(String, IonicJdbcContext)},
+ * before the first connection is opened.  A configuration is registered for a URL prefix (for example,
+ * <code>jdbc:ionic:postgresql://host/db</code>), and applies to the connections opened for URLs starting with the
+ * prefix; where several registered prefixes match, the longest applies.  Applications (or databases) within one JVM
+ * may therefore use different configurations.  A URL matching no registered prefix is refused.  To apply a
+ * configuration to connections obtained from a {@link javax.sql.DataSource} instead, use {@link IonicDataSource}.
+ * <p>
+ * Each protected cell is decrypted (or encrypted) using an individual key request; use
+ * {@link com.ionic.sdk.addon.key.CachingKeyServices} to serve repeated requests from memory, and
+ * {@link com.ionic.sdk.addon.jdbc.IonicBatchWriter} for bulk inserts.
+ */
+public class IonicDriver implements Driver {
+
+    /**
+     * The Ionic configuration applied to new connections, indexed by URL prefix.
+     */
+    private static final ConcurrentMap<String, IonicJdbcContext> CONTEXTS =
+            new ConcurrentHashMap<String, IonicJdbcContext>();
+
+    static {
+        try {
+            DriverManager.registerDriver(new IonicDriver());
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Set the Ionic configuration applied to connections subsequently opened by this driver for the URLs starting
+     * with a prefix.
+     *
+     * @param urlPrefix    the prefix of the Ionic JDBC URLs to which the configuration applies
+     * @param ionicContext the Ionic configuration; null to remove the configuration of the prefix
+     */
+    public static void setContext(final String urlPrefix, final IonicJdbcContext ionicContext) {
+        if (ionicContext == null) {
+            CONTEXTS.remove(urlPrefix);
+        } else {
+            CONTEXTS.put(urlPrefix, ionicContext);
+        }
+    }
+
+    /**
+     * @param url an Ionic JDBC URL
+     * @return the Ionic configuration registered for the longest prefix of the URL, or null if none
+     */
+    private static IonicJdbcContext getContext(final String url) {
+        String prefix = null;
+        IonicJdbcContext ionicContext = null;
+        for (Map.Entry<String, IonicJdbcContext> entry : CONTEXTS.entrySet()) {
+            if (url.startsWith(entry.getKey()) && ((prefix == null) || (entry.getKey().length() > prefix.length()))) {
+                prefix = entry.getKey();
+                ionicContext = entry.getValue();
+            }
+        }
+        return ionicContext;
+    }
+
+    /**
+     * @param url a JDBC URL
+     * @return the URL of the wrapped driver, or null if the URL is not an Ionic JDBC URL
+     */
+    private static String toDelegateUrl(final String url) {
+        return ((url != null) && url.startsWith(URL_PREFIX)) ? ("jdbc:" + url.substring(URL_PREFIX.length())) : null;
+    }
+
+    @Override
+    public Connection connect(final String url, final Properties info) throws SQLException {
+        final String delegateUrl = toDelegateUrl(url);
+        if (delegateUrl == null) {
+            return null;
+        }
+        final IonicJdbcContext ionicContext = getContext(url);
+        if (ionicContext == null) {
+            throw new SQLException("No Ionic configuration set for the URL");
+        }
+        final Connection connection = DriverManager.getDriver(delegateUrl).connect(delegateUrl, info);
+        return (connection == null) ? null : IonicJdbcWrappers.wrap(connection, ionicContext);
+    }
+
+    @Override
+    public boolean acceptsURL(final String url) {
+        return toDelegateUrl(url) != null;
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(final String url, final Properties info) throws SQLException {
+        final String delegateUrl = toDelegateUrl(url);
+        return (delegateUrl == null)
+                ? new DriverPropertyInfo[0] : DriverManager.getDriver(delegateUrl).getPropertyInfo(delegateUrl, info);
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /**
+     * The prefix of the URLs accepted by this driver.
+     */
+    public static final String URL_PREFIX = "jdbc:ionic:";
+}
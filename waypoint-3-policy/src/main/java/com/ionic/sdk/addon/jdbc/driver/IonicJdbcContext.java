@@ -0,0 +1,184 @@
+package com.ionic.sdk.addon.jdbc.driver;
+
+import com.ionic.sdk.addon.jdbc.ChunkDetector;
+import com.ionic.sdk.addon.key.AgentPool;
+import com.ionic.sdk.addon.key.AttributeTemplate;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoEncryptAttributes;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The Ionic configuration applied to the connections of an {@link IonicDriver} or {@link IonicDataSource}: the key
+ * source, the Ionic-protected columns, and the Ionic attributes with which each protected column is encrypted.
+ * <p>
+ * Columns are matched by name, ignoring case, as in {@link com.ionic.sdk.addon.jdbc.ColumnPlan}.
+ * <p>
+ * Cells are encrypted and decrypted using an Ionic cipher bound to the calling thread, created on first use by the
+ * thread (or, for an {@link AgentPool} key source, the cipher of the pool bound to the thread), rather than one
+ * cipher per cell.
+ * <p>
+ * Instances are immutable, and may be shared across threads.
+ */
+public final class IonicJdbcContext {
+
+    /**
+     * Ionic key source, used to protect data on insert into database, and unprotect data on fetch from database.
+     */
+    private final KeyServices keyServices;
+
+    /**
+     * The Ionic attributes of each Ionic-protected column, indexed by normalized column name.
+     */
+    private final Map<String, AttributeTemplate> ionicAttributes;
+
+    /**
+     * True if rows in which no protected cell can be decrypted are skipped, as in
+     * {@link com.ionic.sdk.addon.jdbc.IonicResultSetHandler}.
+     */
+    private final boolean filterRows;
+
+    /**
+     * The Ionic cipher used by each thread to protect and unprotect data.
+     */
+    private final ThreadLocal<ChunkCipherV2> chunkCipher;
+
+    /**
+     * Constructor.  Protected columns are encrypted without attributes, and inaccessible rows are skipped.
+     *
+     * @param keyServices  Ionic key source, used to protect and unprotect data
+     * @param ionicColumns text labels of the database columns that are Ionic-protected at rest in the database
+     */
+    public IonicJdbcContext(final KeyServices keyServices, final Collection<String> ionicColumns) {
+        this(keyServices, toAttributes(ionicColumns), true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param keyServices     Ionic key source, used to protect and unprotect data
+     * @param ionicAttributes the Ionic attributes of each Ionic-protected column, indexed by column label
+     * @param filterRows      true if rows in which no protected cell can be decrypted should be skipped
+     */
+    public IonicJdbcContext(final KeyServices keyServices, final Map<String, KeyAttributesMap> ionicAttributes,
+                            final boolean filterRows) {
+        this.keyServices = keyServices;
+        final Map<String, AttributeTemplate> attributes = new HashMap<String, AttributeTemplate>();
+        for (Map.Entry<String, KeyAttributesMap> entry : ionicAttributes.entrySet()) {
+            attributes.put(normalize(entry.getKey()), new AttributeTemplate(entry.getValue()));
+        }
+        this.ionicAttributes = Collections.unmodifiableMap(attributes);
+        this.filterRows = filterRows;
+        this.chunkCipher = new ThreadLocal<ChunkCipherV2>() {
+            @Override
+            protected ChunkCipherV2 initialValue() {
+                return AgentPool.getChunkCipher(keyServices);
+            }
+        };
+    }
+
+    /**
+     * @return Ionic key source, used to protect and unprotect data
+     */
+    public KeyServices getKeyServices() {
+        return keyServices;
+    }
+
+    /**
+     * @return true if rows in which no protected cell can be decrypted are skipped
+     */
+    public boolean isFilterRows() {
+        return filterRows;
+    }
+
+    /**
+     * @return the normalized names of the Ionic-protected columns
+     */
+    public Set<String> getIonicColumns() {
+        return ionicAttributes.keySet();
+    }
+
+    /**
+     * @param column a column name or label
+     * @return true if the column is Ionic-protected
+     */
+    public boolean isIonic(final String column) {
+        return (column != null) && ionicAttributes.containsKey(normalize(column));
+    }
+
+    /**
+     * Decrypt the value of a protected cell.
+     *
+     * @param value the text of the cell, as stored in the database
+     * @return the plaintext of the cell; the cell text if it is not Ionic-protected; or "[RESTRICTED]" if the cell
+     * cannot be decrypted
+     */
+    public String decrypt(final String value) {
+        if (!ChunkDetector.isEncrypted(value)) {
+            return value;
+        }
+        try {
+            return chunkCipher.get().decrypt(value);
+        } catch (IonicException e) {
+            return RESTRICTED;
+        }
+    }
+
+    /**
+     * Encrypt a value to be stored in a protected column.
+     *
+     * @param column the name of the protected column
+     * @param value  the plaintext value
+     * @return the Ionic-protected text of the value
+     * @throws SQLException on failure to protect the value
+     */
+    public String encrypt(final String column, final Object value) throws SQLException {
+        final KeyAttributesMap attributes = ionicAttributes.get(normalize(column)).getAttributes();
+        try {
+            return chunkCipher.get().encrypt(
+                    value.toString(), new ChunkCryptoEncryptAttributes(attributes));
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * @param column a column name or label, possibly quoted or qualified
+     * @return the form of the name used for case-insensitive comparison
+     */
+    static String normalize(final String column) {
+        String name = column.trim();
+        name = name.substring(name.lastIndexOf('.') + 1);
+        if ((name.length() > 1) && name.startsWith("\"") && name.endsWith("\"")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param ionicColumns text labels of the Ionic-protected columns
+     * @return an empty attribute set for each column
+     */
+    private static Map<String, KeyAttributesMap> toAttributes(final Collection<String> ionicColumns) {
+        final Map<String, KeyAttributesMap> attributes = new LinkedHashMap<String, KeyAttributesMap>();
+        for (String ionicColumn : ionicColumns) {
+            attributes.put(ionicColumn, new KeyAttributesMap());
+        }
+        return attributes;
+    }
+
+    /**
+     * The value of a protected cell that cannot be decrypted.
+     */
+    static final String RESTRICTED = "[RESTRICTED]";
+}
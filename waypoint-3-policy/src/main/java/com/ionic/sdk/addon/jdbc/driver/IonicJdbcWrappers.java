@@ -0,0 +1,516 @@
+package com.ionic.sdk.addon.jdbc.driver;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Dynamic proxies applying the Ionic transformations of an {@link IonicJdbcContext} to the JDBC objects of a
+ * wrapped driver.
+ * <p>
+ * Each proxy forwards all calls to the wrapped object, except:
+ * <ul>
+ * <li>{@link Connection} methods creating statements, which return wrapped statements;</li>
+ * <li>{@link PreparedStatement} methods setting a parameter written to a protected column, which encrypt the
+ * value (setters of streams, large objects, bytes, or of objects with an explicit SQL type are rejected for such
+ * parameters, as their values cannot be protected; named {@link CallableStatement} parameter setters are rejected
+ * on statements writing a protected column, as their columns cannot be identified);</li>
+ * <li>{@link Statement} methods executing (or batching) SQL text, which reject statements writing to a protected
+ * column, as {@link SqlParameters} does for prepared statements;</li>
+ * <li>{@link Statement} methods returning a {@link ResultSet}, which return a wrapped result set;</li>
+ * <li>{@link ResultSet} getters reading a protected column as text, as a character stream or as an object, which
+ * decrypt the value (other getters are rejected for protected columns, as are <code>getObject</code> calls
+ * requesting a type other than text);</li>
+ * <li>{@link ResultSet} updaters writing a protected column, which encrypt the value, subject to the restrictions
+ * of the {@link PreparedStatement} setters;</li>
+ * <li>{@link ResultSet#next()}, which skips inaccessible rows if so configured.</li>
+ * </ul>
+ * No data is buffered by the proxies, so fetch size settings and connection pooling are unaffected.
+ */
+final class IonicJdbcWrappers {
+
+    /**
+     * Constructor.  Static methods only.
+     */
+    private IonicJdbcWrappers() {
+    }
+
+    /**
+     * Wrap a connection.
+     *
+     * @param connection the connection of the wrapped driver
+     * @param context    the Ionic configuration applied to the connection
+     * @return the wrapped connection
+     */
+    static Connection wrap(final Connection connection, final IonicJdbcContext context) {
+        return (Connection) newProxy(Connection.class, new ConnectionHandler(connection, context));
+    }
+
+    /**
+     * @param type    the interface implemented by the proxy
+     * @param handler the implementation of the proxy
+     * @return the proxy
+     */
+    private static Object newProxy(final Class<?> type, final Handler handler) {
+        final Object proxy = Proxy.newProxyInstance(IonicJdbcWrappers.class.getClassLoader(),
+                new Class<?>[]{type}, handler);
+        handler.proxy = proxy;
+        return proxy;
+    }
+
+    /**
+     * Base class of the proxy implementations, forwarding calls to the wrapped object.
+     */
+    private abstract static class Handler implements InvocationHandler {
+
+        /**
+         * The wrapped JDBC object.
+         */
+        final Object delegate;
+
+        /**
+         * The Ionic configuration.
+         */
+        final IonicJdbcContext context;
+
+        /**
+         * The proxy implemented by this handler.
+         */
+        Object proxy;
+
+        /**
+         * Constructor.
+         *
+         * @param delegate the wrapped JDBC object
+         * @param context  the Ionic configuration
+         */
+        Handler(final Object delegate, final IonicJdbcContext context) {
+            this.delegate = delegate;
+            this.context = context;
+        }
+
+        @Override
+        public Object invoke(final Object self, final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            if ("equals".equals(name) && (args != null) && (args.length == 1)) {
+                return self == args[0];
+            } else if ("hashCode".equals(name) && (args == null)) {
+                return System.identityHashCode(self);
+            } else {
+                return intercept(method, args);
+            }
+        }
+
+        /**
+         * Handle a call made through the proxy.
+         *
+         * @param method the called method
+         * @param args   the arguments of the call
+         * @return the result of the call
+         * @throws Throwable the exception thrown by the call
+         */
+        abstract Object intercept(Method method, Object[] args) throws Throwable;
+
+        /**
+         * Forward a call to the wrapped object.
+         *
+         * @param method the called method
+         * @param args   the arguments of the call
+         * @return the result of the call
+         * @throws Throwable the exception thrown by the call
+         */
+        final Object forward(final Method method, final Object[] args) throws Throwable {
+            try {
+                return method.invoke(delegate, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Wrap a result set produced by the wrapped object.
+         *
+         * @param resultSet the result set, or null
+         * @param statement the (wrapped) statement that produced the result set, or null
+         * @return the wrapped result set, or null
+         */
+        final ResultSet wrapResultSet(final Object resultSet, final Object statement) {
+            if (resultSet == null) {
+                return null;
+            }
+            return (ResultSet) newProxy(ResultSet.class,
+                    new ResultSetHandler((ResultSet) resultSet, context, statement));
+        }
+    }
+
+    /**
+     * The proxy implementation of {@link Connection}.
+     */
+    private static final class ConnectionHandler extends Handler {
+
+        /**
+         * Constructor.
+         *
+         * @param connection the wrapped connection
+         * @param context    the Ionic configuration
+         */
+        private ConnectionHandler(final Connection connection, final IonicJdbcContext context) {
+            super(connection, context);
+        }
+
+        @Override
+        Object intercept(final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            if ("createStatement".equals(name)) {
+                return newProxy(Statement.class, new StatementHandler(forward(method, args), context, proxy, null));
+            } else if ("prepareStatement".equals(name) || "prepareCall".equals(name)) {
+                final String[] ionicColumns = SqlParameters.getIonicColumns((String) args[0], context);
+                final Class<?> type = "prepareCall".equals(name) ? CallableStatement.class : PreparedStatement.class;
+                return newProxy(type, new StatementHandler(forward(method, args), context, proxy, ionicColumns));
+            } else {
+                return forward(method, args);
+            }
+        }
+    }
+
+    /**
+     * The proxy implementation of {@link Statement}, {@link PreparedStatement} and {@link CallableStatement}.
+     */
+    private static final class StatementHandler extends Handler {
+
+        /**
+         * The (wrapped) connection that created the statement.
+         */
+        private final Object connection;
+
+        /**
+         * For each parameter (zero-based), the name of the protected column to which it is written; otherwise null.
+         * Null for statements without parameters.
+         */
+        private final String[] ionicColumns;
+
+        /**
+         * True if at least one parameter is written to a protected column.
+         */
+        private final boolean hasIonicParameters;
+
+        /**
+         * Constructor.
+         *
+         * @param statement    the wrapped statement
+         * @param context      the Ionic configuration
+         * @param connection   the (wrapped) connection that created the statement
+         * @param ionicColumns for each parameter, the name of the protected column to which it is written
+         */
+        private StatementHandler(final Object statement, final IonicJdbcContext context, final Object connection,
+                                 final String[] ionicColumns) {
+            super(statement, context);
+            this.connection = connection;
+            this.ionicColumns = ionicColumns;
+            boolean hasIonic = false;
+            for (int i = 0; (ionicColumns != null) && (i < ionicColumns.length); ++i) {
+                hasIonic |= (ionicColumns[i] != null);
+            }
+            this.hasIonicParameters = hasIonic;
+        }
+
+        @Override
+        Object intercept(final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            if (SQL_EXECUTORS.contains(name) && (args != null) && (args.length >= 1) && (args[0] instanceof String)) {
+                SqlParameters.getIonicColumns((String) args[0], context);
+            }
+            if ("getConnection".equals(name)) {
+                return connection;
+            } else if (method.getReturnType() == ResultSet.class) {
+                return wrapResultSet(forward(method, args), proxy);
+            } else if (name.startsWith("set") && (ionicColumns != null) && (args != null) && (args.length >= 2)) {
+                if (args[0] instanceof Integer) {
+                    final int index = (Integer) args[0] - 1;
+                    if ((index >= 0) && (index < ionicColumns.length) && (ionicColumns[index] != null)) {
+                        return writeIonic(this, method, args, ionicColumns[index]);
+                    }
+                } else if ((args[0] instanceof String) && hasIonicParameters) {
+                    throw new SQLException(String.format(
+                            "%s by parameter name is not supported on statements writing protected columns", name));
+                }
+            }
+            return forward(method, args);
+        }
+    }
+
+    /**
+     * The proxy implementation of {@link ResultSet}.
+     */
+    private static final class ResultSetHandler extends Handler {
+
+        /**
+         * The wrapped result set.
+         */
+        private final ResultSet resultSet;
+
+        /**
+         * The (wrapped) statement that produced the result set, or null.
+         */
+        private final Object statement;
+
+        /**
+         * For each column (zero-based), true if the column is Ionic-protected; null until first needed.
+         */
+        private boolean[] ionic;
+
+        /**
+         * For each protected column (zero-based), the column label or name by which it is configured.
+         */
+        private String[] ionicNames;
+
+        /**
+         * The decrypted values of the protected cells of the current row.
+         */
+        private String[] values;
+
+        /**
+         * The (zero-based) indices of the protected cells of the current row that have been decrypted.
+         */
+        private final BitSet decrypted;
+
+        /**
+         * Constructor.
+         *
+         * @param resultSet the wrapped result set
+         * @param context   the Ionic configuration
+         * @param statement the (wrapped) statement that produced the result set, or null
+         */
+        private ResultSetHandler(final ResultSet resultSet, final IonicJdbcContext context, final Object statement) {
+            super(resultSet, context);
+            this.resultSet = resultSet;
+            this.statement = statement;
+            this.decrypted = new BitSet();
+        }
+
+        @Override
+        Object intercept(final Method method, final Object[] args) throws Throwable {
+            final String name = method.getName();
+            final int index = getColumnIndex(name, args);
+            if (name.startsWith("get") && isIonic(index)) {
+                return getIonic(method, args, index);
+            } else if (name.startsWith("update") && isIonic(index)) {
+                decrypted.clear();
+                return writeIonic(this, method, args, ionicNames[index]);
+            } else if ("getStatement".equals(name)) {
+                return (statement == null) ? forward(method, args) : statement;
+            } else if ("next".equals(name)) {
+                return next();
+            } else if (!name.startsWith("get") && !name.startsWith("is") && !"wasNull".equals(name)
+                    && !"findColumn".equals(name)) {
+                decrypted.clear();
+            }
+            return forward(method, args);
+        }
+
+        /**
+         * @param name the name of the called method
+         * @param args the arguments of the call
+         * @return the zero-based index of the column read or written by a getter or updater; otherwise -1
+         * @throws SQLException on failure to find a column by label
+         */
+        private int getColumnIndex(final String name, final Object[] args) throws SQLException {
+            if ((!name.startsWith("get") && !name.startsWith("update")) || (args == null) || (args.length == 0)) {
+                return -1;
+            } else if (args[0] instanceof Integer) {
+                return (Integer) args[0] - 1;
+            } else if (args[0] instanceof String) {
+                return resultSet.findColumn((String) args[0]) - 1;
+            } else {
+                return -1;
+            }
+        }
+
+        /**
+         * Read a protected cell of the current row, decrypting its value.
+         *
+         * @param method the called getter
+         * @param args   the arguments of the call
+         * @param index  the zero-based column index
+         * @return the plaintext of the cell, as requested by the getter
+         * @throws SQLException if the getter cannot return the plaintext, or on errors reading the cell
+         */
+        private Object getIonic(final Method method, final Object[] args, final int index) throws SQLException {
+            final String name = method.getName();
+            final boolean typed = (args.length == 2) && (args[1] instanceof Class);
+            if (READER_GETTERS.contains(name) && (args.length == 1)) {
+                final String value = resultSet.getString(index + 1);
+                return (value == null) ? null : new StringReader(getDecrypted(index, value));
+            } else if (DECRYPTING_GETTERS.contains(name) && ((args.length == 1) || ("getObject".equals(name)
+                    && (!typed || ((Class<?>) args[1]).isAssignableFrom(String.class))))) {
+                final String value = resultSet.getString(index + 1);
+                return (value == null) ? null : getDecrypted(index, value);
+            } else {
+                final String getter = typed ? String.format("%s(%s)", name, ((Class<?>) args[1]).getName()) : name;
+                throw new SQLException(String.format("%s cannot be unprotected for column %s",
+                        getter, ionicNames[index]));
+            }
+        }
+
+        /**
+         * Advance to the next row; if so configured, skip rows in which no protected cell can be decrypted.
+         *
+         * @return true if the new current row is valid
+         * @throws SQLException on errors reading from the wrapped result set
+         */
+        private boolean next() throws SQLException {
+            boolean valid = resultSet.next();
+            decrypted.clear();
+            while (valid && context.isFilterRows() && !isAccessible()) {
+                valid = resultSet.next();
+                decrypted.clear();
+            }
+            return valid;
+        }
+
+        /**
+         * @return true if at least one protected cell of the current row can be decrypted
+         * @throws SQLException on errors reading from the wrapped result set
+         */
+        private boolean isAccessible() throws SQLException {
+            initialize();
+            boolean accessible = false;
+            for (int i = 0; i < ionic.length; ++i) {
+                if (ionic[i]) {
+                    final String value = resultSet.getString(i + 1);
+                    if (value != null) {
+                        final String plaintext = getDecrypted(i, value);
+                        accessible |= !plaintext.equals(value) && !IonicJdbcContext.RESTRICTED.equals(plaintext);
+                    }
+                }
+            }
+            return accessible;
+        }
+
+        /**
+         * @param index the zero-based column index
+         * @return true if the column is Ionic-protected
+         * @throws SQLException on errors reading the metadata of the wrapped result set
+         */
+        private boolean isIonic(final int index) throws SQLException {
+            initialize();
+            return (index >= 0) && (index < ionic.length) && ionic[index];
+        }
+
+        /**
+         * Identify the protected columns of the result set.
+         *
+         * @throws SQLException on errors reading the metadata of the wrapped result set
+         */
+        private void initialize() throws SQLException {
+            if (ionic == null) {
+                final ResultSetMetaData metaData = resultSet.getMetaData();
+                final boolean[] ionicColumns = new boolean[metaData.getColumnCount()];
+                ionicNames = new String[ionicColumns.length];
+                for (int i = 0; i < ionicColumns.length; ++i) {
+                    final String label = metaData.getColumnLabel(i + 1);
+                    final String columnName = metaData.getColumnName(i + 1);
+                    ionicNames[i] = context.isIonic(label) ? label : (context.isIonic(columnName) ? columnName : null);
+                    ionicColumns[i] = (ionicNames[i] != null);
+                }
+                values = new String[ionicColumns.length];
+                ionic = ionicColumns;
+            }
+        }
+
+        /**
+         * Decrypt a protected cell of the current row, once.
+         *
+         * @param index the zero-based column index
+         * @param value the text of the cell, as stored in the database
+         * @return the plaintext of the cell, or "[RESTRICTED]" if the cell cannot be decrypted
+         */
+        private String getDecrypted(final int index, final String value) {
+            if (!decrypted.get(index)) {
+                values[index] = context.decrypt(value);
+                decrypted.set(index);
+            }
+            return values[index];
+        }
+    }
+
+    /**
+     * Write a parameter or cell to a protected column, encrypting its value.  Used for the {@link PreparedStatement}
+     * setters and the {@link ResultSet} updaters, whose first argument identifies the parameter or column, and whose
+     * second argument is the value.
+     *
+     * @param handler the proxy implementation forwarding the call
+     * @param method  the called setter or updater
+     * @param args    the arguments of the call
+     * @param column  the name of the protected column
+     * @return the result of the call
+     * @throws Throwable the exception thrown by the call; or {@link SQLException} if the value cannot be protected
+     */
+    private static Object writeIonic(final Handler handler, final Method method, final Object[] args,
+                                     final String column) throws Throwable {
+        final String name = method.getName();
+        if ("setNull".equals(name) || "updateNull".equals(name) || ((args.length >= 2) && (args[1] == null))) {
+            return handler.forward(method, args);
+        } else if (PARAMETER_SETTERS.contains(name) && (args.length == 2) && !isUnprotectable(args[1])) {
+            final Object[] argsProtected = Arrays.copyOf(args, args.length);
+            argsProtected[1] = handler.context.encrypt(column, args[1]);
+            return handler.forward(method, argsProtected);
+        } else {
+            throw new SQLException(String.format("%s cannot be protected for column %s", name, column));
+        }
+    }
+
+    /**
+     * @param value the value of a parameter
+     * @return true if the text of the value cannot be protected (a stream, a large object or bytes)
+     */
+    private static boolean isUnprotectable(final Object value) {
+        return (value instanceof byte[]) || (value instanceof Reader) || (value instanceof InputStream)
+                || (value instanceof Clob) || (value instanceof Blob);
+    }
+
+    /**
+     * The {@link PreparedStatement} setters and {@link ResultSet} updaters whose value is encrypted, when written to
+     * a protected column; others are rejected for such parameters and columns, except <code>setNull</code> and
+     * <code>updateNull</code>.
+     */
+    private static final Set<String> PARAMETER_SETTERS = new HashSet<String>(Arrays.asList(
+            "setString", "setNString", "setObject", "updateString", "updateNString", "updateObject"));
+
+    /**
+     * The {@link Statement} methods executing (or batching) SQL text.
+     */
+    private static final Set<String> SQL_EXECUTORS = new HashSet<String>(Arrays.asList(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "addBatch"));
+
+    /**
+     * The {@link ResultSet} methods whose value is decrypted, when read from a protected column; other getters are
+     * rejected for such columns.
+     */
+    private static final Set<String> DECRYPTING_GETTERS = new HashSet<String>(Arrays.asList(
+            "getString", "getNString", "getObject"));
+
+    /**
+     * The {@link ResultSet} methods returning a character stream, whose text is decrypted, when read from a protected
+     * column.
+     */
+    private static final Set<String> READER_GETTERS = new HashSet<String>(Arrays.asList(
+            "getCharacterStream", "getNCharacterStream"));
+}
@@ -0,0 +1,274 @@
+package com.ionic.sdk.addon.jdbc.driver;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Mapping of the parameters of a SQL statement to the columns they are written to.
+ * <p>
+ * Two statement forms are recognized: <code>INSERT INTO t (c1, c2, ...) VALUES (e1, e2, ...)</code> and
+ * <code>UPDATE t SET c1 = e1, c2 = e2, ... [WHERE ...]</code>.  A parameter is mapped to a column when the
+ * expression assigned to the column is a bare parameter marker.  Parameters appearing elsewhere are not mapped.
+ * <p>
+ * To avoid writing plaintext into a protected column, a statement that writes a protected column other than as a
+ * bare parameter marker (or the literal <code>NULL</code>) is rejected: a literal or other expression assigned to a
+ * protected column, a multi-row insert, an upsert clause naming a protected column, an insert without a column list
+ * (whose target columns cannot be determined), or an unrecognized form of data modification statement naming a
+ * protected column.  The same check applies to the SQL of unprepared statements, in which any write to a protected
+ * column is rejected.
+ * <p>
+ * The check is lexical.  Columns are recognized by name, whatever the table; SQL comments are not recognized; and
+ * writes made indirectly (by stored procedures, triggers, or statements such as <code>INSERT ... SELECT</code> that
+ * copy existing cells) are not detected.
+ */
+final class SqlParameters {
+
+    /**
+     * Constructor.  Static methods only.
+     */
+    private SqlParameters() {
+    }
+
+    /**
+     * Map the parameters of a statement to the columns they are written to.
+     *
+     * @param sql     the SQL statement
+     * @param context the Ionic configuration, identifying the protected columns
+     * @return for each parameter (zero-based), the name of the column to which it is written if the column is
+     * Ionic-protected; otherwise null
+     * @throws SQLException if the statement writes to a protected column in an unsupported way
+     */
+    static String[] getIonicColumns(final String sql, final IonicJdbcContext context) throws SQLException {
+        final List<String> columns = new ArrayList<String>();
+        final Matcher insert = INSERT.matcher(sql);
+        final Matcher update = UPDATE.matcher(sql);
+        if (insert.lookingAt()) {
+            final List<String> names = split(insert.group(1));
+            final int valuesEnd = findClose(sql, insert.end());
+            final List<String> values = (valuesEnd < 0)
+                    ? new ArrayList<String>() : split(sql.substring(insert.end(), valuesEnd));
+            final String rest = (valuesEnd < 0) ? "" : sql.substring(valuesEnd + 1);
+            if (UPSERT.matcher(rest).find()) {
+                checkUnmapped(rest, context);
+            }
+            if ((names.size() != values.size()) || rest.trim().startsWith(",")) {
+                checkUnmapped(sql, context);
+                addParameters(null, sql, context, columns);
+            } else {
+                for (int i = 0; i < names.size(); ++i) {
+                    addParameters(names.get(i), values.get(i), context, columns);
+                }
+                addParameters(null, rest, context, columns);
+            }
+        } else if (update.lookingAt()) {
+            final int setEnd = findKeyword(sql, update.end(), SET_END);
+            final List<String> assignments = split(sql.substring(update.end(), setEnd));
+            boolean recognized = true;
+            for (String assignment : assignments) {
+                recognized &= (assignment.indexOf('=') >= 0);
+            }
+            if (recognized) {
+                for (String assignment : assignments) {
+                    final int equals = assignment.indexOf('=');
+                    addParameters(assignment.substring(0, equals), assignment.substring(equals + 1), context, columns);
+                }
+                addParameters(null, sql.substring(setEnd), context, columns);
+            } else {
+                checkUnmapped(sql, context);
+                addParameters(null, sql, context, columns);
+            }
+        } else {
+            if (INSERT_ALL.matcher(sql).lookingAt() && !context.getIonicColumns().isEmpty()) {
+                throw new SQLException("Column list required in insert statement, as protected columns are configured");
+            }
+            if (WRITE.matcher(sql).lookingAt()) {
+                checkUnmapped(sql, context);
+            }
+            addParameters(null, sql, context, columns);
+        }
+        return columns.toArray(new String[columns.size()]);
+    }
+
+    /**
+     * Record the parameters of an expression.
+     *
+     * @param column     the column to which the expression is written, or null
+     * @param expression the SQL expression
+     * @param context    the Ionic configuration, identifying the protected columns
+     * @param columns    receives, for each parameter of the expression, the protected column to which it is written
+     * @throws SQLException if the expression is written to a protected column, and is neither a bare parameter marker
+     *                      nor the literal <code>NULL</code>
+     */
+    private static void addParameters(final String column, final String expression, final IonicJdbcContext context,
+                                      final List<String> columns) throws SQLException {
+        final boolean ionic = (column != null) && context.isIonic(column);
+        if (ionic && "?".equals(expression.trim())) {
+            columns.add(column.trim());
+            return;
+        }
+        if (ionic && !"null".equalsIgnoreCase(expression.trim())) {
+            throw new SQLException("Expression cannot be protected for column " + column.trim());
+        }
+        final int count = countParameters(expression);
+        for (int i = 0; i < count; ++i) {
+            columns.add(null);
+        }
+    }
+
+    /**
+     * Reject a data modification statement whose parameters cannot be mapped, if it refers to a protected column.
+     *
+     * @param sql     the SQL statement
+     * @param context the Ionic configuration, identifying the protected columns
+     * @throws SQLException if the statement refers to a protected column
+     */
+    private static void checkUnmapped(final String sql, final IonicJdbcContext context) throws SQLException {
+        final String sqlNormal = sql.toLowerCase(Locale.ROOT);
+        for (String column : context.getIonicColumns()) {
+            if (Pattern.compile("\\b" + Pattern.quote(column) + "\\b").matcher(sqlNormal).find()) {
+                throw new SQLException("Statement form not supported for protected column " + column);
+            }
+        }
+    }
+
+    /**
+     * Split a list of SQL expressions on the commas that are not nested in parentheses or quotes.
+     *
+     * @param text the list of expressions
+     * @return the expressions
+     */
+    private static List<String> split(final String text) {
+        final List<String> items = new ArrayList<String>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            final char c = text.charAt(i);
+            if (quote != 0) {
+                quote = (c == quote) ? 0 : quote;
+            } else if ((c == '\'') || (c == '"')) {
+                quote = c;
+            } else if (c == '(') {
+                ++depth;
+            } else if (c == ')') {
+                --depth;
+            } else if ((c == ',') && (depth == 0)) {
+                items.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        items.add(text.substring(start));
+        return items;
+    }
+
+    /**
+     * @param sql   the SQL statement
+     * @param start the offset just after an opening parenthesis
+     * @return the offset of the matching closing parenthesis, or -1 if there is none
+     */
+    private static int findClose(final String sql, final int start) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = start; i < sql.length(); ++i) {
+            final char c = sql.charAt(i);
+            if (quote != 0) {
+                quote = (c == quote) ? 0 : quote;
+            } else if ((c == '\'') || (c == '"')) {
+                quote = c;
+            } else if (c == '(') {
+                ++depth;
+            } else if ((c == ')') && (depth-- == 0)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param sql     the SQL statement
+     * @param start   the offset from which to search
+     * @param keyword the pattern of the keywords to find
+     * @return the offset of the first keyword that is not nested in parentheses or quotes; the statement length if
+     * there is none
+     */
+    private static int findKeyword(final String sql, final int start, final Pattern keyword) {
+        final Matcher matcher = keyword.matcher(sql).useTransparentBounds(true);
+        int depth = 0;
+        char quote = 0;
+        for (int i = start; i < sql.length(); ++i) {
+            final char c = sql.charAt(i);
+            if (quote != 0) {
+                quote = (c == quote) ? 0 : quote;
+            } else if ((c == '\'') || (c == '"')) {
+                quote = c;
+            } else if (c == '(') {
+                ++depth;
+            } else if (c == ')') {
+                --depth;
+            } else if ((depth == 0) && matcher.region(i, sql.length()).lookingAt()) {
+                return i;
+            }
+        }
+        return sql.length();
+    }
+
+    /**
+     * @param expression a SQL expression
+     * @return the number of parameter markers in the expression, outside of quotes
+     */
+    private static int countParameters(final String expression) {
+        int count = 0;
+        char quote = 0;
+        for (int i = 0; i < expression.length(); ++i) {
+            final char c = expression.charAt(i);
+            if (quote != 0) {
+                quote = (c == quote) ? 0 : quote;
+            } else if ((c == '\'') || (c == '"')) {
+                quote = c;
+            } else if (c == '?') {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The start of an insert statement with a column list, up to the opening parenthesis of the value list.
+     */
+    private static final Pattern INSERT = Pattern.compile(
+            "\\s*insert\\s+into\\s+[^\\s(]+\\s*\\(([^)]*)\\)\\s*values\\s*\\(", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The start of an update statement, up to its list of assignments.
+     */
+    private static final Pattern UPDATE = Pattern.compile(
+            "\\s*update\\s+\\S+(\\s+(as\\s+)?\\w+)??\\s+set\\s+", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The keywords that end the list of assignments of an update statement.
+     */
+    private static final Pattern SET_END = Pattern.compile(
+            "(?<=\\s)(where|from|returning)\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The start of an insert statement without a column list.
+     */
+    private static final Pattern INSERT_ALL = Pattern.compile(
+            "\\s*(insert|replace|upsert|merge)\\s+into\\s+[^\\s(]+\\s+(values|select|default|with)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The update clause of an upsert, following the value list of an insert statement.
+     */
+    private static final Pattern UPSERT = Pattern.compile("\\bupdate\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The start of any data modification statement.
+     */
+    private static final Pattern WRITE = Pattern.compile(
+            "\\s*(insert|update|merge|replace|upsert)\\b", Pattern.CASE_INSENSITIVE);
+}
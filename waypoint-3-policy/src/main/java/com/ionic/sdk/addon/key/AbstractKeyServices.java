@@ -0,0 +1,79 @@
+package com.ionic.sdk.addon.key;
+
+import com.ionic.sdk.agent.data.MetadataMap;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+/**
+ * Base class for {@link KeyServices} implementations in this sample application.
+ * <p>
+ * All single key convenience overloads are routed through the bulk calls {@link #createKeys(CreateKeysRequest)} and
+ * {@link #getKeys(GetKeysRequest)}, so subclasses need only implement those two methods (along with the profile and
+ * update calls) to handle key traffic originating from Ionic SDK classes such as
+ * {@link com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2}.
+ */
+public abstract class AbstractKeyServices implements KeyServices {
+
+    @Override
+    public CreateKeysResponse createKey(final KeyAttributesMap attributes, final KeyAttributesMap mutableAttributes,
+                                        final MetadataMap metadata) throws IonicException {
+        final CreateKeysRequest request = new CreateKeysRequest();
+        request.add(new CreateKeysRequest.Key(REF_ID, 1, attributes, mutableAttributes));
+        if (metadata != null) {
+            request.setMetadata(metadata);
+        }
+        return createKeys(request);
+    }
+
+    @Override
+    public CreateKeysResponse createKey(final KeyAttributesMap attributes, final KeyAttributesMap mutableAttributes)
+            throws IonicException {
+        return createKey(attributes, mutableAttributes, null);
+    }
+
+    @Override
+    public CreateKeysResponse createKey(final KeyAttributesMap attributes, final MetadataMap metadata)
+            throws IonicException {
+        return createKey(attributes, new KeyAttributesMap(), metadata);
+    }
+
+    @Override
+    public CreateKeysResponse createKey(final KeyAttributesMap attributes) throws IonicException {
+        return createKey(attributes, new KeyAttributesMap(), null);
+    }
+
+    @Override
+    public CreateKeysResponse createKey(final MetadataMap metadata) throws IonicException {
+        return createKey(new KeyAttributesMap(), new KeyAttributesMap(), metadata);
+    }
+
+    @Override
+    public CreateKeysResponse createKey() throws IonicException {
+        return createKey(new KeyAttributesMap(), new KeyAttributesMap(), null);
+    }
+
+    @Override
+    public GetKeysResponse getKey(final String keyId, final MetadataMap metadata) throws IonicException {
+        final GetKeysRequest request = new GetKeysRequest();
+        request.addKeyId(keyId);
+        if (metadata != null) {
+            request.setMetadata(metadata);
+        }
+        return getKeys(request);
+    }
+
+    @Override
+    public GetKeysResponse getKey(final String keyId) throws IonicException {
+        return getKey(keyId, null);
+    }
+
+    /**
+     * The request reference used when a single key is created via one of the convenience overloads.
+     */
+    protected static final String REF_ID = "ref";
+}
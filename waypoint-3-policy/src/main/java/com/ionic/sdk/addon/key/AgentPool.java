@@ -0,0 +1,189 @@
+package com.ionic.sdk.addon.key;
+
+import com.ionic.sdk.agent.Agent;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.data.MetadataMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.agent.request.updatekey.UpdateKeysRequest;
+import com.ionic.sdk.agent.request.updatekey.UpdateKeysResponse;
+import com.ionic.sdk.device.profile.DeviceProfile;
+import com.ionic.sdk.device.profile.persistor.ProfilePersistor;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link KeyServices} implementation that spreads key traffic across a fixed set of Ionic {@link Agent} instances.
+ * <p>
+ * Each agent is initialized from the same {@link ProfilePersistor} (or is supplied already initialized with the same
+ * profile), so all agents act on behalf of the same Ionic device.  Each calling thread is bound (on first use) to one
+ * of the agents, in round-robin order, and all key requests made by the thread are serviced by that agent.
+ * Concurrent queries on different threads therefore do not contend on the internal state of a single shared agent.
+ * <p>
+ * A {@link ChunkCipherV2} bound to the agent of the calling thread is available through {@link #getChunkCipher()},
+ * avoiding per-call construction in components that decrypt many values.
+ * <p>
+ * Thread bindings are held in thread-local storage for the lifetime of the pool; a pool is intended to be created
+ * once per application, and used by long-lived (pooled) threads.
+ * <p>
+ * Instances are thread safe.
+ */
+public class AgentPool extends AbstractKeyServices {
+
+    /**
+     * The pooled agents.
+     */
+    private final Agent[] agents;
+
+    /**
+     * The source of the round-robin assignment of threads to agents.
+     */
+    private final AtomicInteger assignments;
+
+    /**
+     * The agent bound to each thread.
+     */
+    private final ThreadLocal<Agent> threadAgent;
+
+    /**
+     * The Ionic cipher bound to the agent of each thread.
+     */
+    private final ThreadLocal<ChunkCipherV2> threadChunkCipher;
+
+    /**
+     * Constructor.
+     *
+     * @param profilePersistor the source of the Ionic device profile used by each agent
+     * @param size             the number of agents in the pool
+     * @throws IonicException on failure to initialize an agent, or on a size that is not positive
+     */
+    public AgentPool(final ProfilePersistor profilePersistor, final int size) throws IonicException {
+        this(createAgents(profilePersistor, size));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param agents the agents to be pooled, each already initialized with the same Ionic device profile
+     * @throws IonicException on an empty list of agents
+     */
+    public AgentPool(final List<? extends Agent> agents) throws IonicException {
+        this(agents.toArray(new Agent[agents.size()]));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param agents the agents to be pooled
+     * @throws IonicException on an empty array of agents
+     */
+    private AgentPool(final Agent[] agents) throws IonicException {
+        super();
+        if (agents.length == 0) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE);
+        }
+        this.agents = agents;
+        this.assignments = new AtomicInteger();
+        this.threadAgent = new ThreadLocal<Agent>() {
+            @Override
+            protected Agent initialValue() {
+                return agents[(assignments.getAndIncrement() & Integer.MAX_VALUE) % agents.length];
+            }
+        };
+        this.threadChunkCipher = new ThreadLocal<ChunkCipherV2>() {
+            @Override
+            protected ChunkCipherV2 initialValue() {
+                return new ChunkCipherV2(threadAgent.get());
+            }
+        };
+    }
+
+    /**
+     * @param profilePersistor the source of the Ionic device profile used by each agent
+     * @param size             the number of agents
+     * @return the agents, each initialized from the profile source
+     * @throws IonicException on failure to initialize an agent, or on a size that is not positive
+     */
+    private static Agent[] createAgents(final ProfilePersistor profilePersistor, final int size)
+            throws IonicException {
+        if (size <= 0) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE);
+        }
+        final Agent[] agents = new Agent[size];
+        for (int i = 0; i < size; ++i) {
+            final Agent agent = new Agent();
+            agent.initialize(profilePersistor);
+            agents[i] = agent;
+        }
+        return agents;
+    }
+
+    /**
+     * @return the number of agents in the pool
+     */
+    public int size() {
+        return agents.length;
+    }
+
+    /**
+     * @return the agent bound to the calling thread
+     */
+    public Agent getAgent() {
+        return threadAgent.get();
+    }
+
+    /**
+     * @return an Ionic cipher bound to the agent of the calling thread; it must not be shared with other threads
+     */
+    public ChunkCipherV2 getChunkCipher() {
+        return threadChunkCipher.get();
+    }
+
+    /**
+     * Obtain an Ionic cipher for use by the calling thread.
+     *
+     * @param keyServices the key source used by the cipher
+     * @return the thread-bound cipher of the key source if it is an {@link AgentPool}; otherwise, a new cipher
+     */
+    public static ChunkCipherV2 getChunkCipher(final KeyServices keyServices) {
+        return (keyServices instanceof AgentPool)
+                ? ((AgentPool) keyServices).getChunkCipher() : new ChunkCipherV2(keyServices);
+    }
+
+    @Override
+    public boolean hasActiveProfile() {
+        return agents[0].hasActiveProfile();
+    }
+
+    @Override
+    public DeviceProfile getActiveProfile() {
+        return agents[0].getActiveProfile();
+    }
+
+    @Override
+    public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+        return getAgent().createKeys(request);
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        return getAgent().getKeys(request);
+    }
+
+    @Override
+    public UpdateKeysResponse updateKey(final UpdateKeysRequest.Key key, final MetadataMap metadata)
+            throws IonicException {
+        return getAgent().updateKey(key, metadata);
+    }
+
+    @Override
+    public UpdateKeysResponse updateKeys(final UpdateKeysRequest request) throws IonicException {
+        return getAgent().updateKeys(request);
+    }
+}
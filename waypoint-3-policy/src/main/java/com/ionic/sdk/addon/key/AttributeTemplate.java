@@ -0,0 +1,329 @@
+package com.ionic.sdk.addon.key;
+
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.json.JsonIO;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The precompiled Ionic attributes with which a protected column is encrypted, to which per-row (dynamic) attributes
+ * are bound for each cell.
+ * <p>
+ * The column attributes are parsed once, on construction (see {@link #parse(String, String...)}).  Binding per-row
+ * values, either positionally to the dynamic attribute names declared on construction (for example, a record
+ * department) or as a map of row attributes, yields the attribute set of a cell.  Bindings are interned: the merged
+ * attribute set of each distinct binding is computed once, and rows binding the same values receive equal attribute
+ * sets, so that they may be matched against the attributes of pooled keys (see {@link PreallocatedKeyServices}) and
+ * grouped into a single key request (see {@link com.ionic.sdk.addon.jdbc.IonicBatchWriter}).  Once the configured
+ * number of distinct bindings is interned, further distinct bindings are merged on each call.
+ * <p>
+ * The attribute sets returned are shared, and are unmodifiable: each call binding the same interned values returns
+ * the same instance, with no per-cell allocation, and an attempt to modify it (or its attribute value lists) throws
+ * {@link UnsupportedOperationException}.  Copy a returned set (<code>new KeyAttributesMap(attributes)</code>) to
+ * modify it.
+ * <p>
+ * Instances are thread safe.
+ */
+public class AttributeTemplate {
+
+    /**
+     * The attributes applied to each cell of the column; unmodifiable.
+     */
+    private final KeyAttributesMap attributes;
+
+    /**
+     * The names of the attributes bound positionally by {@link #bind(String...)}.
+     */
+    private final List<String> dynamicNames;
+
+    /**
+     * The maximum number of distinct bindings to intern.
+     */
+    private final int maxInterned;
+
+    /**
+     * The interned attribute sets, indexed by the bound values (a list for positional bindings, or the row attributes
+     * for map bindings); unmodifiable.
+     */
+    private final ConcurrentMap<Object, KeyAttributesMap> interned;
+
+    /**
+     * Constructor.
+     *
+     * @param attributes   the attributes applied to each cell of the column; may be null
+     * @param dynamicNames the names of the attributes bound positionally by {@link #bind(String...)}
+     */
+    public AttributeTemplate(final KeyAttributesMap attributes, final String... dynamicNames) {
+        this(attributes, DEFAULT_MAX_INTERNED, dynamicNames);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param attributes   the attributes applied to each cell of the column; may be null
+     * @param maxInterned  the maximum number of distinct bindings to intern
+     * @param dynamicNames the names of the attributes bound positionally by {@link #bind(String...)}
+     */
+    public AttributeTemplate(final KeyAttributesMap attributes, final int maxInterned,
+                             final String... dynamicNames) {
+        this.attributes = merge(attributes, null);
+        this.dynamicNames = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(dynamicNames)));
+        this.maxInterned = Math.max(0, maxInterned);
+        this.interned = new ConcurrentHashMap<Object, KeyAttributesMap>();
+    }
+
+    /**
+     * Compile a template from the json representation of its attributes, for example
+     * <code>{"classification": ["restricted"]}</code>.  Each attribute value is either an array of strings or a
+     * single string.
+     *
+     * @param json         the json representation of the attributes applied to each cell; null for no attributes
+     * @param dynamicNames the names of the attributes bound positionally by {@link #bind(String...)}
+     * @return the compiled template
+     * @throws IonicException on json parse failure, or on an attribute value that is not a string or string array
+     */
+    public static AttributeTemplate parse(final String json, final String... dynamicNames) throws IonicException {
+        final KeyAttributesMap keyAttributes = new KeyAttributesMap();
+        final JsonObject jsonObject = JsonIO.readObject((json == null) ? "{}" : json, SdkError.ISAGENT_INVALIDVALUE);
+        for (Map.Entry<String, JsonValue> entry : jsonObject.entrySet()) {
+            final JsonValue jsonValue = entry.getValue();
+            if (jsonValue instanceof JsonString) {
+                keyAttributes.put(entry.getKey(), Collections.singletonList(((JsonString) jsonValue).getString()));
+            } else if (jsonValue instanceof JsonArray) {
+                final List<String> values = new ArrayList<String>();
+                for (JsonValue jsonValueIt : (JsonArray) jsonValue) {
+                    if (!(jsonValueIt instanceof JsonString)) {
+                        throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, entry.getKey());
+                    }
+                    values.add(((JsonString) jsonValueIt).getString());
+                }
+                keyAttributes.put(entry.getKey(), values);
+            } else {
+                throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, entry.getKey());
+            }
+        }
+        return new AttributeTemplate(keyAttributes, dynamicNames);
+    }
+
+    /**
+     * @return the (unmodifiable) attributes applied to each cell of the column
+     */
+    public KeyAttributesMap getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return the names of the attributes bound positionally by {@link #bind(String...)}
+     */
+    public List<String> getDynamicNames() {
+        return dynamicNames;
+    }
+
+    /**
+     * @return the number of distinct bindings interned
+     */
+    public int getInternedCount() {
+        return interned.size();
+    }
+
+    /**
+     * Bind values to the dynamic attributes of the template.
+     *
+     * @param values the value of each dynamic attribute, in declaration order; a null value omits the attribute
+     * @return the (unmodifiable) attributes of a cell
+     * @throws IonicException if the number of values does not match the number of dynamic attributes
+     */
+    public KeyAttributesMap bind(final String... values) throws IonicException {
+        if (values.length != dynamicNames.size()) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, dynamicNames.toString());
+        }
+        final KeyAttributesMap keyAttributes = interned.get(Arrays.asList(values));
+        if (keyAttributes != null) {
+            return keyAttributes;
+        }
+        final KeyAttributesMap rowAttributes = new KeyAttributesMap();
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i] != null) {
+                rowAttributes.put(dynamicNames.get(i), Collections.singletonList(values[i]));
+            }
+        }
+        return intern(Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(values))), rowAttributes);
+    }
+
+    /**
+     * Bind row attributes to the template.  Row attributes replace column attributes of the same name.
+     *
+     * @param rowAttributes the attributes of the row; may be null
+     * @return the (unmodifiable) attributes of a cell
+     */
+    public KeyAttributesMap bind(final KeyAttributesMap rowAttributes) {
+        if ((rowAttributes == null) || rowAttributes.isEmpty()) {
+            return attributes;
+        }
+        final KeyAttributesMap keyAttributes = interned.get(rowAttributes);
+        if (keyAttributes != null) {
+            return keyAttributes;
+        }
+        return intern(merge(rowAttributes, null), rowAttributes);
+    }
+
+    /**
+     * @param key           the interning key of the binding, private to the template
+     * @param rowAttributes the attributes bound to the template
+     * @return the attribute set of the binding, which is interned if capacity permits
+     */
+    private KeyAttributesMap intern(final Object key, final KeyAttributesMap rowAttributes) {
+        final KeyAttributesMap keyAttributes = merge(attributes, rowAttributes);
+        if (interned.size() < maxInterned) {
+            final KeyAttributesMap keyAttributesInterned = interned.putIfAbsent(key, keyAttributes);
+            return (keyAttributesInterned == null) ? keyAttributes : keyAttributesInterned;
+        }
+        return keyAttributes;
+    }
+
+    /**
+     * Merge two attribute sets into a new, unmodifiable set, whose attribute value lists are unmodifiable copies.
+     *
+     * @param attributes         the base attributes; may be null
+     * @param attributesOverride attributes replacing base attributes of the same name; may be null
+     * @return the merged attributes
+     */
+    private static KeyAttributesMap merge(final KeyAttributesMap attributes,
+                                          final KeyAttributesMap attributesOverride) {
+        final ReadOnlyAttributes keyAttributes = new ReadOnlyAttributes();
+        for (KeyAttributesMap attributesIt : Arrays.asList(attributes, attributesOverride)) {
+            if (attributesIt != null) {
+                for (Map.Entry<String, List<String>> entry : attributesIt.entrySet()) {
+                    keyAttributes.init(entry.getKey(), Collections.unmodifiableList(
+                            new ArrayList<String>(entry.getValue())));
+                }
+            }
+        }
+        return keyAttributes;
+    }
+
+    /**
+     * An attribute set that is populated by the template, and may not be modified by callers.  The mutators of the
+     * {@link Map} interface, and those of its key, value and entry views, throw
+     * {@link UnsupportedOperationException}.  The mutators added to {@link Map} in Java 8 that take no function are
+     * also intercepted; those that take a function (<code>compute</code>, <code>merge</code>,
+     * <code>replaceAll</code>) cannot be declared at this source level, and must not be used.
+     */
+    private static final class ReadOnlyAttributes extends KeyAttributesMap {
+
+        /**
+         * Add an attribute while the set is populated by the template.
+         *
+         * @param name   the attribute name
+         * @param values the (unmodifiable) attribute values
+         */
+        private void init(final String name, final List<String> values) {
+            super.put(name, values);
+        }
+
+        @Override
+        public List<String> put(final String key, final List<String> value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putAll(final Map<? extends String, ? extends List<String>> m) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<String> remove(final Object key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Intercept the Java 8 mutator.
+         *
+         * @param key   the attribute name
+         * @param value the attribute values
+         * @return never
+         */
+        public List<String> putIfAbsent(final String key, final List<String> value) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Intercept the Java 8 mutator.
+         *
+         * @param key   the attribute name
+         * @param value the attribute values
+         * @return never
+         */
+        public List<String> replace(final String key, final List<String> value) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Intercept the Java 8 mutator.
+         *
+         * @param key      the attribute name
+         * @param oldValue the expected attribute values
+         * @param newValue the replacement attribute values
+         * @return never
+         */
+        public boolean replace(final String key, final List<String> oldValue, final List<String> newValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Intercept the Java 8 mutator.
+         *
+         * @param key   the attribute name
+         * @param value the expected attribute values
+         * @return never
+         */
+        public boolean remove(final Object key, final Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return Collections.unmodifiableSet(super.keySet());
+        }
+
+        @Override
+        public Collection<List<String>> values() {
+            return Collections.unmodifiableCollection(super.values());
+        }
+
+        @Override
+        public Set<Map.Entry<String, List<String>>> entrySet() {
+            return Collections.unmodifiableMap(new AbstractMap<String, List<String>>() {
+                @Override
+                public Set<Map.Entry<String, List<String>>> entrySet() {
+                    return ReadOnlyAttributes.super.entrySet();
+                }
+            }).entrySet();
+        }
+    }
+
+    /**
+     * The default maximum number of distinct bindings to intern.
+     */
+    public static final int DEFAULT_MAX_INTERNED = 4096;
+}
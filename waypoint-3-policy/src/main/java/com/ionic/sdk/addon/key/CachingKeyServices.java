@@ -0,0 +1,342 @@
+package com.ionic.sdk.addon.key;
+
+import com.ionic.sdk.addon.policy.PolicyChangeListener;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link KeyServices} implementation that caches keys fetched from the wrapped implementation.
+ * <p>
+ * Entries expire after a configurable time to live, and the least recently used entry is evicted when the cache
+ * reaches its configured capacity.
+ * <p>
+ * Key tags denied by the server may also be cached, for a separate (typically shorter) time to live.  While a denial
+ * is cached, requests for the key are answered locally, with the key omitted from the response as the server would.
+ * This avoids a server round trip for each repeated access to restricted data.
+ * <p>
+ * As a key release decision may change when tenant policy changes, the cache may be registered with a
+ * {@link com.ionic.sdk.addon.policy.PolicyService} to be flushed on each policy mutation.
+ * <p>
+ * Cache entries are indexed by key tag alone.  The metadata of a request (for example, the identity of the calling
+ * application) is passed through to the wrapped implementation on a cache miss, but is not part of the cache key; a
+ * key released (or denied) for one request is served from the cache to later requests for the same key tag, whatever
+ * their metadata.  Callers whose key release decisions depend on request metadata should use one instance per
+ * distinct metadata value.
+ * <p>
+ * Cached entries hold key material in process memory for the duration of their time to live.
+ * <p>
+ * Instances are thread safe.
+ */
+public class CachingKeyServices extends KeyServicesWrapper implements PolicyChangeListener {
+
+    /**
+     * The time in nanoseconds for which a fetched key may be served from the cache.
+     */
+    private final long ttlNanos;
+
+    /**
+     * The time in nanoseconds for which a key denial may be served from the cache; zero to disable caching of denials.
+     */
+    private final long deniedTtlNanos;
+
+    /**
+     * The maximum number of keys to be held in the cache.
+     */
+    private final int maxEntries;
+
+    /**
+     * The cached keys, indexed by key tag, in least recently used order.
+     */
+    private final LinkedHashMap<String, CacheEntry> entries;
+
+    /**
+     * The number of key requests satisfied by the cache.
+     */
+    private final AtomicLong hits;
+
+    /**
+     * The number of key requests satisfied by a cached denial.
+     */
+    private final AtomicLong deniedHits;
+
+    /**
+     * The number of key requests passed through to the wrapped implementation.
+     */
+    private final AtomicLong misses;
+
+    /**
+     * The number of keys removed from the cache due to capacity constraints or expiry.
+     */
+    private final AtomicLong evictions;
+
+    /**
+     * Incremented on each call to {@link #invalidate(String)} and {@link #invalidateAll()}, so that keys fetched by
+     * requests in flight at the time of an invalidation are not cached.
+     */
+    private long generation;
+
+    /**
+     * Constructor.
+     *
+     * @param keyServices the wrapped key services implementation, used to fetch keys not present in the cache
+     * @param ttl         the time for which a fetched key may be served from the cache
+     * @param unit        the unit of the ttl parameter
+     * @param maxEntries  the maximum number of keys to be held in the cache
+     */
+    public CachingKeyServices(final KeyServices keyServices, final long ttl, final TimeUnit unit,
+                              final int maxEntries) {
+        this(keyServices, ttl, 0L, unit, maxEntries);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param keyServices the wrapped key services implementation, used to fetch keys not present in the cache
+     * @param ttl         the time for which a fetched key may be served from the cache
+     * @param deniedTtl   the time for which a key denial may be served from the cache; zero to disable caching of
+     *                    denials
+     * @param unit        the unit of the ttl and deniedTtl parameters
+     * @param maxEntries  the maximum number of keys (and denials) to be held in the cache
+     */
+    public CachingKeyServices(final KeyServices keyServices, final long ttl, final long deniedTtl,
+                              final TimeUnit unit, final int maxEntries) {
+        super(keyServices);
+        this.ttlNanos = unit.toNanos(ttl);
+        this.deniedTtlNanos = unit.toNanos(Math.max(0L, deniedTtl));
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, CacheEntry>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CacheEntry> eldest) {
+                final boolean remove = (size() > CachingKeyServices.this.maxEntries);
+                if (remove) {
+                    evictions.incrementAndGet();
+                }
+                return remove;
+            }
+        };
+        this.hits = new AtomicLong();
+        this.deniedHits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+    }
+
+    /**
+     * @return the number of key requests satisfied by the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of key requests satisfied by a cached denial
+     */
+    public long getDeniedHits() {
+        return deniedHits.get();
+    }
+
+    /**
+     * @return the number of key requests passed through to the wrapped implementation
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of keys removed from the cache due to capacity constraints or expiry
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of keys (and denials) currently held in the cache
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Remove the specified key from the cache.
+     * <p>
+     * Keys fetched by requests in flight at the time of the call are not cached, so that a fetch started before the
+     * invalidation cannot restore the removed key.
+     *
+     * @param keyId the key tag to be removed
+     */
+    public void invalidate(final String keyId) {
+        synchronized (entries) {
+            entries.remove(keyId);
+            ++generation;
+        }
+    }
+
+    /**
+     * Remove all keys from the cache.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            ++generation;
+        }
+    }
+
+    /**
+     * Remove expired keys from the cache.
+     */
+    public void cleanUp() {
+        final long now = System.nanoTime();
+        synchronized (entries) {
+            final Iterator<CacheEntry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isExpired(now)) {
+                    iterator.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onPolicyChange() {
+        invalidateAll();
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        final long now = System.nanoTime();
+        final List<GetKeysResponse.Key> cached = new ArrayList<GetKeysResponse.Key>();
+        int denied = 0;
+        final GetKeysRequest requestMiss = new GetKeysRequest();
+        if (request.getMetadata() != null) {
+            requestMiss.setMetadata(request.getMetadata());
+        }
+        final long generationRequest;
+        synchronized (entries) {
+            generationRequest = generation;
+            for (String keyId : request.getKeyIds()) {
+                final CacheEntry entry = entries.get(keyId);
+                if ((entry != null) && entry.isExpired(now)) {
+                    entries.remove(keyId);
+                    evictions.incrementAndGet();
+                }
+                if ((entry == null) || entry.isExpired(now)) {
+                    requestMiss.addKeyId(keyId);
+                } else if (entry.isDenied()) {
+                    ++denied;
+                } else {
+                    cached.add(entry.getKey());
+                }
+            }
+        }
+        hits.addAndGet(cached.size());
+        deniedHits.addAndGet(denied);
+        if (requestMiss.getKeyIds().isEmpty()) {
+            final GetKeysResponse response = new GetKeysResponse();
+            for (GetKeysResponse.Key key : cached) {
+                response.add(key);
+            }
+            return response;
+        }
+        misses.addAndGet(requestMiss.getKeyIds().size());
+        final GetKeysResponse responseMiss = getKeyServices().getKeys(requestMiss);
+        final long nowResponse = System.nanoTime();
+        final long expiry = nowResponse + ttlNanos;
+        final long expiryDenied = nowResponse + deniedTtlNanos;
+        synchronized (entries) {
+            if (generationRequest == generation) {
+                for (GetKeysResponse.Key key : responseMiss.getKeys()) {
+                    entries.put(key.getId(), new CacheEntry(key, expiry));
+                }
+                if (deniedTtlNanos > 0) {
+                    for (String keyId : requestMiss.getKeyIds()) {
+                        if (!entries.containsKey(keyId)) {
+                            entries.put(keyId, new CacheEntry(null, expiryDenied));
+                        }
+                    }
+                }
+            }
+        }
+        if (cached.isEmpty()) {
+            return responseMiss;
+        }
+        final GetKeysResponse response = new GetKeysResponse();
+        for (GetKeysResponse.Key key : cached) {
+            response.add(key);
+        }
+        for (GetKeysResponse.Key key : responseMiss.getKeys()) {
+            response.add(key);
+        }
+        return response;
+    }
+
+    /**
+     * A cached key (or key denial), along with the time at which it should no longer be served.
+     */
+    private static final class CacheEntry {
+
+        /**
+         * The key returned by the wrapped implementation, or null if the key was denied.
+         */
+        private final GetKeysResponse.Key key;
+
+        /**
+         * The {@link System#nanoTime()} value after which the key should no longer be served.
+         */
+        private final long expiry;
+
+        /**
+         * Constructor.
+         *
+         * @param key    the key returned by the wrapped implementation, or null if the key was denied
+         * @param expiry the {@link System#nanoTime()} value after which the key should no longer be served
+         */
+        private CacheEntry(final GetKeysResponse.Key key, final long expiry) {
+            this.key = key;
+            this.expiry = expiry;
+        }
+
+        /**
+         * @return the key returned by the wrapped implementation
+         */
+        private GetKeysResponse.Key getKey() {
+            return key;
+        }
+
+        /**
+         * @return true if the key was denied
+         */
+        private boolean isDenied() {
+            return (key == null);
+        }
+
+        /**
+         * @param now the current {@link System#nanoTime()} value
+         * @return true if the key should no longer be served
+         */
+        private boolean isExpired(final long now) {
+            return (now - expiry) > 0;
+        }
+    }
+
+    /**
+     * The initial capacity of the backing map.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The load factor of the backing map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+}
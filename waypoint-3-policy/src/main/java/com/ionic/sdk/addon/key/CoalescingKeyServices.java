@@ -0,0 +1,279 @@
+package com.ionic.sdk.addon.key;
+
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link KeyServices} implementation that coalesces concurrent key fetches made through the wrapped implementation.
+ * <p>
+ * Key tags being fetched are tracked in an in-flight table.  A thread requesting a key tag that is already in flight
+ * waits for the outstanding fetch, instead of issuing its own request for the key.  Key tags that are not in flight
+ * are added to an open batch; the first thread to contribute to a batch waits for up to the configured linger time
+ * (or until the batch reaches its configured size), and then fetches all keys of the batch in a single request.  A
+ * linger time of zero disables the batching of separate requests, while still sharing in-flight fetches.
+ * <p>
+ * This reduces the request rate seen by the key service when many threads decrypt the same (or overlapping) data at
+ * the same time.  Completed fetches are not retained; combine with {@link CachingKeyServices} to serve repeated
+ * requests from memory.
+ * <p>
+ * Requests carrying metadata are passed through to the wrapped implementation, as metadata cannot be shared among
+ * coalesced requests.
+ * <p>
+ * Instances are thread safe.
+ */
+public class CoalescingKeyServices extends KeyServicesWrapper {
+
+    /**
+     * The time in nanoseconds for which the first contributor to a batch waits for other contributors.
+     */
+    private final long lingerNanos;
+
+    /**
+     * The number of key tags at which a batch is fetched without waiting for the linger time to elapse.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * The batch fetching (or about to fetch) each in-flight key tag.
+     */
+    private final ConcurrentMap<String, Batch> inFlight;
+
+    /**
+     * The number of requests made to the wrapped implementation.
+     */
+    private final AtomicLong requests;
+
+    /**
+     * The number of requested keys served by a fetch issued by (or on behalf of) another request.
+     */
+    private final AtomicLong coalesced;
+
+    /**
+     * The batch accepting new key tags, or null if no batch is open.  Guarded by <code>this</code>.
+     */
+    private Batch open;
+
+    /**
+     * Constructor.
+     *
+     * @param keyServices  the wrapped key services implementation, to which requests are delegated
+     * @param linger       the time for which the first contributor to a batch waits for other contributors
+     * @param unit         the unit of the linger parameter
+     * @param maxBatchSize the number of key tags at which a batch is fetched without waiting for the linger time
+     */
+    public CoalescingKeyServices(final KeyServices keyServices, final long linger, final TimeUnit unit,
+                                 final int maxBatchSize) {
+        super(keyServices);
+        this.lingerNanos = unit.toNanos(linger);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.inFlight = new ConcurrentHashMap<String, Batch>();
+        this.open = null;
+        this.requests = new AtomicLong();
+        this.coalesced = new AtomicLong();
+    }
+
+    /**
+     * @return the number of requests made to the wrapped implementation
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of requested keys served by a fetch issued by (or on behalf of) another request
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        if ((request.getMetadata() != null) && !request.getMetadata().isEmpty()) {
+            requests.incrementAndGet();
+            return super.getKeys(request);
+        }
+        final Map<String, Batch> batches = new LinkedHashMap<String, Batch>();
+        final List<Batch> leads = enlist(new LinkedHashSet<String>(request.getKeyIds()), batches);
+        for (Batch lead : leads) {
+            lead.fetch();
+        }
+        final GetKeysResponse response = new GetKeysResponse();
+        for (Map.Entry<String, Batch> entry : batches.entrySet()) {
+            final String keyId = entry.getKey();
+            final Batch batch = entry.getValue();
+            batch.await();
+            if (!leads.contains(batch)) {
+                coalesced.incrementAndGet();
+            }
+            final GetKeysResponse.Key key = batch.keys.get(keyId);
+            final GetKeysResponse.IonicError error = batch.errors.get(keyId);
+            if (key != null) {
+                response.add(key);
+            } else if (error != null) {
+                response.add(error);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Assign each requested key tag to the batch that fetches it: an in-flight batch if one is fetching the key tag,
+     * otherwise the open batch.
+     *
+     * @param keyIds  the requested key tags
+     * @param batches receives the batch assigned to each key tag
+     * @return the batches which the calling thread must fetch (those it opened)
+     */
+    private synchronized List<Batch> enlist(final Set<String> keyIds, final Map<String, Batch> batches) {
+        final List<Batch> leads = new ArrayList<Batch>(1);
+        for (String keyId : keyIds) {
+            Batch batch = inFlight.get(keyId);
+            if (batch == null) {
+                if (open == null) {
+                    open = new Batch();
+                    leads.add(open);
+                }
+                batch = open;
+                batch.keyIds.add(keyId);
+                inFlight.put(keyId, batch);
+                if (batch.keyIds.size() >= maxBatchSize) {
+                    close(batch);
+                }
+            }
+            batches.put(keyId, batch);
+        }
+        return leads;
+    }
+
+    /**
+     * Stop accepting new key tags into a batch, and wake its fetching thread.
+     *
+     * @param batch the batch to be closed
+     */
+    private synchronized void close(final Batch batch) {
+        if (open == batch) {
+            open = null;
+        }
+        batch.full.countDown();
+    }
+
+    /**
+     * Remove the key tags of a completed batch from the in-flight table.
+     *
+     * @param batch the completed batch
+     */
+    private synchronized void retire(final Batch batch) {
+        for (String keyId : batch.keyIds) {
+            inFlight.remove(keyId, batch);
+        }
+    }
+
+    /**
+     * A set of key tags fetched using a single request to the wrapped implementation.
+     */
+    private final class Batch {
+
+        /**
+         * The key tags to fetch.  Guarded by the enclosing instance until the batch is closed.
+         */
+        private final Set<String> keyIds = new LinkedHashSet<String>();
+
+        /**
+         * Released when the batch reaches its maximum size.
+         */
+        private final CountDownLatch full = new CountDownLatch(1);
+
+        /**
+         * Released when the fetch completes.
+         */
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        /**
+         * The fetched keys, indexed by key tag.  Published by {@link #done}.
+         */
+        private final Map<String, GetKeysResponse.Key> keys = new HashMap<String, GetKeysResponse.Key>();
+
+        /**
+         * The per-key errors reported by the server, indexed by key tag.  Published by {@link #done}.
+         */
+        private final Map<String, GetKeysResponse.IonicError> errors =
+                new HashMap<String, GetKeysResponse.IonicError>();
+
+        /**
+         * The failure of the fetch, or null on success.  Published by {@link #done}.
+         */
+        private IonicException failure;
+
+        /**
+         * Wait for the linger time (or until the batch is full), then fetch the keys of the batch.  Other threads
+         * depend on the fetch, so it is made even if the calling thread is interrupted while waiting.
+         */
+        private void fetch() {
+            try {
+                if (lingerNanos > 0) {
+                    full.await(lingerNanos, TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close(this);
+            }
+            try {
+                final GetKeysRequest request = new GetKeysRequest();
+                for (String keyId : keyIds) {
+                    request.addKeyId(keyId);
+                }
+                requests.incrementAndGet();
+                final GetKeysResponse response = getKeyServices().getKeys(request);
+                for (GetKeysResponse.Key key : response.getKeys()) {
+                    keys.put(key.getId(), key);
+                }
+                if (response.getErrors() != null) {
+                    for (GetKeysResponse.IonicError error : response.getErrors()) {
+                        errors.put(error.getKeyId(), error);
+                    }
+                }
+            } catch (IonicException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IonicException(SdkError.ISAGENT_REQUESTFAILED, e);
+            } finally {
+                retire(this);
+                done.countDown();
+            }
+        }
+
+        /**
+         * Wait for the fetch to complete.
+         *
+         * @throws IonicException on failure of the fetch, or on interruption while waiting
+         */
+        private void await() throws IonicException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IonicException(SdkError.ISAGENT_REQUESTFAILED, e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
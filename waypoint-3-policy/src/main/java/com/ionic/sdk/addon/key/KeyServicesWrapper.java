@@ -0,0 +1,74 @@
+package com.ionic.sdk.addon.key;
+
+import com.ionic.sdk.agent.data.MetadataMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.agent.request.updatekey.UpdateKeysRequest;
+import com.ionic.sdk.agent.request.updatekey.UpdateKeysResponse;
+import com.ionic.sdk.device.profile.DeviceProfile;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+/**
+ * Base class for {@link KeyServices} implementations that decorate another {@link KeyServices}.
+ * <p>
+ * As described in {@link AbstractKeyServices}, subclasses need only override {@link #createKeys(CreateKeysRequest)}
+ * and {@link #getKeys(GetKeysRequest)} to intercept key traffic.
+ */
+public class KeyServicesWrapper extends AbstractKeyServices {
+
+    /**
+     * The wrapped key services implementation, to which requests are delegated.
+     */
+    private final KeyServices keyServices;
+
+    /**
+     * Constructor.
+     *
+     * @param keyServices the wrapped key services implementation, to which requests are delegated
+     */
+    public KeyServicesWrapper(final KeyServices keyServices) {
+        super();
+        this.keyServices = keyServices;
+    }
+
+    /**
+     * @return the wrapped key services implementation, to which requests are delegated
+     */
+    public final KeyServices getKeyServices() {
+        return keyServices;
+    }
+
+    @Override
+    public boolean hasActiveProfile() {
+        return keyServices.hasActiveProfile();
+    }
+
+    @Override
+    public DeviceProfile getActiveProfile() {
+        return keyServices.getActiveProfile();
+    }
+
+    @Override
+    public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+        return keyServices.createKeys(request);
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        return keyServices.getKeys(request);
+    }
+
+    @Override
+    public UpdateKeysResponse updateKey(final UpdateKeysRequest.Key key, final MetadataMap metadata)
+            throws IonicException {
+        return keyServices.updateKey(key, metadata);
+    }
+
+    @Override
+    public UpdateKeysResponse updateKeys(final UpdateKeysRequest request) throws IonicException {
+        return keyServices.updateKeys(request);
+    }
+}
@@ -0,0 +1,322 @@
+package com.ionic.sdk.addon.key;
+
+import com.ionic.sdk.agent.data.MetadataMap;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.agent.request.updatekey.UpdateKeysRequest;
+import com.ionic.sdk.agent.request.updatekey.UpdateKeysResponse;
+import com.ionic.sdk.device.profile.DeviceProfile;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.json.JsonIO;
+
+import java.io.ByteArrayInputStream;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the Ionic key service, used to exercise the sample application without network access
+ * (for example, in load tests and benchmarks).
+ * <p>
+ * Keys are generated and held in process memory, along with the attributes with which they were created.  Ionic
+ * data policies (in the JSON form accepted by {@link com.ionic.sdk.addon.policy.PolicyService}) may be added and
+ * removed; each key fetch is evaluated against the active policies, as described in {@link LocalPolicy}.
+ * <p>
+ * A fixed latency may be injected into each request, to simulate the network round trip to the key service, and a
+ * fraction of requests may be made to fail, to simulate server errors.
+ * <p>
+ * Instances are thread safe.
+ */
+public class LocalKeyServices extends AbstractKeyServices {
+
+    /**
+     * The keys created by this instance, indexed by key tag.
+     */
+    private final ConcurrentMap<String, LocalKey> keys;
+
+    /**
+     * The active policies, indexed by policy identifier.
+     */
+    private final ConcurrentMap<String, LocalPolicy> policies;
+
+    /**
+     * Source of key material.
+     */
+    private final SecureRandom random;
+
+    /**
+     * Source of key tags.
+     */
+    private final AtomicLong keyCounter;
+
+    /**
+     * Source of policy identifiers.
+     */
+    private final AtomicLong policyCounter;
+
+    /**
+     * The number of create and fetch requests received.
+     */
+    private final AtomicLong requests;
+
+    /**
+     * The number of keys requested in fetch requests.
+     */
+    private final AtomicLong keysRequested;
+
+    /**
+     * The latency in nanoseconds injected into each request.
+     */
+    private volatile long latencyNanos;
+
+    /**
+     * The fraction of requests that fail.
+     */
+    private volatile double errorRate;
+
+    /**
+     * Constructor.
+     */
+    public LocalKeyServices() {
+        super();
+        this.keys = new ConcurrentHashMap<String, LocalKey>();
+        this.policies = new ConcurrentHashMap<String, LocalPolicy>();
+        this.random = new SecureRandom();
+        this.keyCounter = new AtomicLong();
+        this.policyCounter = new AtomicLong();
+        this.requests = new AtomicLong();
+        this.keysRequested = new AtomicLong();
+        this.latencyNanos = 0L;
+        this.errorRate = 0.0;
+    }
+
+    /**
+     * Set the latency injected into each create and fetch request.
+     *
+     * @param latency the latency
+     * @param unit    the unit of the latency parameter
+     */
+    public void setLatency(final long latency, final TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    /**
+     * Set the fraction of create and fetch requests that fail with {@link SdkError#ISAGENT_REQUESTFAILED}.
+     *
+     * @param errorRate the fraction of requests, in the range [0, 1], that fail
+     */
+    public void setErrorRate(final double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @return the number of create and fetch requests received
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of keys requested in fetch requests
+     */
+    public long getKeysRequested() {
+        return keysRequested.get();
+    }
+
+    /**
+     * Add a new policy to the policies evaluated on key fetch.
+     *
+     * @param policyJson Ionic policy JSON
+     * @return the identifier for the newly created policy
+     * @throws IonicException on unrecognized or unsupported policy content
+     */
+    public String addPolicy(final byte[] policyJson) throws IonicException {
+        final String policyId = String.format(POLICY_ID_PATTERN, policyCounter.incrementAndGet());
+        final LocalPolicy policy = new LocalPolicy(policyId, JsonIO.readObject(new ByteArrayInputStream(policyJson)));
+        policies.put(policyId, policy);
+        return policyId;
+    }
+
+    /**
+     * Remove a policy from the policies evaluated on key fetch.
+     *
+     * @param policyId the identifier for the policy to be deleted
+     * @throws IonicException if the policy is not found
+     */
+    public void deletePolicy(final String policyId) throws IonicException {
+        if (policies.remove(policyId) == null) {
+            throw new IonicException(SdkError.ISAGENT_REQUESTFAILED);
+        }
+    }
+
+    @Override
+    public boolean hasActiveProfile() {
+        return true;
+    }
+
+    /**
+     * @return null, as this implementation is not associated with an Ionic device profile
+     */
+    @Override
+    public DeviceProfile getActiveProfile() {
+        return null;
+    }
+
+    @Override
+    public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+        simulateRequest();
+        final CreateKeysResponse response = new CreateKeysResponse();
+        for (CreateKeysRequest.Key requestKey : request.getKeys()) {
+            for (int i = 0; i < requestKey.getQuantity(); ++i) {
+                final String keyId = String.format(KEY_ID_PATTERN, keyCounter.incrementAndGet());
+                final byte[] keyBytes = new byte[KEY_LENGTH];
+                random.nextBytes(keyBytes);
+                final KeyAttributesMap attributes = (requestKey.getAttributes() == null)
+                        ? new KeyAttributesMap() : new KeyAttributesMap(requestKey.getAttributes());
+                keys.put(keyId, new LocalKey(keyBytes, attributes));
+                final CreateKeysResponse.Key key = new CreateKeysResponse.Key();
+                key.setRefId(requestKey.getRefId());
+                key.setId(keyId);
+                key.setKey(keyBytes);
+                key.setAttributesMap(attributes);
+                key.setMutableAttributesMap(requestKey.getMutableAttributes());
+                response.add(key);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Fetch keys.  Keys that are unknown, or that are denied by an active policy, are omitted from the response.
+     *
+     * @param request the keys to fetch
+     * @return the released keys
+     * @throws IonicException on a simulated request failure
+     */
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        simulateRequest();
+        keysRequested.addAndGet(request.getKeyIds().size());
+        final GetKeysResponse response = new GetKeysResponse();
+        for (String keyId : request.getKeyIds()) {
+            final LocalKey localKey = keys.get(keyId);
+            if ((localKey != null) && !isDenied(localKey.getAttributes())) {
+                final GetKeysResponse.Key key = new GetKeysResponse.Key();
+                key.setId(keyId);
+                key.setKey(localKey.getKey());
+                key.setAttributesMap(localKey.getAttributes());
+                response.add(key);
+            }
+        }
+        return response;
+    }
+
+    @Override
+    public UpdateKeysResponse updateKey(final UpdateKeysRequest.Key key, final MetadataMap metadata)
+            throws IonicException {
+        throw new IonicException(SdkError.ISAGENT_REQUESTFAILED);
+    }
+
+    @Override
+    public UpdateKeysResponse updateKeys(final UpdateKeysRequest request) throws IonicException {
+        throw new IonicException(SdkError.ISAGENT_REQUESTFAILED);
+    }
+
+    /**
+     * @param attributes the attributes of a key
+     * @return true if any active policy denies release of the key
+     */
+    private boolean isDenied(final KeyAttributesMap attributes) {
+        for (LocalPolicy policy : policies.values()) {
+            if (policy.isDenied(attributes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Account for a request, applying the configured latency and error rate.
+     *
+     * @throws IonicException on a simulated request failure
+     */
+    private void simulateRequest() throws IonicException {
+        requests.incrementAndGet();
+        final long latency = latencyNanos;
+        if (latency > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IonicException(SdkError.ISAGENT_REQUESTFAILED, e);
+            }
+        }
+        final double rate = errorRate;
+        if ((rate > 0.0) && (ThreadLocalRandom.current().nextDouble() < rate)) {
+            throw new IonicException(SdkError.ISAGENT_REQUESTFAILED);
+        }
+    }
+
+    /**
+     * A key held by this key service.
+     */
+    private static final class LocalKey {
+
+        /**
+         * The AES key material.
+         */
+        private final byte[] key;
+
+        /**
+         * The attributes with which the key was created.
+         */
+        private final KeyAttributesMap attributes;
+
+        /**
+         * Constructor.
+         *
+         * @param key        the AES key material
+         * @param attributes the attributes with which the key was created
+         */
+        private LocalKey(final byte[] key, final KeyAttributesMap attributes) {
+            this.key = key;
+            this.attributes = attributes;
+        }
+
+        /**
+         * @return the AES key material
+         */
+        private byte[] getKey() {
+            return key;
+        }
+
+        /**
+         * @return the attributes with which the key was created
+         */
+        private KeyAttributesMap getAttributes() {
+            return attributes;
+        }
+    }
+
+    /**
+     * The pattern of generated key tags (a four character keyspace followed by a seven character identifier).
+     */
+    private static final String KEY_ID_PATTERN = "LOCL%07d";
+
+    /**
+     * The pattern of generated policy identifiers.
+     */
+    private static final String POLICY_ID_PATTERN = "local-policy-%d";
+
+    /**
+     * The length in bytes of generated AES keys.
+     */
+    private static final int KEY_LENGTH = 32;
+}
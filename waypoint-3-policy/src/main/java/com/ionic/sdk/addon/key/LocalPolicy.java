@@ -0,0 +1,240 @@
+package com.ionic.sdk.addon.key;
+
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-process evaluation of an Ionic data policy, as published through the policy web API.
+ * <p>
+ * A subset of the policy language is supported; enough to evaluate policies such as those of this sample
+ * application.  A policy applies to a key if its target condition matches the key's attributes.  Each rule yields
+ * its effect if it has no condition, or if its condition matches.  Rule effects are combined according to the
+ * policy's rule combining algorithm ("deny-overrides" or "permit-overrides").  The only supported condition function
+ * is "string-at-least-one-member-of", comparing a literal string set with a resource attribute.
+ */
+final class LocalPolicy {
+
+    /**
+     * The server-assigned identifier of the policy.
+     */
+    private final String id;
+
+    /**
+     * True if the policy is enabled.
+     */
+    private final boolean enabled;
+
+    /**
+     * The condition that determines whether the policy applies to a key, or null to apply to all keys.
+     */
+    private final Condition target;
+
+    /**
+     * True if any applicable "Deny" rule should override applicable "Permit" rules.
+     */
+    private final boolean denyOverrides;
+
+    /**
+     * The rules of the policy.
+     */
+    private final List<Rule> rules;
+
+    /**
+     * Constructor.
+     *
+     * @param id         the server-assigned identifier of the policy
+     * @param jsonPolicy the JSON representation of the policy
+     * @throws IonicException on policy content that is not supported
+     */
+    LocalPolicy(final String id, final JsonObject jsonPolicy) throws IonicException {
+        this.id = id;
+        this.enabled = jsonPolicy.getBoolean(ENABLED, true);
+        final JsonObject jsonTarget = jsonPolicy.getJsonObject(TARGET);
+        this.target = ((jsonTarget == null) || !jsonTarget.containsKey(CONDITION))
+                ? null : new Condition(jsonTarget.getJsonObject(CONDITION));
+        final String algorithm = jsonPolicy.getString(RULE_COMBINING_ALG_ID, DENY_OVERRIDES);
+        if (DENY_OVERRIDES.equals(algorithm)) {
+            this.denyOverrides = true;
+        } else if (PERMIT_OVERRIDES.equals(algorithm)) {
+            this.denyOverrides = false;
+        } else {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, algorithm);
+        }
+        final List<Rule> rulesPolicy = new ArrayList<Rule>();
+        final JsonArray jsonRules = jsonPolicy.getJsonArray(RULES);
+        if (jsonRules != null) {
+            for (JsonValue jsonRule : jsonRules) {
+                rulesPolicy.add(new Rule((JsonObject) jsonRule));
+            }
+        }
+        this.rules = Collections.unmodifiableList(rulesPolicy);
+    }
+
+    /**
+     * @return the server-assigned identifier of the policy
+     */
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Evaluate this policy against the attributes of a key.
+     *
+     * @param attributes the attributes of the key being requested
+     * @return true if this policy denies release of the key
+     */
+    boolean isDenied(final KeyAttributesMap attributes) {
+        if (!enabled || ((target != null) && !target.matches(attributes))) {
+            return false;
+        }
+        boolean deny = false;
+        boolean permit = false;
+        for (Rule rule : rules) {
+            if (rule.applies(attributes)) {
+                deny |= rule.isDeny();
+                permit |= !rule.isDeny();
+            }
+        }
+        return denyOverrides ? deny : (deny && !permit);
+    }
+
+    /**
+     * A single policy rule.
+     */
+    private static final class Rule {
+
+        /**
+         * True if the rule effect is "Deny"; false if "Permit".
+         */
+        private final boolean deny;
+
+        /**
+         * The condition under which the rule applies, or null if the rule always applies.
+         */
+        private final Condition condition;
+
+        /**
+         * Constructor.
+         *
+         * @param jsonRule the JSON representation of the rule
+         * @throws IonicException on rule content that is not supported
+         */
+        private Rule(final JsonObject jsonRule) throws IonicException {
+            final String effect = jsonRule.getString(EFFECT, null);
+            if (EFFECT_DENY.equals(effect)) {
+                this.deny = true;
+            } else if (EFFECT_PERMIT.equals(effect)) {
+                this.deny = false;
+            } else {
+                throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, effect);
+            }
+            this.condition = jsonRule.containsKey(CONDITION)
+                    ? new Condition(jsonRule.getJsonObject(CONDITION)) : null;
+        }
+
+        /**
+         * @return true if the rule effect is "Deny"
+         */
+        private boolean isDeny() {
+            return deny;
+        }
+
+        /**
+         * @param attributes the attributes of the key being requested
+         * @return true if the rule applies to the key
+         */
+        private boolean applies(final KeyAttributesMap attributes) {
+            return (condition == null) || condition.matches(attributes);
+        }
+    }
+
+    /**
+     * A "string-at-least-one-member-of" condition, comparing a literal string set with a resource attribute.
+     */
+    private static final class Condition {
+
+        /**
+         * The name of the resource (key) attribute to be compared.
+         */
+        private final String attribute;
+
+        /**
+         * The literal values, any one of which must be present in the resource attribute.
+         */
+        private final Set<String> values;
+
+        /**
+         * Constructor.
+         *
+         * @param jsonCondition the JSON representation of the condition
+         * @throws IonicException on condition content that is not supported
+         */
+        private Condition(final JsonObject jsonCondition) throws IonicException {
+            final String functionId = jsonCondition.getString(FUNCTION_ID, null);
+            if (!FUNCTION_AT_LEAST_ONE_MEMBER_OF.equals(functionId)) {
+                throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, functionId);
+            }
+            String attributeCondition = null;
+            final Set<String> valuesCondition = new HashSet<String>();
+            for (JsonValue jsonValue : jsonCondition.getJsonArray(ARGS)) {
+                final JsonObject jsonArg = (JsonObject) jsonValue;
+                if (jsonArg.containsKey(CATEGORY)) {
+                    attributeCondition = jsonArg.getString(ID);
+                } else {
+                    for (JsonValue value : jsonArg.getJsonArray(VALUE)) {
+                        valuesCondition.add(((JsonString) value).getString());
+                    }
+                }
+            }
+            if (attributeCondition == null) {
+                throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, jsonCondition.toString());
+            }
+            this.attribute = attributeCondition;
+            this.values = valuesCondition;
+        }
+
+        /**
+         * @param attributes the attributes of the key being requested
+         * @return true if any value of the resource attribute is a member of the literal values
+         */
+        private boolean matches(final KeyAttributesMap attributes) {
+            final List<String> valuesKey = (attributes == null) ? null : attributes.get(attribute);
+            if (valuesKey != null) {
+                for (String value : valuesKey) {
+                    if (values.contains(value)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final String ENABLED = "enabled";
+    private static final String TARGET = "target";
+    private static final String CONDITION = "condition";
+    private static final String RULE_COMBINING_ALG_ID = "ruleCombiningAlgId";
+    private static final String DENY_OVERRIDES = "deny-overrides";
+    private static final String PERMIT_OVERRIDES = "permit-overrides";
+    private static final String RULES = "rules";
+    private static final String EFFECT = "effect";
+    private static final String EFFECT_DENY = "Deny";
+    private static final String EFFECT_PERMIT = "Permit";
+    private static final String FUNCTION_ID = "functionId";
+    private static final String FUNCTION_AT_LEAST_ONE_MEMBER_OF = "string-at-least-one-member-of";
+    private static final String ARGS = "args";
+    private static final String CATEGORY = "category";
+    private static final String ID = "id";
+    private static final String VALUE = "value";
+}
@@ -0,0 +1,405 @@
+package com.ionic.sdk.addon.key;
+
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link KeyServices} implementation that serves key create requests from pools of keys created ahead of
+ * time, so that encrypt operations do not wait for the key service.
+ * <p>
+ * A pool is kept for each distinct set of key attributes.  When a pool drops below its low-water mark, it is refilled
+ * to its configured depth by a single bulk create request, made on the supplied {@link Executor}.  A request that
+ * finds its pool empty (for example, the first request for a set of attributes) is passed through to the wrapped
+ * implementation; use {@link #prefill(KeyAttributesMap)} to fill a pool before first use.
+ * <p>
+ * Each pooled key may be handed out for more than one encrypt operation: up to a configured number of uses, and
+ * within a configured time window from its first use.  Reuse reduces the number of keys created, at the cost of
+ * coarser key-level auditing and revocation.  A use count of one disables reuse.
+ * <p>
+ * Bulk create requests (such as those of {@link com.ionic.sdk.addon.jdbc.IonicBatchWriter}) are also served from the
+ * pools, as far as the pooled keys allow; the remainder is passed through to the wrapped implementation in a single
+ * request.  Request keys specifying mutable attributes are always passed through.
+ * <p>
+ * Instances are thread safe.
+ */
+public class PreallocatedKeyServices extends KeyServicesWrapper {
+
+    /**
+     * The threads used to refill pools in the background.
+     */
+    private final Executor refillExecutor;
+
+    /**
+     * The number of keys to which a pool is refilled.
+     */
+    private final int depth;
+
+    /**
+     * The number of keys below which a pool is refilled.
+     */
+    private final int lowWater;
+
+    /**
+     * The maximum number of encrypt operations for which a key is handed out.
+     */
+    private final int usesPerKey;
+
+    /**
+     * The time in nanoseconds, from its first use, for which a key may be handed out again; zero for no limit.
+     */
+    private final long reuseNanos;
+
+    /**
+     * The key pools, indexed by key attributes.
+     */
+    private final ConcurrentMap<KeyAttributesMap, Pool> pools;
+
+    /**
+     * The number of requests served from a pool.
+     */
+    private final AtomicLong hits;
+
+    /**
+     * The number of requests passed through to the wrapped implementation because the pool was empty.
+     */
+    private final AtomicLong misses;
+
+    /**
+     * The number of bulk create requests made to refill pools.
+     */
+    private final AtomicLong refills;
+
+    /**
+     * The number of bulk create requests that failed.
+     */
+    private final AtomicLong refillFailures;
+
+    /**
+     * Constructor.  Each key is used once.
+     *
+     * @param keyServices    the wrapped key services implementation, used to create keys
+     * @param refillExecutor the threads used to refill pools in the background
+     * @param depth          the number of keys to which a pool is refilled
+     * @param lowWater       the number of keys below which a pool is refilled (at least one)
+     */
+    public PreallocatedKeyServices(final KeyServices keyServices, final Executor refillExecutor, final int depth,
+                                   final int lowWater) {
+        this(keyServices, refillExecutor, depth, lowWater, 1, 0L, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param keyServices    the wrapped key services implementation, used to create keys
+     * @param refillExecutor the threads used to refill pools in the background
+     * @param depth          the number of keys to which a pool is refilled
+     * @param lowWater       the number of keys below which a pool is refilled (at least one)
+     * @param usesPerKey     the maximum number of encrypt operations for which a key is handed out
+     * @param reuseWindow    the time, from its first use, for which a key may be handed out again; zero for no limit
+     * @param unit           the unit of the reuseWindow parameter
+     */
+    public PreallocatedKeyServices(final KeyServices keyServices, final Executor refillExecutor, final int depth,
+                                   final int lowWater, final int usesPerKey, final long reuseWindow,
+                                   final TimeUnit unit) {
+        super(keyServices);
+        this.refillExecutor = refillExecutor;
+        this.depth = Math.max(1, depth);
+        this.lowWater = Math.min(this.depth, Math.max(1, lowWater));
+        this.usesPerKey = Math.max(1, usesPerKey);
+        this.reuseNanos = unit.toNanos(Math.max(0L, reuseWindow));
+        this.pools = new ConcurrentHashMap<KeyAttributesMap, Pool>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.refills = new AtomicLong();
+        this.refillFailures = new AtomicLong();
+    }
+
+    /**
+     * @return the number of requests served from a pool
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of requests passed through to the wrapped implementation because the pool was empty
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of bulk create requests made to refill pools
+     */
+    public long getRefills() {
+        return refills.get();
+    }
+
+    /**
+     * @return the number of bulk create requests that failed
+     */
+    public long getRefillFailures() {
+        return refillFailures.get();
+    }
+
+    /**
+     * Fill the pool for a set of key attributes to its configured depth, on the calling thread.
+     *
+     * @param attributes the key attributes
+     * @throws IonicException on failure of the server request
+     */
+    public void prefill(final KeyAttributesMap attributes) throws IonicException {
+        fill(getPool(attributes));
+    }
+
+    /**
+     * Fill the pools for several sets of key attributes to their configured depth, on the calling thread.
+     *
+     * @param attributes the sets of key attributes
+     * @throws IonicException on failure of a server request
+     */
+    public void prefill(final Collection<KeyAttributesMap> attributes) throws IonicException {
+        for (KeyAttributesMap attributesPool : attributes) {
+            prefill(attributesPool);
+        }
+    }
+
+    @Override
+    public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+        final CreateKeysResponse response = new CreateKeysResponse();
+        final CreateKeysRequest requestRemaining = new CreateKeysRequest();
+        for (CreateKeysRequest.Key requestKey : request.getKeys()) {
+            final KeyAttributesMap mutableAttributes = requestKey.getMutableAttributes();
+            int served = 0;
+            if ((mutableAttributes == null) || mutableAttributes.isEmpty()) {
+                final Pool pool = getPool(requestKey.getAttributes());
+                while (served < requestKey.getQuantity()) {
+                    final CreateKeysResponse.Key key = pool.take();
+                    if (key == null) {
+                        break;
+                    }
+                    response.add(copy(key, requestKey.getRefId()));
+                    ++served;
+                }
+                refill(pool);
+                hits.addAndGet(served);
+                misses.addAndGet(requestKey.getQuantity() - served);
+            }
+            if (served < requestKey.getQuantity()) {
+                requestRemaining.add(new CreateKeysRequest.Key(requestKey.getRefId(),
+                        requestKey.getQuantity() - served, requestKey.getAttributes(), mutableAttributes));
+            }
+        }
+        if (!requestRemaining.getKeys().isEmpty()) {
+            requestRemaining.setMetadata(request.getMetadata());
+            final CreateKeysResponse responseRemaining = super.createKeys(requestRemaining);
+            for (CreateKeysResponse.Key key : responseRemaining.getKeys()) {
+                response.add(key);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Copy a pooled key for a response, as a key being reused may be handed out to several requests at once.
+     *
+     * @param key   the pooled key
+     * @param refId the reference identifier of the request key served
+     * @return the copy of the key
+     */
+    private static CreateKeysResponse.Key copy(final CreateKeysResponse.Key key, final String refId) {
+        final CreateKeysResponse.Key keyCopy = new CreateKeysResponse.Key();
+        keyCopy.setRefId(refId);
+        keyCopy.setId(key.getId());
+        keyCopy.setKey(key.getKey());
+        keyCopy.setAttributesMap(key.getAttributesMap());
+        keyCopy.setMutableAttributesMap(key.getMutableAttributesMap());
+        keyCopy.setObligationsMap(key.getObligationsMap());
+        keyCopy.setOrigin(key.getOrigin());
+        keyCopy.setDeviceId(key.getDeviceId());
+        return keyCopy;
+    }
+
+    /**
+     * @param attributes the key attributes of a create request; null is equivalent to no attributes
+     * @return the pool of keys with the attributes
+     */
+    private Pool getPool(final KeyAttributesMap attributes) {
+        Pool pool = pools.get((attributes == null) ? EMPTY : attributes);
+        if (pool == null) {
+            final KeyAttributesMap attributesPool = (attributes == null)
+                    ? new KeyAttributesMap() : new KeyAttributesMap(attributes);
+            final Pool poolNew = new Pool(attributesPool);
+            pool = pools.putIfAbsent(attributesPool, poolNew);
+            pool = (pool == null) ? poolNew : pool;
+        }
+        return pool;
+    }
+
+    /**
+     * Start a background refill of a pool, if it is below its low-water mark and not already being refilled.
+     *
+     * @param pool the pool
+     */
+    private void refill(final Pool pool) {
+        if (!pool.startRefill()) {
+            return;
+        }
+        try {
+            refillExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        fill(pool);
+                    } catch (IonicException e) {
+                        refillFailures.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        refillFailures.incrementAndGet();
+                    } finally {
+                        pool.endRefill();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pool.endRefill();
+        }
+    }
+
+    /**
+     * Fill a pool to its configured depth, using a single bulk create request.
+     *
+     * @param pool the pool
+     * @throws IonicException on failure of the server request
+     */
+    private void fill(final Pool pool) throws IonicException {
+        final int quantity = depth - pool.size();
+        if (quantity <= 0) {
+            return;
+        }
+        final CreateKeysRequest request = new CreateKeysRequest();
+        request.add(new CreateKeysRequest.Key("0", quantity, new KeyAttributesMap(pool.attributes)));
+        final CreateKeysResponse response = getKeyServices().createKeys(request);
+        refills.incrementAndGet();
+        pool.addAll(response.getKeys());
+    }
+
+    /**
+     * The empty attribute set, used (and never modified) to look up the pool serving requests without attributes.
+     */
+    private static final KeyAttributesMap EMPTY = new KeyAttributesMap();
+
+    /**
+     * The unused keys with a single set of key attributes, and the key currently being reused.
+     */
+    private final class Pool {
+
+        /**
+         * The attributes of the keys in the pool.
+         */
+        private final KeyAttributesMap attributes;
+
+        /**
+         * The unused keys.  Guarded by this pool.
+         */
+        private final Deque<CreateKeysResponse.Key> keys;
+
+        /**
+         * The key most recently handed out, which may be handed out again; null if none.  Guarded by this pool.
+         */
+        private CreateKeysResponse.Key current;
+
+        /**
+         * The number of times the current key has been handed out.  Guarded by this pool.
+         */
+        private int currentUses;
+
+        /**
+         * The time (per {@link System#nanoTime()}) at which the current key was first handed out.  Guarded by this
+         * pool.
+         */
+        private long currentStart;
+
+        /**
+         * True while a refill of the pool is pending.  Guarded by this pool.
+         */
+        private boolean refilling;
+
+        /**
+         * Constructor.
+         *
+         * @param attributes the attributes of the keys in the pool
+         */
+        private Pool(final KeyAttributesMap attributes) {
+            this.attributes = attributes;
+            this.keys = new ArrayDeque<CreateKeysResponse.Key>();
+            this.current = null;
+            this.currentUses = 0;
+            this.currentStart = 0L;
+            this.refilling = false;
+        }
+
+        /**
+         * Hand out a key: the current key, if it may be reused; otherwise an unused key.
+         *
+         * @return a key with the attributes of the pool, or null if the pool is empty
+         */
+        private synchronized CreateKeysResponse.Key take() {
+            final long now = System.nanoTime();
+            final boolean reusable = (current != null) && (currentUses < usesPerKey)
+                    && ((reuseNanos == 0L) || (now - currentStart < reuseNanos));
+            if (reusable) {
+                ++currentUses;
+            } else {
+                current = keys.poll();
+                currentUses = 1;
+                currentStart = now;
+            }
+            return current;
+        }
+
+        /**
+         * @return the number of unused keys
+         */
+        private synchronized int size() {
+            return keys.size();
+        }
+
+        /**
+         * @param keysNew keys to add to the pool
+         */
+        private synchronized void addAll(final Collection<CreateKeysResponse.Key> keysNew) {
+            keys.addAll(keysNew);
+        }
+
+        /**
+         * @return true if the caller should refill the pool; the caller must then call {@link #endRefill()}
+         */
+        private synchronized boolean startRefill() {
+            if (refilling || (keys.size() >= lowWater)) {
+                return false;
+            }
+            refilling = true;
+            return true;
+        }
+
+        /**
+         * Record the completion of a refill.
+         */
+        private synchronized void endRefill() {
+            refilling = false;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.ionic.sdk.addon.key;
+
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link KeyServices} implementation that serves single key create requests from keys created earlier in bulk.
+ * <p>
+ * A caller determines the attributes of the keys needed to process a unit of work, and creates them in one server
+ * round trip using {@link #precreate(CreateKeysRequest)}.  Subsequent single key create requests (as issued by
+ * {@link com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2#encrypt(String,
+ * com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoEncryptAttributes)}) are then satisfied locally by a key with the
+ * requested attributes.  When no such key remains, the request is passed through to the wrapped implementation.
+ * <p>
+ * Instances are not thread safe; each unit of work should use its own instance.
+ */
+public class PrecreatedKeyServices extends KeyServicesWrapper {
+
+    /**
+     * The unused keys from earlier bulk create requests, indexed by key attributes.
+     */
+    private final Map<KeyAttributesMap, Deque<CreateKeysResponse.Key>> keys;
+
+    /**
+     * Constructor.
+     *
+     * @param keyServices the wrapped key services implementation, used to create keys
+     */
+    public PrecreatedKeyServices(final KeyServices keyServices) {
+        super(keyServices);
+        this.keys = new HashMap<KeyAttributesMap, Deque<CreateKeysResponse.Key>>();
+    }
+
+    /**
+     * Create keys in a single server request, making them available to subsequent single key create requests.
+     *
+     * @param request the keys to create; each request key's attributes are used to match later requests
+     * @throws IonicException on failure of the server request
+     */
+    public void precreate(final CreateKeysRequest request) throws IonicException {
+        final Map<String, KeyAttributesMap> attributesByRef = new HashMap<String, KeyAttributesMap>();
+        for (CreateKeysRequest.Key requestKey : request.getKeys()) {
+            attributesByRef.put(requestKey.getRefId(), requestKey.getAttributes());
+        }
+        final CreateKeysResponse response = getKeyServices().createKeys(request);
+        for (CreateKeysResponse.Key key : response.getKeys()) {
+            add(attributesByRef.get(key.getRefId()), key);
+        }
+    }
+
+    /**
+     * Make a key available to subsequent single key create requests.
+     *
+     * @param attributes the attributes with which the key was created
+     * @param key        the key
+     */
+    public void add(final KeyAttributesMap attributes, final CreateKeysResponse.Key key) {
+        final KeyAttributesMap attributesKey = toKey(attributes);
+        Deque<CreateKeysResponse.Key> queue = keys.get(attributesKey);
+        if (queue == null) {
+            queue = new ArrayDeque<CreateKeysResponse.Key>();
+            keys.put(attributesKey, queue);
+        }
+        queue.add(key);
+    }
+
+    /**
+     * Discard any unused keys.
+     */
+    public void clear() {
+        keys.clear();
+    }
+
+    @Override
+    public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+        if (request.getKeys().size() == 1) {
+            final CreateKeysRequest.Key requestKey = request.getKeys().iterator().next();
+            final Deque<CreateKeysResponse.Key> queue = keys.get(toKey(requestKey.getAttributes()));
+            if ((requestKey.getQuantity() == 1) && (queue != null) && (!queue.isEmpty())) {
+                final CreateKeysResponse response = new CreateKeysResponse();
+                response.add(queue.remove());
+                return response;
+            }
+        }
+        return getKeyServices().createKeys(request);
+    }
+
+    /**
+     * Normalize request attributes for lookup; a request without attributes matches keys created with none.
+     *
+     * @param attributes the attributes of a key create request
+     * @return the lookup key for the index of unused keys
+     */
+    private static KeyAttributesMap toKey(final KeyAttributesMap attributes) {
+        return (attributes == null) ? new KeyAttributesMap() : attributes;
+    }
+}
@@ -0,0 +1,113 @@
+package com.ionic.sdk.addon.key;
+
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link KeyServices} implementation that serves key requests from the results of a single, earlier multi-key
+ * request.
+ * <p>
+ * A caller collects the key tags needed to process a unit of work, and calls {@link #prefetch(Collection)} to fetch
+ * them in one server round trip.  Subsequent single key requests (as issued by
+ * {@link com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2#decrypt(String)}) are then satisfied locally.  Key tags that
+ * were requested but not returned by the server are reported as denied.  Key tags that were never requested are
+ * passed through to the wrapped implementation.
+ * <p>
+ * Instances are not thread safe; each unit of work should use its own instance.
+ */
+public class PrefetchedKeyServices extends KeyServicesWrapper {
+
+    /**
+     * The keys returned by the most recent prefetch, indexed by key tag.
+     */
+    private final Map<String, GetKeysResponse.Key> keys;
+
+    /**
+     * The key tags requested by the most recent prefetch, but not returned by the server.
+     */
+    private final Set<String> denied;
+
+    /**
+     * Constructor.
+     *
+     * @param keyServices the wrapped key services implementation, used to fetch keys
+     */
+    public PrefetchedKeyServices(final KeyServices keyServices) {
+        super(keyServices);
+        this.keys = new HashMap<String, GetKeysResponse.Key>();
+        this.denied = new HashSet<String>();
+    }
+
+    /**
+     * Fetch the specified keys in a single request, replacing the results of any previous prefetch.
+     *
+     * @param keyIds the key tags to be fetched
+     * @throws IonicException on failure of the server request
+     */
+    public void prefetch(final Collection<String> keyIds) throws IonicException {
+        keys.clear();
+        denied.clear();
+        prefetchMore(keyIds);
+    }
+
+    /**
+     * Fetch those of the specified keys not already known to this instance in a single request, retaining the
+     * results of previous prefetches.
+     *
+     * @param keyIds the key tags to be fetched
+     * @throws IonicException on failure of the server request
+     */
+    public void prefetchMore(final Collection<String> keyIds) throws IonicException {
+        final GetKeysRequest request = new GetKeysRequest();
+        for (String keyId : keyIds) {
+            if (!keys.containsKey(keyId) && !denied.contains(keyId)) {
+                request.addKeyId(keyId);
+            }
+        }
+        if (request.getKeyIds().isEmpty()) {
+            return;
+        }
+        final GetKeysResponse response = getKeyServices().getKeys(request);
+        for (GetKeysResponse.Key key : response.getKeys()) {
+            keys.put(key.getId(), key);
+        }
+        for (String keyId : request.getKeyIds()) {
+            if (!keys.containsKey(keyId)) {
+                denied.add(keyId);
+            }
+        }
+    }
+
+    /**
+     * @param keyId a key tag
+     * @return true if the key tag was requested by a prefetch, but not returned by the server
+     */
+    public boolean isDenied(final String keyId) {
+        return denied.contains(keyId);
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        final GetKeysResponse response = new GetKeysResponse();
+        for (String keyId : request.getKeyIds()) {
+            final GetKeysResponse.Key key = keys.get(keyId);
+            if (key != null) {
+                response.add(key);
+            } else if (denied.contains(keyId)) {
+                throw new IonicException(SdkError.ISAGENT_KEY_DENIED);
+            } else {
+                return getKeyServices().getKeys(request);
+            }
+        }
+        return response;
+    }
+}
@@ -0,0 +1,79 @@
+package com.ionic.sdk.addon.metrics;
+
+/**
+ * Recipient of instrumentation events from the Ionic JDBC components of this sample application.
+ * <p>
+ * Implementations adapt these events to a metrics library (for example, by recording timers and counters in a
+ * Micrometer or Dropwizard registry).  {@link NoOpIonicMetrics} is used when no implementation is configured, and
+ * {@link SimpleIonicMetrics} accumulates the events in memory.
+ * <p>
+ * Callers check {@link #isEnabled()} before taking any timing measurements, so that a disabled implementation adds
+ * no measurable overhead.  Events may be recorded concurrently from multiple threads; implementations must be
+ * thread safe.
+ */
+public interface IonicMetrics {
+
+    /**
+     * @return true if events should be measured and recorded; false to skip all measurement
+     */
+    boolean isEnabled();
+
+    /**
+     * Record the reading of a batch of rows from a JDBC {@link java.sql.ResultSet}.
+     *
+     * @param nanos the elapsed time spent in the JDBC driver, in nanoseconds
+     * @param rows  the number of rows read
+     */
+    void recordResultSetRead(long nanos, int rows);
+
+    /**
+     * Record a server request to fetch the keys needed to decrypt a batch of rows.
+     *
+     * @param nanos the elapsed time of the request, in nanoseconds
+     * @param keys  the number of keys requested
+     */
+    void recordKeyFetch(long nanos, int keys);
+
+    /**
+     * Record the decryption of a single protected cell.  When keys are not fetched in batches, the elapsed time
+     * includes the key request.
+     *
+     * @param nanos   the elapsed time of the decrypt operation, in nanoseconds
+     * @param allowed true if the cell was decrypted; false if access to the cell was restricted
+     */
+    void recordDecrypt(long nanos, boolean allowed);
+
+    /**
+     * Record the completion of a query.
+     *
+     * @param nanos           the elapsed time of the query handler, in nanoseconds
+     * @param rows            the number of rows read from the {@link java.sql.ResultSet}
+     * @param rowsFiltered    the number of rows filtered out, as no protected cell of the row was accessible
+     * @param cellsProtected  the number of Ionic-protected cells read
+     * @param cellsRestricted the number of Ionic-protected cells that could not be decrypted
+     */
+    void recordQuery(long nanos, int rows, int rowsFiltered, int cellsProtected, int cellsRestricted);
+
+    /**
+     * Record a server request to create the keys needed to encrypt a batch of rows.
+     *
+     * @param nanos the elapsed time of the request, in nanoseconds
+     * @param keys  the number of keys requested
+     */
+    void recordKeyCreate(long nanos, int keys);
+
+    /**
+     * Record the encryption of a single cell.
+     *
+     * @param nanos the elapsed time of the encrypt operation, in nanoseconds
+     */
+    void recordEncrypt(long nanos);
+
+    /**
+     * Record the writing of a batch of rows to the database.
+     *
+     * @param nanos the elapsed time spent in the JDBC driver, in nanoseconds
+     * @param rows  the number of rows written
+     */
+    void recordBatchWrite(long nanos, int rows);
+}
@@ -0,0 +1,116 @@
+package com.ionic.sdk.addon.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latency samples, with power-of-two bucket boundaries.
+ * <p>
+ * Bucket <code>n</code> counts the samples in the range [2^(n-1), 2^n) nanoseconds, so percentile values are
+ * reported with a precision of a factor of two, which is sufficient to tell where the time of a query is spent.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The count of samples in each bucket.
+     */
+    private final AtomicLongArray buckets;
+
+    /**
+     * The number of samples.
+     */
+    private final AtomicLong count;
+
+    /**
+     * The sum of the samples, in nanoseconds.
+     */
+    private final AtomicLong total;
+
+    /**
+     * The largest sample, in nanoseconds.
+     */
+    private final AtomicLong max;
+
+    /**
+     * Constructor.
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(Long.SIZE + 1);
+        this.count = new AtomicLong();
+        this.total = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Add a sample to the histogram.
+     *
+     * @param nanos the sample value, in nanoseconds
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0L, nanos);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long maxPrevious = max.get();
+        while ((value > maxPrevious) && !max.compareAndSet(maxPrevious, value)) {
+            maxPrevious = max.get();
+        }
+    }
+
+    /**
+     * @return the number of samples
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the sum of the samples, in nanoseconds
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @return the largest sample, in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the samples, in nanoseconds; zero if there are no samples
+     */
+    public long getMean() {
+        final long samples = count.get();
+        return (samples == 0L) ? 0L : (total.get() / samples);
+    }
+
+    /**
+     * @param percentile the requested percentile, in the range [0, 100]
+     * @return the upper bound (in nanoseconds) of the bucket containing the requested percentile; zero if there are
+     * no samples
+     */
+    public long getPercentile(final double percentile) {
+        final long samples = count.get();
+        final long threshold = (long) Math.ceil(samples * percentile / PERCENT);
+        long seen = 0L;
+        for (int i = 0; i < buckets.length(); ++i) {
+            seen += buckets.get(i);
+            if ((seen > 0L) && (seen >= threshold)) {
+                return (i >= Long.SIZE - 1) ? Long.MAX_VALUE : (1L << i);
+            }
+        }
+        return 0L;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%dns p50=%dns p99=%dns max=%dns",
+                getCount(), getMean(), getPercentile(P50), getPercentile(P99), getMax());
+    }
+
+    private static final double PERCENT = 100.0;
+    private static final double P50 = 50.0;
+    private static final double P99 = 99.0;
+}
@@ -0,0 +1,52 @@
+package com.ionic.sdk.addon.metrics;
+
+/**
+ * Default {@link IonicMetrics} implementation, which discards all events.
+ */
+public final class NoOpIonicMetrics implements IonicMetrics {
+
+    /**
+     * The shared instance.
+     */
+    public static final IonicMetrics INSTANCE = new NoOpIonicMetrics();
+
+    /**
+     * Use {@link #INSTANCE}.
+     */
+    private NoOpIonicMetrics() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void recordResultSetRead(final long nanos, final int rows) {
+    }
+
+    @Override
+    public void recordKeyFetch(final long nanos, final int keys) {
+    }
+
+    @Override
+    public void recordDecrypt(final long nanos, final boolean allowed) {
+    }
+
+    @Override
+    public void recordQuery(final long nanos, final int rows, final int rowsFiltered,
+                            final int cellsProtected, final int cellsRestricted) {
+    }
+
+    @Override
+    public void recordKeyCreate(final long nanos, final int keys) {
+    }
+
+    @Override
+    public void recordEncrypt(final long nanos) {
+    }
+
+    @Override
+    public void recordBatchWrite(final long nanos, final int rows) {
+    }
+}
@@ -0,0 +1,258 @@
+package com.ionic.sdk.addon.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link IonicMetrics} implementation that accumulates events in memory, for logging or for export to a monitoring
+ * system.
+ * <p>
+ * Instances are thread safe.
+ */
+public final class SimpleIonicMetrics implements IonicMetrics {
+
+    /**
+     * Latency of {@link java.sql.ResultSet} reads, per batch of rows.
+     */
+    private final LatencyHistogram resultSetRead;
+
+    /**
+     * Latency of key fetch requests.
+     */
+    private final LatencyHistogram keyFetch;
+
+    /**
+     * Latency of decrypt operations, per protected cell.
+     */
+    private final LatencyHistogram decrypt;
+
+    /**
+     * Latency of query handlers, per query.
+     */
+    private final LatencyHistogram query;
+
+    /**
+     * Latency of key create requests.
+     */
+    private final LatencyHistogram keyCreate;
+
+    /**
+     * Latency of encrypt operations, per protected cell.
+     */
+    private final LatencyHistogram encrypt;
+
+    /**
+     * Latency of database writes, per batch of rows.
+     */
+    private final LatencyHistogram batchWrite;
+
+    /**
+     * The number of rows read from query results.
+     */
+    private final AtomicLong rows;
+
+    /**
+     * The number of rows filtered out of query results.
+     */
+    private final AtomicLong rowsFiltered;
+
+    /**
+     * The number of protected cells read from query results.
+     */
+    private final AtomicLong cellsProtected;
+
+    /**
+     * The number of protected cells that could not be decrypted.
+     */
+    private final AtomicLong cellsRestricted;
+
+    /**
+     * The number of keys requested in key fetch requests.
+     */
+    private final AtomicLong keysFetched;
+
+    /**
+     * The number of keys requested in key create requests.
+     */
+    private final AtomicLong keysCreated;
+
+    /**
+     * The number of rows written to the database.
+     */
+    private final AtomicLong rowsWritten;
+
+    /**
+     * Constructor.
+     */
+    public SimpleIonicMetrics() {
+        this.resultSetRead = new LatencyHistogram();
+        this.keyFetch = new LatencyHistogram();
+        this.decrypt = new LatencyHistogram();
+        this.query = new LatencyHistogram();
+        this.keyCreate = new LatencyHistogram();
+        this.encrypt = new LatencyHistogram();
+        this.batchWrite = new LatencyHistogram();
+        this.rows = new AtomicLong();
+        this.rowsFiltered = new AtomicLong();
+        this.cellsProtected = new AtomicLong();
+        this.cellsRestricted = new AtomicLong();
+        this.keysFetched = new AtomicLong();
+        this.keysCreated = new AtomicLong();
+        this.rowsWritten = new AtomicLong();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void recordResultSetRead(final long nanos, final int rowsRead) {
+        resultSetRead.record(nanos);
+    }
+
+    @Override
+    public void recordKeyFetch(final long nanos, final int keys) {
+        keyFetch.record(nanos);
+        keysFetched.addAndGet(keys);
+    }
+
+    @Override
+    public void recordDecrypt(final long nanos, final boolean allowed) {
+        decrypt.record(nanos);
+    }
+
+    @Override
+    public void recordQuery(final long nanos, final int rowsQuery, final int rowsFilteredQuery,
+                            final int cellsProtectedQuery, final int cellsRestrictedQuery) {
+        query.record(nanos);
+        rows.addAndGet(rowsQuery);
+        rowsFiltered.addAndGet(rowsFilteredQuery);
+        cellsProtected.addAndGet(cellsProtectedQuery);
+        cellsRestricted.addAndGet(cellsRestrictedQuery);
+    }
+
+    @Override
+    public void recordKeyCreate(final long nanos, final int keys) {
+        keyCreate.record(nanos);
+        keysCreated.addAndGet(keys);
+    }
+
+    @Override
+    public void recordEncrypt(final long nanos) {
+        encrypt.record(nanos);
+    }
+
+    @Override
+    public void recordBatchWrite(final long nanos, final int rowsWrite) {
+        batchWrite.record(nanos);
+        rowsWritten.addAndGet(rowsWrite);
+    }
+
+    /**
+     * @return latency of {@link java.sql.ResultSet} reads, per batch of rows
+     */
+    public LatencyHistogram getResultSetRead() {
+        return resultSetRead;
+    }
+
+    /**
+     * @return latency of key fetch requests
+     */
+    public LatencyHistogram getKeyFetch() {
+        return keyFetch;
+    }
+
+    /**
+     * @return latency of decrypt operations, per protected cell
+     */
+    public LatencyHistogram getDecrypt() {
+        return decrypt;
+    }
+
+    /**
+     * @return latency of query handlers, per query
+     */
+    public LatencyHistogram getQuery() {
+        return query;
+    }
+
+    /**
+     * @return latency of key create requests
+     */
+    public LatencyHistogram getKeyCreate() {
+        return keyCreate;
+    }
+
+    /**
+     * @return latency of encrypt operations, per protected cell
+     */
+    public LatencyHistogram getEncrypt() {
+        return encrypt;
+    }
+
+    /**
+     * @return latency of database writes, per batch of rows
+     */
+    public LatencyHistogram getBatchWrite() {
+        return batchWrite;
+    }
+
+    /**
+     * @return the number of rows read from query results
+     */
+    public long getRows() {
+        return rows.get();
+    }
+
+    /**
+     * @return the number of rows filtered out of query results
+     */
+    public long getRowsFiltered() {
+        return rowsFiltered.get();
+    }
+
+    /**
+     * @return the number of protected cells read from query results
+     */
+    public long getCellsProtected() {
+        return cellsProtected.get();
+    }
+
+    /**
+     * @return the number of protected cells that could not be decrypted
+     */
+    public long getCellsRestricted() {
+        return cellsRestricted.get();
+    }
+
+    /**
+     * @return the number of keys requested in key fetch requests
+     */
+    public long getKeysFetched() {
+        return keysFetched.get();
+    }
+
+    /**
+     * @return the number of keys requested in key create requests
+     */
+    public long getKeysCreated() {
+        return keysCreated.get();
+    }
+
+    /**
+     * @return the number of rows written to the database
+     */
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queries=[%s] rows=%d rowsFiltered=%d cellsProtected=%d cellsRestricted=%d"
+                        + " resultSetRead=[%s] keyFetch=[%s] keysFetched=%d decrypt=[%s]"
+                        + " keyCreate=[%s] keysCreated=%d encrypt=[%s] batchWrite=[%s] rowsWritten=%d",
+                query, getRows(), getRowsFiltered(), getCellsProtected(), getCellsRestricted(),
+                resultSetRead, keyFetch, getKeysFetched(), decrypt,
+                keyCreate, getKeysCreated(), encrypt, batchWrite, getRowsWritten());
+    }
+}
@@ -0,0 +1,15 @@
+package com.ionic.sdk.addon.policy;
+
+/**
+ * Callback interface for components that hold state derived from Ionic server policy decisions.
+ * <p>
+ * Listeners registered with a {@link PolicyService} are notified after each successful policy mutation, so that any
+ * cached key release decisions may be discarded.
+ */
+public interface PolicyChangeListener {
+
+    /**
+     * Notification that the set of policies associated with the tenant has changed.
+     */
+    void onPolicyChange();
+}
@@ -19,48 +19,254 @@ import com.ionic.sdk.json.JsonIO;
 import javax.json.JsonObject;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class PolicyService {
 
     private final URL urlIonicApi;
     private final String tenantId;
-    private final String user;
-    private final String password;
+    private final List<PolicyChangeListener> listeners;
+    private final HttpClient httpClient;
+    private final HttpHeaders httpHeadersCreate;
+    private final HttpHeaders httpHeadersRead;
+    private final String fileCreate;
+    private final ExecutorService executor;
 
+    /**
+     * Constructor.
+     * <p>
+     * The HTTP client and the request headers are created once, and reused for each request.  Response entities are
+     * read to completion, so that the underlying connection may be kept alive and reused by subsequent requests.
+     * <p>
+     * Concurrent requests made by {@link #addPolicies(List, int)} and {@link #deletePolicies(Collection, int)} run on
+     * a pool of up to {@value #MAX_THREADS} daemon threads, owned by this service; idle threads exit after
+     * {@value #KEEP_ALIVE_SECONDS} seconds.
+     *
+     * @param urlIonicApi the base URL of the Ionic tenant API
+     * @param tenantId    the identifier of the Ionic tenant
+     * @param user        the API user
+     * @param password    the password of the API user
+     */
     public PolicyService(URL urlIonicApi, String tenantId, String user, String password) {
-        this.urlIonicApi = urlIonicApi;
-        this.tenantId = tenantId;
-        this.user = user;
-        this.password = password;
+        this(urlIonicApi, tenantId, user, password, createExecutor());
     }
 
     /**
-     * Add a new policy to the server policies associated with the tenant.
+     * Constructor.
+     * <p>
+     * Concurrent requests made by {@link #addPolicies(List, int)} and {@link #deletePolicies(Collection, int)} run on
+     * the supplied {@link ExecutorService}, which remains owned by the caller.
      *
-     * @param policyJson Ionic policy JSON to apply to server
-     * @return the server identifier for the newly created policy
-     * @throws IonicException on server request failure; unrecognized response
+     * @param urlIonicApi the base URL of the Ionic tenant API
+     * @param tenantId    the identifier of the Ionic tenant
+     * @param user        the API user
+     * @param password    the password of the API user
+     * @param executor    the threads used to issue concurrent server requests
      */
-    public String addPolicy(final byte[] policyJson) throws IonicException {
-        final String file = String.format(RESOURCE_POLICY_CREATE, tenantId);
-        final HttpClient httpClient = new HttpClientDefault(new AgentConfig(), urlIonicApi.getProtocol());
+    public PolicyService(URL urlIonicApi, String tenantId, String user, String password, ExecutorService executor) {
+        this.urlIonicApi = urlIonicApi;
+        this.tenantId = tenantId;
+        this.listeners = new CopyOnWriteArrayList<PolicyChangeListener>();
+        this.httpClient = new HttpClientDefault(new AgentConfig(), urlIonicApi.getProtocol());
         final String authorizationValue = String.format("%s:%s", user, password);
         final String authorization = String.format(PATTERN_AUTHORIZATION_VALUE,
                 Transcoder.base64().encode(Transcoder.utf8().decode(authorizationValue)));
-        final HttpHeaders httpHeaders = new HttpHeaders(
+        this.httpHeadersCreate = new HttpHeaders(
                 new HttpHeader(HEADER_AUTHORIZATION, authorization),
                 new HttpHeader(Http.Header.CONTENT_TYPE, Http.Header.CONTENT_TYPE_SERVER),
                 new HttpHeader(HEADER_ACCEPTS, Http.Header.CONTENT_TYPE_SERVER)
         );
+        this.httpHeadersRead = new HttpHeaders(
+                new HttpHeader(HEADER_AUTHORIZATION, authorization),
+                new HttpHeader(HEADER_ACCEPTS, Http.Header.CONTENT_TYPE_SERVER)
+        );
+        this.fileCreate = String.format(RESOURCE_POLICY_CREATE, tenantId);
+        this.executor = executor;
+    }
+
+    /**
+     * @return a bounded pool of daemon threads, whose idle threads exit, so that the pool needs no explicit shutdown
+     */
+    private static ExecutorService createExecutor() {
+        final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, PolicyService.class.getSimpleName());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    /**
+     * Register a component to be notified after each successful policy mutation made through this service.
+     *
+     * @param listener the component to be notified
+     */
+    public void addPolicyChangeListener(final PolicyChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregister a component previously registered via {@link #addPolicyChangeListener(PolicyChangeListener)}.
+     *
+     * @param listener the component to be removed
+     */
+    public void removePolicyChangeListener(final PolicyChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notify registered components that the tenant policy set has changed.
+     * <p>
+     * A failure of one listener is logged, and does not prevent the notification of the others, nor replace the
+     * outcome of the policy mutation.
+     */
+    private void firePolicyChange() {
+        for (PolicyChangeListener listener : listeners) {
+            try {
+                listener.onPolicyChange();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "policy change listener failed: " + listener, e);
+            }
+        }
+    }
+
+    /**
+     * Add a new policy to the server policies associated with the tenant.
+     *
+     * @param policyJson Ionic policy JSON to apply to server
+     * @return the server identifier for the newly created policy
+     * @throws IonicException on server request failure; unrecognized response
+     */
+    public String addPolicy(final byte[] policyJson) throws IonicException {
+        final String policyId = create(policyJson);
+        firePolicyChange();
+        return policyId;
+    }
+
+    /**
+     * Remove a policy from the server policies associated with the tenant.
+     *
+     * @param policyId the server identifier for the policy to be deleted
+     * @throws IonicException on server request failure
+     */
+    public void deletePolicy(final String policyId) throws IonicException {
+        delete(policyId);
+        firePolicyChange();
+    }
+
+    /**
+     * Add new policies to the server policies associated with the tenant.
+     * <p>
+     * Up to the specified number of requests (and no more than the threads of the service executor) are in flight at
+     * any one time.  Registered listeners are notified once,
+     * after all requests have completed.  If any request fails, the first failure is thrown once all requests have
+     * completed; policies created by the successful requests are not removed.
+     *
+     * @param policiesJson  Ionic policy JSON to apply to server, one array element per policy
+     * @param maxConcurrent the maximum number of concurrent server requests
+     * @return the server identifiers for the newly created policies, in the order of the input
+     * @throws IonicException on server request failure; unrecognized response
+     */
+    public List<String> addPolicies(final List<byte[]> policiesJson, final int maxConcurrent) throws IonicException {
+        final List<Callable<String>> tasks = new ArrayList<Callable<String>>(policiesJson.size());
+        for (final byte[] policyJson : policiesJson) {
+            tasks.add(new Callable<String>() {
+                @Override
+                public String call() throws IonicException {
+                    return create(policyJson);
+                }
+            });
+        }
+        return invokeAll(tasks, maxConcurrent);
+    }
+
+    /**
+     * Remove policies from the server policies associated with the tenant.
+     * <p>
+     * Requests are issued concurrently, and failures are reported, as described in
+     * {@link #addPolicies(List, int)}.
+     *
+     * @param policyIds     the server identifiers for the policies to be deleted
+     * @param maxConcurrent the maximum number of concurrent server requests
+     * @throws IonicException on server request failure
+     */
+    public void deletePolicies(final Collection<String> policyIds, final int maxConcurrent) throws IonicException {
+        final List<Callable<String>> tasks = new ArrayList<Callable<String>>(policyIds.size());
+        for (final String policyId : policyIds) {
+            tasks.add(new Callable<String>() {
+                @Override
+                public String call() throws IonicException {
+                    delete(policyId);
+                    return policyId;
+                }
+            });
+        }
+        invokeAll(tasks, maxConcurrent);
+    }
+
+    /**
+     * List the server policies associated with the tenant.
+     *
+     * @return the server response, containing the tenant policies
+     * @throws IonicException on server request failure; unrecognized response
+     */
+    public JsonObject listPolicies() throws IonicException {
+        final HttpRequest httpRequest = new HttpRequest(
+                urlIonicApi, Http.Method.GET, fileCreate, httpHeadersRead, null);
+        try {
+            final HttpResponse httpResponse = httpClient.execute(httpRequest);
+            final byte[] entityOut = read(httpResponse);
+            SdkData.checkTrue(HttpURLConnection.HTTP_OK == httpResponse.getStatusCode(),
+                    SdkError.ISAGENT_REQUESTFAILED);
+            return JsonIO.readObject(new ByteArrayInputStream(entityOut));
+        } catch (IOException e) {
+            throw new IonicException(SdkError.ISAGENT_REQUESTFAILED, e);
+        }
+    }
+
+    /**
+     * Add a new policy to the server policies associated with the tenant, without notifying listeners.
+     *
+     * @param policyJson Ionic policy JSON to apply to server
+     * @return the server identifier for the newly created policy
+     * @throws IonicException on server request failure; unrecognized response
+     */
+    private String create(final byte[] policyJson) throws IonicException {
         final ByteArrayInputStream entityIn = new ByteArrayInputStream(policyJson);
-        final HttpRequest httpRequest = new HttpRequest(urlIonicApi, Http.Method.POST, file, httpHeaders, entityIn);
+        final HttpRequest httpRequest = new HttpRequest(
+                urlIonicApi, Http.Method.POST, fileCreate, httpHeadersCreate, entityIn);
         try {
             final HttpResponse httpResponse = httpClient.execute(httpRequest);
+            final byte[] entityOut = read(httpResponse);
             SdkData.checkTrue(HttpURLConnection.HTTP_CREATED == httpResponse.getStatusCode(),
                     SdkError.ISAGENT_REQUESTFAILED);
-            final byte[] entityOut = DeviceUtils.read(httpResponse.getEntity());
             final JsonObject jsonResponse = JsonIO.readObject(new ByteArrayInputStream(entityOut));
             return jsonResponse.getString(IDC.Payload.ID);
         } catch (IOException e) {
@@ -69,24 +275,17 @@ public class PolicyService {
     }
 
     /**
-     * Remove a policy from the server policies associated with the tenant.
+     * Remove a policy from the server policies associated with the tenant, without notifying listeners.
      *
      * @param policyId the server identifier for the policy to be deleted
      * @throws IonicException on server request failure
      */
-    public void deletePolicy(final String policyId) throws IonicException {
+    private void delete(final String policyId) throws IonicException {
         final String file = String.format(RESOURCE_POLICY_DELETE, tenantId, policyId);
-        final HttpClient httpClient = new HttpClientDefault(new AgentConfig(), urlIonicApi.getProtocol());
-        final String authorizationValue = String.format("%s:%s", user, password);
-        final String authorization = String.format(PATTERN_AUTHORIZATION_VALUE,
-                Transcoder.base64().encode(Transcoder.utf8().decode(authorizationValue)));
-        final HttpHeaders httpHeaders = new HttpHeaders(
-                new HttpHeader(HEADER_AUTHORIZATION, authorization),
-                new HttpHeader(HEADER_ACCEPTS, Http.Header.CONTENT_TYPE_SERVER)
-        );
-        final HttpRequest httpRequest = new HttpRequest(urlIonicApi, METHOD_DELETE, file, httpHeaders, null);
+        final HttpRequest httpRequest = new HttpRequest(urlIonicApi, METHOD_DELETE, file, httpHeadersRead, null);
         try {
             final HttpResponse httpResponse = httpClient.execute(httpRequest);
+            read(httpResponse);
             SdkData.checkTrue(HttpURLConnection.HTTP_NO_CONTENT == httpResponse.getStatusCode(),
                     SdkError.ISAGENT_REQUESTFAILED);
         } catch (IOException e) {
@@ -94,10 +293,93 @@ public class PolicyService {
         }
     }
 
+    /**
+     * Read the response entity to completion, allowing the connection to be reused.
+     *
+     * @param httpResponse the server response
+     * @return the response entity; empty if the response has no entity
+     * @throws IOException on failure reading the response
+     */
+    private static byte[] read(final HttpResponse httpResponse) throws IOException {
+        final InputStream entity = httpResponse.getEntity();
+        return (entity == null) ? new byte[0] : DeviceUtils.read(entity);
+    }
+
+    /**
+     * Run server requests with bounded concurrency, notifying listeners once all have completed.
+     *
+     * @param tasks         the server requests
+     * @param maxConcurrent the maximum number of concurrent server requests
+     * @return the result of each request, in the order of the input
+     * @throws IonicException the first server request failure; or on interruption, or on rejection of a request by
+     *                        the executor
+     */
+    private List<String> invokeAll(final List<Callable<String>> tasks, final int maxConcurrent)
+            throws IonicException {
+        final List<String> results = new ArrayList<String>(Collections.<String>nCopies(tasks.size(), null));
+        if (tasks.isEmpty()) {
+            return results;
+        }
+        final int window = Math.max(1, Math.min(maxConcurrent, tasks.size()));
+        final CompletionService<String> completionService = new ExecutorCompletionService<String>(executor);
+        final Map<Future<String>, Integer> pending = new HashMap<Future<String>, Integer>();
+        int submitted = 0;
+        IonicException failure = null;
+        try {
+            for (; submitted < window; ++submitted) {
+                pending.put(completionService.submit(tasks.get(submitted)), submitted);
+            }
+            while (!pending.isEmpty()) {
+                final Future<String> future = completionService.take();
+                final int index = pending.remove(future);
+                try {
+                    results.set(index, future.get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = (e.getCause() instanceof IonicException)
+                                ? (IonicException) e.getCause()
+                                : new IonicException(SdkError.ISAGENT_REQUESTFAILED, e.getCause());
+                    }
+                }
+                if (submitted < tasks.size()) {
+                    pending.put(completionService.submit(tasks.get(submitted)), submitted);
+                    ++submitted;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new IonicException(SdkError.ISAGENT_REQUESTFAILED, e);
+            cancel(pending.keySet());
+        } catch (RejectedExecutionException e) {
+            failure = (failure == null) ? new IonicException(SdkError.ISAGENT_REQUESTFAILED, e) : failure;
+            cancel(pending.keySet());
+        } finally {
+            firePolicyChange();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Cancel server requests that have not completed.
+     *
+     * @param futures the pending server requests
+     */
+    private static void cancel(final Collection<Future<String>> futures) {
+        for (Future<String> future : futures) {
+            future.cancel(true);
+        }
+    }
+
     private static final String RESOURCE_POLICY_CREATE = "/v2/%s/policies";
     private static final String RESOURCE_POLICY_DELETE = "/v2/%s/policies/%s";
     private static final String METHOD_DELETE = "DELETE";
     private static final String HEADER_ACCEPTS = "Accepts";
     private static final String HEADER_AUTHORIZATION = "Authorization";
     private static final String PATTERN_AUTHORIZATION_VALUE = "Basic %s";
+    private static final int MAX_THREADS = 8;
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+    private static final Logger LOGGER = Logger.getLogger(PolicyService.class.getName());
 }
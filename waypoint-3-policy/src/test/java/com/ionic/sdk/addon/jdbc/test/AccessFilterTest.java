@@ -0,0 +1,189 @@
+package com.ionic.sdk.addon.jdbc.test;
+
+import com.ionic.sdk.addon.jdbc.AccessFilter;
+import com.ionic.sdk.addon.jdbc.AccessFingerprint;
+import com.ionic.sdk.addon.jdbc.IonicBatchWriter;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ArrayListHandler;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Test that {@link AccessFingerprint} identifies the attributes of a row, and that {@link AccessFilter} restricts a
+ * query to the rows whose fingerprint is accessible (and the rows without a fingerprint), preserving the order of the
+ * query, and runs the query unrestricted if access cannot be checked.
+ * <p>
+ * The sample table holds records of several departments, and a plaintext record without a fingerprint.  A policy
+ * denies the "HR" department.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class AccessFilterTest {
+
+    /**
+     * In-process key service.
+     */
+    private LocalKeyServices keyServices;
+
+    /**
+     * In-memory database, holding the sample table.
+     */
+    private DataSource dataSource;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws SQLException   on failure to create the sample table
+     * @throws IonicException on failure to protect data
+     * @throws IOException    on failure to read the test policy
+     */
+    @Before
+    public void setUp() throws SQLException, IonicException, IOException {
+        keyServices = new LocalKeyServices();
+        dataSource = TestDatabase.create();
+        try (Connection connection = dataSource.getConnection()) {
+            TestDatabase.createTable(connection);
+            try (IonicBatchWriter writer = new IonicBatchWriter(keyServices, connection,
+                    IonicBatchWriterTest.SQL_INSERT, IonicBatchWriterTest.COLUMNS,
+                    TestDatabase.toIonicAttributes("first", "last", "zip"), RECORDS, 0)) {
+                for (int r = 0; r < RECORDS; ++r) {
+                    final Object[] record = IonicBatchWriterTest.toRecord(r);
+                    writer.addRow(Arrays.copyOf(record, record.length + 1),
+                            TestDatabase.toRowAttributes((String) record[4]));
+                }
+            }
+            new QueryRunner().update(connection, "INSERT INTO personnel (id, first, last, zip, department) "
+                    + "VALUES (?, ?, ?, ?, ?)", RECORDS, "plain", "text", "00000", "HR");
+        }
+        keyServices.addPolicy(TestDatabase.readResource(TestDatabase.RESOURCE_POLICY_DEPT));
+    }
+
+    /**
+     * A fingerprint depends on the columns and the attributes of the encrypted cells, but not on the order of the
+     * attributes; a row without encrypted cells has no fingerprint.  Rows written with the same attributes share a
+     * fingerprint.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testAccessFilter_1_Fingerprint() throws SQLException {
+        final KeyAttributesMap attributes = TestDatabase.toRowAttributes("Sales");
+        attributes.put("classification", Collections.singletonList("pii"));
+        final KeyAttributesMap attributesReordered = new KeyAttributesMap();
+        attributesReordered.put("classification", Collections.singletonList("pii"));
+        attributesReordered.put("department", Collections.singletonList("Sales"));
+        final List<String> columns = Arrays.asList("first", "id");
+        final String fingerprint = AccessFingerprint.compute(columns, Arrays.asList(attributes, null));
+        Assert.assertEquals(fingerprint, AccessFingerprint.compute(columns, Arrays.asList(attributesReordered, null)));
+        Assert.assertNotEquals(fingerprint, AccessFingerprint.compute(Arrays.asList("last", "id"),
+                Arrays.asList(attributes, null)));
+        Assert.assertNotEquals(fingerprint, AccessFingerprint.compute(columns,
+                Arrays.asList(TestDatabase.toRowAttributes("Sales"), null)));
+        Assert.assertNull(AccessFingerprint.compute(columns, Arrays.<KeyAttributesMap>asList(null, null)));
+
+        try (Connection connection = dataSource.getConnection()) {
+            final List<Object[]> rows = new QueryRunner().query(connection,
+                    "SELECT department, COUNT(DISTINCT ionic_fp) FROM personnel WHERE ionic_fp IS NOT NULL "
+                            + "GROUP BY department", new ArrayListHandler());
+            Assert.assertEquals(IonicBatchWriterTest.DEPARTMENTS.size(), rows.size());
+            for (Object[] row : rows) {
+                Assert.assertEquals(1L, ((Number) row[1]).longValue());
+            }
+        }
+    }
+
+    /**
+     * The fingerprints of the departments not denied by policy are accessible.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testAccessFilter_2_AccessibleFingerprints() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            final Set<String> fingerprints = new AccessFilter(keyServices, IonicBatchWriterTest.IONIC_COLUMNS)
+                    .getAccessibleFingerprints(connection, "SELECT * FROM personnel");
+            final Set<String> expected = new HashSet<String>();
+            for (Object[] row : new QueryRunner().query(connection,
+                    "SELECT DISTINCT ionic_fp FROM personnel WHERE department <> ? AND ionic_fp IS NOT NULL",
+                    new ArrayListHandler(), "HR")) {
+                expected.add((String) row[0]);
+            }
+            Assert.assertEquals(IonicBatchWriterTest.DEPARTMENTS.size() - 1, expected.size());
+            Assert.assertEquals(expected, fingerprints);
+        }
+    }
+
+    /**
+     * A filtered query returns, in order, the rows of accessible fingerprints and the rows without a fingerprint.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testAccessFilter_3_Query() throws SQLException {
+        final List<Long> expected = new ArrayList<Long>();
+        for (int r = 0; r < RECORDS; ++r) {
+            if (!"HR".equals(IonicBatchWriterTest.toRecord(r)[4])) {
+                expected.add((long) r);
+            }
+        }
+        expected.add((long) RECORDS);
+        Assert.assertEquals(expected, queryIds(SQL_SELECT_IDS));
+    }
+
+    /**
+     * A query is run unrestricted if access cannot be checked.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testAccessFilter_4_CheckFailure() throws SQLException {
+        keyServices.setErrorRate(1.0);
+        try (Connection connection = dataSource.getConnection()) {
+            Assert.assertNull(new AccessFilter(keyServices, IonicBatchWriterTest.IONIC_COLUMNS)
+                    .getAccessibleFingerprints(connection, SQL_SELECT_IDS));
+        }
+        Assert.assertEquals(RECORDS + 1, queryIds(SQL_SELECT_IDS).size());
+    }
+
+    /**
+     * @param sql the query of the sample table, selecting the key, the fingerprint and the protected columns
+     * @return the keys of the rows returned by the filtered query, in order
+     * @throws SQLException on failure to read from the database
+     */
+    private List<Long> queryIds(final String sql) throws SQLException {
+        final List<Long> ids = new ArrayList<Long>();
+        try (Connection connection = dataSource.getConnection()) {
+            for (Object[] row : new AccessFilter(keyServices, IonicBatchWriterTest.IONIC_COLUMNS)
+                    .query(connection, sql, new ArrayListHandler())) {
+                ids.add(((Number) row[0]).longValue());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * The query of the sample table, in key order.
+     */
+    private static final String SQL_SELECT_IDS = "SELECT id, first, last, zip, ionic_fp FROM personnel ORDER BY id";
+
+    /**
+     * The number of encrypted records in the sample table.
+     */
+    private static final int RECORDS = 20;
+}
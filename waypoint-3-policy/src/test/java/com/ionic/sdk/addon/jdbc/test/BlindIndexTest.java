@@ -0,0 +1,195 @@
+package com.ionic.sdk.addon.jdbc.test;
+
+import com.ionic.sdk.addon.jdbc.BlindIndex;
+import com.ionic.sdk.addon.jdbc.BlindIndexQuery;
+import com.ionic.sdk.addon.jdbc.IonicBatchWriter;
+import com.ionic.sdk.addon.jdbc.IonicResultSetHandler;
+import com.ionic.sdk.addon.jdbc.RowSet;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import org.apache.commons.dbutils.QueryRunner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test that {@link BlindIndex} computes a deterministic, column-specific index, that {@link IonicBatchWriter} writes
+ * it to the index column, and that a query rewritten by {@link BlindIndexQuery} selects exactly the rows holding a
+ * value, by parameter or by literal.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class BlindIndexTest {
+
+    /**
+     * In-process key service.
+     */
+    private LocalKeyServices keyServices;
+
+    /**
+     * In-memory database, holding the sample table.
+     */
+    private DataSource dataSource;
+
+    /**
+     * The blind index of the sample table.
+     */
+    private BlindIndex blindIndex;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws SQLException   on failure to create the sample table
+     * @throws IonicException on failure to protect data
+     */
+    @Before
+    public void setUp() throws SQLException, IonicException {
+        keyServices = new LocalKeyServices();
+        dataSource = TestDatabase.create();
+        blindIndex = new BlindIndex(SECRET);
+        try (Connection connection = dataSource.getConnection()) {
+            TestDatabase.createTable(connection);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE personnel ADD COLUMN last_bidx VARCHAR(32)");
+            }
+            try (IonicBatchWriter writer = new IonicBatchWriter(keyServices, connection,
+                    "INSERT INTO personnel (first, last, zip, id, department, last_bidx) VALUES (?, ?, ?, ?, ?, ?)",
+                    COLUMNS, TestDatabase.toIonicAttributes("first", "last", "zip"), RECORDS, 0, null, blindIndex)) {
+                for (int r = 0; r < RECORDS; ++r) {
+                    writer.addRow(new Object[]{"first" + r, toLast(r), String.format("%05d", r),
+                            Integer.toString(r), "Sales", null}, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * The index of a value is deterministic, differs between columns (whatever the case of the column name), and
+     * differs between secrets; an index may be derived from an Ionic key, subject to policy.
+     *
+     * @throws IonicException on failure to create the blind index
+     * @throws IOException    on failure to read the test policy
+     */
+    @Test
+    public final void testBlindIndex_1_Compute() throws IonicException, IOException {
+        final String index = blindIndex.compute("last", "Smith");
+        Assert.assertEquals(32, index.length());
+        Assert.assertEquals(index, blindIndex.compute("LAST", "Smith"));
+        Assert.assertNotEquals(index, blindIndex.compute("first", "Smith"));
+        Assert.assertNotEquals(index, blindIndex.compute("last", "smith"));
+        Assert.assertNotEquals(index, new BlindIndex(new byte[]{1}).compute("last", "Smith"));
+        Assert.assertNull(blindIndex.compute("last", null));
+        Assert.assertEquals("last_bidx", BlindIndex.getIndexColumn("last"));
+
+        final CreateKeysResponse.Key key = keyServices.createKey(TestDatabase.toRowAttributes("HR")).getFirstKey();
+        Assert.assertEquals(new BlindIndex(key.getKey()).compute("last", "Smith"),
+                BlindIndex.fromKey(keyServices, key.getId()).compute("last", "Smith"));
+        keyServices.addPolicy(TestDatabase.readResource(TestDatabase.RESOURCE_POLICY_DEPT));
+        try {
+            BlindIndex.fromKey(keyServices, key.getId());
+            Assert.fail("denied key should not yield an index");
+        } catch (IonicException e) {
+            Assert.assertEquals(SdkError.ISAGENT_KEY_DENIED, e.getReturnCode());
+        }
+    }
+
+    /**
+     * An equality predicate with a parameter is rewritten against the index column, selecting exactly the rows
+     * holding the value; predicates on columns without an index are left unchanged.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testBlindIndex_2_Parameter() throws SQLException {
+        final BlindIndexQuery query = BlindIndexQuery.rewrite(blindIndex, INDEXED_COLUMNS,
+                "SELECT first, last, zip, id, department FROM personnel WHERE last = ? AND department = ? ORDER BY id",
+                toLast(1), "Sales");
+        Assert.assertEquals("SELECT first, last, zip, id, department FROM personnel "
+                + "WHERE last_bidx = ? AND department = ? ORDER BY id", query.getSql());
+        Assert.assertEquals(Arrays.<Object>asList(blindIndex.compute("last", toLast(1)), "Sales"),
+                Arrays.asList(query.getParams()));
+        assertLast(query, toLast(1));
+    }
+
+    /**
+     * An equality predicate with a (qualified) literal is rewritten, while an equality within a literal is not.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testBlindIndex_3_Literal() throws SQLException {
+        final BlindIndexQuery query = BlindIndexQuery.rewrite(blindIndex, INDEXED_COLUMNS,
+                "SELECT p.first, p.last, p.zip, p.id, p.department FROM personnel p "
+                        + "WHERE p.last = 'last2' AND p.department <> 'last = ''x''' ORDER BY p.id");
+        Assert.assertEquals(String.format("SELECT p.first, p.last, p.zip, p.id, p.department FROM personnel p "
+                + "WHERE p.last_bidx = '%s' AND p.department <> 'last = ''x''' ORDER BY p.id",
+                blindIndex.compute("last", "last2")), query.getSql());
+        assertLast(query, toLast(2));
+    }
+
+    /**
+     * @param query the rewritten query
+     * @param last  the value of the "last" column of the rows to be selected
+     * @throws SQLException on failure to read from the database
+     */
+    private void assertLast(final BlindIndexQuery query, final String last) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            final RowSet rowSet = new QueryRunner().query(connection, query.getSql(),
+                    new IonicResultSetHandler(keyServices, IonicBatchWriterTest.IONIC_COLUMNS), query.getParams());
+            int expected = 0;
+            for (int r = 0; r < RECORDS; ++r) {
+                expected += toLast(r).equals(last) ? 1 : 0;
+            }
+            Assert.assertEquals(expected, rowSet.size());
+            for (Object[] row : rowSet) {
+                Assert.assertEquals(last, row[1]);
+            }
+        }
+    }
+
+    /**
+     * @param r the index of a record
+     * @return the value of the "last" column of the record, shared with every {@value #LAST_NAMES}th record
+     */
+    private static String toLast(final int r) {
+        return "last" + (r % LAST_NAMES);
+    }
+
+    /**
+     * The secret of the blind index of the sample table.
+     */
+    private static final byte[] SECRET = "blind index secret".getBytes();
+
+    /**
+     * The protected columns of the sample table that have a blind index.
+     */
+    private static final List<String> INDEXED_COLUMNS = Collections.singletonList("last");
+
+    /**
+     * The labels of the columns written to the sample table, including the blind index column.
+     */
+    private static final List<String> COLUMNS = Arrays.asList("first", "last", "zip", "id", "department",
+            BlindIndex.getIndexColumn("last"));
+
+    /**
+     * The number of records in the sample table.
+     */
+    private static final int RECORDS = 12;
+
+    /**
+     * The number of distinct values of the "last" column.
+     */
+    private static final int LAST_NAMES = 3;
+}
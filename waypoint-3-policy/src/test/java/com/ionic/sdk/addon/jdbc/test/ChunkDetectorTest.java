@@ -0,0 +1,82 @@
+package com.ionic.sdk.addon.jdbc.test;
+
+import com.ionic.sdk.addon.jdbc.ChunkDetector;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCrypto;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoChunkInfo;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Test that {@link ChunkDetector} agrees with the full chunk parse of {@link ChunkCrypto} on NULL, plaintext and
+ * Ionic-protected values, and that {@link ChunkDetector#isEncryptedExact(String)} rejects the plaintext values in the
+ * shape of a version 2 chunk that {@link ChunkDetector#isEncrypted(String)} accepts.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ChunkDetectorTest {
+
+    /**
+     * NULL and plaintext values are not Ionic-protected.
+     */
+    @Test
+    public final void testChunkDetector_1_Plaintext() {
+        for (String value : new String[]{null, "", "plain", "~", "~!", "!~2!tag!payload!", "~2!tag!payload!"}) {
+            Assert.assertFalse(ChunkDetector.isEncrypted(value));
+            Assert.assertFalse(ChunkDetector.isEncryptedExact(value));
+            Assert.assertNull(ChunkDetector.getKeyId(value));
+        }
+    }
+
+    /**
+     * Values not recognized by the scan fall back to the full parse.
+     */
+    @Test
+    public final void testChunkDetector_2_Fallback() {
+        for (String value : new String[]{"~!2!", "~!2!!payload!", "~!2!tag!", "~!2!tag!payload", "~!2!t.g!payload!",
+                "~!3!tag!payload!"}) {
+            final ChunkCryptoChunkInfo chunkInfo = ChunkCrypto.getChunkInfo(value);
+            Assert.assertEquals(value, chunkInfo.isEncrypted(), ChunkDetector.isEncrypted(value));
+            Assert.assertEquals(value, chunkInfo.isEncrypted(), ChunkDetector.isEncryptedExact(value));
+            Assert.assertEquals(value, chunkInfo.isEncrypted() ? chunkInfo.getKeyId() : null,
+                    ChunkDetector.getKeyId(value));
+        }
+    }
+
+    /**
+     * Ciphertext is Ionic-protected, with the key tag reported by the full parse.
+     *
+     * @throws IonicException on failure to encrypt
+     */
+    @Test
+    public final void testChunkDetector_3_Ciphertext() throws IonicException {
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(new LocalKeyServices());
+        for (String plaintext : new String[]{"", "x", "~!2!tag!payload!", new String(new char[LENGTH_LONG])}) {
+            final String ciphertext = chunkCipher.encrypt(plaintext);
+            Assert.assertTrue(ChunkDetector.isEncrypted(ciphertext));
+            Assert.assertTrue(ChunkDetector.isEncryptedExact(ciphertext));
+            Assert.assertEquals(ChunkCrypto.getChunkInfo(ciphertext).getKeyId(), ChunkDetector.getKeyId(ciphertext));
+        }
+    }
+
+    /**
+     * A plaintext value in the shape of a version 2 chunk, with a payload that is not valid ciphertext, is accepted
+     * by the scan, but {@link ChunkDetector#isEncryptedExact(String)} matches the full parse.
+     */
+    @Test
+    public final void testChunkDetector_4_Divergence() {
+        final String value = "~!2!tag!plain text, not ciphertext!";
+        Assert.assertTrue(ChunkDetector.isEncrypted(value));
+        Assert.assertEquals("tag", ChunkDetector.getKeyId(value));
+        Assert.assertEquals(ChunkCrypto.getChunkInfo(value).isEncrypted(), ChunkDetector.isEncryptedExact(value));
+        Assert.assertFalse(ChunkDetector.isEncryptedExact(value));
+    }
+
+    /**
+     * The length of a long plaintext value.
+     */
+    private static final int LENGTH_LONG = 4096;
+}
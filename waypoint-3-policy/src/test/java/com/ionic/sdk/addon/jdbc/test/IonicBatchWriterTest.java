@@ -0,0 +1,311 @@
+package com.ionic.sdk.addon.jdbc.test;
+
+import com.ionic.sdk.addon.jdbc.AccessFingerprint;
+import com.ionic.sdk.addon.jdbc.ChunkDetector;
+import com.ionic.sdk.addon.jdbc.IonicBatchWriter;
+import com.ionic.sdk.addon.jdbc.IonicResultSetHandler;
+import com.ionic.sdk.addon.jdbc.RowSet;
+import com.ionic.sdk.addon.key.AttributeTemplate;
+import com.ionic.sdk.addon.key.CachingKeyServices;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.error.IonicException;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ArrayListHandler;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test of bulk inserts using {@link IonicBatchWriter}, with attributes bound by {@link AttributeTemplate}, against an
+ * in-memory database and an in-process key service.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class IonicBatchWriterTest {
+
+    /**
+     * In-process key service.
+     */
+    private LocalKeyServices keyServices;
+
+    /**
+     * In-memory database, holding the sample table.
+     */
+    private DataSource dataSource;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws SQLException on failure to create the sample table
+     */
+    @Before
+    public void setUp() throws SQLException {
+        keyServices = new LocalKeyServices();
+        dataSource = TestDatabase.create();
+        try (Connection connection = dataSource.getConnection()) {
+            TestDatabase.createTable(connection);
+        }
+    }
+
+    /**
+     * Rows written by the batch writer are stored encrypted, with a fingerprint, and read back as written.
+     *
+     * @throws SQLException   on failure to access the database
+     * @throws IonicException on failure to protect data
+     */
+    @Test
+    public final void testBatchWriter_1_RoundTrip() throws SQLException, IonicException {
+        try (Connection connection = dataSource.getConnection()) {
+            writeRecords(connection, RECORDS, BATCH_SIZE);
+            final List<Object[]> stored = new QueryRunner().query(connection,
+                    "SELECT first, last, zip, ionic_fp FROM personnel ORDER BY id", new ArrayListHandler());
+            Assert.assertEquals(RECORDS, stored.size());
+            for (Object[] row : stored) {
+                for (int i = 0; i < IONIC_COLUMNS.size(); ++i) {
+                    Assert.assertTrue(ChunkDetector.isEncryptedExact((String) row[i]));
+                }
+                Assert.assertNotNull(row[IONIC_COLUMNS.size()]);
+            }
+            final RowSet rowSet = new QueryRunner().query(connection, SQL_SELECT,
+                    new IonicResultSetHandler(keyServices, IONIC_COLUMNS));
+            Assert.assertEquals(RECORDS, rowSet.size());
+            for (int r = 0; r < RECORDS; ++r) {
+                Assert.assertArrayEquals(toRecord(r), rowSet.get(r));
+            }
+        }
+    }
+
+    /**
+     * The row-specific attributes bound by the template are applied to the keys of each row, so that a policy on
+     * the department attribute restricts the rows of that department.  A key cache flushed on policy change reflects
+     * the policy.
+     *
+     * @throws SQLException   on failure to access the database
+     * @throws IonicException on failure to protect data
+     * @throws IOException    on failure to read the test policy
+     */
+    @Test
+    public final void testBatchWriter_2_RowAttributes() throws SQLException, IonicException, IOException {
+        final CachingKeyServices keyServicesCache = new CachingKeyServices(keyServices, 1, TimeUnit.HOURS, 1000);
+        final IonicResultSetHandler handler = new IonicResultSetHandler(keyServicesCache, IONIC_COLUMNS, BATCH_SIZE);
+        try (Connection connection = dataSource.getConnection()) {
+            writeRecords(connection, RECORDS, BATCH_SIZE);
+            Assert.assertEquals(RECORDS, new QueryRunner().query(connection, SQL_SELECT, handler).size());
+            final String policyId = keyServices.addPolicy(TestDatabase.readResource(TestDatabase.RESOURCE_POLICY_DEPT));
+            keyServicesCache.onPolicyChange();
+            final RowSet rowSet = new QueryRunner().query(connection, SQL_SELECT, handler);
+            Assert.assertEquals(RECORDS - (RECORDS / DEPARTMENTS.size()), rowSet.size());
+            for (Object[] row : rowSet) {
+                Assert.assertNotEquals("HR", row[IONIC_COLUMNS.size() + 1]);
+            }
+            keyServices.deletePolicy(policyId);
+            keyServicesCache.onPolicyChange();
+            Assert.assertEquals(RECORDS, new QueryRunner().query(connection, SQL_SELECT, handler).size());
+        }
+    }
+
+    /**
+     * Rows whose protected cells carry the same attributes share a fingerprint.
+     *
+     * @throws SQLException   on failure to access the database
+     * @throws IonicException on failure to protect data
+     */
+    @Test
+    public final void testBatchWriter_3_Fingerprint() throws SQLException, IonicException {
+        try (Connection connection = dataSource.getConnection()) {
+            writeRecords(connection, RECORDS, BATCH_SIZE);
+            final List<Object[]> fingerprints = new QueryRunner().query(connection, String.format(
+                    "SELECT DISTINCT %s FROM personnel", AccessFingerprint.COLUMN), new ArrayListHandler());
+            Assert.assertEquals(DEPARTMENTS.size(), fingerprints.size());
+        }
+    }
+
+    /**
+     * A batch whose keys cannot be created fails the writer: it accepts no further rows, and closing it writes
+     * nothing more.  The batches written before the failure are left to the caller's transaction.
+     *
+     * @throws SQLException   on failure to access the database
+     * @throws IonicException on failure to protect data
+     */
+    @Test
+    public final void testBatchWriter_4_KeyFailure() throws SQLException, IonicException {
+        try (Connection connection = dataSource.getConnection()) {
+            final IonicBatchWriter writer = new IonicBatchWriter(keyServices, connection, SQL_INSERT, COLUMNS,
+                    TestDatabase.toIonicAttributes("first", "last", "zip"), BATCH_SIZE, 0);
+            for (int r = 0; r < BATCH_SIZE; ++r) {
+                writer.addRow(toValues(r), null);
+            }
+            keyServices.setErrorRate(1.0);
+            try {
+                for (int r = BATCH_SIZE; r < BATCH_SIZE * 2; ++r) {
+                    writer.addRow(toValues(r), null);
+                }
+                Assert.fail("key creation should have failed");
+            } catch (IonicException e) {
+                Assert.assertTrue(writer.isFailed());
+            }
+            keyServices.setErrorRate(0.0);
+            try {
+                writer.addRow(toValues(BATCH_SIZE * 2), null);
+                Assert.fail("failed writer should reject rows");
+            } catch (SQLException e) {
+                Assert.assertTrue(writer.isFailed());
+            }
+            writer.close();
+            Assert.assertEquals(BATCH_SIZE, writer.getRowsAffected());
+            Assert.assertEquals(BATCH_SIZE, countRows(connection));
+        }
+    }
+
+    /**
+     * A batch that cannot be written rolls back the transaction of a writer controlling transactions, leaving the
+     * rows committed before the failure, and auto-commit is restored on close.
+     *
+     * @throws SQLException   on failure to access the database
+     * @throws IonicException on failure to protect data
+     */
+    @Test
+    public final void testBatchWriter_5_WriteFailure() throws SQLException, IonicException {
+        try (Connection connection = dataSource.getConnection()) {
+            final IonicBatchWriter writer = new IonicBatchWriter(keyServices, connection, SQL_INSERT, COLUMNS,
+                    TestDatabase.toIonicAttributes("first", "last", "zip"), BATCH_SIZE, BATCH_SIZE * 2);
+            Assert.assertFalse(connection.getAutoCommit());
+            for (int r = 0; r < BATCH_SIZE * 3; ++r) {
+                writer.addRow(toValues(r), null);
+            }
+            try {
+                for (int r = 0; r < BATCH_SIZE; ++r) {
+                    writer.addRow(toValues(r), null);
+                }
+                Assert.fail("duplicate keys should have failed the batch");
+            } catch (SQLException e) {
+                Assert.assertTrue(writer.isFailed());
+            }
+            try {
+                writer.flush();
+                Assert.fail("failed writer should not flush");
+            } catch (SQLException e) {
+                Assert.assertTrue(writer.isFailed());
+            }
+            writer.close();
+            Assert.assertTrue(connection.getAutoCommit());
+            Assert.assertEquals(BATCH_SIZE * 2, countRows(connection));
+        }
+    }
+
+    /**
+     * A writer whose statement cannot be prepared leaves the auto-commit mode of the connection unchanged.
+     *
+     * @throws SQLException on failure to access the database
+     */
+    @Test
+    public final void testBatchWriter_6_PrepareFailure() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            try {
+                new IonicBatchWriter(keyServices, connection, "INSERT INTO unknown_table (id) VALUES (?)",
+                        Arrays.asList("id"), TestDatabase.toIonicAttributes(), BATCH_SIZE, BATCH_SIZE);
+                Assert.fail("statement on unknown table should not be prepared");
+            } catch (SQLException e) {
+                Assert.assertTrue(connection.getAutoCommit());
+            }
+        }
+    }
+
+    /**
+     * Insert records into the sample table.
+     *
+     * @param connection the database connection
+     * @param count      the number of records
+     * @param batchSize  the number of records written in each batch
+     * @return the number of rows inserted, as reported by the writer
+     * @throws SQLException   on failure to write to the database
+     * @throws IonicException on failure to protect data
+     */
+    private long writeRecords(final Connection connection, final int count, final int batchSize)
+            throws SQLException, IonicException {
+        final AttributeTemplate rowTemplate = new AttributeTemplate(null, "department");
+        try (IonicBatchWriter writer = new IonicBatchWriter(keyServices, connection, SQL_INSERT, COLUMNS,
+                TestDatabase.toIonicAttributes("first", "last", "zip"), batchSize, 0)) {
+            for (int r = 0; r < count; ++r) {
+                writer.addRow(toValues(r), rowTemplate.bind((String) toRecord(r)[IONIC_COLUMNS.size() + 1]));
+            }
+            writer.flush();
+            return writer.getRowsAffected();
+        }
+    }
+
+    /**
+     * @param r the index of a record
+     * @return the statement parameters inserting the record, with a placeholder for its fingerprint
+     */
+    private static Object[] toValues(final int r) {
+        final Object[] record = toRecord(r);
+        return Arrays.copyOf(record, record.length + 1);
+    }
+
+    /**
+     * @param connection the database connection
+     * @return the number of rows in the sample table
+     * @throws SQLException on failure to read from the database
+     */
+    private static long countRows(final Connection connection) throws SQLException {
+        return ((Number) new QueryRunner().query(connection, "SELECT COUNT(*) FROM personnel",
+                new ScalarHandler<Object>())).longValue();
+    }
+
+    /**
+     * @param r the index of a record
+     * @return the plaintext values of the record: first, last, zip, id, department
+     */
+    static Object[] toRecord(final int r) {
+        return new Object[]{"first" + r, "last" + r, String.format("%05d", r), Integer.toString(r),
+                DEPARTMENTS.get(r % DEPARTMENTS.size())};
+    }
+
+    /**
+     * The protected columns of the sample table.
+     */
+    static final List<String> IONIC_COLUMNS = Arrays.asList("first", "last", "zip");
+
+    /**
+     * The departments of the sample records, in rotation.
+     */
+    static final List<String> DEPARTMENTS = Arrays.asList("HR", "Sales", "Engineering", "Finance");
+
+    /**
+     * The statement parameters of {@link #SQL_INSERT}.
+     */
+    static final List<String> COLUMNS = Arrays.asList("first", "last", "zip", "id", "department",
+            AccessFingerprint.COLUMN);
+
+    /**
+     * The statement inserting a record.
+     */
+    static final String SQL_INSERT =
+            "INSERT INTO personnel (first, last, zip, id, department, ionic_fp) VALUES (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * The query reading the records, in the column order of {@link #toRecord(int)}.
+     */
+    static final String SQL_SELECT = "SELECT first, last, zip, id, department FROM personnel ORDER BY id";
+
+    /**
+     * The number of records written by each test.
+     */
+    private static final int RECORDS = 20;
+
+    /**
+     * The number of records written in each batch.
+     */
+    private static final int BATCH_SIZE = 7;
+}
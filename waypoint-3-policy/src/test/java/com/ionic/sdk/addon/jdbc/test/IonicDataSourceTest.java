@@ -0,0 +1,308 @@
+package com.ionic.sdk.addon.jdbc.test;
+
+import com.ionic.sdk.addon.jdbc.ChunkDetector;
+import com.ionic.sdk.addon.jdbc.driver.IonicDataSource;
+import com.ionic.sdk.addon.jdbc.driver.IonicJdbcContext;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ArrayHandler;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collections;
+
+/**
+ * Test that {@link IonicDataSource} encrypts the statement parameters bound to protected columns, and rejects each
+ * write of a protected column that would bypass encryption.  Rejections are raised by the Ionic wrappers, without a
+ * SQL state, rather than by the database.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class IonicDataSourceTest {
+
+    /**
+     * In-memory database, holding the sample table.
+     */
+    private DataSource dataSource;
+
+    /**
+     * Ionic view of the in-memory database.
+     */
+    private IonicDataSource ionicDataSource;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws SQLException on failure to create the sample table
+     */
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = TestDatabase.create();
+        try (Connection connection = dataSource.getConnection()) {
+            TestDatabase.createTable(connection);
+        }
+        ionicDataSource = new IonicDataSource(dataSource,
+                new IonicJdbcContext(new LocalKeyServices(), IonicBatchWriterTest.IONIC_COLUMNS));
+    }
+
+    /**
+     * Parameters bound to protected columns are stored encrypted and read back as written, whatever their position
+     * in the statement; other parameters are stored as written.
+     *
+     * @throws SQLException on failure to access the database
+     */
+    @Test
+    public final void testDataSource_1_Mapping() throws SQLException {
+        try (Connection connection = ionicDataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO personnel (id, first, department, zip) VALUES (?, ?, ?, ?)")) {
+                statement.setLong(1, 1L);
+                statement.setString(2, "first1");
+                statement.setString(3, "Sales");
+                statement.setObject(4, ZIP);
+                Assert.assertEquals(1, statement.executeUpdate());
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE personnel SET department = ?, last = ? WHERE id = ?")) {
+                statement.setString(1, "Finance");
+                statement.setObject(2, "last1");
+                statement.setLong(3, 1L);
+                Assert.assertEquals(1, statement.executeUpdate());
+            }
+            final Object[] row = new QueryRunner().query(connection,
+                    "SELECT first, last, zip, department FROM personnel WHERE id = ?", new ArrayHandler(), 1L);
+            Assert.assertArrayEquals(new Object[]{"first1", "last1", Integer.toString(ZIP), "Finance"}, row);
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            final Object[] row = new QueryRunner().query(connection,
+                    "SELECT first, last, zip, department FROM personnel WHERE id = ?", new ArrayHandler(), 1L);
+            for (int i = 0; i < IonicBatchWriterTest.IONIC_COLUMNS.size(); ++i) {
+                Assert.assertTrue(ChunkDetector.isEncryptedExact((String) row[i]));
+            }
+            Assert.assertEquals("Finance", row[IonicBatchWriterTest.IONIC_COLUMNS.size()]);
+        }
+    }
+
+    /**
+     * Statements that would write a protected column other than through a parameter are rejected when prepared,
+     * while a NULL literal is accepted.
+     *
+     * @throws SQLException on failure to access the database
+     */
+    @Test
+    public final void testDataSource_2_PreparedRejected() throws SQLException {
+        try (Connection connection = ionicDataSource.getConnection()) {
+            connection.prepareStatement("INSERT INTO personnel (id, first) VALUES (?, NULL)").close();
+            for (String sql : SQL_REJECTED) {
+                try {
+                    connection.prepareStatement(sql).close();
+                    Assert.fail(sql);
+                } catch (SQLException e) {
+                    Assert.assertNull(e.getMessage(), e.getSQLState());
+                }
+            }
+        }
+    }
+
+    /**
+     * Statements that would write a protected column are rejected when executed without parameters, while
+     * statements writing only unprotected columns are accepted.
+     *
+     * @throws SQLException on failure to access the database
+     */
+    @Test
+    public final void testDataSource_3_StatementRejected() throws SQLException {
+        try (Connection connection = ionicDataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            Assert.assertEquals(0, statement.executeUpdate("UPDATE personnel SET department = 'HR'"));
+            for (String sql : SQL_REJECTED) {
+                try {
+                    statement.executeUpdate(sql);
+                    Assert.fail(sql);
+                } catch (SQLException e) {
+                    Assert.assertNull(e.getMessage(), e.getSQLState());
+                }
+                try {
+                    statement.addBatch(sql);
+                    Assert.fail(sql);
+                } catch (SQLException e) {
+                    Assert.assertNull(e.getMessage(), e.getSQLState());
+                }
+            }
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            Assert.assertEquals(0L, ((Number) new QueryRunner().query(connection,
+                    "SELECT COUNT(*) FROM personnel", new ArrayHandler())[0]).longValue());
+        }
+    }
+
+    /**
+     * Parameter setters whose values cannot be encrypted as text are rejected for protected columns, while setting
+     * them to null is accepted.
+     *
+     * @throws SQLException on failure to access the database
+     */
+    @Test
+    public final void testDataSource_4_SetterRejected() throws SQLException {
+        try (Connection connection = ionicDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO personnel (id, first) VALUES (?, ?)")) {
+            statement.setNull(2, Types.VARCHAR);
+            statement.setString(2, null);
+            statement.setBytes(1, new byte[]{1});
+            try {
+                statement.setBytes(2, new byte[]{1});
+                Assert.fail("setBytes");
+            } catch (SQLException e) {
+                Assert.assertNull(e.getMessage(), e.getSQLState());
+            }
+            try {
+                statement.setCharacterStream(2, new StringReader("first1"));
+                Assert.fail("setCharacterStream");
+            } catch (SQLException e) {
+                Assert.assertNull(e.getMessage(), e.getSQLState());
+            }
+            try {
+                statement.setBinaryStream(2, new ByteArrayInputStream(new byte[]{1}));
+                Assert.fail("setBinaryStream");
+            } catch (SQLException e) {
+                Assert.assertNull(e.getMessage(), e.getSQLState());
+            }
+            try {
+                statement.setInt(2, ZIP);
+                Assert.fail("setInt");
+            } catch (SQLException e) {
+                Assert.assertNull(e.getMessage(), e.getSQLState());
+            }
+            try {
+                statement.setObject(2, "first1", Types.VARCHAR);
+                Assert.fail("setObject");
+            } catch (SQLException e) {
+                Assert.assertNull(e.getMessage(), e.getSQLState());
+            }
+        }
+    }
+
+    /**
+     * Named parameter setters are rejected on statements writing a protected column, as the column of the parameter
+     * cannot be identified.
+     *
+     * @throws SQLException on failure to access the database
+     */
+    @Test
+    public final void testDataSource_5_NamedSetterRejected() throws SQLException {
+        try (Connection connection = ionicDataSource.getConnection();
+             CallableStatement statement = connection.prepareCall(
+                     "INSERT INTO personnel (id, first) VALUES (?, ?)")) {
+            try {
+                statement.setString("first", "first1");
+                Assert.fail("setString");
+            } catch (SQLException e) {
+                Assert.assertNull(e.getMessage(), e.getSQLState());
+            }
+        }
+    }
+
+    /**
+     * A protected cell read through a text getter, a character stream, or an object of a text type is decrypted;
+     * other getters are rejected for protected columns.
+     *
+     * @throws SQLException on failure to access the database
+     * @throws IOException  on failure to read a character stream
+     */
+    @Test
+    public final void testDataSource_6_Getters() throws SQLException, IOException {
+        try (Connection connection = ionicDataSource.getConnection()) {
+            new QueryRunner().update(connection,
+                    "INSERT INTO personnel (id, first, zip) VALUES (?, ?, ?)", 1L, "first1", "00001");
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT id, first, zip FROM personnel")) {
+                Assert.assertTrue(resultSet.next());
+                Assert.assertEquals("first1", resultSet.getObject(2, String.class));
+                Assert.assertEquals("first1", resultSet.getObject("first", Collections.<String, Class<?>>emptyMap()));
+                Assert.assertEquals("00001", new BufferedReader(resultSet.getCharacterStream("zip")).readLine());
+                Assert.assertEquals(1L, resultSet.getObject(1, Long.class).longValue());
+                try {
+                    resultSet.getObject(3, Integer.class);
+                    Assert.fail("getObject(Integer)");
+                } catch (SQLException e) {
+                    Assert.assertNull(e.getMessage(), e.getSQLState());
+                }
+                try {
+                    resultSet.getBytes("first");
+                    Assert.fail("getBytes");
+                } catch (SQLException e) {
+                    Assert.assertNull(e.getMessage(), e.getSQLState());
+                }
+            }
+        }
+    }
+
+    /**
+     * A protected cell written through an updatable result set is encrypted; updaters whose values cannot be
+     * encrypted as text are rejected for protected columns.
+     *
+     * @throws SQLException on failure to access the database
+     */
+    @Test
+    public final void testDataSource_7_Updaters() throws SQLException {
+        try (Connection connection = ionicDataSource.getConnection()) {
+            new QueryRunner().update(connection,
+                    "INSERT INTO personnel (id, first) VALUES (?, ?)", 1L, "first1");
+            try (Statement statement = connection.createStatement(
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_UPDATABLE);
+                 ResultSet resultSet = statement.executeQuery("SELECT id, first, last FROM personnel")) {
+                Assert.assertTrue(resultSet.next());
+                resultSet.updateString("first", "first2");
+                resultSet.updateObject(3, "last2");
+                try {
+                    resultSet.updateBytes("first", new byte[]{1});
+                    Assert.fail("updateBytes");
+                } catch (SQLException e) {
+                    Assert.assertNull(e.getMessage(), e.getSQLState());
+                }
+                resultSet.updateRow();
+            }
+            final Object[] row = new QueryRunner().query(connection,
+                    "SELECT first, last FROM personnel WHERE id = ?", new ArrayHandler(), 1L);
+            Assert.assertArrayEquals(new Object[]{"first2", "last2"}, row);
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            final Object[] row = new QueryRunner().query(connection,
+                    "SELECT first, last FROM personnel WHERE id = ?", new ArrayHandler(), 1L);
+            Assert.assertTrue(ChunkDetector.isEncryptedExact((String) row[0]));
+            Assert.assertTrue(ChunkDetector.isEncryptedExact((String) row[1]));
+        }
+    }
+
+    /**
+     * Statements writing a protected column other than through a parameter.
+     */
+    private static final String[] SQL_REJECTED = {
+        "INSERT INTO personnel (id, first) VALUES (1, 'first1')",
+        "INSERT INTO personnel VALUES (1, 'first1', 'last1', '00001', 'HR', NULL)",
+        "UPDATE personnel SET zip = '00001'",
+        "UPDATE personnel SET last = first",
+        "MERGE INTO personnel (id, first) KEY (id) VALUES (1, 'first1')",
+        "INSERT INTO personnel (id, department) VALUES (1, 'HR') ON DUPLICATE KEY UPDATE first = 'first1'",
+    };
+
+    /**
+     * A plaintext value of a non-string type.
+     */
+    private static final int ZIP = 12345;
+}
@@ -0,0 +1,271 @@
+package com.ionic.sdk.addon.jdbc.test;
+
+import com.ionic.sdk.addon.jdbc.ColumnPlan;
+import com.ionic.sdk.addon.jdbc.ColumnarRowSet;
+import com.ionic.sdk.addon.jdbc.IonicBatchWriter;
+import com.ionic.sdk.addon.jdbc.IonicLazyResultSetHandler;
+import com.ionic.sdk.addon.jdbc.IonicResultSetHandler;
+import com.ionic.sdk.addon.jdbc.LazyRowSet;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.addon.metrics.NoOpIonicMetrics;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Test that each way of loading a result set (batched, parallel, prefetched, columnar and lazy) yields the rows of
+ * the per-cell baseline of {@link IonicResultSetHandler}, including its "[RESTRICTED]" marker and its "waypoint-3"
+ * row filter.
+ * <p>
+ * The sample table holds records of several departments, whose "zip" cells are classified as PII; a plaintext
+ * record, and a record with no protected cells.  Policies deny the "HR" department and the PII classification.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class IonicResultSetHandlerTest {
+
+    /**
+     * In-process key service.
+     */
+    private LocalKeyServices keyServices;
+
+    /**
+     * In-memory database, holding the sample table.
+     */
+    private DataSource dataSource;
+
+    /**
+     * Worker threads of the parallel and prefetching handlers.
+     */
+    private ExecutorService executor;
+
+    /**
+     * The rows loaded by the per-cell baseline handler.
+     */
+    private List<Object[]> baseline;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws SQLException   on failure to create the sample table
+     * @throws IonicException on failure to protect data
+     * @throws IOException    on failure to read the test policies
+     */
+    @Before
+    public void setUp() throws SQLException, IonicException, IOException {
+        keyServices = new LocalKeyServices();
+        dataSource = TestDatabase.create();
+        executor = Executors.newFixedThreadPool(THREADS);
+        final Map<String, KeyAttributesMap> ionicAttributes = TestDatabase.toIonicAttributes("first", "last", "zip");
+        ionicAttributes.get("zip").put("classification", Collections.singletonList("pii"));
+        try (Connection connection = dataSource.getConnection()) {
+            TestDatabase.createTable(connection);
+            try (IonicBatchWriter writer = new IonicBatchWriter(keyServices, connection,
+                    IonicBatchWriterTest.SQL_INSERT, IonicBatchWriterTest.COLUMNS, ionicAttributes, BATCH_SIZE, 0)) {
+                for (int r = 0; r < RECORDS; ++r) {
+                    final Object[] record = IonicBatchWriterTest.toRecord(r);
+                    writer.addRow(new Object[]{record[0], record[1], record[2], record[3], record[4], null},
+                            TestDatabase.toRowAttributes((String) record[4]));
+                }
+            }
+            final QueryRunner queryRunner = new QueryRunner();
+            queryRunner.update(connection, "INSERT INTO personnel (id, first, last, zip, department) "
+                    + "VALUES (?, ?, ?, ?, ?)", RECORDS, "plain", "text", "00000", "Sales");
+            queryRunner.update(connection, "INSERT INTO personnel (id, department) VALUES (?, ?)",
+                    RECORDS + 1, "Sales");
+        }
+        keyServices.addPolicy(TestDatabase.readResource(TestDatabase.RESOURCE_POLICY_DEPT));
+        keyServices.addPolicy(TestDatabase.readResource(RESOURCE_POLICY_PII));
+        baseline = query(new IonicResultSetHandler(keyServices, IonicBatchWriterTest.IONIC_COLUMNS));
+    }
+
+    /**
+     * Tear down after each test case.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The baseline restricts the PII cells, filters out the "HR" records, and filters out the records without an
+     * accessible protected cell (including the plaintext record and the record with no protected cells).
+     */
+    @Test
+    public final void testHandler_1_Baseline() {
+        int recordsAccessible = 0;
+        for (int r = 0; r < RECORDS; ++r) {
+            recordsAccessible += "HR".equals(IonicBatchWriterTest.toRecord(r)[4]) ? 0 : 1;
+        }
+        Assert.assertEquals(recordsAccessible, baseline.size());
+        for (Object[] row : baseline) {
+            Assert.assertEquals("[RESTRICTED]", row[2]);
+            Assert.assertNotEquals("HR", row[4]);
+            Assert.assertTrue(((String) row[0]).startsWith("first"));
+        }
+    }
+
+    /**
+     * Batched key fetches yield the rows of the baseline.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testHandler_2_Batched() throws SQLException {
+        assertBaseline(query(new IonicResultSetHandler(keyServices, IonicBatchWriterTest.IONIC_COLUMNS, BATCH_SIZE)));
+    }
+
+    /**
+     * Parallel decryption yields the rows of the baseline, in order.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testHandler_3_Parallel() throws SQLException {
+        assertBaseline(query(new IonicResultSetHandler(
+                keyServices, IonicBatchWriterTest.IONIC_COLUMNS, BATCH_SIZE, executor, THREADS)));
+    }
+
+    /**
+     * Background key fetches yield the rows of the baseline.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testHandler_4_Prefetched() throws SQLException {
+        assertBaseline(query(new IonicResultSetHandler(keyServices, IonicBatchWriterTest.IONIC_COLUMNS, BATCH_SIZE,
+                executor, NoOpIonicMetrics.INSTANCE)));
+    }
+
+    /**
+     * Columnar storage yields the rows of the baseline.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testHandler_5_Columnar() throws SQLException {
+        final IonicResultSetHandler handler =
+                new IonicResultSetHandler(keyServices, IonicBatchWriterTest.IONIC_COLUMNS, BATCH_SIZE);
+        assertBaseline(query(new ResultSetHandler<List<Object[]>>() {
+            @Override
+            public List<Object[]> handle(final ResultSet resultSet) throws SQLException {
+                final ColumnarRowSet rowSet = handler.handleColumnar(resultSet);
+                Assert.assertTrue(rowSet.isDictionaryEncoded(2));
+                return rowSet;
+            }
+        }));
+    }
+
+    /**
+     * Lazy decryption, once filtered, yields the rows of the baseline.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testHandler_6_Lazy() throws SQLException {
+        final IonicLazyResultSetHandler handler =
+                new IonicLazyResultSetHandler(keyServices, IonicBatchWriterTest.IONIC_COLUMNS, BATCH_SIZE);
+        assertBaseline(query(new ResultSetHandler<List<Object[]>>() {
+            @Override
+            public List<Object[]> handle(final ResultSet resultSet) throws SQLException {
+                final LazyRowSet rowSet = handler.handle(resultSet);
+                Assert.assertEquals(RECORDS + 2, rowSet.size());
+                Assert.assertEquals(RECORDS + 2 - baseline.size(), rowSet.filterAccessible());
+                return rowSet;
+            }
+        }));
+    }
+
+    /**
+     * Columnar storage of an integer column returns each cell as the text added, reverting to dictionary encoding
+     * for text that is not in canonical form.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testHandler_7_ColumnarIntegralText() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            final ColumnarRowSet rowSet = new QueryRunner().query(connection, "SELECT id, department FROM personnel",
+                    new ResultSetHandler<ColumnarRowSet>() {
+                        @Override
+                        public ColumnarRowSet handle(final ResultSet resultSet) throws SQLException {
+                            return new ColumnarRowSet(ColumnPlan.create(
+                                    resultSet.getMetaData(), IonicBatchWriterTest.IONIC_COLUMNS));
+                        }
+                    });
+            Assert.assertFalse(rowSet.isDictionaryEncoded(0));
+            final String[] texts = {"7", "-7", null, "007", "+7", "-0", "8"};
+            for (String text : texts) {
+                rowSet.accept(new Object[]{text, "Sales"});
+                Assert.assertEquals(text, rowSet.getValue(rowSet.size() - 1, 0));
+            }
+            Assert.assertTrue(rowSet.isDictionaryEncoded(0));
+            for (int row = 0; row < texts.length; ++row) {
+                Assert.assertEquals(texts[row], rowSet.getValue(row, 0));
+            }
+        }
+    }
+
+    /**
+     * @param handler the handler loading the rows of the sample table
+     * @return a copy of each row loaded by the handler
+     * @throws SQLException on failure to read from the database
+     */
+    private List<Object[]> query(final ResultSetHandler<? extends List<Object[]>> handler) throws SQLException {
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        try (Connection connection = dataSource.getConnection()) {
+            for (Object[] row : new QueryRunner().query(connection, IonicBatchWriterTest.SQL_SELECT, handler)) {
+                rows.add(row.clone());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @param rows the rows loaded by a handler
+     */
+    private void assertBaseline(final List<Object[]> rows) {
+        Assert.assertEquals(baseline.size(), rows.size());
+        for (int r = 0; r < rows.size(); ++r) {
+            Assert.assertArrayEquals(baseline.get(r), rows.get(r));
+        }
+    }
+
+    /**
+     * The Ionic data policy denying access to data classified as PII.
+     */
+    private static final String RESOURCE_POLICY_PII = "ionic/policy.pii.json";
+
+    /**
+     * The number of encrypted records in the sample table.
+     */
+    private static final int RECORDS = 50;
+
+    /**
+     * The number of rows in each batch.
+     */
+    private static final int BATCH_SIZE = 8;
+
+    /**
+     * The number of worker threads.
+     */
+    private static final int THREADS = 3;
+}
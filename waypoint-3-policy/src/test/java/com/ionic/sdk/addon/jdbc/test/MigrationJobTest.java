@@ -0,0 +1,254 @@
+package com.ionic.sdk.addon.jdbc.test;
+
+import com.ionic.sdk.addon.jdbc.ChunkDetector;
+import com.ionic.sdk.addon.jdbc.IonicResultSetHandler;
+import com.ionic.sdk.addon.jdbc.MigrationJob;
+import com.ionic.sdk.addon.jdbc.MigrationProgress;
+import com.ionic.sdk.addon.jdbc.RowSet;
+import com.ionic.sdk.addon.key.KeyServicesWrapper;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ArrayListHandler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test that {@link MigrationJob} encrypts the plaintext cells of a table in place, leaves alone a row modified by a
+ * concurrent writer after the job read it (counting it as conflicted), whether in a protected column or in an
+ * attribute column, and migrates that row on a later run.
+ * <p>
+ * The concurrent write is made by the key source, while the job creates the keys for its batch; that is, between
+ * the job's read of the batch and its compare-and-set update.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class MigrationJobTest {
+
+    /**
+     * In-process key service.
+     */
+    private LocalKeyServices keyServices;
+
+    /**
+     * In-memory database, holding the sample table.
+     */
+    private DataSource dataSource;
+
+    /**
+     * Worker threads of the migration job.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws SQLException on failure to create the sample table
+     */
+    @Before
+    public void setUp() throws SQLException {
+        keyServices = new LocalKeyServices();
+        dataSource = TestDatabase.create();
+        executor = Executors.newFixedThreadPool(PARTITIONS);
+        try (Connection connection = dataSource.getConnection()) {
+            TestDatabase.createTable(connection);
+            final QueryRunner queryRunner = new QueryRunner();
+            for (int r = 0; r < RECORDS; ++r) {
+                final Object[] record = IonicBatchWriterTest.toRecord(r);
+                queryRunner.update(connection, "INSERT INTO personnel (first, last, zip, id, department) "
+                        + "VALUES (?, ?, ?, ?, ?)", record);
+            }
+        }
+    }
+
+    /**
+     * Tear down after each test case.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Each plaintext cell is encrypted, with the row attributes applied, and each row is given a fingerprint.
+     *
+     * @throws SQLException on failure to access the database
+     */
+    @Test
+    public final void testMigration_1_Migrate() throws SQLException {
+        final MigrationProgress progress = createJob(keyServices).run();
+        Assert.assertEquals(RECORDS, progress.getRowsScanned());
+        Assert.assertEquals(RECORDS, progress.getRowsMigrated());
+        Assert.assertEquals(RECORDS * IonicBatchWriterTest.IONIC_COLUMNS.size(), progress.getCellsEncrypted());
+        Assert.assertEquals(0, progress.getRowsConflicted());
+        assertMigrated(RECORDS);
+        final MigrationProgress progressAgain = createJob(keyServices).run();
+        Assert.assertEquals(RECORDS, progressAgain.getRowsScanned());
+        Assert.assertEquals(0, progressAgain.getRowsMigrated());
+    }
+
+    /**
+     * A row modified after the job read it is left as the concurrent writer left it, and is migrated by the next run.
+     *
+     * @throws SQLException on failure to access the database
+     */
+    @Test
+    public final void testMigration_2_Conflict() throws SQLException {
+        final AtomicBoolean written = new AtomicBoolean();
+        final KeyServicesWrapper keyServicesConflict = new KeyServicesWrapper(keyServices) {
+            @Override
+            public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+                if (written.compareAndSet(false, true)) {
+                    try (Connection connection = dataSource.getConnection()) {
+                        new QueryRunner().update(connection,
+                                "UPDATE personnel SET first = ? WHERE id = ?", FIRST_CONCURRENT, ID_CONFLICT);
+                    } catch (SQLException e) {
+                        throw new IonicException(SdkError.ISAGENT_REQUESTFAILED, e);
+                    }
+                }
+                return super.createKeys(request);
+            }
+        };
+        final MigrationProgress progress = createJob(keyServicesConflict).run();
+        Assert.assertTrue(written.get());
+        Assert.assertEquals(RECORDS, progress.getRowsScanned());
+        Assert.assertEquals(RECORDS - 1, progress.getRowsMigrated());
+        Assert.assertEquals((RECORDS - 1) * IonicBatchWriterTest.IONIC_COLUMNS.size(), progress.getCellsEncrypted());
+        Assert.assertEquals(1, progress.getRowsConflicted());
+        try (Connection connection = dataSource.getConnection()) {
+            final List<Object[]> rows = new QueryRunner().query(connection,
+                    "SELECT first, last FROM personnel WHERE id = ?", new ArrayListHandler(), ID_CONFLICT);
+            Assert.assertArrayEquals(new Object[]{FIRST_CONCURRENT, "last" + ID_CONFLICT}, rows.get(0));
+        }
+
+        final MigrationProgress progressAgain = createJob(keyServices).run();
+        Assert.assertEquals(1, progressAgain.getRowsMigrated());
+        Assert.assertEquals(0, progressAgain.getRowsConflicted());
+        assertMigrated(RECORDS);
+    }
+
+    /**
+     * A row whose attribute cell was modified after the job read it is left unchanged, as its keys would carry stale
+     * attributes; a row whose attribute cell is null is migrated.
+     *
+     * @throws SQLException on failure to access the database
+     */
+    @Test
+    public final void testMigration_3_AttributeConflict() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            new QueryRunner().update(connection,
+                    "UPDATE personnel SET department = NULL WHERE id = ?", ID_NULL_DEPARTMENT);
+        }
+        final AtomicBoolean written = new AtomicBoolean();
+        final KeyServicesWrapper keyServicesConflict = new KeyServicesWrapper(keyServices) {
+            @Override
+            public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+                if (written.compareAndSet(false, true)) {
+                    try (Connection connection = dataSource.getConnection()) {
+                        new QueryRunner().update(connection, "UPDATE personnel SET department = ? WHERE id = ?",
+                                DEPARTMENT_CONCURRENT, ID_CONFLICT);
+                    } catch (SQLException e) {
+                        throw new IonicException(SdkError.ISAGENT_REQUESTFAILED, e);
+                    }
+                }
+                return super.createKeys(request);
+            }
+        };
+        final MigrationProgress progress = createJob(keyServicesConflict).run();
+        Assert.assertTrue(written.get());
+        Assert.assertEquals(RECORDS - 1, progress.getRowsMigrated());
+        Assert.assertEquals(1, progress.getRowsConflicted());
+        try (Connection connection = dataSource.getConnection()) {
+            final List<Object[]> rows = new QueryRunner().query(connection,
+                    "SELECT first, department FROM personnel WHERE id = ?", new ArrayListHandler(), ID_CONFLICT);
+            Assert.assertArrayEquals(new Object[]{"first" + ID_CONFLICT, DEPARTMENT_CONCURRENT}, rows.get(0));
+        }
+
+        final MigrationProgress progressAgain = createJob(keyServices).run();
+        Assert.assertEquals(1, progressAgain.getRowsMigrated());
+        Assert.assertEquals(0, progressAgain.getRowsConflicted());
+        assertMigrated(RECORDS);
+    }
+
+    /**
+     * @param agent the key source of the job
+     * @return a job migrating the protected columns of the sample table, in a single batch
+     */
+    private MigrationJob createJob(final KeyServices agent) {
+        return new MigrationJob(dataSource, agent, "personnel", "id",
+                TestDatabase.toIonicAttributes("first", "last", "zip"), Collections.singletonList("department"),
+                PARTITIONS, executor, RECORDS, 0, null);
+    }
+
+    /**
+     * Check that each protected cell of the sample table is encrypted, and that the rows read back as written (with
+     * the "HR" rows still readable, as no policy is in effect).
+     *
+     * @param records the expected number of records
+     * @throws SQLException on failure to access the database
+     */
+    private void assertMigrated(final int records) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            final QueryRunner queryRunner = new QueryRunner();
+            final List<Object[]> stored = queryRunner.query(connection,
+                    "SELECT first, last, zip, ionic_fp FROM personnel ORDER BY id", new ArrayListHandler());
+            Assert.assertEquals(records, stored.size());
+            for (Object[] row : stored) {
+                for (int i = 0; i < IonicBatchWriterTest.IONIC_COLUMNS.size(); ++i) {
+                    Assert.assertTrue(ChunkDetector.isEncryptedExact((String) row[i]));
+                }
+                Assert.assertNotNull(row[IonicBatchWriterTest.IONIC_COLUMNS.size()]);
+            }
+            final RowSet rowSet = queryRunner.query(connection, IonicBatchWriterTest.SQL_SELECT,
+                    new IonicResultSetHandler(keyServices, IonicBatchWriterTest.IONIC_COLUMNS));
+            Assert.assertEquals(records, rowSet.size());
+        }
+    }
+
+    /**
+     * The number of records in the sample table.
+     */
+    private static final int RECORDS = 12;
+
+    /**
+     * The number of ranges into which the sample table is divided; a single range, so that the concurrent write
+     * always falls between the read and the update of the record it modifies.
+     */
+    private static final int PARTITIONS = 1;
+
+    /**
+     * The key of the record modified by the concurrent writer.
+     */
+    private static final int ID_CONFLICT = 5;
+
+    /**
+     * The value written by the concurrent writer.
+     */
+    private static final String FIRST_CONCURRENT = "concurrent";
+
+    /**
+     * The attribute value written by the concurrent writer.
+     */
+    private static final String DEPARTMENT_CONCURRENT = "Legal";
+
+    /**
+     * The key of the record with no department.
+     */
+    private static final int ID_NULL_DEPARTMENT = 7;
+}
@@ -0,0 +1,222 @@
+package com.ionic.sdk.addon.jdbc.test;
+
+import com.ionic.sdk.addon.jdbc.IonicBatchWriter;
+import com.ionic.sdk.addon.jdbc.IonicResultSetHandler;
+import com.ionic.sdk.addon.jdbc.PartitionedTableReader;
+import com.ionic.sdk.addon.jdbc.RowConsumer;
+import com.ionic.sdk.addon.jdbc.RowSet;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.error.IonicException;
+import org.apache.commons.dbutils.QueryRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test that {@link PartitionedTableReader} reads the accessible rows of a table in parallel, delivering them in
+ * partition column order or as they are decrypted, whatever the number of partitions, and reports consumer failure.
+ * <p>
+ * The sample table holds records of several departments; a policy denies the "HR" department.  The rows read are
+ * checked against those of a single {@link IonicResultSetHandler} query of the table.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PartitionedTableReaderTest {
+
+    /**
+     * In-process key service.
+     */
+    private LocalKeyServices keyServices;
+
+    /**
+     * In-memory database, holding the sample table.
+     */
+    private DataSource dataSource;
+
+    /**
+     * Worker threads, on which ranges are read and decrypted.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws SQLException   on failure to create the sample table
+     * @throws IonicException on failure to protect data
+     * @throws IOException    on failure to read the test policy
+     */
+    @Before
+    public void setUp() throws SQLException, IonicException, IOException {
+        keyServices = new LocalKeyServices();
+        dataSource = TestDatabase.create();
+        try (Connection connection = dataSource.getConnection()) {
+            TestDatabase.createTable(connection);
+            try (IonicBatchWriter writer = new IonicBatchWriter(keyServices, connection,
+                    IonicBatchWriterTest.SQL_INSERT, IonicBatchWriterTest.COLUMNS,
+                    TestDatabase.toIonicAttributes("first", "last", "zip"), RECORDS, 0)) {
+                for (int r = 0; r < RECORDS; ++r) {
+                    final Object[] record = IonicBatchWriterTest.toRecord(r);
+                    writer.addRow(Arrays.copyOf(record, record.length + 1),
+                            TestDatabase.toRowAttributes((String) record[4]));
+                }
+            }
+        }
+        keyServices.addPolicy(TestDatabase.readResource(TestDatabase.RESOURCE_POLICY_DEPT));
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    /**
+     * Tear down after each test case.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ordered delivery yields the accessible rows of the table in partition column order, whether there are fewer or
+     * more partitions than rows.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testPartitioned_1_Ordered() throws SQLException {
+        final List<List<Object>> expected = toRows(readBaseline());
+        Assert.assertTrue(expected.size() < RECORDS);
+        for (int partitions : new int[]{1, THREADS + 1, RECORDS * 2}) {
+            Assert.assertEquals(expected, toRows(newReader(partitions).read()));
+        }
+    }
+
+    /**
+     * Unordered delivery yields the accessible rows of the table, passed to the consumer one at a time.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testPartitioned_2_Unordered() throws SQLException {
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        final AtomicInteger inConsumer = new AtomicInteger();
+        final int count = newReader(THREADS * 2).read(new RowConsumer() {
+            @Override
+            public void accept(final Object[] row) {
+                Assert.assertEquals(1, inConsumer.incrementAndGet());
+                rows.add(row);
+                inConsumer.decrementAndGet();
+            }
+        }, false);
+        final List<List<Object>> expected = toRows(readBaseline());
+        Assert.assertEquals(expected.size(), count);
+        final List<List<Object>> actual = toRows(rows);
+        Collections.sort(actual, new Comparator<List<Object>>() {
+            @Override
+            public int compare(final List<Object> row1, final List<Object> row2) {
+                return Long.compare(toId(row1), toId(row2));
+            }
+        });
+        Assert.assertEquals(expected, actual);
+    }
+
+    /**
+     * An empty table yields no rows.
+     *
+     * @throws SQLException on failure to read from the database
+     */
+    @Test
+    public final void testPartitioned_3_Empty() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            new QueryRunner().update(connection, "DELETE FROM personnel");
+        }
+        Assert.assertEquals(0, newReader(THREADS).read().size());
+    }
+
+    /**
+     * A consumer failure is reported to the caller, chained to the query failure.
+     */
+    @Test
+    public final void testPartitioned_4_ConsumerFailure() {
+        final SQLException failure = new SQLException("consumer failure");
+        try {
+            newReader(THREADS).read(new RowConsumer() {
+                @Override
+                public void accept(final Object[] row) throws SQLException {
+                    throw failure;
+                }
+            }, false);
+            Assert.fail("consumer failure should be reported");
+        } catch (SQLException e) {
+            Assert.assertSame(failure, e.getNextException());
+        }
+    }
+
+    /**
+     * @param partitions the number of ranges into which the table is divided
+     * @return a reader of the sample table
+     */
+    private PartitionedTableReader newReader(final int partitions) {
+        return new PartitionedTableReader(dataSource,
+                new IonicResultSetHandler(keyServices, IonicBatchWriterTest.IONIC_COLUMNS), "personnel", "id",
+                partitions, executor, FETCH_SIZE);
+    }
+
+    /**
+     * @return the accessible rows of the sample table, read by a single query in key order
+     * @throws SQLException on failure to read from the database
+     */
+    private RowSet readBaseline() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return new QueryRunner().query(connection, "SELECT * FROM personnel ORDER BY id",
+                    new IonicResultSetHandler(keyServices, IonicBatchWriterTest.IONIC_COLUMNS));
+        }
+    }
+
+    /**
+     * @param rows the rows read from the sample table
+     * @return the rows, in a form that may be compared for equality
+     */
+    private static List<List<Object>> toRows(final Iterable<Object[]> rows) {
+        final List<List<Object>> rowsList = new ArrayList<List<Object>>();
+        for (Object[] row : rows) {
+            rowsList.add(Arrays.asList(row));
+        }
+        return rowsList;
+    }
+
+    /**
+     * @param row a row read from the sample table
+     * @return the key of the row
+     */
+    private static long toId(final List<Object> row) {
+        return Long.parseLong(row.get(0).toString());
+    }
+
+    /**
+     * The number of records in the sample table.
+     */
+    private static final int RECORDS = 40;
+
+    /**
+     * The number of worker threads.
+     */
+    private static final int THREADS = 4;
+
+    /**
+     * The number of rows fetched from the database in each round trip.
+     */
+    private static final int FETCH_SIZE = 8;
+}
@@ -0,0 +1,246 @@
+package com.ionic.sdk.addon.jdbc.test;
+
+import com.ionic.sdk.addon.jdbc.IonicBatchWriter;
+import com.ionic.sdk.addon.jdbc.IonicResultSetHandler;
+import com.ionic.sdk.addon.jdbc.RekeyJob;
+import com.ionic.sdk.addon.jdbc.RowSet;
+import com.ionic.sdk.addon.key.KeyServicesWrapper;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ArrayListHandler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test that {@link RekeyJob} re-encrypts the protected cells of a table in place with new attributes, maintains the
+ * access fingerprint of each row, and leaves alone a row modified by a concurrent writer after the job read it
+ * (counting it as conflicted).
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class RekeyJobTest {
+
+    /**
+     * In-process key service.
+     */
+    private LocalKeyServices keyServices;
+
+    /**
+     * In-memory database, holding the sample table.
+     */
+    private DataSource dataSource;
+
+    /**
+     * Worker threads of the rekey job.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws SQLException   on failure to create the sample table
+     * @throws IonicException on failure to protect the sample records
+     */
+    @Before
+    public void setUp() throws SQLException, IonicException {
+        keyServices = new LocalKeyServices();
+        dataSource = TestDatabase.create();
+        executor = Executors.newFixedThreadPool(PARTITIONS);
+        try (Connection connection = dataSource.getConnection()) {
+            TestDatabase.createTable(connection);
+            try (IonicBatchWriter writer = new IonicBatchWriter(keyServices, connection,
+                    IonicBatchWriterTest.SQL_INSERT, IonicBatchWriterTest.COLUMNS,
+                    TestDatabase.toIonicAttributes("first", "last", "zip"), RECORDS, 0)) {
+                for (int r = 0; r < RECORDS; ++r) {
+                    final Object[] record = IonicBatchWriterTest.toRecord(r);
+                    writer.addRow(Arrays.copyOf(record, record.length + 1), null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tear down after each test case.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Each protected cell is re-encrypted, and each row is given the fingerprint of its new attributes, shared only
+     * by the rows of the same department.
+     *
+     * @throws SQLException on failure to access the database
+     */
+    @Test
+    public final void testRekey_1_Rekey() throws SQLException {
+        final Map<Object, Object> fingerprintsBefore = getFingerprints();
+        final RekeyJob job = createJob(keyServices);
+        Assert.assertEquals(RECORDS, job.run());
+        Assert.assertEquals(RECORDS * IonicBatchWriterTest.IONIC_COLUMNS.size(), job.getCellsUpdated());
+        Assert.assertEquals(0, job.getCellsSkipped());
+        Assert.assertEquals(0, job.getRowsConflicted());
+        final Map<Object, Object> fingerprints = getFingerprints();
+        for (int r = 0; r < RECORDS; ++r) {
+            final Object fingerprint = fingerprints.get((long) r);
+            Assert.assertNotNull(fingerprint);
+            Assert.assertNotEquals(fingerprintsBefore.get((long) r), fingerprint);
+            for (int s = 0; s < r; ++s) {
+                Assert.assertEquals(IonicBatchWriterTest.toRecord(r)[4].equals(IonicBatchWriterTest.toRecord(s)[4]),
+                        fingerprint.equals(fingerprints.get((long) s)));
+            }
+        }
+        assertReadable(RECORDS);
+    }
+
+    /**
+     * A row holding a cell that cannot be decrypted has its other cells re-encrypted, and its fingerprint nulled.
+     *
+     * @throws SQLException   on failure to access the database
+     * @throws IonicException on failure to protect the foreign cell
+     */
+    @Test
+    public final void testRekey_2_Undecryptable() throws SQLException, IonicException {
+        final String foreign = new ChunkCipherV2(new LocalKeyServices()).encrypt("foreign");
+        try (Connection connection = dataSource.getConnection()) {
+            new QueryRunner().update(connection, "UPDATE personnel SET first = ? WHERE id = ?", foreign, ID_ROW);
+        }
+        final RekeyJob job = createJob(keyServices);
+        Assert.assertEquals(RECORDS, job.run());
+        Assert.assertEquals((RECORDS * IonicBatchWriterTest.IONIC_COLUMNS.size()) - 1, job.getCellsUpdated());
+        Assert.assertEquals(1, job.getCellsSkipped());
+        Assert.assertEquals(0, job.getRowsConflicted());
+        final Map<Object, Object> fingerprints = getFingerprints();
+        for (int r = 0; r < RECORDS; ++r) {
+            Assert.assertEquals(r == ID_ROW, fingerprints.get((long) r) == null);
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            final List<Object[]> rows = new QueryRunner().query(connection,
+                    "SELECT first FROM personnel WHERE id = ?", new ArrayListHandler(), ID_ROW);
+            Assert.assertEquals(foreign, rows.get(0)[0]);
+        }
+    }
+
+    /**
+     * A row modified after the job read it is left as the concurrent writer left it, and counted as conflicted.
+     *
+     * @throws SQLException on failure to access the database
+     */
+    @Test
+    public final void testRekey_3_Conflict() throws SQLException {
+        final AtomicBoolean written = new AtomicBoolean();
+        final KeyServicesWrapper keyServicesConflict = new KeyServicesWrapper(keyServices) {
+            @Override
+            public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+                if (written.compareAndSet(false, true)) {
+                    try (Connection connection = dataSource.getConnection()) {
+                        new QueryRunner().update(connection,
+                                "UPDATE personnel SET first = ? WHERE id = ?", FIRST_CONCURRENT, ID_ROW);
+                    } catch (SQLException e) {
+                        throw new IonicException(SdkError.ISAGENT_REQUESTFAILED, e);
+                    }
+                }
+                return super.createKeys(request);
+            }
+        };
+        final Map<Object, Object> fingerprintsBefore = getFingerprints();
+        final RekeyJob job = createJob(keyServicesConflict);
+        Assert.assertEquals(RECORDS - 1, job.run());
+        Assert.assertTrue(written.get());
+        Assert.assertEquals((RECORDS - 1) * IonicBatchWriterTest.IONIC_COLUMNS.size(), job.getCellsUpdated());
+        Assert.assertEquals(1, job.getRowsConflicted());
+        Assert.assertEquals(fingerprintsBefore.get((long) ID_ROW), getFingerprints().get((long) ID_ROW));
+        try (Connection connection = dataSource.getConnection()) {
+            final List<Object[]> rows = new QueryRunner().query(connection,
+                    "SELECT first FROM personnel WHERE id = ?", new ArrayListHandler(), ID_ROW);
+            Assert.assertEquals(FIRST_CONCURRENT, rows.get(0)[0]);
+        }
+    }
+
+    /**
+     * @param agent the key source of the job
+     * @return a job re-encrypting the "first" column of the sample table with a classification, and the other
+     * protected columns with no column attributes, in a single batch
+     */
+    private RekeyJob createJob(final KeyServices agent) {
+        final Map<String, KeyAttributesMap> ionicAttributes = TestDatabase.toIonicAttributes("first", "last", "zip");
+        ionicAttributes.get("first").put("classification", Collections.singletonList("restricted"));
+        return new RekeyJob(dataSource, agent, "personnel", "id", ionicAttributes,
+                Collections.singletonList("department"), "rekey", PARTITIONS, executor, RECORDS, 0);
+    }
+
+    /**
+     * @return the fingerprint of each row of the sample table, indexed by key
+     * @throws SQLException on failure to read from the database
+     */
+    private Map<Object, Object> getFingerprints() throws SQLException {
+        final Map<Object, Object> fingerprints = new HashMap<Object, Object>();
+        try (Connection connection = dataSource.getConnection()) {
+            final List<Object[]> rows = new QueryRunner().query(connection,
+                    "SELECT id, ionic_fp FROM personnel", new ArrayListHandler());
+            for (Object[] row : rows) {
+                fingerprints.put(row[0], row[1]);
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Check that the rows of the sample table read back (with the "HR" rows still readable, as no policy is in
+     * effect).
+     *
+     * @param records the expected number of records
+     * @throws SQLException on failure to access the database
+     */
+    private void assertReadable(final int records) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            final RowSet rowSet = new QueryRunner().query(connection, IonicBatchWriterTest.SQL_SELECT,
+                    new IonicResultSetHandler(keyServices, IonicBatchWriterTest.IONIC_COLUMNS));
+            Assert.assertEquals(records, rowSet.size());
+        }
+    }
+
+    /**
+     * The number of records in the sample table.
+     */
+    private static final int RECORDS = 12;
+
+    /**
+     * The number of ranges into which the sample table is divided; a single range, so that the concurrent write
+     * always falls between the read and the update of the record it modifies.
+     */
+    private static final int PARTITIONS = 1;
+
+    /**
+     * The key of the record made undecryptable, or modified by the concurrent writer.
+     */
+    private static final int ID_ROW = 5;
+
+    /**
+     * The value written by the concurrent writer.
+     */
+    private static final String FIRST_CONCURRENT = "concurrent";
+}
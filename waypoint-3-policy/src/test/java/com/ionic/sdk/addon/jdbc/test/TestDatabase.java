@@ -0,0 +1,106 @@
+package com.ionic.sdk.addon.jdbc.test;
+
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixtures for tests run against an in-memory H2 database, with no external dependencies.
+ */
+final class TestDatabase {
+
+    /**
+     * Constructor.  Static methods only.
+     */
+    private TestDatabase() {
+    }
+
+    /**
+     * @return the data source of a new, empty in-memory database, retained until the JVM exits
+     */
+    static DataSource create() {
+        final JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(String.format("jdbc:h2:mem:test%d;DB_CLOSE_DELAY=-1", COUNTER.incrementAndGet()));
+        return dataSource;
+    }
+
+    /**
+     * Create the sample table, with a protected column for each of "first", "last" and "zip", the "department"
+     * attribute column, and the access fingerprint column.
+     *
+     * @param connection the database connection
+     * @throws SQLException on failure to create the table
+     */
+    static void createTable(final Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE personnel (id BIGINT PRIMARY KEY, first VARCHAR(4096), "
+                    + "last VARCHAR(4096), zip VARCHAR(4096), department VARCHAR(64), ionic_fp VARCHAR(32))");
+        }
+    }
+
+    /**
+     * @param columns the names of the protected columns
+     * @return an empty attribute set for each protected column
+     */
+    static Map<String, KeyAttributesMap> toIonicAttributes(final String... columns) {
+        final Map<String, KeyAttributesMap> ionicAttributes = new LinkedHashMap<String, KeyAttributesMap>();
+        for (String column : columns) {
+            ionicAttributes.put(column, new KeyAttributesMap());
+        }
+        return ionicAttributes;
+    }
+
+    /**
+     * @param department a department name
+     * @return the row-specific attributes marking a record of the department
+     */
+    static KeyAttributesMap toRowAttributes(final String department) {
+        final KeyAttributesMap attributes = new KeyAttributesMap();
+        attributes.put("department", Collections.singletonList(department));
+        return attributes;
+    }
+
+    /**
+     * @param name the name of a test resource (for example, "ionic/policy.dept.json")
+     * @return the content of the resource
+     * @throws IOException on failure to read the resource
+     */
+    static byte[] readResource(final String name) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (InputStream is = TestDatabase.class.getClassLoader().getResourceAsStream(name)) {
+            Assert.assertNotNull(name, is);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            for (int count = is.read(buffer); count >= 0; count = is.read(buffer)) {
+                os.write(buffer, 0, count);
+            }
+        }
+        return os.toByteArray();
+    }
+
+    /**
+     * The Ionic data policy denying access to records of the "HR" department.
+     */
+    static final String RESOURCE_POLICY_DEPT = "ionic/policy.dept.json";
+
+    /**
+     * The source of the names of the in-memory databases.
+     */
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    /**
+     * The size of the buffer used to read resources.
+     */
+    private static final int BUFFER_SIZE = 4096;
+}
@@ -0,0 +1,194 @@
+package com.ionic.sdk.addon.key.test;
+
+import com.ionic.sdk.addon.key.AgentPool;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.agent.Agent;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test that {@link AgentPool} binds each thread to one of its agents, in round-robin order, routes the key requests
+ * of a thread to its agent, and reuses a cipher per thread.
+ * <p>
+ * The pooled agents delegate their key requests to a shared {@link LocalKeyServices}, so no Ionic device profile is
+ * needed.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class AgentPoolTest {
+
+    /**
+     * In-process key service, to which the pooled agents delegate.
+     */
+    private LocalKeyServices keyServices;
+
+    /**
+     * The pooled agents.
+     */
+    private List<LocalAgent> agents;
+
+    /**
+     * Worker threads, each bound to an agent of the pool.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Set up for each test case to be run.
+     */
+    @Before
+    public void setUp() {
+        keyServices = new LocalKeyServices();
+        agents = new ArrayList<LocalAgent>();
+        for (int i = 0; i < AGENTS; ++i) {
+            agents.add(new LocalAgent(keyServices));
+        }
+        executor = Executors.newFixedThreadPool(AGENTS);
+    }
+
+    /**
+     * Tear down after each test case.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A thread keeps its agent and cipher; as many threads as agents are bound to distinct agents.
+     *
+     * @throws Exception on failure to bind a thread
+     */
+    @Test
+    public final void testAgentPool_1_Binding() throws Exception {
+        final AgentPool pool = new AgentPool(agents);
+        Assert.assertEquals(AGENTS, pool.size());
+        final List<Future<Agent>> futures = new ArrayList<Future<Agent>>();
+        for (int i = 0; i < AGENTS; ++i) {
+            futures.add(executor.submit(new Callable<Agent>() {
+                @Override
+                public Agent call() {
+                    final Agent agent = pool.getAgent();
+                    Assert.assertSame(agent, pool.getAgent());
+                    Assert.assertSame(pool.getChunkCipher(), pool.getChunkCipher());
+                    Assert.assertSame(pool.getChunkCipher(), AgentPool.getChunkCipher(pool));
+                    return agent;
+                }
+            }));
+        }
+        final Set<Agent> bound = new HashSet<Agent>();
+        for (Future<Agent> future : futures) {
+            bound.add(future.get());
+        }
+        Assert.assertEquals(new HashSet<Agent>(agents), bound);
+        Assert.assertNotSame(AgentPool.getChunkCipher(keyServices), AgentPool.getChunkCipher(keyServices));
+    }
+
+    /**
+     * The key requests of a thread are serviced by the agent of the thread.
+     *
+     * @throws IonicException on failure to create or fetch a key
+     */
+    @Test
+    public final void testAgentPool_2_Routing() throws IonicException {
+        final AgentPool pool = new AgentPool(agents);
+        final LocalAgent agent = (LocalAgent) pool.getAgent();
+        final String keyId = pool.createKey().getFirstKey().getId();
+        Assert.assertEquals(1, pool.getKey(keyId).getKeys().size());
+        Assert.assertEquals(2, agent.getRequests());
+        long requests = 0L;
+        for (LocalAgent agentPooled : agents) {
+            requests += agentPooled.getRequests();
+        }
+        Assert.assertEquals(2, requests);
+    }
+
+    /**
+     * A pool needs at least one agent.
+     */
+    @Test
+    public final void testAgentPool_3_Empty() {
+        try {
+            new AgentPool(Collections.<Agent>emptyList());
+            Assert.fail("empty pool should be rejected");
+        } catch (IonicException e) {
+            Assert.assertEquals(SdkError.ISAGENT_INVALIDVALUE, e.getReturnCode());
+        }
+        try {
+            new AgentPool(null, 0);
+            Assert.fail("empty pool should be rejected");
+        } catch (IonicException e) {
+            Assert.assertEquals(SdkError.ISAGENT_INVALIDVALUE, e.getReturnCode());
+        }
+    }
+
+    /**
+     * Agent servicing its key requests from an in-process key service, and counting them.
+     */
+    private static final class LocalAgent extends Agent {
+
+        /**
+         * In-process key service.
+         */
+        private final LocalKeyServices keyServices;
+
+        /**
+         * The number of key requests serviced by this agent.
+         */
+        private final AtomicLong requests;
+
+        /**
+         * Constructor.
+         *
+         * @param keyServices in-process key service
+         */
+        private LocalAgent(final LocalKeyServices keyServices) {
+            super();
+            this.keyServices = keyServices;
+            this.requests = new AtomicLong();
+        }
+
+        /**
+         * @return the number of key requests serviced by this agent
+         */
+        private long getRequests() {
+            return requests.get();
+        }
+
+        @Override
+        public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+            requests.incrementAndGet();
+            return keyServices.createKeys(request);
+        }
+
+        @Override
+        public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+            requests.incrementAndGet();
+            return keyServices.getKeys(request);
+        }
+    }
+
+    /**
+     * The number of agents in the pool.
+     */
+    private static final int AGENTS = 3;
+}
@@ -0,0 +1,175 @@
+package com.ionic.sdk.addon.key.test;
+
+import com.ionic.sdk.addon.key.AttributeTemplate;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test that {@link AttributeTemplate} merges row attributes over column attributes, returns the same unmodifiable
+ * attribute set for each binding of the same values, and binds values beyond its interning capacity.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class AttributeTemplateTest {
+
+    /**
+     * Row attributes are merged over the column attributes; a null positional value omits its attribute.
+     *
+     * @throws IonicException on failure to parse or bind the template
+     */
+    @Test
+    public final void testTemplate_1_Bind() throws IonicException {
+        final AttributeTemplate template = AttributeTemplate.parse(
+                "{\"classification\": \"pii\", \"department\": [\"none\"]}", "department", "region");
+        Assert.assertEquals(toAttributes("classification", "pii", "department", "none"), template.getAttributes());
+        Assert.assertEquals(toAttributes("classification", "pii", "department", "HR", "region", "EU"),
+                template.bind("HR", "EU"));
+        Assert.assertEquals(toAttributes("classification", "pii", "department", "Sales"),
+                template.bind("Sales", null));
+        Assert.assertEquals(toAttributes("classification", "pii", "department", "HR"),
+                template.bind(toAttributes("department", "HR")));
+        try {
+            template.bind("HR");
+            Assert.fail("binding of too few values should be rejected");
+        } catch (IonicException e) {
+            Assert.assertEquals(SdkError.ISAGENT_INVALIDVALUE, e.getReturnCode());
+        }
+    }
+
+    /**
+     * Bindings of the same values return the same instance, as do bindings without row attributes.
+     *
+     * @throws IonicException on failure to bind the template
+     */
+    @Test
+    public final void testTemplate_2_Interned() throws IonicException {
+        final AttributeTemplate template = new AttributeTemplate(toAttributes("classification", "pii"), "department");
+        Assert.assertSame(template.bind("HR"), template.bind(new String[]{"HR"}));
+        Assert.assertSame(template.bind(toAttributes("department", "HR")),
+                template.bind(toAttributes("department", "HR")));
+        Assert.assertNotSame(template.bind("HR"), template.bind("Sales"));
+        Assert.assertSame(template.getAttributes(), template.getAttributes());
+        Assert.assertSame(template.getAttributes(), template.bind((KeyAttributesMap) null));
+        Assert.assertEquals(3, template.getInternedCount());
+    }
+
+    /**
+     * Returned attribute sets may not be modified, through the map, its views or its value lists; a copy may be.
+     *
+     * @throws IonicException on failure to bind the template
+     */
+    @Test
+    public final void testTemplate_3_Unmodifiable() throws IonicException {
+        final AttributeTemplate template = new AttributeTemplate(toAttributes("classification", "pii"), "department");
+        final KeyAttributesMap attributes = template.bind("HR");
+        final List<String> values = Collections.singletonList("x");
+        assertUnmodifiable(template, new Runnable() {
+            @Override
+            public void run() {
+                attributes.put("classification", values);
+            }
+        });
+        assertUnmodifiable(template, new Runnable() {
+            @Override
+            public void run() {
+                attributes.putAll(toAttributes("region", "EU"));
+            }
+        });
+        assertUnmodifiable(template, new Runnable() {
+            @Override
+            public void run() {
+                attributes.remove("classification");
+            }
+        });
+        assertUnmodifiable(template, new Runnable() {
+            @Override
+            public void run() {
+                attributes.clear();
+            }
+        });
+        assertUnmodifiable(template, new Runnable() {
+            @Override
+            public void run() {
+                attributes.keySet().remove("classification");
+            }
+        });
+        assertUnmodifiable(template, new Runnable() {
+            @Override
+            public void run() {
+                attributes.values().clear();
+            }
+        });
+        assertUnmodifiable(template, new Runnable() {
+            @Override
+            public void run() {
+                attributes.entrySet().iterator().next().setValue(values);
+            }
+        });
+        assertUnmodifiable(template, new Runnable() {
+            @Override
+            public void run() {
+                attributes.get("department").add("Sales");
+            }
+        });
+
+        final KeyAttributesMap copy = new KeyAttributesMap(attributes);
+        copy.put("region", values);
+        Assert.assertEquals(toAttributes("classification", "pii", "department", "HR"), template.bind("HR"));
+    }
+
+    /**
+     * Bindings beyond the interning capacity are merged on each call, and are equal (but not the same).
+     *
+     * @throws IonicException on failure to bind the template
+     */
+    @Test
+    public final void testTemplate_4_Capacity() throws IonicException {
+        final AttributeTemplate template = new AttributeTemplate(null, 1, "department");
+        Assert.assertSame(template.bind("HR"), template.bind("HR"));
+        final KeyAttributesMap attributes = template.bind("Sales");
+        Assert.assertNotSame(attributes, template.bind("Sales"));
+        Assert.assertEquals(attributes, template.bind("Sales"));
+        Assert.assertEquals(1, template.getInternedCount());
+        try {
+            attributes.put("department", Collections.singletonList("HR"));
+            Assert.fail("attribute set should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals(toAttributes("department", "Sales"), attributes);
+        }
+    }
+
+    /**
+     * @param template the template whose binding of "HR" is modified
+     * @param mutation an attempt to modify the binding
+     * @throws IonicException on failure to bind the template
+     */
+    private static void assertUnmodifiable(final AttributeTemplate template, final Runnable mutation)
+            throws IonicException {
+        try {
+            mutation.run();
+            Assert.fail("attribute set should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals(toAttributes("classification", "pii", "department", "HR"), template.bind("HR"));
+        }
+    }
+
+    /**
+     * @param namesValues alternating attribute names and values
+     * @return the attributes, each with a single value
+     */
+    private static KeyAttributesMap toAttributes(final String... namesValues) {
+        final KeyAttributesMap attributes = new KeyAttributesMap();
+        for (int i = 0; i < namesValues.length; i += 2) {
+            attributes.put(namesValues[i], Arrays.asList(namesValues[i + 1]));
+        }
+        return attributes;
+    }
+}
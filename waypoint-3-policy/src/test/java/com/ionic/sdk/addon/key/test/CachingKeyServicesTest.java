@@ -0,0 +1,179 @@
+package com.ionic.sdk.addon.key.test;
+
+import com.ionic.sdk.addon.key.CachingKeyServices;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test the expiry, eviction, denial caching and invalidation of {@link CachingKeyServices}, using the request counts
+ * of the wrapped {@link LocalKeyServices}.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CachingKeyServicesTest {
+
+    /**
+     * In-process key service, wrapped by the cache.
+     */
+    private LocalKeyServices keyServices;
+
+    /**
+     * Key tags of keys released by the key service.
+     */
+    private String[] keyIds;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws IonicException on failure to create the keys
+     */
+    @Before
+    public void setUp() throws IonicException {
+        keyServices = new LocalKeyServices();
+        keyIds = new String[KEYS];
+        for (int i = 0; i < keyIds.length; ++i) {
+            keyIds[i] = keyServices.createKey().getFirstKey().getId();
+        }
+    }
+
+    /**
+     * A cached key is served without a server request until its time to live elapses.
+     *
+     * @throws IonicException       on failure to fetch a key
+     * @throws InterruptedException on interruption while waiting for expiry
+     */
+    @Test
+    public final void testCache_1_Expiry() throws IonicException, InterruptedException {
+        final CachingKeyServices cache = new CachingKeyServices(keyServices, TTL_MILLIS, TimeUnit.MILLISECONDS, KEYS);
+        final long requests = keyServices.getRequests();
+        Assert.assertEquals(1, cache.getKey(keyIds[0]).getKeys().size());
+        Assert.assertEquals(1, cache.getKey(keyIds[0]).getKeys().size());
+        Assert.assertEquals(requests + 1, keyServices.getRequests());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        Thread.sleep(TTL_MILLIS * 2);
+        Assert.assertEquals(1, cache.getKey(keyIds[0]).getKeys().size());
+        Assert.assertEquals(requests + 2, keyServices.getRequests());
+        Assert.assertEquals(1, cache.getEvictions());
+    }
+
+    /**
+     * The least recently used key is evicted once the cache reaches its capacity.
+     *
+     * @throws IonicException on failure to fetch a key
+     */
+    @Test
+    public final void testCache_2_Eviction() throws IonicException {
+        final CachingKeyServices cache = new CachingKeyServices(keyServices, 1, TimeUnit.HOURS, 2);
+        cache.getKey(keyIds[0]);
+        cache.getKey(keyIds[1]);
+        cache.getKey(keyIds[0]);
+        cache.getKey(keyIds[2]);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictions());
+        final long requests = keyServices.getRequests();
+        cache.getKey(keyIds[0]);
+        Assert.assertEquals(requests, keyServices.getRequests());
+        cache.getKey(keyIds[1]);
+        Assert.assertEquals(requests + 1, keyServices.getRequests());
+    }
+
+    /**
+     * A denial is served from the cache only when denial caching is enabled, and only for its own time to live.
+     *
+     * @throws IonicException       on failure to fetch a key
+     * @throws InterruptedException on interruption while waiting for expiry
+     */
+    @Test
+    public final void testCache_3_Denied() throws IonicException, InterruptedException {
+        final CachingKeyServices cacheNoDenied = new CachingKeyServices(keyServices, 1, TimeUnit.HOURS, KEYS);
+        final long requests = keyServices.getRequests();
+        Assert.assertTrue(cacheNoDenied.getKey(KEY_ID_UNKNOWN).getKeys().isEmpty());
+        Assert.assertTrue(cacheNoDenied.getKey(KEY_ID_UNKNOWN).getKeys().isEmpty());
+        Assert.assertEquals(requests + 2, keyServices.getRequests());
+        Assert.assertEquals(0, cacheNoDenied.getDeniedHits());
+
+        final CachingKeyServices cache = new CachingKeyServices(
+                keyServices, TimeUnit.HOURS.toMillis(1), TTL_MILLIS, TimeUnit.MILLISECONDS, KEYS);
+        Assert.assertTrue(cache.getKey(KEY_ID_UNKNOWN).getKeys().isEmpty());
+        Assert.assertTrue(cache.getKey(KEY_ID_UNKNOWN).getKeys().isEmpty());
+        Assert.assertEquals(requests + 3, keyServices.getRequests());
+        Assert.assertEquals(1, cache.getDeniedHits());
+        Thread.sleep(TTL_MILLIS * 2);
+        Assert.assertTrue(cache.getKey(KEY_ID_UNKNOWN).getKeys().isEmpty());
+        Assert.assertEquals(requests + 4, keyServices.getRequests());
+    }
+
+    /**
+     * Invalidated keys are fetched again from the server.
+     *
+     * @throws IonicException on failure to fetch a key
+     */
+    @Test
+    public final void testCache_4_Invalidate() throws IonicException {
+        final CachingKeyServices cache = new CachingKeyServices(keyServices, 1, TimeUnit.HOURS, KEYS);
+        cache.getKey(keyIds[0]);
+        cache.getKey(keyIds[1]);
+        cache.invalidate(keyIds[0]);
+        Assert.assertEquals(1, cache.size());
+        final long requests = keyServices.getRequests();
+        cache.getKey(keyIds[1]);
+        Assert.assertEquals(requests, keyServices.getRequests());
+        cache.getKey(keyIds[0]);
+        Assert.assertEquals(requests + 1, keyServices.getRequests());
+        cache.onPolicyChange();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    /**
+     * A key fetched by a request in flight at the time of an invalidation is returned, but not cached.
+     *
+     * @throws Exception on failure to fetch a key
+     */
+    @Test
+    public final void testCache_5_InvalidateInFlight() throws Exception {
+        final CachingKeyServices cache = new CachingKeyServices(keyServices, 1, TimeUnit.HOURS, KEYS);
+        keyServices.setLatency(TTL_MILLIS * 2, TimeUnit.MILLISECONDS);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<GetKeysResponse> future = executor.submit(new Callable<GetKeysResponse>() {
+                @Override
+                public GetKeysResponse call() throws IonicException {
+                    return cache.getKey(keyIds[0]);
+                }
+            });
+            Thread.sleep(TTL_MILLIS);
+            cache.invalidateAll();
+            Assert.assertEquals(1, future.get().getKeys().size());
+            Assert.assertEquals(0, cache.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The number of released keys created for each test case.
+     */
+    private static final int KEYS = 4;
+
+    /**
+     * Key tag unknown to the key service, which is omitted from its responses as a denied key would be.
+     */
+    private static final String KEY_ID_UNKNOWN = "~!UNKNOWN";
+
+    /**
+     * The time to live of the short lived cache entries of the test cases.
+     */
+    private static final long TTL_MILLIS = 100L;
+}
@@ -0,0 +1,161 @@
+package com.ionic.sdk.addon.key.test;
+
+import com.ionic.sdk.addon.key.CoalescingKeyServices;
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test that concurrent fetches through {@link CoalescingKeyServices} are merged into fewer requests to the wrapped
+ * {@link LocalKeyServices}, and that each caller receives the keys it requested.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CoalescingKeyServicesTest {
+
+    /**
+     * In-process key service, wrapped by the coalescing implementation.
+     */
+    private LocalKeyServices keyServices;
+
+    /**
+     * Key tags of keys released by the key service.
+     */
+    private List<String> keyIds;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws IonicException on failure to create the keys
+     */
+    @Before
+    public void setUp() throws IonicException {
+        keyServices = new LocalKeyServices();
+        keyIds = new ArrayList<String>();
+        for (int i = 0; i < THREADS * 2; ++i) {
+            keyIds.add(keyServices.createKey().getFirstKey().getId());
+        }
+        keyServices.setLatency(LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A single fetch is passed through as a single request.
+     *
+     * @throws IonicException on failure to fetch the keys
+     */
+    @Test
+    public final void testCoalesce_1_Single() throws IonicException {
+        final CoalescingKeyServices coalescing =
+                new CoalescingKeyServices(keyServices, 1, TimeUnit.MILLISECONDS, MAX_BATCH_SIZE);
+        final long requests = keyServices.getRequests();
+        final GetKeysResponse response = coalescing.getKeys(toRequest(keyIds));
+        Assert.assertEquals(keyIds.size(), response.getKeys().size());
+        Assert.assertEquals(requests + 1, keyServices.getRequests());
+        Assert.assertEquals(1, coalescing.getRequests());
+        Assert.assertEquals(0, coalescing.getCoalesced());
+    }
+
+    /**
+     * Concurrent fetches of overlapping keys are merged, and each caller receives exactly the keys it requested.
+     *
+     * @throws Exception on failure to fetch the keys
+     */
+    @Test
+    public final void testCoalesce_2_Concurrent() throws Exception {
+        final CoalescingKeyServices coalescing =
+                new CoalescingKeyServices(keyServices, LATENCY_MILLIS, TimeUnit.MILLISECONDS, MAX_BATCH_SIZE);
+        final long requests = keyServices.getRequests();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<Set<String>>> futures = new ArrayList<Future<Set<String>>>();
+            for (int i = 0; i < THREADS; ++i) {
+                final List<String> keyIdsThread = keyIds.subList(i, i + THREADS);
+                futures.add(executor.submit(new Callable<Set<String>>() {
+                    @Override
+                    public Set<String> call() throws IonicException, InterruptedException {
+                        start.await();
+                        final Set<String> keyIdsReceived = new HashSet<String>();
+                        for (GetKeysResponse.Key key : coalescing.getKeys(toRequest(keyIdsThread)).getKeys()) {
+                            keyIdsReceived.add(key.getId());
+                        }
+                        return keyIdsReceived;
+                    }
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < THREADS; ++i) {
+                Assert.assertEquals(new HashSet<String>(keyIds.subList(i, i + THREADS)), futures.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertTrue(coalescing.getRequests() < THREADS);
+        Assert.assertEquals(requests + coalescing.getRequests(), keyServices.getRequests());
+        Assert.assertTrue(coalescing.getCoalesced() > 0);
+        Assert.assertTrue(keyServices.getKeysRequested() < THREADS * THREADS);
+    }
+
+    /**
+     * A failed fetch fails each of the merged requests.
+     *
+     * @throws Exception on failure to fetch the keys
+     */
+    @Test
+    public final void testCoalesce_3_Failure() throws Exception {
+        final CoalescingKeyServices coalescing =
+                new CoalescingKeyServices(keyServices, 1, TimeUnit.MILLISECONDS, MAX_BATCH_SIZE);
+        keyServices.setErrorRate(1.0);
+        try {
+            coalescing.getKeys(toRequest(keyIds));
+            Assert.fail("fetch should have failed");
+        } catch (IonicException e) {
+            Assert.assertNotNull(e.getMessage());
+        }
+        keyServices.setErrorRate(0.0);
+        Assert.assertEquals(keyIds.size(), coalescing.getKeys(toRequest(keyIds)).getKeys().size());
+    }
+
+    /**
+     * @param keyIds the key tags to fetch
+     * @return a fetch request for the keys
+     */
+    private static GetKeysRequest toRequest(final List<String> keyIds) {
+        final GetKeysRequest request = new GetKeysRequest();
+        for (String keyId : keyIds) {
+            request.addKeyId(keyId);
+        }
+        return request;
+    }
+
+    /**
+     * The number of concurrent callers.
+     */
+    private static final int THREADS = 4;
+
+    /**
+     * The latency of the key service, and the time for which the coalescing implementation waits for other requests.
+     */
+    private static final long LATENCY_MILLIS = 100L;
+
+    /**
+     * The maximum number of keys fetched in a single request.
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+}
@@ -0,0 +1,159 @@
+package com.ionic.sdk.addon.key.test;
+
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test that {@link LocalKeyServices} issues and serves keys with their attributes, evaluates the sample department
+ * policy on key fetch, and injects the configured latency and error rate.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class LocalKeyServicesTest {
+
+    /**
+     * In-process key service.
+     */
+    private LocalKeyServices keyServices;
+
+    /**
+     * Set up for each test case to be run.
+     */
+    @Before
+    public void setUp() {
+        keyServices = new LocalKeyServices();
+    }
+
+    /**
+     * A created key is served by its key tag, with the key material and attributes with which it was created; an
+     * unknown key tag is omitted from the response.
+     *
+     * @throws IonicException on failure to create or fetch a key
+     */
+    @Test
+    public final void testLocal_1_CreateGet() throws IonicException {
+        final CreateKeysResponse.Key created = keyServices.createKey(toAttributes(DEPARTMENT_SALES)).getFirstKey();
+        final GetKeysResponse.Key fetched = keyServices.getKey(created.getId()).getFirstKey();
+        Assert.assertNotNull(fetched);
+        Assert.assertArrayEquals(created.getKey(), fetched.getKey());
+        Assert.assertEquals(toAttributes(DEPARTMENT_SALES), fetched.getAttributesMap());
+        Assert.assertTrue(keyServices.getKey(KEY_ID_UNKNOWN).getKeys().isEmpty());
+        Assert.assertEquals(3, keyServices.getRequests());
+        Assert.assertEquals(2, keyServices.getKeysRequested());
+    }
+
+    /**
+     * A key whose attributes match an active policy is withheld until the policy is removed.
+     *
+     * @throws IonicException on failure to create or fetch a key, or to add the policy
+     * @throws IOException    on failure to read the policy
+     */
+    @Test
+    public final void testLocal_2_Policy() throws IonicException, IOException {
+        final String keyIdHR = keyServices.createKey(toAttributes(DEPARTMENT_HR)).getFirstKey().getId();
+        final String keyIdSales = keyServices.createKey(toAttributes(DEPARTMENT_SALES)).getFirstKey().getId();
+        final String policyId = keyServices.addPolicy(readResource(RESOURCE_POLICY_DEPT));
+        Assert.assertTrue(keyServices.getKey(keyIdHR).getKeys().isEmpty());
+        Assert.assertEquals(1, keyServices.getKey(keyIdSales).getKeys().size());
+        keyServices.deletePolicy(policyId);
+        Assert.assertEquals(1, keyServices.getKey(keyIdHR).getKeys().size());
+        try {
+            keyServices.deletePolicy(policyId);
+            Assert.fail("unknown policy should not be deleted");
+        } catch (IonicException e) {
+            Assert.assertEquals(1, keyServices.getKey(keyIdHR).getKeys().size());
+        }
+    }
+
+    /**
+     * Requests fail at the configured error rate, and are delayed by the configured latency.
+     *
+     * @throws IonicException on failure to create a key, once errors are no longer injected
+     */
+    @Test
+    public final void testLocal_3_LatencyErrors() throws IonicException {
+        keyServices.setErrorRate(1.0);
+        try {
+            keyServices.createKey();
+            Assert.fail("key creation should have failed");
+        } catch (IonicException e) {
+            Assert.assertEquals(1, keyServices.getRequests());
+        }
+        keyServices.setErrorRate(0.0);
+        keyServices.setLatency(LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+        final long start = System.nanoTime();
+        final String keyId = keyServices.createKey().getFirstKey().getId();
+        Assert.assertEquals(1, keyServices.getKey(keyId).getKeys().size());
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(LATENCY_MILLIS * 2));
+    }
+
+    /**
+     * @param department a department name
+     * @return the attributes marking a key of the department
+     */
+    private static KeyAttributesMap toAttributes(final String department) {
+        final KeyAttributesMap attributes = new KeyAttributesMap();
+        attributes.put("department", Collections.singletonList(department));
+        return attributes;
+    }
+
+    /**
+     * @param name the name of a test resource
+     * @return the content of the resource
+     * @throws IOException on failure to read the resource
+     */
+    private static byte[] readResource(final String name) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (InputStream is = LocalKeyServicesTest.class.getClassLoader().getResourceAsStream(name)) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = is.read(buffer)) >= 0) {
+                os.write(buffer, 0, count);
+            }
+        }
+        return os.toByteArray();
+    }
+
+    /**
+     * The sample policy, denying release of keys marked with the "HR" department.
+     */
+    private static final String RESOURCE_POLICY_DEPT = "ionic/policy.dept.json";
+
+    /**
+     * A department denied by the sample policy.
+     */
+    private static final String DEPARTMENT_HR = "HR";
+
+    /**
+     * A department not denied by the sample policy.
+     */
+    private static final String DEPARTMENT_SALES = "Sales";
+
+    /**
+     * A key tag not issued by the key service.
+     */
+    private static final String KEY_ID_UNKNOWN = "~!UNKNOWN";
+
+    /**
+     * The latency injected into each request.
+     */
+    private static final long LATENCY_MILLIS = 20L;
+
+    /**
+     * The size of the buffer used to read resources.
+     */
+    private static final int BUFFER_SIZE = 4096;
+}
@@ -0,0 +1,159 @@
+package com.ionic.sdk.addon.key.test;
+
+import com.ionic.sdk.addon.key.LocalKeyServices;
+import com.ionic.sdk.addon.key.PreallocatedKeyServices;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Test that {@link PreallocatedKeyServices} serves key creation from its pools, refills a pool once it falls below
+ * its low-water mark, and passes through the requests it cannot serve.
+ * <p>
+ * Refills run on the calling thread, so that their effect may be checked as soon as a request returns.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PreallocatedKeyServicesTest {
+
+    /**
+     * In-process key service, wrapped by the preallocating implementation.
+     */
+    private LocalKeyServices keyServices;
+
+    /**
+     * Preallocating implementation under test.
+     */
+    private PreallocatedKeyServices preallocated;
+
+    /**
+     * Attributes of the pooled keys.
+     */
+    private KeyAttributesMap attributes;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws IonicException on failure to fill the pool
+     */
+    @Before
+    public void setUp() throws IonicException {
+        keyServices = new LocalKeyServices();
+        preallocated = new PreallocatedKeyServices(keyServices, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        }, DEPTH, LOW_WATER);
+        attributes = new KeyAttributesMap();
+        attributes.put("classification", Collections.singletonList("pii"));
+        preallocated.prefill(attributes);
+    }
+
+    /**
+     * Requests are served from the pool, with distinct keys bearing the requested attributes, and without a request
+     * to the key service while the pool stays above its low-water mark.
+     *
+     * @throws IonicException on failure to create the keys
+     */
+    @Test
+    public final void testPool_1_Hits() throws IonicException {
+        Assert.assertEquals(1, preallocated.getRefills());
+        final long requests = keyServices.getRequests();
+        final Set<String> keyIds = new HashSet<String>();
+        for (int i = 0; i < DEPTH - LOW_WATER; ++i) {
+            final CreateKeysResponse.Key key = preallocated.createKey(attributes).getFirstKey();
+            Assert.assertEquals(attributes, key.getAttributesMap());
+            keyIds.add(key.getId());
+        }
+        Assert.assertEquals(DEPTH - LOW_WATER, keyIds.size());
+        Assert.assertEquals(requests, keyServices.getRequests());
+        Assert.assertEquals(DEPTH - LOW_WATER, preallocated.getHits());
+        Assert.assertEquals(0, preallocated.getMisses());
+    }
+
+    /**
+     * A pool below its low-water mark is refilled to its depth with a single request.
+     *
+     * @throws IonicException on failure to create the keys
+     */
+    @Test
+    public final void testPool_2_Refill() throws IonicException {
+        final long requests = keyServices.getRequests();
+        for (int i = 0; i <= DEPTH - LOW_WATER; ++i) {
+            preallocated.createKey(attributes);
+        }
+        Assert.assertEquals(2, preallocated.getRefills());
+        Assert.assertEquals(requests + 1, keyServices.getRequests());
+        for (int i = 0; i < DEPTH - LOW_WATER; ++i) {
+            preallocated.createKey(attributes);
+        }
+        Assert.assertEquals(requests + 1, keyServices.getRequests());
+        Assert.assertEquals(0, preallocated.getMisses());
+    }
+
+    /**
+     * The part of a request exceeding the pool, and requests with mutable attributes, are passed through.
+     *
+     * @throws IonicException on failure to create the keys
+     */
+    @Test
+    public final void testPool_3_Misses() throws IonicException {
+        final CreateKeysRequest request = new CreateKeysRequest();
+        request.add(new CreateKeysRequest.Key("ref", DEPTH * 2, attributes));
+        final CreateKeysResponse response = preallocated.createKeys(request);
+        Assert.assertEquals(DEPTH * 2, response.getKeys().size());
+        for (CreateKeysResponse.Key key : response.getKeys()) {
+            Assert.assertEquals("ref", key.getRefId());
+        }
+        Assert.assertEquals(DEPTH, preallocated.getHits());
+        Assert.assertEquals(DEPTH, preallocated.getMisses());
+
+        final long hits = preallocated.getHits();
+        final KeyAttributesMap mutableAttributes = new KeyAttributesMap();
+        mutableAttributes.put("state", Collections.singletonList("draft"));
+        Assert.assertNotNull(preallocated.createKey(attributes, mutableAttributes).getFirstKey());
+        Assert.assertEquals(hits, preallocated.getHits());
+    }
+
+    /**
+     * A failed refill is counted, and retried on the next request served from the pool.
+     *
+     * @throws IonicException on failure to create the keys
+     */
+    @Test
+    public final void testPool_4_RefillFailure() throws IonicException {
+        for (int i = 0; i < DEPTH - LOW_WATER; ++i) {
+            preallocated.createKey(attributes);
+        }
+        keyServices.setErrorRate(1.0);
+        Assert.assertNotNull(preallocated.createKey(attributes).getFirstKey());
+        Assert.assertEquals(1, preallocated.getRefillFailures());
+        Assert.assertEquals(1, preallocated.getRefills());
+        keyServices.setErrorRate(0.0);
+        Assert.assertNotNull(preallocated.createKey(attributes).getFirstKey());
+        Assert.assertEquals(2, preallocated.getRefills());
+        Assert.assertEquals(DEPTH - LOW_WATER + 2, preallocated.getHits());
+        Assert.assertEquals(0, preallocated.getMisses());
+    }
+
+    /**
+     * The number of keys held in a full pool.
+     */
+    private static final int DEPTH = 8;
+
+    /**
+     * The number of keys below which a pool is refilled.
+     */
+    private static final int LOW_WATER = 3;
+}
@@ -0,0 +1,315 @@
+package com.ionic.sdk.addon.policy.test;
+
+import com.ionic.sdk.addon.policy.PolicyChangeListener;
+import com.ionic.sdk.addon.policy.PolicyService;
+import com.ionic.sdk.error.IonicException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the bulk operations of {@link PolicyService} against an in-process HTTP server emulating the policy resources
+ * of the Ionic tenant API: results are returned in input order, the number of requests in flight is bounded, a
+ * failure is reported once all requests complete, a request rejected by the executor is reported, and listeners are
+ * notified once per bulk operation.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PolicyServiceTest {
+
+    /**
+     * In-process HTTP server, emulating the policy resources of the tenant API.
+     */
+    private HttpServer server;
+
+    /**
+     * The policies held by the server, indexed by identifier.
+     */
+    private ConcurrentHashMap<String, String> policies;
+
+    /**
+     * The number of requests being handled by the server.
+     */
+    private AtomicInteger inFlight;
+
+    /**
+     * The largest number of requests handled by the server at any one time.
+     */
+    private AtomicInteger maxInFlight;
+
+    /**
+     * The threads used by the service to issue concurrent requests.
+     */
+    private ExecutorService executor;
+
+    /**
+     * The service under test.
+     */
+    private PolicyService policyService;
+
+    /**
+     * The number of policy change notifications received.
+     */
+    private AtomicInteger notifications;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws IOException on failure to start the server
+     */
+    @Before
+    public void setUp() throws IOException {
+        policies = new ConcurrentHashMap<String, String>();
+        inFlight = new AtomicInteger();
+        maxInFlight = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(String.format("/v2/%s/policies", TENANT), new PolicyHandler());
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        executor = Executors.newFixedThreadPool(THREADS);
+        policyService = new PolicyService(new URL(String.format("http://127.0.0.1:%d", server.getAddress().getPort())),
+                TENANT, "user", "password", executor);
+        notifications = new AtomicInteger();
+        policyService.addPolicyChangeListener(new PolicyChangeListener() {
+            @Override
+            public void onPolicyChange() {
+                notifications.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Tear down after each test case.
+     */
+    @After
+    public void tearDown() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Policies are created with no more than the requested number of requests in flight, and their identifiers are
+     * returned in input order.
+     *
+     * @throws IonicException on server request failure
+     */
+    @Test
+    public final void testPolicyService_1_AddPolicies() throws IonicException {
+        final List<String> policyIds = policyService.addPolicies(toPolicies(POLICIES, -1), MAX_CONCURRENT);
+        Assert.assertEquals(POLICIES, policyIds.size());
+        for (int i = 0; i < POLICIES; ++i) {
+            Assert.assertEquals(toName(i), policies.get(policyIds.get(i)));
+        }
+        Assert.assertTrue(maxInFlight.get() <= MAX_CONCURRENT);
+        Assert.assertEquals(1, notifications.get());
+    }
+
+    /**
+     * Policies are deleted with no more than the requested number of requests in flight.
+     *
+     * @throws IonicException on server request failure
+     */
+    @Test
+    public final void testPolicyService_2_DeletePolicies() throws IonicException {
+        final List<String> policyIds = policyService.addPolicies(toPolicies(POLICIES, -1), THREADS);
+        maxInFlight.set(0);
+        policyService.deletePolicies(policyIds.subList(1, POLICIES), MAX_CONCURRENT);
+        Assert.assertEquals(new HashSet<String>(policyIds.subList(0, 1)), new HashSet<String>(policies.keySet()));
+        Assert.assertTrue(maxInFlight.get() <= MAX_CONCURRENT);
+        Assert.assertEquals(2, notifications.get());
+    }
+
+    /**
+     * A failed request is reported once all requests complete; the other policies are created, and listeners are
+     * notified.
+     */
+    @Test
+    public final void testPolicyService_3_Failure() {
+        try {
+            policyService.addPolicies(toPolicies(POLICIES, 0), MAX_CONCURRENT);
+            Assert.fail("failed request should be reported");
+        } catch (IonicException e) {
+            Assert.assertEquals(POLICIES - 1, policies.size());
+            Assert.assertFalse(policies.containsValue(toName(0)));
+            Assert.assertEquals(1, notifications.get());
+        }
+    }
+
+    /**
+     * A request rejected by the executor is reported once the requests in flight are cancelled, and listeners are
+     * notified.
+     *
+     * @throws IOException on failure to construct the service
+     */
+    @Test
+    public final void testPolicyService_4_Rejected() throws IOException {
+        final ExecutorService executorSingle = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<Runnable>());
+        try {
+            final PolicyService policyServiceSingle = new PolicyService(new URL(String.format(
+                    "http://127.0.0.1:%d", server.getAddress().getPort())), TENANT, "user", "password", executorSingle);
+            policyServiceSingle.addPolicyChangeListener(new PolicyChangeListener() {
+                @Override
+                public void onPolicyChange() {
+                    notifications.incrementAndGet();
+                }
+            });
+            policyServiceSingle.addPolicies(toPolicies(POLICIES, -1), MAX_CONCURRENT);
+            Assert.fail("rejected request should be reported");
+        } catch (IonicException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            Assert.assertTrue(policies.size() <= 1);
+            Assert.assertEquals(1, notifications.get());
+        } finally {
+            executorSingle.shutdownNow();
+        }
+    }
+
+    /**
+     * @param count  the number of policies
+     * @param failed the index of the policy the server rejects; -1 for none
+     * @return the JSON of each policy
+     */
+    private static List<byte[]> toPolicies(final int count, final int failed) {
+        final List<byte[]> policiesJson = new ArrayList<byte[]>(count);
+        for (int i = 0; i < count; ++i) {
+            final String name = (i == failed) ? NAME_FAILED : toName(i);
+            policiesJson.add(toBytes(Json.createObjectBuilder().add("name", name).build().toString()));
+        }
+        return policiesJson;
+    }
+
+    /**
+     * @param i the index of a policy
+     * @return the name of the policy
+     */
+    private static String toName(final int i) {
+        return String.format("policy-%d", i);
+    }
+
+    /**
+     * @param text text
+     * @return the UTF-8 encoding of the text
+     */
+    private static byte[] toBytes(final String text) {
+        try {
+            return text.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Handler of the policy resources: creates a policy on <code>POST</code> (rejecting the policy named
+     * {@link #NAME_FAILED}), and deletes a policy on <code>DELETE</code>.
+     */
+    private final class PolicyHandler implements HttpHandler {
+
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            final int inFlightNow = inFlight.incrementAndGet();
+            try {
+                synchronized (maxInFlight) {
+                    maxInFlight.set(Math.max(maxInFlight.get(), inFlightNow));
+                }
+                TimeUnit.MILLISECONDS.sleep(LATENCY_MILLIS);
+                if ("POST".equals(exchange.getRequestMethod())) {
+                    final JsonObject policy = Json.createReader(exchange.getRequestBody()).readObject();
+                    final String name = policy.getString("name");
+                    if (NAME_FAILED.equals(name)) {
+                        respond(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR, null);
+                    } else {
+                        final String policyId = String.format("id-%s", name);
+                        policies.put(policyId, name);
+                        respond(exchange, HttpURLConnection.HTTP_CREATED,
+                                Json.createObjectBuilder().add("id", policyId).build().toString());
+                    }
+                } else if ("DELETE".equals(exchange.getRequestMethod())) {
+                    final String path = exchange.getRequestURI().getPath();
+                    final String policyId = path.substring(path.lastIndexOf('/') + 1);
+                    respond(exchange, (policies.remove(policyId) == null)
+                            ? HttpURLConnection.HTTP_NOT_FOUND : HttpURLConnection.HTTP_NO_CONTENT, null);
+                } else {
+                    respond(exchange, HttpURLConnection.HTTP_BAD_METHOD, null);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR, null);
+            }
+        }
+
+        /**
+         * Complete a request; it is no longer counted as in flight once the client may observe the response.
+         *
+         * @param exchange   the request and response
+         * @param statusCode the status code of the response
+         * @param entity     the entity of the response; null for none
+         * @throws IOException on failure to write the response
+         */
+        private void respond(final HttpExchange exchange, final int statusCode, final String entity)
+                throws IOException {
+            final byte[] bytes = (entity == null) ? new byte[0] : toBytes(entity);
+            inFlight.decrementAndGet();
+            exchange.sendResponseHeaders(statusCode, (bytes.length == 0) ? -1 : bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * The identifier of the emulated tenant.
+     */
+    private static final String TENANT = "tenant";
+
+    /**
+     * The name of the policy rejected by the server.
+     */
+    private static final String NAME_FAILED = "failed";
+
+    /**
+     * The number of policies in each bulk operation.
+     */
+    private static final int POLICIES = 12;
+
+    /**
+     * The number of threads used by the service.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * The maximum number of concurrent requests of each bulk operation.
+     */
+    private static final int MAX_CONCURRENT = 3;
+
+    /**
+     * The latency injected into each server request.
+     */
+    private static final long LATENCY_MILLIS = 20L;
+}